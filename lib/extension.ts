@@ -3,9 +3,8 @@
 // Import the module and reference it with the alias vscode in your code below
 import * as Path from "path";
 import * as FS from "fs";
-import {window, workspace, ExtensionContext, commands, tasks, Task, TaskExecution, ShellExecution, Uri, TaskDefinition, languages, IndentAction, Progress, ProgressLocation, debug, DebugConfiguration, Range, Position, TextDocument, TextDocumentContentProvider, CancellationToken, ProviderResult, ConfigurationChangeEvent} from 'vscode';
+import {window, workspace, ExtensionContext, commands, tasks, Task, TaskExecution, ShellExecution, Uri, TaskDefinition, languages, IndentAction, Progress, ProgressLocation, debug, DebugConfiguration, TextDocumentContentProvider, CancellationToken, ProviderResult} from 'vscode';
 import {LanguageClient, LanguageClientOptions, ServerOptions, NotificationType} from "vscode-languageclient/node";
-import {loadStyles, decoration} from './textMate';
 import * as AdmZip from 'adm-zip';
 
 // If we want to profile using VisualVM, we have to run the language server using regular java, not jlink
@@ -64,62 +63,6 @@ export async function activate(context: ExtensionContext) {
 
 	// Register a progress-listener
     createProgressListeners(client);
-
-    // Apply semantic colors using custom notification
-    function asRange(r: RangeLike) {
-        return new Range(asPosition(r.start), asPosition(r.end));
-    }
-    function asPosition(p: PositionLike) {
-        return new Position(p.line, p.character);
-    }
-    const statics = window.createTextEditorDecorationType({
-        fontStyle: 'italic'
-    });
-    const colors = new Map<string, SemanticColors>();
-    function cacheSemanticColors(event: SemanticColors) {
-        colors.set(event.uri, event);
-        applySemanticColors();
-    }
-    function applySemanticColors() {
-        for (const editor of window.visibleTextEditors) {
-            if (editor.document.languageId != 'java') continue;
-            const c = colors.get(editor.document.uri.toString());
-            if (c == null) {
-                console.warn('No semantic colors for ' + editor.document.uri)
-                continue;
-            }
-            function decorate(scope: string, ranges: RangeLike[]) {
-                const d = decoration(scope);
-                if (d == null) {
-                    console.warn(scope + ' is not defined in the current theme');
-                    return;
-                }
-                editor.setDecorations(d, ranges.map(asRange));
-            }
-            decorate('variable', c.fields);
-            editor.setDecorations(statics, c.statics.map(asRange));
-        }
-    }
-    function forgetSemanticColors(doc: TextDocument) {
-        colors.delete(doc.uri.toString());
-    }
-	// Load active color theme
-	async function onChangeConfiguration(event: ConfigurationChangeEvent) {
-        let colorizationNeedsReload: boolean = event.affectsConfiguration('workbench.colorTheme')
-			|| event.affectsConfiguration('editor.tokenColorCustomizations')
-		if (colorizationNeedsReload) {
-			await loadStyles()
-			applySemanticColors()
-		}
-	}
-
-    client.onNotification(new NotificationType('java/colors'), cacheSemanticColors);
-    context.subscriptions.push(window.onDidChangeVisibleTextEditors(applySemanticColors));
-    context.subscriptions.push(workspace.onDidCloseTextDocument(forgetSemanticColors));
-    context.subscriptions.push(workspace.onDidChangeConfiguration(onChangeConfiguration))
-
-    await loadStyles();
-    applySemanticColors();
 }
 
 // Allows VSCode to open files like jar:file:///path/to/dep.jar!/com/foo/Thing.java
@@ -299,22 +242,6 @@ function createProgressListeners(client: LanguageClient) {
 	});
 };
 
-interface SemanticColors {
-    uri: string;
-    fields: RangeLike[];
-    statics: RangeLike[];
-}
-
-interface RangeLike {
-    start: PositionLike;
-    end: PositionLike;
-}
-
-interface PositionLike {
-    line: number;
-    character: number;
-}
-
 function platformSpecificLangServer(): string[] {
 	switch (process.platform) {
 		case 'win32':
@@ -0,0 +1,246 @@
+package org.javacs;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import org.javacs.lsp.DiagnosticSeverity;
+import org.javacs.lsp.Position;
+import org.javacs.lsp.PublishDiagnosticsParams;
+import org.javacs.lsp.Range;
+import org.javacs.markup.ErrorProvider;
+
+/**
+ * BatchCheck runs the same analysis as JavaLanguageServer.lint over every file in a workspace, without an editor, so it
+ * can be used in CI. Each directory of source files is compiled as one batch, and batches are spread over several
+ * threads, each of which compiles on its own shard of one compiler, so the class path is only scanned once.
+ *
+ * <p>The workers share the indexes of that compiler and the static state of the server: FileStore,
+ * PackagePrivateIndex, the parse cache of Parser and the caches of StringSearch. All of these are synchronized.
+ */
+class BatchCheck {
+    enum Format {
+        /** One line of JSON for each file that has diagnostics, in the format of textDocument/publishDiagnostics */
+        JSON,
+        /** A single SARIF 2.1.0 log, which code-scanning tools understand */
+        SARIF,
+    }
+
+    static class Summary {
+        int files, batches, errors, warnings;
+        Duration elapsed;
+
+        double filesPerSecond() {
+            return files * 1000.0 / Math.max(elapsed.toMillis(), 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Checked %,d files in %,d batches in %,d ms (%,.1f files/sec): %,d errors, %,d warnings",
+                    files, batches, elapsed.toMillis(), filesPerSecond(), errors, warnings);
+        }
+    }
+
+    private final Path root;
+    private final CompilerProvider compiler;
+    private final int threads;
+    private final Format format;
+
+    BatchCheck(Path root, CompilerProvider compiler, int threads, Format format) {
+        this.root = root.toAbsolutePath().normalize();
+        this.compiler = compiler;
+        this.threads = threads;
+        this.format = format;
+    }
+
+    /** Check every source file under root, writing diagnostics to out as each batch finishes. */
+    Summary run(Writer out) {
+        var started = Instant.now();
+        FileStore.setWorkspaceRoots(Set.of(root));
+        var batches = directoryBatches(FileStore.all());
+        var files = FileStore.all().size();
+        LOG.info(String.format("Check %,d files in %,d batches on %d threads", files, batches.size(), threads));
+        var queue = new ConcurrentLinkedQueue<List<Path>>(batches);
+        var report = new Report(out);
+        report.begin();
+        var pool = Executors.newFixedThreadPool(threads);
+        try {
+            var workers = new ArrayList<Future<?>>();
+            for (var shard : compiler.shards(threads)) {
+                workers.add(pool.submit(() -> work(shard, queue, report)));
+            }
+            for (var w : workers) {
+                w.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+        report.end();
+        var summary = report.summary;
+        summary.batches = batches.size();
+        summary.elapsed = Duration.between(started, Instant.now());
+        return summary;
+    }
+
+    /**
+     * Group files by directory, which puts each package in a batch without mixing up packages with the same name in
+     * different source roots. The largest batches go first, so a big package doesn't finish last on its own.
+     */
+    static List<List<Path>> directoryBatches(Collection<Path> files) {
+        var byDirectory = new TreeMap<Path, List<Path>>();
+        for (var f : files) {
+            byDirectory.computeIfAbsent(f.getParent(), __ -> new ArrayList<>()).add(f);
+        }
+        var batches = new ArrayList<List<Path>>(byDirectory.values());
+        batches.sort((a, b) -> Integer.compare(b.size(), a.size()));
+        return batches;
+    }
+
+    private void work(CompilerProvider shard, Queue<List<Path>> queue, Report report) {
+        for (var batch = queue.poll(); batch != null; batch = queue.poll()) {
+            try (var task = shard.compile(batch.toArray(Path[]::new))) {
+                for (var file : new ErrorProvider(task).errors()) {
+                    report.file(file);
+                }
+            } catch (RuntimeException e) {
+                LOG.warning("Failed to check " + batch.get(0).getParent() + ": " + e.getMessage());
+                report.failed(batch, e);
+            }
+        }
+    }
+
+    /** Report writes the results of all the workers to one stream, in the order they arrive. */
+    private class Report {
+        final Writer out;
+        final Summary summary = new Summary();
+        boolean first = true;
+
+        Report(Writer out) {
+            this.out = out;
+        }
+
+        synchronized void begin() {
+            if (format == Format.SARIF) {
+                write("{\"version\":\"2.1.0\",");
+                write("\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",");
+                write("\"runs\":[{\"tool\":{\"driver\":{\"name\":\"java-language-server\"}},");
+                write("\"originalUriBaseIds\":{\"ROOT\":{\"uri\":\"" + root.toUri() + "\"}},");
+                write("\"results\":[\n");
+            }
+        }
+
+        synchronized void file(PublishDiagnosticsParams file) {
+            summary.files++;
+            for (var d : file.diagnostics) {
+                if (d.severity == DiagnosticSeverity.Error) summary.errors++;
+                if (d.severity == DiagnosticSeverity.Warning) summary.warnings++;
+            }
+            if (file.diagnostics.isEmpty()) return;
+            write(file);
+        }
+
+        /** A batch that couldn't be compiled is reported as one error on its directory, so CI doesn't pass silently */
+        synchronized void failed(List<Path> batch, RuntimeException e) {
+            summary.files += batch.size();
+            summary.errors++;
+            var d = new org.javacs.lsp.Diagnostic();
+            d.range = new Range(new Position(0, 0), new Position(0, 0));
+            d.severity = DiagnosticSeverity.Error;
+            d.code = "batch_failed";
+            d.message = String.format("Failed to check %d files: %s", batch.size(), e);
+            var directory = batch.get(0).getParent();
+            write(new PublishDiagnosticsParams(directory.toUri(), List.of(d)));
+        }
+
+        private void write(PublishDiagnosticsParams file) {
+            if (format == Format.JSON) {
+                write(JsonHelper.GSON.toJson(file) + "\n");
+            } else {
+                for (var d : file.diagnostics) {
+                    if (!first) write(",\n");
+                    first = false;
+                    write(JsonHelper.GSON.toJson(sarifResult(file, d)));
+                }
+            }
+            flush();
+        }
+
+        synchronized void end() {
+            if (format == Format.SARIF) {
+                write("\n]}]}\n");
+            }
+            flush();
+        }
+
+        private void write(String text) {
+            try {
+                out.write(text);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private JsonObject sarifResult(PublishDiagnosticsParams file, org.javacs.lsp.Diagnostic d) {
+        var result = new JsonObject();
+        result.addProperty("ruleId", d.code);
+        result.addProperty("level", sarifLevel(d.severity));
+        var message = new JsonObject();
+        message.addProperty("text", d.message);
+        result.add("message", message);
+        var artifact = new JsonObject();
+        artifact.addProperty("uri", root.toUri().relativize(file.uri).toString());
+        artifact.addProperty("uriBaseId", "ROOT");
+        // SARIF lines and columns start at 1, LSP lines and characters start at 0
+        var region = new JsonObject();
+        region.addProperty("startLine", d.range.start.line + 1);
+        region.addProperty("startColumn", d.range.start.character + 1);
+        region.addProperty("endLine", d.range.end.line + 1);
+        region.addProperty("endColumn", d.range.end.character + 1);
+        var physical = new JsonObject();
+        physical.add("artifactLocation", artifact);
+        physical.add("region", region);
+        var location = new JsonObject();
+        location.add("physicalLocation", physical);
+        var locations = new JsonArray();
+        locations.add(location);
+        result.add("locations", locations);
+        return result;
+    }
+
+    private static String sarifLevel(Integer severity) {
+        if (severity == null) return "none";
+        switch (severity) {
+            case DiagnosticSeverity.Error:
+                return "error";
+            case DiagnosticSeverity.Warning:
+                return "warning";
+            case DiagnosticSeverity.Information:
+                return "note";
+            default:
+                return "none";
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
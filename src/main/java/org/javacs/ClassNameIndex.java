@@ -0,0 +1,88 @@
+package org.javacs;
+
+import java.util.*;
+
+/**
+ * ClassNameIndex keeps qualified class names sorted by simple name and by qualified name, so completion can find the
+ * classes that start with a prefix in O(log n + k) time, without scanning every class on the class path.
+ */
+class ClassNameIndex {
+    /** count[qualifiedName] is the number of times qualifiedName was added, for example by two copies of a file */
+    private final TreeMap<String, Integer> count = new TreeMap<>();
+    /** bySimpleName[simpleName] is the qualified names that end in simpleName */
+    private final TreeMap<String, TreeSet<String>> bySimpleName = new TreeMap<>();
+
+    ClassNameIndex() {}
+
+    ClassNameIndex(Collection<String> qualifiedNames) {
+        for (var name : qualifiedNames) {
+            add(name);
+        }
+    }
+
+    void add(String qualifiedName) {
+        var n = count.merge(qualifiedName, 1, Integer::sum);
+        if (n == 1) {
+            bySimpleName.computeIfAbsent(simpleName(qualifiedName), __ -> new TreeSet<>()).add(qualifiedName);
+        }
+    }
+
+    void remove(String qualifiedName) {
+        var n = count.getOrDefault(qualifiedName, 0);
+        if (n > 1) {
+            count.put(qualifiedName, n - 1);
+            return;
+        }
+        if (n == 0) return;
+        count.remove(qualifiedName);
+        var simpleName = simpleName(qualifiedName);
+        var names = bySimpleName.get(simpleName);
+        names.remove(qualifiedName);
+        if (names.isEmpty()) {
+            bySimpleName.remove(simpleName);
+        }
+    }
+
+    void clear() {
+        count.clear();
+        bySimpleName.clear();
+    }
+
+    int size() {
+        return count.size();
+    }
+
+    /** Add up to `limit` qualified names whose simple name starts with `prefix` to `result`. */
+    void addBySimpleName(String prefix, int limit, Collection<String> result) {
+        for (var names : bySimpleName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            for (var name : names) {
+                if (result.size() >= limit) return;
+                result.add(name);
+            }
+        }
+    }
+
+    /**
+     * For each distinct segment that follows `prefix` in a qualified name, add the first qualified name that contains
+     * it to `result`. For example, if prefix is `java.util.` we add `java.util.ArrayList` and `java.util.concurrent.X`,
+     * but not every class in `java.util.concurrent`.
+     */
+    void addFirstBySegment(String prefix, int limit, Collection<String> result) {
+        var next = count.ceilingKey(prefix);
+        while (next != null && next.startsWith(prefix) && result.size() < limit) {
+            result.add(next);
+            var end = next.indexOf('.', prefix.length());
+            if (end == -1) {
+                next = count.higherKey(next);
+            } else {
+                // Skip the rest of the package, '/' is the character after '.'
+                next = count.ceilingKey(next.substring(0, end) + '/');
+            }
+        }
+    }
+
+    private static String simpleName(String qualifiedName) {
+        var dot = qualifiedName.lastIndexOf('.');
+        return qualifiedName.substring(dot + 1);
+    }
+}
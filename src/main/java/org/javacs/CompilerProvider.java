@@ -13,8 +13,19 @@ public interface CompilerProvider {
 
     List<String> publicTopLevelTypes();
 
+    /** Up to `limit` public top-level types whose simple name starts with `simpleNamePrefix`, workspace types first. */
+    List<String> publicTopLevelTypes(String simpleNamePrefix, int limit);
+
+    /** For each distinct segment that follows `qualifiedPrefix`, the first public top-level type under it. */
+    List<String> publicTopLevelTypesBySegment(String qualifiedPrefix, int limit);
+
     List<String> packagePrivateTopLevelTypes(String packageName);
 
+    MemberIndex memberIndex();
+
+    /** Pre-rendered docs of a library class or member, or null if they haven't been pre-rendered. */
+    DocStore.Entry prerenderedDocs(String className, String memberKey);
+
     Iterable<Path> search(String query);
 
     Optional<JavaFileObject> findAnywhere(String className);
@@ -33,5 +44,14 @@ public interface CompilerProvider {
 
     CompileTask compile(Collection<? extends JavaFileObject> sources);
 
+    /**
+     * `count` compilers with the same configuration as this one, each with its own javac context, so they can compile
+     * at the same time as each other. Each may only be used by one thread at a time.
+     */
+    List<CompilerProvider> shards(int count);
+
+    /** Close the batch this compiler keeps from its last compile, unless it is in use. Return false if it is in use. */
+    boolean releaseCachedCompile();
+
     Path NOT_FOUND = Paths.get("");
 }
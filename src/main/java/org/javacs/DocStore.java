@@ -0,0 +1,423 @@
+package org.javacs;
+
+import com.google.gson.reflect.TypeToken;
+import com.sun.source.tree.*;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.ZipFile;
+import javax.lang.model.element.Modifier;
+import javax.tools.*;
+
+/**
+ * DocStore is a pre-rendered copy of the javadoc in a source archive like src.zip or a -sources.jar. We parse every
+ * file in the archive once, render the doc comment of each public type and member as markdown, and write the results
+ * to disk, so hover and completion can look up library docs without parsing library sources again.
+ *
+ * <p>The store is 2 files: `.data` holds one JSON object per class, mapping member keys to entries, and `.index` maps
+ * each class name to the offset and length of its record. The index is written last, so a store with an index is
+ * complete. We keep the records of the classes we looked up most recently in memory, because completion looks up many
+ * members of the same class.
+ */
+public class DocStore {
+    public static class Entry {
+        /** detail is the signature of a method, or null */
+        public String detail;
+        /** docs is the doc comment rendered as markdown, or null */
+        public String docs;
+    }
+
+    private final Path data;
+    private final Map<String, long[]> index;
+    /** The records of the classes we read most recently, least-recently-used first */
+    private final LinkedHashMap<String, Map<String, Entry>> recent = new LinkedHashMap<>(16, 0.75f, true);
+
+    private DocStore(Path data, Map<String, long[]> index) {
+        this.data = data;
+        this.index = index;
+    }
+
+    /** Find the entry for `memberKey` in `className`, or null if this store doesn't know about it. */
+    public synchronized Entry find(String className, String memberKey) {
+        var members = recent.get(className);
+        if (members == null) {
+            var record = index.get(className);
+            if (record == null) return null;
+            members = read(record);
+            recent.put(className, members);
+            if (recent.size() > RECENT_CLASSES) {
+                var eldest = recent.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return members.get(memberKey);
+    }
+
+    private Map<String, Entry> read(long[] record) {
+        try (var file = new RandomAccessFile(data.toFile(), "r")) {
+            var bytes = new byte[(int) record[1]];
+            file.seek(record[0]);
+            file.readFully(bytes);
+            return JsonHelper.GSON.fromJson(new String(bytes, StandardCharsets.UTF_8), MEMBERS);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static final int RECENT_CLASSES = 100;
+
+    private static final java.lang.reflect.Type MEMBERS = new TypeToken<Map<String, Entry>>() {}.getType();
+
+    /** The key of the doc comment on a class. */
+    public static String typeKey() {
+        return "";
+    }
+
+    public static String fieldKey(String name) {
+        return name;
+    }
+
+    /**
+     * The key of a method, like `indexOf(java.lang.String,int)`. Parameter types are erased and qualified, so overloads
+     * that take classes with the same simple name get different keys.
+     */
+    public static String methodKey(String name, String[] erasedParameterTypes) {
+        return name + "(" + String.join(",", erasedParameterTypes) + ")";
+    }
+
+    /** The directory where we keep stores, which can be changed with -Djavacs.docStore=... */
+    static Path storeDir() {
+        var dir = System.getProperty("javacs.docStore");
+        if (dir != null) return Paths.get(dir);
+        return Paths.get(System.getProperty("java.io.tmpdir"), "javacs-docs");
+    }
+
+    /**
+     * Stores are named after the archive, its size and modification time, so a new JDK gets a new store, and after the
+     * format of the store, so a store written by an older version is built again.
+     */
+    private static String storeName(Path archive) throws IOException {
+        var abs = archive.toAbsolutePath().normalize();
+        var modified = Files.getLastModifiedTime(abs).toMillis();
+        var hash = Objects.hash(FORMAT, abs.toString(), Files.size(abs), modified);
+        return abs.getFileName() + "-" + Integer.toHexString(hash);
+    }
+
+    /** Open the store for archive, if we have already built it. */
+    static Optional<DocStore> open(Path archive) {
+        try {
+            var name = storeName(archive);
+            var indexFile = storeDir().resolve(name + ".index");
+            if (!Files.exists(indexFile)) return Optional.empty();
+            var index = new HashMap<String, long[]>();
+            for (var line : Files.readAllLines(indexFile)) {
+                var parts = line.split("\t");
+                if (parts.length != 3) continue;
+                index.put(parts[0], new long[] {Long.parseLong(parts[1]), Long.parseLong(parts[2])});
+            }
+            return Optional.of(new DocStore(storeDir().resolve(name + ".data"), index));
+        } catch (IOException e) {
+            LOG.warning("Couldn't open doc store for " + archive + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static final int FORMAT = 2;
+
+    /** Parse every source file in archive and write its docs to a new store. This is slow, so run it in background. */
+    static DocStore build(Path archive) throws IOException {
+        LOG.info("Pre-render docs in " + archive + "...");
+        var started = Instant.now();
+        var name = storeName(archive);
+        var dir = storeDir();
+        Files.createDirectories(dir);
+        var tmpData = Files.createTempFile(dir, name, ".data.tmp");
+        var tmpIndex = Files.createTempFile(dir, name, ".index.tmp");
+        var index = new HashMap<String, long[]>();
+        try (var zip = new ZipFile(archive.toFile());
+                var out = new BufferedOutputStream(Files.newOutputStream(tmpData));
+                var fileManager = COMPILER.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            var archiveClasses = topLevelClasses(zip);
+            var offset = 0L;
+            var batch = new ArrayList<JavaFileObject>();
+            var entries = zip.entries();
+            while (entries.hasMoreElements() || !batch.isEmpty()) {
+                if (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+                    if (!entry.getName().endsWith(".java") || entry.getName().endsWith("module-info.java")) continue;
+                    if (entry.getName().endsWith("package-info.java")) continue;
+                    try (var in = zip.getInputStream(entry)) {
+                        var contents = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                        batch.add(new ArchiveSource(entry.getName(), contents));
+                    }
+                    if (batch.size() < BATCH_SIZE && entries.hasMoreElements()) continue;
+                }
+                for (var entry : parse(fileManager, batch, archiveClasses).entrySet()) {
+                    var bytes = JsonHelper.GSON.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8);
+                    out.write(bytes);
+                    index.put(entry.getKey(), new long[] {offset, bytes.length});
+                    offset += bytes.length;
+                }
+                batch.clear();
+            }
+        }
+        try (var writer = Files.newBufferedWriter(tmpIndex)) {
+            for (var className : index.keySet()) {
+                var record = index.get(className);
+                writer.write(className + "\t" + record[0] + "\t" + record[1] + "\n");
+            }
+        }
+        var data = dir.resolve(name + ".data");
+        Files.move(tmpData, data, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmpIndex, dir.resolve(name + ".index"), StandardCopyOption.REPLACE_EXISTING);
+        var elapsed = Duration.between(started, Instant.now()).toSeconds();
+        LOG.info(String.format("...pre-rendered docs of %,d classes in %ds", index.size(), elapsed));
+        return new DocStore(data, index);
+    }
+
+    /** The qualified names of the top-level classes in archive, which we use to qualify parameter types. */
+    private static Set<String> topLevelClasses(ZipFile zip) {
+        var names = new HashSet<String>();
+        var entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            var entry = entries.nextElement().getName();
+            if (!entry.endsWith(".java")) continue;
+            // src.zip puts each module in a directory, like java.base/java/lang/String.java
+            var start = entry.indexOf('/');
+            if (start == -1 || !entry.substring(0, start).contains(".")) start = -1;
+            names.add(entry.substring(start + 1, entry.length() - ".java".length()).replace('/', '.'));
+        }
+        return names;
+    }
+
+    private static final JavaCompiler COMPILER = ServiceLoader.load(JavaCompiler.class).iterator().next();
+
+    private static final int BATCH_SIZE = 100;
+
+    private static class ArchiveSource extends SimpleJavaFileObject {
+        final String contents;
+
+        ArchiveSource(String entryName, String contents) {
+            super(URI.create("archive:///" + entryName.replace(' ', '_')), Kind.SOURCE);
+            this.contents = contents;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return contents;
+        }
+    }
+
+    /** Parse a batch of files, and render the docs of each public class. */
+    private static Map<String, Map<String, Entry>> parse(
+            JavaFileManager fileManager, List<JavaFileObject> batch, Set<String> archiveClasses) {
+        var task =
+                (JavacTask) COMPILER.getTask(null, fileManager, __ -> {}, List.of("-proc:none"), List.of(), batch);
+        var docs = DocTrees.instance(task);
+        var result = new HashMap<String, Map<String, Entry>>();
+        try {
+            for (var root : task.parse()) {
+                var packageName = Objects.toString(root.getPackageName(), "");
+                var names = new Names(root, packageName, archiveClasses);
+                for (var t : root.getTypeDecls()) {
+                    if (!(t instanceof ClassTree)) continue;
+                    var c = (ClassTree) t;
+                    if (!c.getModifiers().getFlags().contains(Modifier.PUBLIC)) continue;
+                    var qualifiedName = names.qualifiedName(c);
+                    addClass(docs, new TreePath(new TreePath(root), c), qualifiedName, Map.of(), names, result);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Names qualifies the simple names of types in one file the way javac would, using the classes the file declares,
+     * its imports, its package, and java.lang. It only parses, so it can't find member types a class inherits, or
+     * classes that are neither in the archive nor in java.lang. We leave those names as they are, and lookups of
+     * methods that take them miss, which only costs a parse.
+     */
+    private static class Names {
+        final String packageName;
+        final Set<String> archiveClasses;
+        final Map<String, String> declared = new HashMap<>(), imported = new HashMap<>();
+        final List<String> importedPackages = new ArrayList<>();
+
+        Names(CompilationUnitTree root, String packageName, Set<String> archiveClasses) {
+            this.packageName = packageName;
+            this.archiveClasses = archiveClasses;
+            for (var t : root.getTypeDecls()) {
+                if (t instanceof ClassTree) addDeclared((ClassTree) t, qualifiedName((ClassTree) t));
+            }
+            for (var i : root.getImports()) {
+                if (i.isStatic()) continue;
+                var name = i.getQualifiedIdentifier().toString();
+                var lastDot = name.lastIndexOf('.');
+                if (name.endsWith(".*")) {
+                    importedPackages.add(name.substring(0, lastDot));
+                } else {
+                    imported.put(name.substring(lastDot + 1), name);
+                }
+            }
+        }
+
+        String qualifiedName(ClassTree topLevel) {
+            var simpleName = topLevel.getSimpleName().toString();
+            return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        }
+
+        private void addDeclared(ClassTree c, String qualifiedName) {
+            declared.putIfAbsent(c.getSimpleName().toString(), qualifiedName);
+            for (var m : c.getMembers()) {
+                if (!(m instanceof ClassTree)) continue;
+                var inner = (ClassTree) m;
+                addDeclared(inner, qualifiedName + "." + inner.getSimpleName());
+            }
+        }
+
+        String qualify(String simpleName) {
+            if (declared.containsKey(simpleName)) return declared.get(simpleName);
+            if (imported.containsKey(simpleName)) return imported.get(simpleName);
+            var inPackage = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+            if (archiveClasses.contains(inPackage)) return inPackage;
+            if (isJavaLang(simpleName)) return "java.lang." + simpleName;
+            for (var p : importedPackages) {
+                if (archiveClasses.contains(p + "." + simpleName)) return p + "." + simpleName;
+            }
+            return simpleName;
+        }
+
+        private boolean isJavaLang(String simpleName) {
+            if (archiveClasses.contains("java.lang." + simpleName)) return true;
+            return JAVA_LANG.computeIfAbsent(simpleName, Names::isLoadable);
+        }
+
+        private static boolean isLoadable(String simpleName) {
+            try {
+                Class.forName("java.lang." + simpleName, false, null);
+                return true;
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+
+        /** Whether java.lang of the JDK we're running on has each simple name we've asked about */
+        private static final Map<String, Boolean> JAVA_LANG = new ConcurrentHashMap<>();
+    }
+
+    private static void addClass(
+            DocTrees docs,
+            TreePath path,
+            String qualifiedName,
+            Map<String, String> outerTypeVariables,
+            Names names,
+            Map<String, Map<String, Entry>> result) {
+        var c = (ClassTree) path.getLeaf();
+        var isInterface = c.getKind() == Tree.Kind.INTERFACE || c.getKind() == Tree.Kind.ANNOTATION_TYPE;
+        var typeVariables = typeVariables(c.getTypeParameters(), outerTypeVariables, names);
+        var members = new HashMap<String, Entry>();
+        members.put(typeKey(), entry(docs, path, null));
+        for (var m : c.getMembers()) {
+            var flags = m instanceof ClassTree ? ((ClassTree) m).getModifiers().getFlags() : null;
+            if (m instanceof MethodTree) flags = ((MethodTree) m).getModifiers().getFlags();
+            if (m instanceof VariableTree) flags = ((VariableTree) m).getModifiers().getFlags();
+            if (flags == null) continue;
+            var isVisible = isInterface || flags.contains(Modifier.PUBLIC) || flags.contains(Modifier.PROTECTED);
+            if (!isVisible) continue;
+            var memberPath = new TreePath(path, m);
+            if (m instanceof ClassTree) {
+                var inner = (ClassTree) m;
+                var innerName = qualifiedName + "." + inner.getSimpleName();
+                addClass(docs, memberPath, innerName, typeVariables, names, result);
+            } else if (m instanceof MethodTree) {
+                var method = (MethodTree) m;
+                var methodTypeVariables = typeVariables(method.getTypeParameters(), typeVariables, names);
+                var erased = new String[method.getParameters().size()];
+                for (var i = 0; i < erased.length; i++) {
+                    erased[i] = erasedType(method.getParameters().get(i).getType(), methodTypeVariables, names);
+                }
+                var key = methodKey(method.getName().toString(), erased);
+                members.put(key, entry(docs, memberPath, methodDetail(method)));
+            } else {
+                var field = (VariableTree) m;
+                members.put(fieldKey(field.getName().toString()), entry(docs, memberPath, null));
+            }
+        }
+        result.put(qualifiedName, members);
+    }
+
+    private static Entry entry(DocTrees docs, TreePath path, String detail) {
+        var entry = new Entry();
+        entry.detail = detail;
+        var comment = docs.getDocCommentTree(path);
+        if (comment != null) {
+            entry.docs = MarkdownHelper.asMarkdown(comment);
+        }
+        return entry;
+    }
+
+    /** The signature of a method as we show it in completion details. */
+    public static String methodDetail(MethodTree method) {
+        var parameters = new StringJoiner(", ");
+        for (var p : method.getParameters()) {
+            parameters.add(p.getType() + " " + p.getName());
+        }
+        var detail = method.getReturnType() + " " + method.getName() + "(" + parameters + ")";
+        if (!method.getThrows().isEmpty()) {
+            var exceptions = new StringJoiner(", ");
+            for (var e : method.getThrows()) {
+                exceptions.add(e.toString());
+            }
+            detail += " throws " + exceptions;
+        }
+        return detail;
+    }
+
+    /** Map each type variable to its erasure, which is the erasure of its first bound. */
+    private static Map<String, String> typeVariables(
+            List<? extends TypeParameterTree> parameters, Map<String, String> outer, Names names) {
+        if (parameters.isEmpty()) return outer;
+        var map = new HashMap<String, String>(outer);
+        for (var p : parameters) {
+            var bounds = p.getBounds();
+            var erased = bounds.isEmpty() ? "java.lang.Object" : erasedType(bounds.get(0), map, names);
+            map.put(p.getName().toString(), erased);
+        }
+        return map;
+    }
+
+    /** The qualified name of the erasure of a type, like `Types.erasure(type).toString()` computes from an element. */
+    private static String erasedType(Tree type, Map<String, String> typeVariables, Names names) {
+        switch (type.getKind()) {
+            case PARAMETERIZED_TYPE:
+                return erasedType(((ParameterizedTypeTree) type).getType(), typeVariables, names);
+            case ARRAY_TYPE:
+                return erasedType(((ArrayTypeTree) type).getType(), typeVariables, names) + "[]";
+            case ANNOTATED_TYPE:
+                return erasedType(((AnnotatedTypeTree) type).getUnderlyingType(), typeVariables, names);
+            case MEMBER_SELECT:
+                var select = (MemberSelectTree) type;
+                return erasedType(select.getExpression(), Map.of(), names) + "." + select.getIdentifier();
+            case IDENTIFIER:
+                var name = ((IdentifierTree) type).getName().toString();
+                if (typeVariables.containsKey(name)) return typeVariables.get(name);
+                return names.qualify(name);
+            default:
+                return type.toString();
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
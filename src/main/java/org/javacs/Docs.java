@@ -14,6 +14,12 @@ public class Docs {
     /** File manager with source-path + platform sources, which we will use to look up individual source files */
     final SourceFileManager fileManager = new SourceFileManager();
 
+    /** Source archives on the doc path, and src.zip, which we can pre-render into a DocStore */
+    private final List<Path> archives = new ArrayList<>();
+
+    /** stores[archive] is the pre-rendered docs of archive, replaced as a whole when a background build finishes */
+    private volatile Map<Path, DocStore> stores = Map.of();
+
     Docs(Set<Path> docPath) {
         var srcZipPath = srcZip();
         // Path to source .jars + src.zip
@@ -29,6 +35,62 @@ public class Docs {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        for (var p : docPath) {
+            var name = p.getFileName().toString();
+            if (Files.isRegularFile(p) && (name.endsWith(".jar") || name.endsWith(".zip"))) {
+                archives.add(p);
+            }
+        }
+        if (srcZipPath != NOT_FOUND) {
+            archives.add(cacheSrcZip);
+        }
+        var found = new HashMap<Path, DocStore>();
+        for (var archive : archives) {
+            DocStore.open(archive).ifPresent(store -> found.put(archive, store));
+        }
+        stores = found;
+    }
+
+    /** Look up pre-rendered docs, or return null if no store covers className and memberKey. */
+    DocStore.Entry prerendered(String className, String memberKey) {
+        // Search archives in the same order as fileManager
+        var current = stores;
+        for (var archive : archives) {
+            var store = current.get(archive);
+            if (store == null) continue;
+            var entry = store.find(className, memberKey);
+            if (entry != null) return entry;
+        }
+        return null;
+    }
+
+    /** Build a DocStore for each archive that doesn't have one yet, in a low-priority background thread. */
+    void prerenderInBackground() {
+        var missing = new ArrayList<Path>();
+        for (var archive : archives) {
+            if (!stores.containsKey(archive)) {
+                missing.add(archive);
+            }
+        }
+        if (missing.isEmpty()) return;
+        var thread =
+                new Thread(
+                        () -> {
+                            for (var archive : missing) {
+                                try {
+                                    var built = DocStore.build(archive);
+                                    var next = new HashMap<Path, DocStore>(stores);
+                                    next.put(archive, built);
+                                    stores = next;
+                                } catch (IOException | RuntimeException e) {
+                                    LOG.warning("Couldn't pre-render docs in " + archive + ": " + e.getMessage());
+                                }
+                            }
+                        },
+                        "prerender-docs");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
     }
 
     static final Path NOT_FOUND = Paths.get("");
@@ -14,6 +14,12 @@ import org.javacs.lsp.DidCloseTextDocumentParams;
 import org.javacs.lsp.DidOpenTextDocumentParams;
 import org.javacs.lsp.TextDocumentContentChangeEvent;
 
+/**
+ * FileStore knows every java source in the workspace, and the contents of the open documents. Compilers that run at the
+ * same time, like the shards of a rename, can look up a file FileStore hasn't seen yet, which adds it to the index of
+ * sources, so every method that reads or writes the index or the open documents is synchronized. all() and
+ * activeDocuments() return copies, so callers can iterate over them while other threads add files.
+ */
 public class FileStore {
 
     private static final Set<Path> workspaceRoots = new HashSet<>();
@@ -21,9 +27,14 @@ public class FileStore {
     private static final Map<Path, VersionedContent> activeDocuments = new HashMap<>();
 
     /** javaSources[file] is the javaSources time of a .java source file. */
-    // TODO organize by package name for speed of list(...)
     private static final TreeMap<Path, Info> javaSources = new TreeMap<>();
 
+    /** filesByPackage[packageName] is the files in javaSources that declare packageName, for speed of list(...) */
+    private static final Map<String, TreeSet<Path>> filesByPackage = new HashMap<>();
+
+    /** workspaceClassNames is the qualified name of every file in javaSources, kept up-to-date as files change */
+    private static final ClassNameIndex workspaceClassNames = new ClassNameIndex();
+
     private static class Info {
         final Instant modified;
         final String packageName;
@@ -34,11 +45,12 @@ public class FileStore {
         }
     }
 
-    static void setWorkspaceRoots(Set<Path> newRoots) {
+    static synchronized void setWorkspaceRoots(Set<Path> newRoots) {
         newRoots = normalize(newRoots);
-        for (var root : workspaceRoots) {
-            if (!newRoots.contains(root)) {
-                workspaceRoots.removeIf(f -> f.startsWith(root));
+        // Forget the files of roots that were removed, unless another root still contains them
+        for (var file : new ArrayList<>(javaSources.keySet())) {
+            if (!isUnder(file, newRoots)) {
+                removeInfo(file);
             }
         }
         for (var root : newRoots) {
@@ -50,6 +62,13 @@ public class FileStore {
         workspaceRoots.addAll(newRoots);
     }
 
+    private static boolean isUnder(Path file, Set<Path> roots) {
+        for (var root : roots) {
+            if (file.startsWith(root)) return true;
+        }
+        return false;
+    }
+
     private static Set<Path> normalize(Set<Path> newRoots) {
         var normalize = new HashSet<Path>();
         for (var root : newRoots) {
@@ -85,27 +104,67 @@ public class FileStore {
         }
     }
 
-    static Collection<Path> all() {
-        return javaSources.keySet();
+    static synchronized Collection<Path> all() {
+        return List.copyOf(javaSources.keySet());
     }
 
-    static void reset() {
+    static synchronized void reset() {
         activeDocuments.clear();
         workspaceRoots.clear();
         javaSources.clear();
+        filesByPackage.clear();
+        workspaceClassNames.clear();
     }
 
-    static List<Path> list(String packageName) {
-        var list = new ArrayList<Path>();
-        for (var file : javaSources.keySet()) {
-            if (javaSources.get(file).packageName.equals(packageName)) {
-                list.add(file);
-            }
+    /** The workspace roots, open documents and source files, saved by snapshot() so restore() can put them back */
+    static class Snapshot {
+        private final Set<Path> workspaceRoots;
+        private final Map<Path, VersionedContent> activeDocuments;
+        private final Map<Path, Info> javaSources;
+
+        private Snapshot() {
+            this.workspaceRoots = Set.copyOf(FileStore.workspaceRoots);
+            this.activeDocuments = Map.copyOf(FileStore.activeDocuments);
+            this.javaSources = new TreeMap<>(FileStore.javaSources);
         }
-        return list;
     }
 
-    public static Set<Path> sourceRoots() {
+    static synchronized Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /** Go back to the state of snapshot, without reading the files again */
+    static synchronized void restore(Snapshot snapshot) {
+        reset();
+        workspaceRoots.addAll(snapshot.workspaceRoots);
+        activeDocuments.putAll(snapshot.activeDocuments);
+        for (var entry : snapshot.javaSources.entrySet()) {
+            putInfo(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Add up to `limit` workspace classes whose simple name starts with `prefix` to `result`. */
+    static synchronized void classNamesStartingWith(String prefix, int limit, Collection<String> result) {
+        workspaceClassNames.addBySimpleName(prefix, limit, result);
+    }
+
+    /** Add the first workspace class under each distinct segment that follows `prefix` to `result`. */
+    static synchronized void classNamesBySegment(String prefix, int limit, Collection<String> result) {
+        workspaceClassNames.addFirstBySegment(prefix, limit, result);
+    }
+
+    /** True if some workspace file declares packageName. */
+    static synchronized boolean isWorkspacePackage(String packageName) {
+        return filesByPackage.containsKey(packageName);
+    }
+
+    static synchronized List<Path> list(String packageName) {
+        var files = filesByPackage.get(packageName);
+        if (files == null) return List.of();
+        return new ArrayList<>(files);
+    }
+
+    public static synchronized Set<Path> sourceRoots() {
         var roots = new HashSet<Path>();
         for (var file : javaSources.keySet()) {
             var root = sourceRoot(file);
@@ -131,11 +190,11 @@ public class FileStore {
         return dir;
     }
 
-    static boolean contains(Path file) {
+    static synchronized boolean contains(Path file) {
         return isJavaFile(file) && javaSources.containsKey(file);
     }
 
-    static Instant modified(Path file) {
+    public static synchronized Instant modified(Path file) {
         // If file is open, use last in-memory modification time
         if (activeDocuments.containsKey(file)) {
             return activeDocuments.get(file).modified;
@@ -152,7 +211,7 @@ public class FileStore {
         return info.modified;
     }
 
-    static String packageName(Path file) {
+    static synchronized String packageName(Path file) {
         // If we've never checked before, look up package name on disk
         if (!javaSources.containsKey(file)) {
             readInfoFromDisk(file);
@@ -165,7 +224,7 @@ public class FileStore {
         return info.packageName;
     }
 
-    public static String suggestedPackageName(Path file) {
+    public static synchronized String suggestedPackageName(Path file) {
         // Look in each parent directory of file
         for (var dir = file.getParent(); dir != null; dir = dir.getParent()) {
             // Try to find a sibling with a package declaration
@@ -194,39 +253,88 @@ public class FileStore {
         return list;
     }
 
-    static void externalCreate(Path file) {
+    /** The number of files that were created, changed or deleted on disk since the server started */
+    private static long externalChanges;
+
+    /** Counts changes to files on disk, so caches that outlive a request can tell if a closed file changed */
+    public static synchronized long externalChanges() {
+        return externalChanges;
+    }
+
+    static synchronized void externalCreate(Path file) {
+        externalChanges++;
         readInfoFromDisk(file);
     }
 
-    static void externalChange(Path file) {
+    static synchronized void externalChange(Path file) {
+        externalChanges++;
         readInfoFromDisk(file);
     }
 
-    static void externalDelete(Path file) {
-        javaSources.remove(file);
+    static synchronized void externalDelete(Path file) {
+        externalChanges++;
+        removeInfo(file);
     }
 
     private static void readInfoFromDisk(Path file) {
         try {
             var time = Files.getLastModifiedTime(file).toInstant();
             var packageName = StringSearch.packageName(file);
-            javaSources.put(file, new Info(time, packageName));
+            putInfo(file, new Info(time, packageName));
         } catch (NoSuchFileException | CharacterCodingException e) {
             LOG.warning(e.getMessage());
-            javaSources.remove(file);
+            removeInfo(file);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    static void open(DidOpenTextDocumentParams params) {
+    private static void putInfo(Path file, Info info) {
+        var previous = javaSources.put(file, info);
+        if (previous != null) {
+            unindex(file, previous);
+        }
+        filesByPackage.computeIfAbsent(info.packageName, __ -> new TreeSet<>()).add(file);
+        if (file.getFileName().toString().endsWith(".java")) {
+            workspaceClassNames.add(className(file, info));
+        }
+    }
+
+    private static void removeInfo(Path file) {
+        var previous = javaSources.remove(file);
+        if (previous != null) {
+            unindex(file, previous);
+        }
+    }
+
+    private static void unindex(Path file, Info info) {
+        var files = filesByPackage.get(info.packageName);
+        if (files != null) {
+            files.remove(file);
+            if (files.isEmpty()) filesByPackage.remove(info.packageName);
+        }
+        if (file.getFileName().toString().endsWith(".java")) {
+            workspaceClassNames.remove(className(file, info));
+        }
+    }
+
+    private static String className(Path file, Info info) {
+        var fileName = file.getFileName().toString();
+        var className = fileName.substring(0, fileName.length() - ".java".length());
+        if (info.packageName == null || info.packageName.isEmpty()) {
+            return className;
+        }
+        return info.packageName + "." + className;
+    }
+
+    static synchronized void open(DidOpenTextDocumentParams params) {
         if (!isJavaFile(params.textDocument.uri)) return;
         var document = params.textDocument;
         var file = Paths.get(document.uri);
         activeDocuments.put(file, new VersionedContent(document.text, document.version));
     }
 
-    static void change(DidChangeTextDocumentParams params) {
+    static synchronized void change(DidChangeTextDocumentParams params) {
         if (!isJavaFile(params.textDocument.uri)) return;
         var document = params.textDocument;
         var file = Paths.get(document.uri);
@@ -243,22 +351,29 @@ public class FileStore {
         activeDocuments.put(file, new VersionedContent(newText, document.version));
     }
 
-    static void close(DidCloseTextDocumentParams params) {
+    static synchronized void close(DidCloseTextDocumentParams params) {
         if (!isJavaFile(params.textDocument.uri)) return;
         var file = Paths.get(params.textDocument.uri);
         activeDocuments.remove(file);
     }
 
-    static Set<Path> activeDocuments() {
-        return activeDocuments.keySet();
+    public static synchronized Set<Path> activeDocuments() {
+        return Set.copyOf(activeDocuments.keySet());
+    }
+
+    /** The contents of file if it's open, or null. Files that aren't open are read outside the lock. */
+    private static synchronized String openContents(Path file) {
+        var open = activeDocuments.get(file);
+        return open == null ? null : open.content;
     }
 
     public static String contents(Path file) {
         if (!isJavaFile(file)) {
             throw new RuntimeException(file + " is not a java file");
         }
-        if (activeDocuments.containsKey(file)) {
-            return activeDocuments.get(file).content;
+        var open = openContents(file);
+        if (open != null) {
+            return open;
         }
         try {
             return Files.readString(file);
@@ -271,8 +386,8 @@ public class FileStore {
     }
 
     static InputStream inputStream(Path file) {
-        if (activeDocuments.containsKey(file)) {
-            var string = activeDocuments.get(file).content;
+        var string = openContents(file);
+        if (string != null) {
             var bytes = string.getBytes();
             return new ByteArrayInputStream(bytes);
         }
@@ -288,8 +403,8 @@ public class FileStore {
     }
 
     static BufferedReader bufferedReader(Path file) {
-        if (activeDocuments.containsKey(file)) {
-            var string = activeDocuments.get(file).content;
+        var string = openContents(file);
+        if (string != null) {
             return new BufferedReader(new StringReader(string));
         }
         try {
@@ -307,7 +422,7 @@ public class FileStore {
     }
 
     /** Convert from line/column (1-based) to offset (0-based) */
-    static int offset(String contents, int line, int column) {
+    public static int offset(String contents, int line, int column) {
         line--;
         column--;
         int cursor = 0;
@@ -10,6 +10,7 @@ import com.sun.source.tree.ParameterizedTypeTree;
 import com.sun.source.tree.PrimitiveTypeTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import java.io.IOException;
@@ -93,7 +94,7 @@ public class FindHelper {
         return true;
     }
 
-    private static boolean isSameMethodType(MethodTree candidate, String[] erasedParameterTypes) {
+    public static boolean isSameMethodType(MethodTree candidate, String[] erasedParameterTypes) {
         if (candidate.getParameters().size() != erasedParameterTypes.length) {
             return false;
         }
@@ -134,8 +135,16 @@ public class FindHelper {
     }
 
     public static Location location(CompileTask task, TreePath path, CharSequence name) {
+        return location(task.task, path, name);
+    }
+
+    public static Location location(ParseTask task, TreePath path, CharSequence name) {
+        return location(task.task, path, name);
+    }
+
+    private static Location location(JavacTask task, TreePath path, CharSequence name) {
         var lines = path.getCompilationUnit().getLineMap();
-        var pos = Trees.instance(task.task).getSourcePositions();
+        var pos = Trees.instance(task).getSourcePositions();
         var start = (int) pos.getStartPosition(path.getCompilationUnit(), path.getLeaf());
         var end = (int) pos.getEndPosition(path.getCompilationUnit(), path.getLeaf());
         if (name.length() > 0) {
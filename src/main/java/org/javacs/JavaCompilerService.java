@@ -1,7 +1,9 @@
 package org.javacs;
 
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
@@ -15,7 +17,11 @@ class JavaCompilerService implements CompilerProvider {
     final List<String> extraArgs;
     final ReusableCompiler compiler = new ReusableCompiler();
     final Docs docs;
-    final Set<String> jdkClasses = ScanClassPath.jdkTopLevelClasses(), classPathClasses;
+    final Set<String> jdkClasses, classPathClasses;
+    // Sorted indexes of jdkClasses and classPathClasses, for prefix search
+    private final ClassNameIndex jdkIndex, classPathIndex;
+    // Summaries of the members of types, which live as long as the class path
+    private final MemberIndex memberIndex;
     // Diagnostics from the last compilation task
     final List<Diagnostic<? extends JavaFileObject>> diags = new ArrayList<>();
     // Use the same file manager for multiple tasks, so we don't repeatedly re-compile the same files
@@ -37,8 +43,49 @@ class JavaCompilerService implements CompilerProvider {
         this.addExports = Collections.unmodifiableSet(addExports);
         this.extraArgs = Collections.unmodifiableList(new ArrayList<>(extraArgs));
         this.docs = new Docs(docPath);
+        this.jdkClasses = ScanClassPath.jdkTopLevelClasses();
+        this.jdkIndex = new ClassNameIndex(jdkClasses);
         this.classPathClasses = ScanClassPath.classPathTopLevelClasses(classPath);
-        this.fileManager = new SourceFileManager();
+        this.classPathIndex = new ClassNameIndex(classPathClasses);
+        var libraryClasses = new HashSet<String>(jdkClasses);
+        libraryClasses.addAll(classPathClasses);
+        this.memberIndex = new MemberIndex(libraryClasses);
+        this.fileManager = new SourceFileManager(true);
+    }
+
+    /** A shard of parent, which shares its class path and indexes, but compiles in its own javac context. */
+    private JavaCompilerService(JavaCompilerService parent) {
+        this.classPath = parent.classPath;
+        this.docPath = parent.docPath;
+        this.addExports = parent.addExports;
+        this.extraArgs = parent.extraArgs;
+        this.docs = parent.docs;
+        this.jdkClasses = parent.jdkClasses;
+        this.jdkIndex = parent.jdkIndex;
+        this.classPathClasses = parent.classPathClasses;
+        this.classPathIndex = parent.classPathIndex;
+        this.memberIndex = parent.memberIndex;
+        this.fileManager = new SourceFileManager(true);
+    }
+
+    // Shards are created the first time someone asks for them, and reused until memory runs short
+    private final List<JavaCompilerService> shards = new ArrayList<>();
+
+    @Override
+    public synchronized List<CompilerProvider> shards(int count) {
+        while (shards.size() < count) {
+            shards.add(new JavaCompilerService(this));
+        }
+        return new ArrayList<>(shards.subList(0, count));
+    }
+
+    /** Forget the shards, unless one is in use. Return false if one is in use. */
+    synchronized boolean releaseShards() {
+        for (var s : shards) {
+            if (!s.releaseCachedCompile() || !s.compiler.reset()) return false;
+        }
+        shards.clear();
+        return true;
     }
 
     private CompileBatch cachedCompile;
@@ -76,6 +123,16 @@ class JavaCompilerService implements CompilerProvider {
 
     private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
         if (sources.isEmpty()) throw new RuntimeException("empty sources");
+        var requested = sources;
+        var packagePrivate = packagePrivateSources(sources);
+        if (!packagePrivate.isEmpty()) {
+            LOG.info("...add " + packagePrivate + " which declare package-private classes");
+            var withPackagePrivate = new ArrayList<JavaFileObject>(sources);
+            for (var add : packagePrivate) {
+                withPackagePrivate.add(new SourceFileObject(add));
+            }
+            sources = withPackagePrivate;
+        }
         var firstAttempt = new CompileBatch(this, sources);
         Set<Path> addFiles;
         try {
@@ -85,7 +142,7 @@ class JavaCompilerService implements CompilerProvider {
             firstAttempt.borrow.close();
             throw e;
         }
-        if (addFiles.isEmpty()) return firstAttempt;
+        if (addFiles.isEmpty()) return onlyRequestedRoots(firstAttempt, requested);
         // If the compiler needs additional source files that contain package-private files
         LOG.info("...need to recompile with " + addFiles);
         firstAttempt.close();
@@ -95,7 +152,57 @@ class JavaCompilerService implements CompilerProvider {
         for (var add : addFiles) {
             moreSources.add(new SourceFileObject(add));
         }
-        return new CompileBatch(this, moreSources);
+        return onlyRequestedRoots(new CompileBatch(this, moreSources), requested);
+    }
+
+    /** Hide the roots of files we added to the batch, so callers only see the files they asked to compile. */
+    private CompileBatch onlyRequestedRoots(CompileBatch batch, Collection<? extends JavaFileObject> requested) {
+        var uris = new HashSet<URI>();
+        for (var f : requested) {
+            uris.add(f.toUri());
+        }
+        batch.roots.removeIf(root -> !uris.contains(root.getSourceFile().toUri()));
+        return batch;
+    }
+
+    /**
+     * How long a compile waits for PackagePrivateIndex to parse files that changed. If it runs out of time, we might
+     * miss a file, and needsAdditionalSources will add it.
+     */
+    private static final Duration PACKAGE_PRIVATE_BUDGET = Duration.ofMillis(50);
+
+    /** Find files in the same package as sources that declare package-private classes that sources mention. */
+    private Set<Path> packagePrivateSources(Collection<? extends JavaFileObject> sources) {
+        var inBatch = new HashSet<Path>();
+        for (var f : sources) {
+            if (f.toUri().getScheme().equals("file")) {
+                inBatch.add(Paths.get(f.toUri()));
+            }
+        }
+        var add = new TreeSet<Path>();
+        for (var f : sources) {
+            if (!f.toUri().getScheme().equals("file")) continue;
+            var packageName = FileStore.packageName(Paths.get(f.toUri()));
+            if (packageName == null) continue;
+            var candidates = PackagePrivateIndex.classesInPackage(packageName, PACKAGE_PRIVATE_BUDGET);
+            if (candidates.isEmpty()) continue;
+            String contents;
+            try {
+                contents = f.getCharContent(true).toString();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            for (var other : candidates.keySet()) {
+                if (inBatch.contains(other) || add.contains(other)) continue;
+                for (var className : candidates.get(other)) {
+                    if (new StringSearch(className).nextWord(contents) != -1) {
+                        add.add(other);
+                        break;
+                    }
+                }
+            }
+        }
+        return add;
     }
 
     private CompileBatch compileBatch(Collection<? extends JavaFileObject> sources) {
@@ -210,9 +317,57 @@ class JavaCompilerService implements CompilerProvider {
         return all;
     }
 
+    @Override
+    public List<String> publicTopLevelTypes(String simpleNamePrefix, int limit) {
+        var found = new LinkedHashSet<String>();
+        FileStore.classNamesStartingWith(simpleNamePrefix, limit, found);
+        classPathIndex.addBySimpleName(simpleNamePrefix, limit, found);
+        jdkIndex.addBySimpleName(simpleNamePrefix, limit, found);
+        return new ArrayList<>(found);
+    }
+
+    @Override
+    public List<String> publicTopLevelTypesBySegment(String qualifiedPrefix, int limit) {
+        var workspace = new ArrayList<String>();
+        var classPath = new ArrayList<String>();
+        var jdk = new ArrayList<String>();
+        FileStore.classNamesBySegment(qualifiedPrefix, limit, workspace);
+        classPathIndex.addFirstBySegment(qualifiedPrefix, limit, classPath);
+        jdkIndex.addFirstBySegment(qualifiedPrefix, limit, jdk);
+        // The workspace, class path and JDK can share packages, so keep the first class for each segment
+        var bySegment = new LinkedHashMap<String, String>();
+        for (var list : List.of(workspace, classPath, jdk)) {
+            for (var className : list) {
+                if (bySegment.size() >= limit) break;
+                var end = className.indexOf('.', qualifiedPrefix.length());
+                if (end == -1) end = className.length();
+                bySegment.putIfAbsent(className.substring(0, end), className);
+            }
+        }
+        return new ArrayList<>(bySegment.values());
+    }
+
+    @Override
+    public MemberIndex memberIndex() {
+        return memberIndex;
+    }
+
+    @Override
+    public DocStore.Entry prerenderedDocs(String className, String memberKey) {
+        // Stores only cover library archives, and workspace files change, so never let a store answer for them
+        if (FileStore.isWorkspacePackage(packageName(className))) return null;
+        return docs.prerendered(className, memberKey);
+    }
+
     @Override
     public List<String> packagePrivateTopLevelTypes(String packageName) {
-        return List.of("TODO");
+        var all = new ArrayList<String>();
+        for (var names : PackagePrivateIndex.classesInPackage(packageName, PACKAGE_PRIVATE_BUDGET).values()) {
+            for (var name : names) {
+                all.add(packageName.isEmpty() ? name : packageName + "." + name);
+            }
+        }
+        return all;
     }
 
     private boolean containsImport(Path file, String className) {
@@ -261,21 +416,20 @@ class JavaCompilerService implements CompilerProvider {
     }
 
     private Optional<JavaFileObject> findPublicTypeDeclarationInJdk(String className) {
+        var module = ScanClassPath.jdkModule(className);
+        if (module == null) return Optional.empty();
         try {
-            for (var module : ScanClassPath.JDK_MODULES) {
-                var moduleLocation = docs.fileManager.getLocationForModule(StandardLocation.MODULE_SOURCE_PATH, module);
-                if (moduleLocation == null) continue;
-                var fromModuleSourcePath =
-                        docs.fileManager.getJavaFileForInput(moduleLocation, className, JavaFileObject.Kind.SOURCE);
-                if (fromModuleSourcePath != null) {
-                    LOG.info(String.format("...found %s in module %s of jdk", fromModuleSourcePath.toUri(), module));
-                    return Optional.of(fromModuleSourcePath);
-                }
+            var moduleLocation = docs.fileManager.getLocationForModule(StandardLocation.MODULE_SOURCE_PATH, module);
+            if (moduleLocation == null) return Optional.empty();
+            var fromModuleSourcePath =
+                    docs.fileManager.getJavaFileForInput(moduleLocation, className, JavaFileObject.Kind.SOURCE);
+            if (fromModuleSourcePath != null) {
+                LOG.info(String.format("...found %s in module %s of jdk", fromModuleSourcePath.toUri(), module));
             }
+            return Optional.ofNullable(fromModuleSourcePath);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return Optional.empty();
     }
 
     @Override
@@ -361,6 +515,27 @@ class JavaCompilerService implements CompilerProvider {
         return new CompileTask(compile.task, compile.roots, diags, compile::close);
     }
 
+    /** Drop the results of searching and parsing files, which will be repeated the next time they're needed. */
+    void clearParseCaches() {
+        cacheContainsWord.clear();
+        cacheContainsType.clear();
+        cacheFileImports.clear();
+    }
+
+    void clearCompletionCaches() {
+        memberIndex.clear();
+    }
+
+    @Override
+    public boolean releaseCachedCompile() {
+        if (cachedCompile == null) return true;
+        if (!cachedCompile.closed) return false;
+        cachedCompile.borrow.close();
+        cachedCompile = null;
+        clearCachedModified();
+        return true;
+    }
+
     void clearCachedModified() {
         cachedModified.clear();
     }
@@ -5,11 +5,15 @@ import static org.javacs.JsonHelper.GSON;
 import com.google.gson.*;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.tree.JCTree;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.lang.model.element.*;
 import org.javacs.action.CodeActionProvider;
@@ -20,57 +24,158 @@ import org.javacs.hover.HoverProvider;
 import org.javacs.index.SymbolProvider;
 import org.javacs.lens.CodeLensProvider;
 import org.javacs.lsp.*;
-import org.javacs.markup.ColorProvider;
 import org.javacs.markup.ErrorProvider;
+import org.javacs.markup.SemanticTokensProvider;
+import org.javacs.markup.WarningCache;
 import org.javacs.navigation.DefinitionProvider;
+import org.javacs.navigation.CallHierarchyProvider;
+import org.javacs.navigation.ImplementationProvider;
 import org.javacs.navigation.ReferenceProvider;
+import org.javacs.navigation.TypeHierarchyProvider;
 import org.javacs.rewrite.*;
 
 class JavaLanguageServer extends LanguageServer {
-    // TODO allow multiple workspace roots
-    private Path workspaceRoot;
     private final LanguageClient client;
-    private JavaCompilerService cacheCompiler;
+    /** One compiler for each workspace root, see WorkspaceCompilers */
+    private final WorkspaceCompilers compilers = new WorkspaceCompilers(this::createCompiler);
     private JsonObject cacheSettings;
     private JsonObject settings = new JsonObject();
-    private boolean modifiedBuild = true;
 
-    JavaCompilerService compiler() {
-        if (needsCompiler()) {
-            cacheCompiler = createCompiler();
+    private WorkspaceCompilers compilers() {
+        if (!settings.equals(cacheSettings)) {
+            LOG.info("Settings\n\t" + settings + "\nis different than\n\t" + cacheSettings);
+            compilers.invalidateAll();
             cacheSettings = settings;
-            modifiedBuild = false;
+            StubCache.enabled = stubsEnabled();
         }
-        return cacheCompiler;
+        return compilers;
     }
 
-    private boolean needsCompiler() {
-        if (modifiedBuild) {
-            return true;
-        }
-        if (!settings.equals(cacheSettings)) {
-            LOG.info("Settings\n\t" + settings + "\nis different than\n\t" + cacheSettings);
-            return true;
-        }
-        return false;
+    /** The compiler of the first workspace root, for requests that aren't about a particular file */
+    JavaCompilerService compiler() {
+        var compilers = compilers();
+        return compilers.get(compilers.roots().get(0));
+    }
+
+    /** The compiler of the workspace root that contains file */
+    JavaCompilerService compiler(Path file) {
+        return compilers().forFile(file);
+    }
+
+    /** Closed files whose diagnostics are up to date, see doBackgroundWork */
+    private final WorkspaceDiagnostics workspaceDiagnostics = new WorkspaceDiagnostics();
+
+    /** The configuration of compilers that produced the diagnostics in workspaceDiagnostics */
+    private int workspaceDiagnosticsGeneration = -1;
+
+    /** Open files whose published diagnostics are up to date */
+    private final LintCache lintCache = new LintCache();
+
+    /** The configuration of compilers that produced the diagnostics in lintCache */
+    private int lintGeneration = -1;
+
+    /** Semantic tokens of open files, computed by lint */
+    private final SemanticTokensCache semanticTokens = new SemanticTokensCache();
+
+    /** Unused and not-thrown warnings of files whose contents haven't changed since we scanned them */
+    private final WarningCache warnings = new WarningCache();
+
+    /** publishedDiagnostics[uri] is the list of diagnostics the client has for uri */
+    private final Map<URI, List<Diagnostic>> publishedDiagnostics = new HashMap<>();
+
+    /** Send diagnostics to the client, unless they're the same as the ones it already has */
+    private void publish(PublishDiagnosticsParams params) {
+        var previous = publishedDiagnostics.put(params.uri, params.diagnostics);
+        if (params.diagnostics.equals(previous)) return;
+        client.publishDiagnostics(params);
     }
 
+    /** Can we ask the client to request semantic tokens again, after we color a file from its parse tree? */
+    private boolean clientRefreshesSemanticTokens = false;
+
     void lint(Collection<Path> files) {
         if (files.isEmpty()) return;
-        LOG.info("Lint " + files.size() + " files...");
+        var compilers = compilers();
+        if (compilers.generation() != lintGeneration) {
+            lintCache.clear();
+            warnings.clear();
+            lintGeneration = compilers.generation();
+        }
+        var changed = lintCache.needsLint(files);
+        if (changed.isEmpty()) {
+            LOG.info("Diagnostics of " + files.size() + " files are up to date");
+            return;
+        }
+        LOG.info("Lint " + changed.size() + " of " + files.size() + " files...");
+        // Files in different workspace roots are compiled by different compilers
+        for (var group : compilers.partition(changed).entrySet()) {
+            lint(group.getKey(), group.getValue());
+        }
+    }
+
+    private void lint(JavaCompilerService compiler, List<Path> changed) {
         var started = Instant.now();
-        try (var task = compiler().compile(files.toArray(Path[]::new))) {
+        List<Path> signatureChanged;
+        try (var task = compiler.compile(changed.toArray(Path[]::new))) {
             var compiled = Instant.now();
             LOG.info("...compiled in " + Duration.between(started, compiled).toMillis() + " ms");
-            for (var errs : new ErrorProvider(task).errors()) {
-                client.publishDiagnostics(errs);
+            var active = new HashSet<Path>();
+            for (var root : task.roots) {
+                var file = Paths.get(root.getSourceFile().toUri());
+                if (FileStore.activeDocuments().contains(file)) active.add(file);
+            }
+            // Open files are colored in the same pass over their trees that finds their warnings
+            var errors = new ErrorProvider(task, warnings, active);
+            for (var errs : errors.errors()) {
+                publish(errs);
+            }
+            var refresh = false;
+            for (var file : active) {
+                refresh |= semanticTokens.computed(file, started, errors.tokens(file));
             }
-            for (var colors : new ColorProvider(task).colors()) {
-                client.customNotification("java/colors", GSON.toJsonTree(colors));
+            if (refresh) {
+                client.refreshSemanticTokens();
             }
             var published = Instant.now();
             LOG.info("...published in " + Duration.between(started, published).toMillis() + " ms");
+            signatureChanged = lintCache.linted(task.roots, started);
+            XrefIndex.update(task);
+        }
+        for (var file : signatureChanged) {
+            relintDependents(compiler, file);
+        }
+    }
+
+    /** Open files that use a file whose signature changed, which doBackgroundWork will lint */
+    private final Set<Path> pendingLint = new LinkedHashSet<>();
+
+    /** Closed files that changed on disk, which doBackgroundWork will compile before it lints pendingLint */
+    private final Set<Path> changedOnDisk = new LinkedHashSet<>();
+
+    /**
+     * Closed files are checked by a shard of each compiler, so the batch of the file the user is working on survives.
+     * The shard remembers the classes it read from the source path, so when a signature changes, it starts over.
+     */
+    private boolean checkerStale = false;
+
+    /** The signature of file changed, so files that use it may have new errors */
+    private void relintDependents(JavaCompilerService compiler, Path file) {
+        var className = compiler.fileManager.getClassName(file);
+        for (var ref : compiler.findTypeReferences(className)) {
+            if (ref.equals(file)) continue;
+            // ref may refer to different overloads now, which may throw different exceptions
+            XrefIndex.forget(ref);
+            warnings.forget(ref);
+            checkerStale = true;
+            if (FileStore.activeDocuments().contains(ref)) {
+                // LintCache only notices signature changes of open files, so it doesn't know ref is stale
+                lintCache.forget(List.of(ref));
+                pendingLint.add(ref);
+            } else {
+                workspaceDiagnostics.forget(ref);
+            }
         }
+        LOG.info("...signature of " + file.getFileName() + " changed, will lint " + pendingLint.size() + " open files");
     }
 
     private void javaStartProgress(JavaStartProgressParams params) {
@@ -85,9 +190,15 @@ class JavaLanguageServer extends LanguageServer {
         client.customNotification("java/endProgress", JsonNull.INSTANCE);
     }
 
-    private JavaCompilerService createCompiler() {
-        Objects.requireNonNull(workspaceRoot, "Can't create compiler because workspaceRoot has not been initialized");
+    private JavaCompilerService createCompiler(Path workspaceRoot) {
+        var compiler = inferCompiler(workspaceRoot);
+        if (prerenderDocs()) {
+            compiler.docs.prerenderInBackground();
+        }
+        return compiler;
+    }
 
+    private JavaCompilerService inferCompiler(Path workspaceRoot) {
         javaStartProgress(new JavaStartProgressParams("Configure javac"));
         javaReportProgress(new JavaReportProgressParams("Finding source roots"));
 
@@ -115,6 +226,24 @@ class JavaLanguageServer extends LanguageServer {
         }
     }
 
+    /**
+     * java.workspaceDiagnostics turns on the background job that checks closed files. It compiles the whole workspace,
+     * so it is off unless the user asks for it.
+     */
+    private boolean workspaceDiagnosticsEnabled() {
+        return settings.has("workspaceDiagnostics") && settings.get("workspaceDiagnostics").getAsBoolean();
+    }
+
+    /** java.stubs turns off StubCache, when it is false */
+    private boolean stubsEnabled() {
+        return !settings.has("stubs") || settings.get("stubs").getAsBoolean();
+    }
+
+    /** java.prerenderDocs turns on the background job that renders library docs to disk, see DocStore */
+    private boolean prerenderDocs() {
+        return settings.has("prerenderDocs") && settings.get("prerenderDocs").getAsBoolean();
+    }
+
     private Set<String> externalDependencies() {
         if (!settings.has("externalDependencies")) return Set.of();
         var array = settings.getAsJsonArray("externalDependencies");
@@ -169,10 +298,31 @@ class JavaLanguageServer extends LanguageServer {
         return strings;
     }
 
+    /** Is capabilities.path[0].path[1]... true? */
+    private static boolean clientSupports(JsonElement capabilities, String... path) {
+        var found = capabilities;
+        for (var key : path) {
+            if (found == null || !found.isJsonObject()) return false;
+            found = found.getAsJsonObject().get(key);
+        }
+        return found != null && found.isJsonPrimitive() && found.getAsBoolean();
+    }
+
     @Override
     public InitializeResult initialize(InitializeParams params) {
-        this.workspaceRoot = Paths.get(params.rootUri);
-        FileStore.setWorkspaceRoots(Set.of(Paths.get(params.rootUri)));
+        var roots = new ArrayList<Path>();
+        if (params.workspaceFolders != null) {
+            for (var folder : params.workspaceFolders) {
+                roots.add(Paths.get(folder.uri));
+            }
+        }
+        if (roots.isEmpty()) {
+            roots.add(Paths.get(params.rootUri));
+        }
+        compilers.setRoots(roots);
+        FileStore.setWorkspaceRoots(new HashSet<>(roots));
+        clientRefreshesSemanticTokens =
+                clientSupports(params.capabilities, "workspace", "semanticTokens", "refreshSupport");
 
         var c = new JsonObject();
         c.addProperty("textDocumentSync", 2); // Incremental
@@ -191,16 +341,34 @@ class JavaLanguageServer extends LanguageServer {
         c.add("signatureHelpProvider", signatureHelpOptions);
         c.addProperty("referencesProvider", true);
         c.addProperty("definitionProvider", true);
+        c.addProperty("implementationProvider", true);
+        c.addProperty("typeHierarchyProvider", true);
+        c.addProperty("callHierarchyProvider", true);
         c.addProperty("workspaceSymbolProvider", true);
         c.addProperty("documentSymbolProvider", true);
         c.addProperty("documentFormattingProvider", true);
         var codeLensOptions = new JsonObject();
         c.add("codeLensProvider", codeLensOptions);
         c.addProperty("foldingRangeProvider", true);
+        var legend = new JsonObject();
+        legend.add("tokenTypes", GSON.toJsonTree(SemanticTokensProvider.TOKEN_TYPES));
+        legend.add("tokenModifiers", GSON.toJsonTree(SemanticTokensProvider.TOKEN_MODIFIERS));
+        var full = new JsonObject();
+        full.addProperty("delta", true);
+        var semanticTokensOptions = new JsonObject();
+        semanticTokensOptions.add("legend", legend);
+        semanticTokensOptions.add("full", full);
+        c.add("semanticTokensProvider", semanticTokensOptions);
         c.addProperty("codeActionProvider", true);
         var renameOptions = new JsonObject();
         renameOptions.addProperty("prepareProvider", true);
         c.add("renameProvider", renameOptions);
+        var workspaceFolders = new JsonObject();
+        workspaceFolders.addProperty("supported", true);
+        workspaceFolders.addProperty("changeNotifications", true);
+        var workspace = new JsonObject();
+        workspace.add("workspaceFolders", workspaceFolders);
+        c.add("workspace", workspace);
 
         return new InitializeResult(c);
     }
@@ -231,6 +399,54 @@ class JavaLanguageServer extends LanguageServer {
 
     public JavaLanguageServer(LanguageClient client) {
         this.client = client;
+        registerEvictions();
+    }
+
+    /** Frees memory when the heap is nearly full, see doAsyncWork */
+    private final MemoryGovernor memoryGovernor = new MemoryGovernor();
+
+    /** Compilers that haven't been used for this long are evicted when memory is short */
+    private static final Duration IDLE_COMPILER = Duration.ofMinutes(5);
+
+    private void registerEvictions() {
+        memoryGovernor.register(
+                MemoryGovernor.Level.PARSE_CACHES,
+                () -> {
+                    Parser.clearCache();
+                    StringSearch.clearCaches();
+                    XrefIndex.clearMemory();
+                    compilers.existing().forEach(JavaCompilerService::clearParseCaches);
+                    return true;
+                });
+        memoryGovernor.register(
+                MemoryGovernor.Level.COMPLETION_CACHES,
+                () -> {
+                    HoverProvider.clearCache();
+                    unresolvedCompletions = List.of();
+                    compilers.existing().forEach(JavaCompilerService::clearCompletionCaches);
+                    return true;
+                });
+        memoryGovernor.register(
+                MemoryGovernor.Level.CACHED_BATCHES,
+                () -> {
+                    var complete = true;
+                    for (var compiler : compilers.existing()) {
+                        complete &= compiler.releaseCachedCompile();
+                    }
+                    return complete;
+                });
+        memoryGovernor.register(
+                MemoryGovernor.Level.COMPILER_CONTEXTS,
+                () -> {
+                    // Compilers of workspace roots the user isn't working in go first, then every other context
+                    compilers.evictIdle(IDLE_COMPILER);
+                    var complete = true;
+                    for (var compiler : compilers.existing()) {
+                        complete &= compiler.releaseShards();
+                        complete &= compiler.compiler.reset();
+                    }
+                    return complete;
+                });
     }
 
     @Override
@@ -245,30 +461,50 @@ class JavaLanguageServer extends LanguageServer {
         settings = java.getAsJsonObject();
     }
 
+    @Override
+    public void didChangeWorkspaceFolders(DidChangeWorkspaceFoldersParams params) {
+        var roots = new LinkedHashSet<Path>(compilers.roots());
+        for (var folder : params.event.removed) {
+            roots.remove(Paths.get(folder.uri).toAbsolutePath().normalize());
+        }
+        for (var folder : params.event.added) {
+            roots.add(Paths.get(folder.uri).toAbsolutePath().normalize());
+        }
+        LOG.info("Workspace roots are now " + roots);
+        compilers.setRoots(roots);
+        FileStore.setWorkspaceRoots(roots);
+    }
+
     @Override
     public void didChangeWatchedFiles(DidChangeWatchedFilesParams params) {
         for (var c : params.changes) {
             var file = Paths.get(c.uri);
             if (FileStore.isJavaFile(file)) {
+                // Clients also send this when an open file is saved, but lint already knows about edits to open files
+                if (c.type != FileChangeType.Deleted && FileStore.activeDocuments().contains(file)) continue;
                 switch (c.type) {
                     case FileChangeType.Created:
                         FileStore.externalCreate(file);
+                        changedOnDisk.add(file);
                         break;
                     case FileChangeType.Changed:
                         FileStore.externalChange(file);
+                        changedOnDisk.add(file);
                         break;
                     case FileChangeType.Deleted:
                         removeClass(file);
+                        workspaceDiagnostics.forget(file);
                         break;
                 }
+                workspaceDiagnostics.changed(file);
+                XrefIndex.changed(file);
                 continue;
             }
             var name = file.getFileName().toString();
             switch (name) {
                 case "BUILD":
                 case "pom.xml":
-                    LOG.info("Compiler needs to be re-created because " + file + " has changed");
-                    modifiedBuild = true;
+                    compilers.invalidate(file);
             }
         }
     }
@@ -277,15 +513,27 @@ class JavaLanguageServer extends LanguageServer {
     public Optional<CompletionList> completion(TextDocumentPositionParams params) {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return Optional.empty();
         var file = Paths.get(params.textDocument.uri);
-        var provider = new CompletionProvider(compiler());
+        var provider = new CompletionProvider(compiler(file));
         var list = provider.complete(file, params.position.line + 1, params.position.character + 1);
         if (list == CompletionProvider.NOT_SUPPORTED) return Optional.empty();
+        unresolvedCompletions = list.items;
+        completionFile = file;
         return Optional.of(list);
     }
 
+    /** The number of completion items we resolve in the background, about as many as a client shows at once */
+    private static final int PREFETCH_COMPLETION_ITEMS = 20;
+
+    /** Items of the last completion, which doAsyncWork resolves ahead of completionItem/resolve */
+    private List<CompletionItem> unresolvedCompletions = List.of();
+
+    /** The file of the last completion, whose compiler resolves its items */
+    private Path completionFile;
+
     @Override
     public CompletionItem resolveCompletionItem(CompletionItem unresolved) {
-        new HoverProvider(compiler()).resolveCompletionItem(unresolved);
+        var compiler = completionFile != null ? compiler(completionFile) : compiler();
+        new HoverProvider(compiler).resolveCompletionItem(unresolved);
         return unresolved;
     }
 
@@ -296,7 +544,7 @@ class JavaLanguageServer extends LanguageServer {
         var column = position.position.character + 1;
         if (!FileStore.isJavaFile(uri)) return Optional.empty();
         var file = Paths.get(uri);
-        var list = new HoverProvider(compiler()).hover(file, line, column);
+        var list = new HoverProvider(compiler(file)).hover(file, line, column);
         if (list == HoverProvider.NOT_SUPPORTED) {
             return Optional.empty();
         }
@@ -310,7 +558,7 @@ class JavaLanguageServer extends LanguageServer {
         var file = Paths.get(params.textDocument.uri);
         var line = params.position.line + 1;
         var column = params.position.character + 1;
-        var help = new SignatureProvider(compiler()).signatureHelp(file, line, column);
+        var help = new SignatureProvider(compiler(file)).signatureHelp(file, line, column);
         if (help == SignatureProvider.NOT_SUPPORTED) return Optional.empty();
         return Optional.of(help);
     }
@@ -321,38 +569,145 @@ class JavaLanguageServer extends LanguageServer {
         var file = Paths.get(position.textDocument.uri);
         var line = position.position.line + 1;
         var column = position.position.character + 1;
-        var found = new DefinitionProvider(compiler(), file, line, column).find();
+        var found = new DefinitionProvider(compiler(file), file, line, column).find();
         if (found == DefinitionProvider.NOT_SUPPORTED) {
             return Optional.empty();
         }
         return Optional.of(found);
     }
 
+    @Override
+    public List<Location> implementation(TextDocumentPositionParams position) {
+        if (!FileStore.isJavaFile(position.textDocument.uri)) return List.of();
+        var file = Paths.get(position.textDocument.uri);
+        var line = position.position.line + 1;
+        var column = position.position.character + 1;
+        return new ImplementationProvider(compiler(file), file, line, column).find();
+    }
+
+    @Override
+    public Optional<List<TypeHierarchyItem>> prepareTypeHierarchy(TextDocumentPositionParams position) {
+        if (!FileStore.isJavaFile(position.textDocument.uri)) return Optional.empty();
+        var file = Paths.get(position.textDocument.uri);
+        var line = position.position.line + 1;
+        var column = position.position.character + 1;
+        var items = new TypeHierarchyProvider(compiler(file)).prepare(file, line, column);
+        if (items.isEmpty()) return Optional.empty();
+        return Optional.of(items);
+    }
+
+    @Override
+    public List<TypeHierarchyItem> typeHierarchySupertypes(TypeHierarchyParams params) {
+        return new TypeHierarchyProvider(hierarchyCompiler(params.item)).supertypes(params.item);
+    }
+
+    @Override
+    public List<TypeHierarchyItem> typeHierarchySubtypes(TypeHierarchyParams params) {
+        return new TypeHierarchyProvider(hierarchyCompiler(params.item)).subtypes(params.item);
+    }
+
+    /** Library classes don't belong to a workspace root, so their items use the compiler of the first root */
+    private JavaCompilerService hierarchyCompiler(TypeHierarchyItem item) {
+        if (FileStore.isJavaFile(item.uri)) return compiler(Paths.get(item.uri));
+        return compiler();
+    }
+
+    @Override
+    public Optional<List<CallHierarchyItem>> prepareCallHierarchy(TextDocumentPositionParams position) {
+        if (!FileStore.isJavaFile(position.textDocument.uri)) return Optional.empty();
+        var file = Paths.get(position.textDocument.uri);
+        var line = position.position.line + 1;
+        var column = position.position.character + 1;
+        var items = new CallHierarchyProvider(compilers()::forFile, file).prepare(file, line, column);
+        if (items.isEmpty()) return Optional.empty();
+        return Optional.of(items);
+    }
+
+    @Override
+    public List<CallHierarchyIncomingCall> callHierarchyIncomingCalls(CallHierarchyParams params) {
+        return callHierarchy(params.item).incoming(params.item);
+    }
+
+    @Override
+    public List<CallHierarchyOutgoingCall> callHierarchyOutgoingCalls(CallHierarchyParams params) {
+        return callHierarchy(params.item).outgoing(params.item);
+    }
+
+    /** Like hierarchyCompiler, library methods use the compiler of the first root */
+    private CallHierarchyProvider callHierarchy(CallHierarchyItem item) {
+        if (FileStore.isJavaFile(item.uri)) return new CallHierarchyProvider(compilers()::forFile, Paths.get(item.uri));
+        return new CallHierarchyProvider(__ -> compiler(), null);
+    }
+
     @Override
     public Optional<List<Location>> findReferences(ReferenceParams position) {
         if (!FileStore.isJavaFile(position.textDocument.uri)) return Optional.empty();
         var file = Paths.get(position.textDocument.uri);
         var line = position.position.line + 1;
         var column = position.position.character + 1;
-        var found = new ReferenceProvider(compiler(), file, line, column).find();
-        if (found == ReferenceProvider.NOT_SUPPORTED) {
-            return Optional.empty();
+        var provider = new ReferenceProvider(compilers()::forFile, file, line, column);
+        var token = position.partialResultToken;
+        if (token == null) {
+            var found = provider.find();
+            if (found == ReferenceProvider.NOT_SUPPORTED) {
+                return Optional.empty();
+            }
+            return Optional.of(found);
         }
-        return Optional.of(found);
+        // Stream each chunk of references as it is found; the final response is empty, because the client has them all
+        provider.find(
+                chunk -> client.customNotification("$/progress", GSON.toJsonTree(new ProgressParams(token, chunk))));
+        return Optional.of(List.of());
+    }
+
+    @Override
+    public SemanticTokens semanticTokensFull(SemanticTokensParams params) {
+        if (!FileStore.isJavaFile(params.textDocument.uri)) return new SemanticTokens(null, new int[0]);
+        var file = Paths.get(params.textDocument.uri);
+        return semanticTokens.full(file, currentSemanticTokens(file));
+    }
+
+    @Override
+    public SemanticTokensDelta semanticTokensFullDelta(SemanticTokensDeltaParams params) {
+        if (!FileStore.isJavaFile(params.textDocument.uri)) return new SemanticTokensDelta();
+        var file = Paths.get(params.textDocument.uri);
+        return semanticTokens.delta(file, params.previousResultId, currentSemanticTokens(file));
+    }
+
+    private int[] currentSemanticTokens(Path file) {
+        var data = semanticTokens.fresh(file);
+        if (data != null) return data;
+        if (!FileStore.activeDocuments().contains(file)) {
+            // lint only remembers the tokens of open files
+            try (var task = compiler(file).compile(file)) {
+                return new SemanticTokensProvider(task).tokens(task.root());
+            }
+        }
+        if (clientRefreshesSemanticTokens) {
+            // Color the file from its parse tree now, and again when doAsyncWork has linted it
+            semanticTokens.sentSyntaxOnly(file);
+            return SemanticTokensProvider.syntaxTokens(compiler(file).parse(file));
+        }
+        // Lint now rather than in doAsyncWork, so the tokens and the diagnostics come from the same compile
+        lintCache.forget(List.of(file));
+        lint(List.of(file));
+        data = semanticTokens.fresh(file);
+        if (data == null) return new int[0];
+        return data;
     }
 
     @Override
     public List<SymbolInformation> documentSymbol(DocumentSymbolParams params) {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return List.of();
         var file = Paths.get(params.textDocument.uri);
-        return new SymbolProvider(compiler()).documentSymbols(file);
+        return new SymbolProvider(compiler(file)).documentSymbols(file);
     }
 
     @Override
     public List<CodeLens> codeLens(CodeLensParams params) {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return List.of();
         var file = Paths.get(params.textDocument.uri);
-        var task = compiler().parse(file);
+        var task = compiler(file).parse(file);
         return CodeLensProvider.find(task);
     }
 
@@ -365,9 +720,10 @@ class JavaLanguageServer extends LanguageServer {
     public List<TextEdit> formatting(DocumentFormattingParams params) {
         var edits = new ArrayList<TextEdit>();
         var file = Paths.get(params.textDocument.uri);
-        var fixImports = new AutoFixImports(file).rewrite(compiler()).get(file);
+        var compiler = compiler(file);
+        var fixImports = new AutoFixImports(file).rewrite(compiler).get(file);
         Collections.addAll(edits, fixImports);
-        var addOverrides = new AutoAddOverrides(file).rewrite(compiler()).get(file);
+        var addOverrides = new AutoAddOverrides(file).rewrite(compiler).get(file);
         Collections.addAll(edits, addOverrides);
         return edits;
     }
@@ -376,7 +732,7 @@ class JavaLanguageServer extends LanguageServer {
     public List<FoldingRange> foldingRange(FoldingRangeParams params) {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return List.of();
         var file = Paths.get(params.textDocument.uri);
-        return new FoldProvider(compiler()).foldingRanges(file);
+        return new FoldProvider(compiler(file)).foldingRanges(file);
     }
 
     @Override
@@ -384,7 +740,8 @@ class JavaLanguageServer extends LanguageServer {
         if (!FileStore.isJavaFile(params.textDocument.uri)) return Optional.empty();
         LOG.info("Try to rename...");
         var file = Paths.get(params.textDocument.uri);
-        try (var task = compiler().compile(file)) {
+        var compiler = compiler(file);
+        try (var task = compiler.compile(file)) {
             var lines = task.root().getLineMap();
             var cursor = lines.getPosition(params.position.line + 1, params.position.character + 1);
             var path = new FindNameAt(task).scan(task.root(), cursor);
@@ -401,7 +758,7 @@ class JavaLanguageServer extends LanguageServer {
                 LOG.info("...can't rename " + el);
                 return Optional.empty();
             }
-            if (!canFindSource(el)) {
+            if (!canFindSource(compiler, el)) {
                 LOG.info("...can't find source for " + el);
                 return Optional.empty();
             }
@@ -426,21 +783,21 @@ class JavaLanguageServer extends LanguageServer {
         }
     }
 
-    private boolean canFindSource(Element rename) {
+    private boolean canFindSource(JavaCompilerService compiler, Element rename) {
         if (rename == null) return false;
         if (rename instanceof TypeElement) {
             var type = (TypeElement) rename;
             var name = type.getQualifiedName().toString();
-            return compiler().findTypeDeclaration(name) != CompilerProvider.NOT_FOUND;
+            return compiler.findTypeDeclaration(name) != CompilerProvider.NOT_FOUND;
         }
-        return canFindSource(rename.getEnclosingElement());
+        return canFindSource(compiler, rename.getEnclosingElement());
     }
 
     @Override
     public WorkspaceEdit rename(RenameParams params) {
         var rw = createRewrite(params);
         var response = new WorkspaceEdit();
-        var map = rw.rewrite(compiler());
+        var map = rw.rewrite(compiler(Paths.get(params.textDocument.uri)));
         for (var editedFile : map.keySet()) {
             response.changes.put(editedFile.toUri(), List.of(map.get(editedFile)));
         }
@@ -449,7 +806,7 @@ class JavaLanguageServer extends LanguageServer {
 
     private Rewrite createRewrite(RenameParams params) {
         var file = Paths.get(params.textDocument.uri);
-        try (var task = compiler().compile(file)) {
+        try (var task = compiler(file).compile(file)) {
             var lines = task.root().getLineMap();
             var position = lines.getPosition(params.position.line + 1, params.position.character + 1);
             var path = new FindNameAt(task).scan(task.root(), position);
@@ -498,9 +855,10 @@ class JavaLanguageServer extends LanguageServer {
     }
 
     private void removeClass(Path file) {
-        var className = cacheCompiler.fileManager.getClassName(file);
+        var compiler = compiler(file);
+        var className = compiler.fileManager.getClassName(file);
         FileStore.externalDelete(file);
-        var compiler = compiler();
+        checkerStale = true;
         var referencePaths =
                 Arrays.stream(compiler.findTypeReferences(className)).filter(ref -> !ref.equals(file)).toList();
         if (referencePaths.isEmpty()) {
@@ -512,6 +870,10 @@ class JavaLanguageServer extends LanguageServer {
             }
         }
         compiler.clearCachedModified();
+        for (var referencePath : referencePaths) {
+            warnings.forget(referencePath);
+        }
+        lintCache.forget(referencePaths);
         lint(referencePaths);
     }
 
@@ -539,13 +901,17 @@ class JavaLanguageServer extends LanguageServer {
 
         if (FileStore.isJavaFile(params.textDocument.uri)) {
             // Clear diagnostics
-            client.publishDiagnostics(new PublishDiagnosticsParams(params.textDocument.uri, List.of()));
+            publish(new PublishDiagnosticsParams(params.textDocument.uri, List.of()));
+            // Now that it's closed, the background job will publish them again
+            workspaceDiagnostics.forget(Paths.get(params.textDocument.uri));
+            lintCache.forget(List.of(Paths.get(params.textDocument.uri)));
+            semanticTokens.forget(Paths.get(params.textDocument.uri));
         }
     }
 
     @Override
     public List<CodeAction> codeAction(CodeActionParams params) {
-        var provider = new CodeActionProvider(compiler());
+        var provider = new CodeActionProvider(compiler(Paths.get(params.textDocument.uri)));
         if (params.context.diagnostics.isEmpty()) {
             return provider.codeActionsForCursor(params);
         } else {
@@ -567,6 +933,113 @@ class JavaLanguageServer extends LanguageServer {
             lint(List.of(lastEdited));
             uncheckedChanges = false;
         }
+        // Resolve the top completion items before the client asks for them
+        if (!unresolvedCompletions.isEmpty()) {
+            new HoverProvider(compiler(completionFile)).prefetch(unresolvedCompletions, PREFETCH_COMPLETION_ITEMS);
+            unresolvedCompletions = List.of();
+        }
+        if (memoryGovernor.underPressure()) {
+            memoryGovernor.relieve();
+        }
+        // Index package-private classes near the files the user is editing, so compiles don't need a second pass
+        for (var file : FileStore.activeDocuments()) {
+            var packageName = FileStore.packageName(file);
+            if (packageName == null) continue;
+            PackagePrivateIndex.update(packageName, Duration.ofMillis(100));
+        }
+    }
+
+    /**
+     * Compile closed files that changed on disk, then lint open files that use a file whose signature changed, then
+     * write stubs of closed files, then, if java.workspaceDiagnostics is on, check closed files one batch at a time, so
+     * errors show up everywhere, not just in the files the user opened.
+     */
+    @Override
+    public boolean doBackgroundWork() {
+        if (compilers.roots().isEmpty()) return false;
+        // javac remembers the classes it read from the source path, until it compiles their files again
+        if (!changedOnDisk.isEmpty()) {
+            var files = new ArrayList<Path>(changedOnDisk);
+            changedOnDisk.clear();
+            files.removeIf(f -> FileStore.activeDocuments().contains(f) || !Files.exists(f));
+            try {
+                for (var group : compilers().partition(files).entrySet()) {
+                    var compiler = group.getKey();
+                    compiler.compile(group.getValue().toArray(Path[]::new)).close();
+                    // We don't know the old signature of a closed file, so assume it changed
+                    for (var file : group.getValue()) {
+                        relintDependents(compiler, file);
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Failed to compile " + files, e);
+            }
+            return true;
+        }
+        // Lint open files that use a file whose signature changed
+        if (!pendingLint.isEmpty()) {
+            var files = new ArrayList<Path>(pendingLint);
+            pendingLint.clear();
+            files.removeIf(f -> !FileStore.activeDocuments().contains(f));
+            try {
+                lint(files);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Failed to lint " + files, e);
+            }
+            return true;
+        }
+        var compilers = compilers();
+        // Stubs make every compile after this faster, including the checks below
+        if (backgroundStep("write stubs", () -> StubCache.buildNext(WorkspaceDiagnostics.MAX_BATCH_FILES) > 0)) {
+            return true;
+        }
+        // Index supertypes, so the first find-implementations doesn't have to parse the whole workspace
+        if (backgroundStep("index supertypes", () -> TypeHierarchyIndex.refresh(Duration.ofMillis(100)) > 0)) {
+            return true;
+        }
+        if (!workspaceDiagnosticsEnabled()) return false;
+        if (compilers.generation() != workspaceDiagnosticsGeneration) {
+            workspaceDiagnostics.clear();
+            warnings.clear();
+            workspaceDiagnosticsGeneration = compilers.generation();
+        }
+        var batch = workspaceDiagnostics.nextBatch();
+        if (batch.isEmpty()) return false;
+        if (checkerStale) {
+            for (var c : compilers.existing()) {
+                c.releaseShards();
+            }
+            checkerStale = false;
+        }
+        // Every file in a batch is in the same directory, so they all belong to the same root
+        var checker = compilers.forFile(batch.get(0)).shards(1).get(0);
+        LOG.info(String.format("Check %d closed files in %s...", batch.size(), batch.get(0).getParent()));
+        try (var task = checker.compile(batch.toArray(Path[]::new))) {
+            for (var errs : new ErrorProvider(task, warnings).errors()) {
+                publish(errs);
+            }
+            XrefIndex.update(task);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "...failed to check " + batch, e);
+        } finally {
+            checker.releaseCachedCompile();
+            // Even if checking failed, don't try again until the files change
+            workspaceDiagnostics.published(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Do one step of a kind of background work, and return true if there is more to do. If it fails, log why and move
+     * on to the next kind of work, rather than stopping the loop that calls doBackgroundWork.
+     */
+    private boolean backgroundStep(String what, BooleanSupplier step) {
+        try {
+            return step.getAsBoolean();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Failed to " + what, e);
+            return false;
+        }
     }
 
     private static final Logger LOG = Logger.getLogger("main");
@@ -0,0 +1,114 @@
+package org.javacs;
+
+import com.sun.source.tree.CompilationUnitTree;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * LintCache remembers when we last linted each open file, so a lint of every open document only recompiles the files
+ * that changed, and the files that use them. The diagnostics we published for the other files are still correct.
+ *
+ * <p>Other files only depend on the SignatureFingerprint of a file, so an edit to a method body doesn't make the files
+ * that use it stale.
+ */
+class LintCache {
+    /** lintedAt[file] is when we started the compile that produced the diagnostics we last published for file */
+    private final Map<Path, Instant> lintedAt = new HashMap<>();
+
+    /** fingerprints[file] is the SignatureFingerprint of file the last time we linted it */
+    private final Map<Path, byte[]> fingerprints = new HashMap<>();
+
+    /** signatureChangedAt[file] is when we started the compile that found a new fingerprint for file */
+    private final Map<Path, Instant> signatureChangedAt = new HashMap<>();
+
+    /**
+     * The subset of files that need to be linted again: files that changed since we last linted them, and files that
+     * mention, directly or through other open files, an open file whose signature changed since then.
+     */
+    List<Path> needsLint(Collection<Path> files) {
+        var mentions = new HashMap<Path, Set<Path>>();
+        var result = new ArrayList<Path>();
+        for (var f : files) {
+            var linted = lintedAt.get(f);
+            if (linted == null || changedSince(f, linted) || dependencyChangedSince(f, linted, mentions)) {
+                result.add(f);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remember that we published diagnostics for roots, from a compile that started at started. Return the files
+     * whose signature changed since we last linted them; files that use them need to be linted again.
+     */
+    List<Path> linted(Collection<CompilationUnitTree> roots, Instant started) {
+        var changed = new ArrayList<Path>();
+        for (var root : roots) {
+            var file = Paths.get(root.getSourceFile().toUri());
+            lintedAt.put(file, started);
+            var fingerprint = SignatureFingerprint.of(root);
+            var previous = fingerprints.put(file, fingerprint);
+            if (previous != null && !MessageDigest.isEqual(previous, fingerprint)) {
+                signatureChangedAt.put(file, started);
+                changed.add(file);
+            }
+        }
+        return changed;
+    }
+
+    /** Lint files again next time, even if nothing they use has changed, for example because they were closed. */
+    void forget(Collection<Path> files) {
+        for (var f : files) {
+            lintedAt.remove(f);
+        }
+    }
+
+    void clear() {
+        lintedAt.clear();
+        fingerprints.clear();
+        signatureChangedAt.clear();
+    }
+
+    private boolean changedSince(Path file, Instant linted) {
+        var modified = FileStore.modified(file);
+        return modified == null || modified.isAfter(linted);
+    }
+
+    private boolean signatureChangedSince(Path file, Instant linted) {
+        var changed = signatureChangedAt.get(file);
+        return changed != null && changed.isAfter(linted);
+    }
+
+    /** Search the open files that file mentions, and the open files that they mention, for a changed signature. */
+    private boolean dependencyChangedSince(Path file, Instant linted, Map<Path, Set<Path>> mentions) {
+        var visited = new HashSet<Path>();
+        var todo = new ArrayDeque<Path>();
+        todo.add(file);
+        visited.add(file);
+        while (!todo.isEmpty()) {
+            var next = todo.poll();
+            for (var dependency : mentions.computeIfAbsent(next, this::openFilesMentionedBy)) {
+                if (!visited.add(dependency)) continue;
+                if (signatureChangedSince(dependency, linted)) return true;
+                todo.add(dependency);
+            }
+        }
+        return false;
+    }
+
+    private Set<Path> openFilesMentionedBy(Path file) {
+        var result = new HashSet<Path>();
+        for (var other : FileStore.activeDocuments()) {
+            if (other.equals(file) || !FileStore.isJavaFile(other)) continue;
+            var name = other.getFileName().toString();
+            var className = name.substring(0, name.length() - ".java".length());
+            if (StringSearch.containsWord(file, className)) {
+                result.add(other);
+            }
+        }
+        return result;
+    }
+}
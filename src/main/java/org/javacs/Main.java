@@ -1,6 +1,12 @@
 package org.javacs;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.javacs.lsp.*;
@@ -27,6 +33,10 @@ public class Main {
             // Logger.getLogger("").addHandler(new FileHandler("javacs.%u.log", false));
             setRootFormat();
 
+            if (List.of(args).contains("--check")) {
+                System.exit(check(args));
+            }
+
             LSP.connect(JavaLanguageServer::new, System.in, System.out);
         } catch (Throwable t) {
             LOG.log(Level.SEVERE, t.getMessage(), t);
@@ -34,4 +44,56 @@ public class Main {
             System.exit(1);
         }
     }
+
+    /**
+     * Check every file in root without an editor, for example in CI:
+     *
+     * <pre>
+     *     --check &lt;root&gt; [--format json|sarif] [--threads n]
+     * </pre>
+     *
+     * Diagnostics are written to stdout, and the exit code is 1 if there are any errors, or 2 if the arguments are
+     * wrong.
+     */
+    static int check(String[] args) {
+        String root;
+        var format = BatchCheck.Format.JSON;
+        var threads = Runtime.getRuntime().availableProcessors();
+        try {
+            root = option(args, "--check");
+            var formatOption = option(args, "--format");
+            if (formatOption != null) {
+                format = BatchCheck.Format.valueOf(formatOption.toUpperCase());
+            }
+            var threadsOption = option(args, "--threads");
+            if (threadsOption != null) {
+                threads = Integer.parseInt(threadsOption);
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("--threads must be at least 1");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: --check <root> [--format json|sarif] [--threads n]");
+            return 2;
+        }
+        var rootPath = Paths.get(root).toAbsolutePath().normalize();
+        var classPath = new InferConfig(rootPath).classPath();
+        var compiler = new JavaCompilerService(classPath, Set.of(), Set.of(), List.of());
+        var out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        var summary = new BatchCheck(rootPath, compiler, threads, format).run(out);
+        System.err.println(summary);
+        return summary.errors > 0 ? 1 : 0;
+    }
+
+    /** The argument after flag, or null if flag isn't present. Throws if flag is present without a value. */
+    private static String option(String[] args, String flag) {
+        var list = List.of(args);
+        var i = list.indexOf(flag);
+        if (i == -1) return null;
+        if (i + 1 >= list.size() || list.get(i + 1).startsWith("--")) {
+            throw new IllegalArgumentException(flag + " needs a value");
+        }
+        return list.get(i + 1);
+    }
 }
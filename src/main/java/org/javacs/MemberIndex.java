@@ -0,0 +1,242 @@
+package org.javacs;
+
+import com.sun.source.util.JavacTask;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * MemberIndex remembers a summary of Elements.getAllMembers(type) for each type, sorted by name, so completion and
+ * code actions don't walk the members of heavily used types like String and List over and over.
+ *
+ * <p>Summaries of library types are valid as long as the class path doesn't change, which is the lifetime of the
+ * JavaCompilerService that owns the index. Summaries of source types are valid until a file that declares the type or
+ * one of its supertypes changes.
+ *
+ * <p>The shards of a compiler share its index, and can compile at the same time, so access is synchronized.
+ */
+public class MemberIndex {
+    public static class Member {
+        public final String name, declaringClass;
+        public final ElementKind kind;
+        public final List<String> erasedParameterTypes;
+        /** How completion describes the member, like `char charAt(int)` */
+        public final String detail;
+        public final boolean isPublic, isStatic, isFinal, isDeprecated;
+        /** Declared by a local or anonymous class, which getTypeElement(declaringClass) can't find */
+        private final boolean isLocal;
+
+        Member(JavacTask task, Element member) {
+            var parent = (TypeElement) member.getEnclosingElement();
+            this.name = member.getSimpleName().toString();
+            this.declaringClass = parent.getQualifiedName().toString();
+            this.isLocal = isLocal(parent);
+            this.kind = member.getKind();
+            if (member instanceof ExecutableElement) {
+                var method = (ExecutableElement) member;
+                this.erasedParameterTypes = erasedParameterTypes(task, method);
+                this.detail = method.getReturnType() + " " + method;
+            } else {
+                this.erasedParameterTypes = List.of();
+                this.detail = member.toString();
+            }
+            this.isPublic = member.getModifiers().contains(Modifier.PUBLIC);
+            this.isStatic = member.getModifiers().contains(Modifier.STATIC);
+            this.isFinal = member.getModifiers().contains(Modifier.FINAL);
+            this.isDeprecated = task.getElements().isDeprecated(member);
+        }
+
+        /** Find the element this summary describes in `task`, or null if it no longer exists. */
+        public Element resolve(JavacTask task) {
+            var parent = task.getElements().getTypeElement(declaringClass);
+            if (parent == null) return null;
+            return find(task, parent.getEnclosedElements());
+        }
+
+        private Element find(JavacTask task, List<? extends Element> candidates) {
+            for (var e : candidates) {
+                if (e.getKind() != kind || !e.getSimpleName().contentEquals(name)) continue;
+                if (e instanceof ExecutableElement) {
+                    var params = erasedParameterTypes(task, (ExecutableElement) e);
+                    if (!params.equals(erasedParameterTypes)) continue;
+                }
+                return e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Resolver finds the elements of summaries of the members of `type`. Members declared by local and anonymous
+     * classes can't be looked up by name, so they are found among the members of `type`, which are walked only once.
+     */
+    public static class Resolver {
+        private final JavacTask task;
+        private final TypeElement type;
+        private List<Element> local;
+
+        public Resolver(JavacTask task, TypeElement type) {
+            this.task = task;
+            this.type = type;
+        }
+
+        /** Find the element `member` describes in task, or null if it no longer exists. */
+        public Element resolve(Member member) {
+            if (!member.isLocal) return member.resolve(task);
+            if (local == null) {
+                local = new ArrayList<>();
+                for (var e : task.getElements().getAllMembers(type)) {
+                    var parent = e.getEnclosingElement();
+                    if (parent instanceof TypeElement && isLocal((TypeElement) parent)) {
+                        local.add(e);
+                    }
+                }
+            }
+            return member.find(task, local);
+        }
+    }
+
+    private static class Entry {
+        /** members sorted by name */
+        final List<Member> members;
+        /** sources[file] is the modified time of each workspace file in the type hierarchy, when we indexed it */
+        final Map<Path, Instant> sources;
+
+        Entry(List<Member> members, Map<Path, Instant> sources) {
+            this.members = members;
+            this.sources = sources;
+        }
+
+        boolean isStale() {
+            for (var file : sources.keySet()) {
+                if (!Objects.equals(FileStore.modified(file), sources.get(file))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Set<String> libraryClasses;
+    private final Map<String, Entry> cache = new HashMap<>();
+
+    /** libraryClasses is the top-level classes of the JDK and the class path, which never change. */
+    MemberIndex(Set<String> libraryClasses) {
+        this.libraryClasses = libraryClasses;
+    }
+
+    synchronized void clear() {
+        cache.clear();
+    }
+
+    /** Summaries of the members of `type` whose names start with `prefix`, as if by Elements.getAllMembers. */
+    public List<Member> members(JavacTask task, TypeElement type, String prefix) {
+        var members = allMembers(task, type);
+        // Binary search for the first member whose name is >= prefix
+        int start = 0, end = members.size();
+        while (start < end) {
+            var mid = (start + end) / 2;
+            if (members.get(mid).name.compareTo(prefix) < 0) {
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        while (end < members.size() && members.get(end).name.startsWith(prefix)) {
+            end++;
+        }
+        return members.subList(start, end);
+    }
+
+    /** The elements of the members of `type` whose names start with `prefix`. */
+    public List<Element> elements(JavacTask task, TypeElement type, String prefix) {
+        var list = new ArrayList<Element>();
+        var resolver = new Resolver(task, type);
+        for (var member : members(task, type, prefix)) {
+            var element = resolver.resolve(member);
+            if (element != null) {
+                list.add(element);
+            }
+        }
+        return list;
+    }
+
+    private synchronized List<Member> allMembers(JavacTask task, TypeElement type) {
+        var key = type.getQualifiedName().toString();
+        // Local and anonymous classes don't have a name we can look up later
+        if (isLocal(type)) {
+            return summarize(task, type);
+        }
+        var entry = cache.get(key);
+        if (entry != null && !entry.isStale()) {
+            return entry.members;
+        }
+        var sources = new HashMap<Path, Instant>();
+        if (!findSources(type, sources, new HashSet<>())) {
+            return summarize(task, type);
+        }
+        var members = summarize(task, type);
+        cache.put(key, new Entry(members, sources));
+        return members;
+    }
+
+    private List<Member> summarize(JavacTask task, TypeElement type) {
+        var members = new ArrayList<Member>();
+        for (var member : task.getElements().getAllMembers(type)) {
+            if (!(member.getEnclosingElement() instanceof TypeElement)) continue;
+            members.add(new Member(task, member));
+        }
+        members.sort(Comparator.comparing(m -> m.name));
+        return members;
+    }
+
+    /**
+     * Find the workspace files that declare type and its supertypes. Return false if part of the hierarchy is neither a
+     * library class nor a workspace file, in which case we can't tell when the summary goes stale.
+     */
+    private boolean findSources(TypeElement type, Map<Path, Instant> sources, Set<String> visited) {
+        var topLevel = topLevel(type);
+        var topLevelName = topLevel.getQualifiedName().toString();
+        if (!visited.add(type.getQualifiedName().toString())) return true;
+        var file = FileStore.findDeclaringFile(topLevel);
+        if (file.isPresent()) {
+            sources.put(file.get(), FileStore.modified(file.get()));
+        } else if (!libraryClasses.contains(topLevelName)) {
+            return false;
+        }
+        var supers = new ArrayList<TypeMirror>();
+        supers.add(type.getSuperclass());
+        supers.addAll(type.getInterfaces());
+        for (var s : supers) {
+            if (!(s instanceof DeclaredType)) continue;
+            var superType = (TypeElement) ((DeclaredType) s).asElement();
+            if (!findSources(superType, sources, visited)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isLocal(TypeElement type) {
+        var nesting = type.getNestingKind();
+        return nesting == NestingKind.LOCAL || nesting == NestingKind.ANONYMOUS;
+    }
+
+    private static TypeElement topLevel(TypeElement type) {
+        Element e = type;
+        while (e.getEnclosingElement() instanceof TypeElement) {
+            e = e.getEnclosingElement();
+        }
+        return (TypeElement) e;
+    }
+
+    private static List<String> erasedParameterTypes(JavacTask task, ExecutableElement method) {
+        var types = task.getTypes();
+        var list = new ArrayList<String>();
+        for (var param : method.getParameters()) {
+            list.add(types.erasure(param.asType()).toString());
+        }
+        return list;
+    }
+}
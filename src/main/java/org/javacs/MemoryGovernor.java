@@ -0,0 +1,147 @@
+package org.javacs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import javax.management.NotificationEmitter;
+
+/**
+ * MemoryGovernor watches the heap through the collection usage thresholds of MemoryPoolMXBean, and when the heap is
+ * still nearly full after a collection, frees memory by evicting caches, cheapest to rebuild first, one level after
+ * each collection, until usage falls below the threshold again.
+ *
+ * <p>The threshold notification arrives on a JMX thread, so it only raises a flag. The server calls relieve() from its
+ * own thread when it is idle, because the caches belong to that thread.
+ */
+class MemoryGovernor {
+    /** What to evict, in the order we evict it */
+    enum Level {
+        /** Parses, word searches and imports of individual files */
+        PARSE_CACHES,
+        /** Resolved completion items and the members of library classes */
+        COMPLETION_CACHES,
+        /** The last batch of each compiler, and its trees */
+        CACHED_BATCHES,
+        /** Every symbol javac has loaded, which it will load again from scratch */
+        COMPILER_CONTEXTS,
+    }
+
+    /** Evict when the heap is more than this fraction full after a collection */
+    static final double THRESHOLD = 0.8;
+
+    private static final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private static volatile boolean exceeded;
+
+    // Thresholds and listeners are global, so we install them once, no matter how many servers there are
+    static {
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) continue;
+            var max = pool.getUsage().getMax();
+            if (max <= 0) continue;
+            pool.setCollectionUsageThreshold((long) (max * THRESHOLD));
+            pools.add(pool);
+        }
+        var emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener(
+                (notification, __) -> {
+                    if (notification.getType().equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) {
+                        exceeded = true;
+                    }
+                },
+                null,
+                null);
+    }
+
+    private final Map<Level, List<BooleanSupplier>> evictions = new EnumMap<>(Level.class);
+
+    /**
+     * Run evict when memory is short and every level before level didn't free enough. evict returns false if it
+     * couldn't evict everything, for example because a compiler is in use.
+     */
+    void register(Level level, BooleanSupplier evict) {
+        evictions.computeIfAbsent(level, __ -> new ArrayList<>()).add(evict);
+    }
+
+    /** The level relieve() evicted last, until a collection shows whether that was enough */
+    private Level lastEvicted;
+
+    /** The number of collections the collector had run when we evicted lastEvicted */
+    private long collectionsAtEviction;
+
+    /**
+     * True if the heap crossed the threshold since the last relieve(), or if the collector has run since the last
+     * eviction and the heap is still above the threshold. JMX only notifies us again once usage has fallen below the
+     * threshold, so a workspace that really needs this much memory doesn't make us evict over and over.
+     */
+    boolean underPressure() {
+        if (exceeded) return true;
+        if (lastEvicted == null || collections() == collectionsAtEviction) return false;
+        if (isAboveThreshold()) return true;
+        LOG.info(String.format("Heap is %d%% full after evicting %s", percentFull(), lastEvicted));
+        lastEvicted = null;
+        return false;
+    }
+
+    /**
+     * Evict the cheapest level we haven't evicted since the heap was last below the threshold, and return it.
+     *
+     * <p>We don't force a collection to find out if that was enough: it would stall the server, and it does nothing
+     * under -XX:+DisableExplicitGC. Instead underPressure() waits for the collector to run on its own and reads the
+     * usage it left behind, so the next relieve() moves on to the next level only if the heap is still too full.
+     */
+    Optional<Level> relieve() {
+        exceeded = false;
+        var next = lastEvicted == null ? 0 : lastEvicted.ordinal() + 1;
+        if (next == Level.values().length) {
+            LOG.warning(String.format("Heap is %d%% full after evicting everything we can", percentFull()));
+            lastEvicted = null;
+            return Optional.empty();
+        }
+        var level = Level.values()[next];
+        var complete = true;
+        for (var evict : evictions.getOrDefault(level, List.of())) {
+            complete &= evict.getAsBoolean();
+        }
+        LOG.info(
+                String.format(
+                        "Evicted %s%s, heap was %d%% full after the last collection",
+                        level, complete ? "" : " (partially)", percentFull()));
+        lastEvicted = level;
+        collectionsAtEviction = collections();
+        return Optional.of(level);
+    }
+
+    private static long collections() {
+        var count = 0L;
+        for (var gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /** How full the fullest pool was after the last collection */
+    private static long percentFull() {
+        var percent = 0L;
+        for (var pool : pools) {
+            var usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) continue;
+            percent = Math.max(percent, usage.getUsed() * 100 / usage.getMax());
+        }
+        return percent;
+    }
+
+    private static boolean isAboveThreshold() {
+        for (var pool : pools) {
+            var usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) continue;
+            if (usage.getUsed() > usage.getMax() * THRESHOLD) return true;
+        }
+        return false;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
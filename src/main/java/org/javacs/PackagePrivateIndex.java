@@ -0,0 +1,97 @@
+package org.javacs;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * PackagePrivateIndex remembers the non-public top-level classes declared in each source file. javac can only find
+ * these classes if the file that declares them is part of the batch, so we use the index to add those files before
+ * compiling. The index is shared by every compiler, including the parallel workers of BatchCheck, so access is
+ * synchronized.
+ */
+class PackagePrivateIndex {
+    private static class Entry {
+        final Instant indexed = Instant.now();
+        final List<String> classNames;
+
+        Entry(List<String> classNames) {
+            this.classNames = classNames;
+        }
+    }
+
+    private static final Map<Path, Entry> byFile = new HashMap<>();
+
+    /** The non-public top-level classes declared in file, parsing it if it has changed since we last looked. */
+    static synchronized List<String> classesIn(Path file) {
+        var entry = byFile.get(file);
+        if (entry == null || isStale(file, entry)) {
+            entry = new Entry(parse(file));
+            byFile.put(file, entry);
+        }
+        return entry.classNames;
+    }
+
+    /**
+     * The non-public top-level classes declared in packageName, grouped by file. Files that have changed are parsed
+     * again until we run out of time. After that, we use what we found the last time we looked, skip files we've never
+     * indexed, and leave them for update to index in the background.
+     */
+    static synchronized Map<Path, List<String>> classesInPackage(String packageName, Duration budget) {
+        var started = Instant.now();
+        var result = new TreeMap<Path, List<String>>();
+        var skipped = 0;
+        for (var file : FileStore.list(packageName)) {
+            var entry = byFile.get(file);
+            if (entry == null || isStale(file, entry)) {
+                if (Duration.between(started, Instant.now()).compareTo(budget) < 0) {
+                    entry = new Entry(parse(file));
+                    byFile.put(file, entry);
+                } else {
+                    skipped++;
+                }
+            }
+            if (entry != null && !entry.classNames.isEmpty()) {
+                result.put(file, entry.classNames);
+            }
+        }
+        if (skipped > 0) {
+            LOG.info(String.format("...ran out of time to index %d files in %s", skipped, packageName));
+        }
+        return result;
+    }
+
+    /** Index the files in packageName that have changed, stopping early if we run out of time. */
+    static synchronized void update(String packageName, Duration budget) {
+        var started = Instant.now();
+        var count = 0;
+        for (var file : FileStore.list(packageName)) {
+            var entry = byFile.get(file);
+            if (entry != null && !isStale(file, entry)) continue;
+            classesIn(file);
+            count++;
+            if (Duration.between(started, Instant.now()).compareTo(budget) > 0) break;
+        }
+        if (count > 0) {
+            LOG.info(String.format("...indexed package-private classes of %d files in %s", count, packageName));
+        }
+    }
+
+    private static boolean isStale(Path file, Entry entry) {
+        var modified = FileStore.modified(file);
+        return modified == null || entry.indexed.isBefore(modified);
+    }
+
+    private static List<String> parse(Path file) {
+        var names = new ArrayList<String>();
+        for (var name : Parser.parseFile(file).packagePrivateClasses()) {
+            names.add(name.toString());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -64,7 +64,13 @@ class Parser {
         cachedModified = file.getLastModified();
     }
 
-    static Parser parseJavaFileObject(JavaFileObject file) {
+    /** Forget the last parse, for example to free memory */
+    static synchronized void clearCache() {
+        cachedParse = null;
+        cachedModified = -1;
+    }
+
+    static synchronized Parser parseJavaFileObject(JavaFileObject file) {
         if (needsParse(file)) {
             loadParse(file);
         } else {
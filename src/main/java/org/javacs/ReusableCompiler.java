@@ -110,7 +110,7 @@ class ReusableCompiler {
         checkedOut = true;
         List<String> opts =
                 StreamSupport.stream(options.spliterator(), false).collect(Collectors.toCollection(ArrayList::new));
-        if (!opts.equals(currentOptions)) {
+        if (currentContext == null || !opts.equals(currentOptions)) {
             LOG.warning(String.format("Options changed from %s to %s, creating new compiler", options, opts));
             currentOptions = opts;
             currentContext = new ReusableContext(opts);
@@ -125,6 +125,17 @@ class ReusableCompiler {
         return new Borrow(task, currentContext);
     }
 
+    /**
+     * Drop the current context, and every symbol it has loaded, so the next task starts from scratch. Return false if
+     * the context is checked out and can't be dropped yet.
+     */
+    boolean reset() {
+        if (checkedOut) return false;
+        currentOptions = new ArrayList<>();
+        currentContext = null;
+        return true;
+    }
+
     public void removeClass(JCTree.JCCompilationUnit root, String className) {
         currentContext.removeClass(root, className);
     }
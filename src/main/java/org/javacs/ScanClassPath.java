@@ -9,14 +9,14 @@ import java.net.URLClassLoader;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 import java.util.logging.Logger;
 import org.javacs.guava.ClassPath;
 
 class ScanClassPath {
 
-    // TODO delete this and implement findPublicTypeDeclarationInJdk some other way
     /** All exported modules that are present in JDK 10 or 11 */
     static String[] JDK_MODULES = {
         "java.activation",
@@ -111,10 +111,47 @@ class ScanClassPath {
         "jdk.zipfs",
     };
 
+    /** jdkModules[className] is the module that contains each top-level class of the running JDK */
+    private static Map<String, String> jdkModules;
+
     static Set<String> jdkTopLevelClasses() {
+        return jdkModules().keySet();
+    }
+
+    /** The module that contains the top-level class className, or null if it isn't part of the JDK. */
+    static String jdkModule(String className) {
+        return jdkModules().get(className);
+    }
+
+    /**
+     * Map every top-level class of the JDK to its module. Walking the modules takes a while, so the result is saved
+     * to disk, and later processes running the same JDK read it back instead.
+     */
+    private static synchronized Map<String, String> jdkModules() {
+        if (jdkModules != null) return jdkModules;
+        var indexFile = jdkIndexFile();
+        if (Files.exists(indexFile)) {
+            try {
+                jdkModules = Collections.unmodifiableMap(readJdkIndex(indexFile));
+                LOG.info(String.format("Read %d classes in the java platform from %s", jdkModules.size(), indexFile));
+                return jdkModules;
+            } catch (IOException e) {
+                LOG.warning("Couldn't read " + indexFile + ": " + e.getMessage());
+            }
+        }
+        jdkModules = Collections.unmodifiableMap(scanJdkModules());
+        try {
+            writeJdkIndex(indexFile, jdkModules);
+        } catch (IOException e) {
+            LOG.warning("Couldn't write " + indexFile + ": " + e.getMessage());
+        }
+        return jdkModules;
+    }
+
+    private static Map<String, String> scanJdkModules() {
         LOG.info("Searching for top-level classes in the JDK");
 
-        var classes = new HashSet<String>();
+        var classes = new HashMap<String, String>();
         var fs = FileSystems.getFileSystem(URI.create("jrt:/"));
         for (var m : JDK_MODULES) {
             var moduleRoot = fs.getPath(String.format("/modules/%s/", m));
@@ -126,7 +163,7 @@ class ScanClassPath {
                     if (relative.endsWith(".class") && !relative.contains("$")) {
                         var trim = relative.substring(0, relative.length() - ".class".length());
                         var qualifiedName = trim.replace(File.separatorChar, '.');
-                        classes.add(qualifiedName);
+                        classes.putIfAbsent(qualifiedName, m);
                     }
                 }
             } catch (IOException e) {
@@ -139,6 +176,52 @@ class ScanClassPath {
         return classes;
     }
 
+    /** The index is named after the JDK version and location, so upgrading the JDK creates a new index. */
+    private static Path jdkIndexFile() {
+        var javaHome = System.getProperty("java.home");
+        var version = Runtime.version().toString();
+        var name = String.format("jdk-%s-%08x.index", version, javaHome.hashCode());
+        return Paths.get(System.getProperty("java.io.tmpdir"), "javacs-jdk", name);
+    }
+
+    /** The index lists each module, followed by its classes indented by a tab. */
+    static void writeJdkIndex(Path file, Map<String, String> modules) throws IOException {
+        var byModule = new TreeMap<String, List<String>>();
+        for (var className : modules.keySet()) {
+            byModule.computeIfAbsent(modules.get(className), __ -> new ArrayList<>()).add(className);
+        }
+        Files.createDirectories(file.getParent());
+        var tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (var out = Files.newBufferedWriter(tmp)) {
+            for (var module : byModule.keySet()) {
+                out.write(module);
+                out.newLine();
+                var classes = byModule.get(module);
+                Collections.sort(classes);
+                for (var className : classes) {
+                    out.write('\t');
+                    out.write(className);
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Map<String, String> readJdkIndex(Path file) throws IOException {
+        var modules = new HashMap<String, String>();
+        String module = null;
+        for (var line : Files.readAllLines(file)) {
+            if (line.startsWith("\t")) {
+                if (module == null) throw new IOException("Class before first module");
+                modules.put(line.substring(1), module);
+            } else if (!line.isEmpty()) {
+                module = line;
+            }
+        }
+        return modules;
+    }
+
     static Set<String> classPathTopLevelClasses(Set<Path> classPath) {
         LOG.info(String.format("Searching for top-level classes in %d classpath locations", classPath.size()));
 
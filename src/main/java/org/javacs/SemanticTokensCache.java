@@ -0,0 +1,106 @@
+package org.javacs;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import org.javacs.lsp.SemanticTokens;
+import org.javacs.lsp.SemanticTokensDelta;
+import org.javacs.lsp.SemanticTokensEdit;
+
+/**
+ * SemanticTokensCache remembers the semantic tokens we found the last time we linted each open file, so
+ * semanticTokens/full doesn't compile the file again, and the tokens we last sent the client, so
+ * semanticTokens/full/delta only sends the tokens that changed since then.
+ *
+ * <p>Until lint compiles a file, the client gets tokens from its parse tree, and we ask it to refresh them afterwards.
+ */
+class SemanticTokensCache {
+    private static class Computed {
+        /** When we started the compile that produced data */
+        final Instant started;
+        final int[] data;
+
+        Computed(Instant started, int[] data) {
+            this.started = started;
+            this.data = data;
+        }
+    }
+
+    private final Map<Path, Computed> computed = new HashMap<>();
+
+    /** sent[file] is the last response we sent the client for file */
+    private final Map<Path, SemanticTokens> sent = new HashMap<>();
+
+    /** Open files whose tokens we found from the parse tree, because lint hadn't compiled them yet */
+    private final Set<Path> syntaxOnly = new HashSet<>();
+
+    private int nextResultId = 1;
+
+    /**
+     * Remember the tokens of file, from a compile that started at started. Return true if the client has tokens from
+     * the parse tree, so it should ask again.
+     */
+    boolean computed(Path file, Instant started, int[] data) {
+        computed.put(file, new Computed(started, data));
+        return syntaxOnly.remove(file);
+    }
+
+    /** Remember that we sent the client tokens for file that we found without compiling */
+    void sentSyntaxOnly(Path file) {
+        syntaxOnly.add(file);
+    }
+
+    /** The tokens of the current version of file, or null if file changed since we last computed them */
+    int[] fresh(Path file) {
+        var c = computed.get(file);
+        if (c == null) return null;
+        var modified = FileStore.modified(file);
+        if (modified == null || modified.isAfter(c.started)) return null;
+        return c.data;
+    }
+
+    /** Send data, the current tokens of file, to the client */
+    SemanticTokens full(Path file, int[] data) {
+        var tokens = new SemanticTokens(String.valueOf(nextResultId++), data);
+        sent.put(file, tokens);
+        return tokens;
+    }
+
+    /** Send the difference between data, the current tokens of file, and the tokens the client has */
+    SemanticTokensDelta delta(Path file, String previousResultId, int[] data) {
+        var previous = sent.get(file);
+        var full = full(file, data);
+        var delta = new SemanticTokensDelta();
+        delta.resultId = full.resultId;
+        if (previous == null || !previous.resultId.equals(previousResultId)) {
+            delta.data = data;
+            return delta;
+        }
+        delta.edits = edits(previous.data, data);
+        return delta;
+    }
+
+    /** A single edit that replaces the integers between the common prefix and the common suffix of from and to */
+    static List<SemanticTokensEdit> edits(int[] from, int[] to) {
+        var prefix = 0;
+        while (prefix < from.length && prefix < to.length && from[prefix] == to[prefix]) {
+            prefix++;
+        }
+        var suffix = 0;
+        while (suffix < from.length - prefix
+                && suffix < to.length - prefix
+                && from[from.length - 1 - suffix] == to[to.length - 1 - suffix]) {
+            suffix++;
+        }
+        if (prefix == from.length && prefix == to.length) return List.of();
+        var inserted = Arrays.copyOfRange(to, prefix, to.length - suffix);
+        return List.of(new SemanticTokensEdit(prefix, from.length - prefix - suffix, inserted));
+    }
+
+    /** Forget file, because it was closed */
+    void forget(Path file) {
+        computed.remove(file);
+        sent.remove(file);
+        syntaxOnly.remove(file);
+    }
+}
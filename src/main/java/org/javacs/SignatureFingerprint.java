@@ -0,0 +1,81 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.lang.model.element.Modifier;
+
+/**
+ * SignatureFingerprint hashes the declarations in a file that other files can see: its non-private classes, and their
+ * non-private fields and methods, without method bodies. Edits to method bodies, private members or comments don't
+ * change the fingerprint, so they can't change the diagnostics of other files.
+ *
+ * <p>The hash is a SHA-256 digest, so two different signatures practically never share a fingerprint. If they did,
+ * files that use the changed file would keep stale diagnostics.
+ */
+class SignatureFingerprint {
+    static byte[] of(CompilationUnitTree root) {
+        var buf = new StringBuilder();
+        buf.append("package ").append(root.getPackageName()).append(";\n");
+        for (var t : root.getTypeDecls()) {
+            if (t instanceof ClassTree) {
+                appendClass((ClassTree) t, buf);
+            }
+        }
+        try {
+            var sha = MessageDigest.getInstance("SHA-256");
+            return sha.digest(buf.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void appendClass(ClassTree c, StringBuilder buf) {
+        if (isPrivate(c.getModifiers())) return;
+        buf.append(c.getModifiers()).append(c.getKind()).append(' ').append(c.getSimpleName());
+        buf.append(c.getTypeParameters());
+        buf.append(" extends ").append(c.getExtendsClause());
+        buf.append(" implements ").append(c.getImplementsClause());
+        buf.append(" {\n");
+        for (var member : c.getMembers()) {
+            if (member instanceof ClassTree) {
+                appendClass((ClassTree) member, buf);
+            } else if (member instanceof MethodTree) {
+                appendMethod((MethodTree) member, buf);
+            } else if (member instanceof VariableTree) {
+                appendField((VariableTree) member, buf);
+            }
+        }
+        buf.append("}\n");
+    }
+
+    private static void appendMethod(MethodTree m, StringBuilder buf) {
+        if (isPrivate(m.getModifiers())) return;
+        buf.append(m.getModifiers()).append(m.getTypeParameters()).append(' ');
+        buf.append(m.getReturnType()).append(' ').append(m.getName()).append('(');
+        for (var p : m.getParameters()) {
+            buf.append(p.getType()).append(',');
+        }
+        buf.append(") throws ").append(m.getThrows());
+        if (m.getDefaultValue() != null) {
+            buf.append(" default ").append(m.getDefaultValue());
+        }
+        buf.append(";\n");
+    }
+
+    private static void appendField(VariableTree v, StringBuilder buf) {
+        if (isPrivate(v.getModifiers())) return;
+        buf.append(v.getModifiers()).append(v.getType()).append(' ').append(v.getName());
+        // Other files inline the values of constants
+        var flags = v.getModifiers().getFlags();
+        if (flags.contains(Modifier.STATIC) && flags.contains(Modifier.FINAL) && v.getInitializer() != null) {
+            buf.append(" = ").append(v.getInitializer());
+        }
+        buf.append(";\n");
+    }
+
+    private static boolean isPrivate(ModifiersTree modifiers) {
+        return modifiers.getFlags().contains(Modifier.PRIVATE);
+    }
+}
@@ -9,8 +9,16 @@ import java.util.logging.Logger;
 import javax.tools.*;
 
 class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    /** Read closed files from StubCache when it has an up-to-date stub */
+    private final boolean stubs;
+
     SourceFileManager() {
+        this(false);
+    }
+
+    SourceFileManager(boolean stubs) {
         super(createDelegateFileManager());
+        this.stubs = stubs;
     }
 
     private static StandardJavaFileManager createDelegateFileManager() {
@@ -34,7 +42,9 @@ class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManage
     }
 
     private JavaFileObject asJavaFileObject(Path file) {
-        // TODO erase method bodies of files that are not open
+        if (stubs) {
+            return StubCache.sourceOrStub(file);
+        }
         return new SourceFileObject(file);
     }
 
@@ -74,7 +84,7 @@ class SourceFileManager extends ForwardingJavaFileManager<StandardJavaFileManage
             var simpleClassName = StringSearch.lastName(className);
             for (var f : FileStore.list(packageName)) {
                 if (f.getFileName().toString().equals(simpleClassName + kind.extension)) {
-                    return new SourceFileObject(f);
+                    return asJavaFileObject(f);
                 }
             }
             // Fall through to disk in case we have .jar or .zip files on the source path
@@ -2,8 +2,10 @@ package org.javacs;
 
 import java.io.*;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.NestingKind;
 import javax.tools.JavaFileObject;
@@ -15,6 +17,8 @@ public class SourceFileObject implements JavaFileObject {
     final String contents;
     /** if contents is set, the modified version of contents in monotonic nanoseconds */
     final long modified;
+    /** stub is a copy of path with its method bodies erased, which is read instead of path, or null */
+    private final Path stub;
     private static final AtomicLong LAST_NOW = new AtomicLong();
 
     public SourceFileObject(Path path) {
@@ -22,10 +26,20 @@ public class SourceFileObject implements JavaFileObject {
     }
 
     public SourceFileObject(Path path, String contents, long modified) {
+        this(path, contents, modified, null);
+    }
+
+    private SourceFileObject(Path path, String contents, long modified, Path stub) {
         if (!FileStore.isJavaFile(path)) throw new RuntimeException(path + " is not a java source");
         this.path = path;
         this.contents = contents;
         this.modified = modified;
+        this.stub = stub;
+    }
+
+    /** path, whose text is read from stub when javac needs it. It was modified when path was. */
+    static SourceFileObject stub(Path path, Path stub) {
+        return new SourceFileObject(path, null, 0, stub);
     }
 
     public static long now() {
@@ -96,6 +110,9 @@ public class SourceFileObject implements JavaFileObject {
             var bytes = contents.getBytes();
             return new ByteArrayInputStream(bytes);
         }
+        if (stub != null) {
+            return new ByteArrayInputStream(readStub().getBytes());
+        }
         return FileStore.inputStream(path);
     }
 
@@ -109,6 +126,9 @@ public class SourceFileObject implements JavaFileObject {
         if (contents != null) {
             return new StringReader(contents);
         }
+        if (stub != null) {
+            return new StringReader(readStub());
+        }
         return FileStore.bufferedReader(path);
     }
 
@@ -117,9 +137,22 @@ public class SourceFileObject implements JavaFileObject {
         if (contents != null) {
             return contents;
         }
+        if (stub != null) {
+            return readStub();
+        }
         return FileStore.contents(path);
     }
 
+    /** The contents of stub, or of path if the stub has gone missing */
+    private String readStub() {
+        try {
+            return Files.readString(stub);
+        } catch (IOException e) {
+            LOG.warning("Couldn't read " + stub + ": " + e.getMessage());
+            return FileStore.contents(path);
+        }
+    }
+
     @Override
     public Writer openWriter() {
         throw new UnsupportedOperationException();
@@ -144,4 +177,6 @@ public class SourceFileObject implements JavaFileObject {
     public String toString() {
         return path.toString();
     }
+
+    private static final Logger LOG = Logger.getLogger("main");
 }
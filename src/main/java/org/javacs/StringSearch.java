@@ -197,7 +197,9 @@ public class StringSearch {
         }
     }
 
-    private static final ByteBuffer SEARCH_BUFFER = ByteBuffer.allocateDirect(1024 * 1024);
+    /** Each thread has its own buffer, because compilers on different threads search files at the same time */
+    private static final ThreadLocal<ByteBuffer> SEARCH_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1024 * 1024));
 
     // TODO cache the progress made by searching shorter queries
     static boolean containsWordMatching(Path java, String query) {
@@ -207,12 +209,13 @@ public class StringSearch {
         }
         try (var channel = FileChannel.open(java)) {
             // Read up to 1 MB of data from file
-            var limit = Math.min((int) channel.size(), SEARCH_BUFFER.capacity());
-            SEARCH_BUFFER.position(0);
-            SEARCH_BUFFER.limit(limit);
-            channel.read(SEARCH_BUFFER);
-            SEARCH_BUFFER.position(0);
-            var chars = StandardCharsets.UTF_8.decode(SEARCH_BUFFER);
+            var buffer = SEARCH_BUFFER.get();
+            var limit = Math.min((int) channel.size(), buffer.capacity());
+            buffer.position(0);
+            buffer.limit(limit);
+            channel.read(buffer);
+            buffer.position(0);
+            var chars = StandardCharsets.UTF_8.decode(buffer);
             return matchesTitleCase(chars, query);
         } catch (NoSuchFileException e) {
             LOG.warning(e.getMessage());
@@ -230,12 +233,13 @@ public class StringSearch {
         }
         try (var channel = FileChannel.open(java)) {
             // Read up to 1 MB of data from file
-            var limit = Math.min((int) channel.size(), SEARCH_BUFFER.capacity());
-            SEARCH_BUFFER.position(0);
-            SEARCH_BUFFER.limit(limit);
-            channel.read(SEARCH_BUFFER);
-            SEARCH_BUFFER.position(0);
-            return search.nextWord(SEARCH_BUFFER) != -1;
+            var buffer = SEARCH_BUFFER.get();
+            var limit = Math.min((int) channel.size(), buffer.capacity());
+            buffer.position(0);
+            buffer.limit(limit);
+            channel.read(buffer);
+            buffer.position(0);
+            return search.nextWord(buffer) != -1;
         } catch (NoSuchFileException e) {
             LOG.warning(e.getMessage());
             return false;
@@ -252,12 +256,13 @@ public class StringSearch {
         }
         try (var channel = FileChannel.open(java)) {
             // Read up to 1 MB of data from file
-            var limit = Math.min((int) channel.size(), SEARCH_BUFFER.capacity());
-            SEARCH_BUFFER.position(0);
-            SEARCH_BUFFER.limit(limit);
-            channel.read(SEARCH_BUFFER);
-            SEARCH_BUFFER.position(0);
-            return search.next(SEARCH_BUFFER) != -1;
+            var buffer = SEARCH_BUFFER.get();
+            var limit = Math.min((int) channel.size(), buffer.capacity());
+            buffer.position(0);
+            buffer.limit(limit);
+            channel.read(buffer);
+            buffer.position(0);
+            return search.next(buffer) != -1;
         } catch (NoSuchFileException e) {
             LOG.warning(e.getMessage());
             return false;
@@ -351,6 +356,11 @@ public class StringSearch {
         return cacheContainsInterface.get(file, simpleName);
     }
 
+    static void clearCaches() {
+        cacheContainsClass.clear();
+        cacheContainsInterface.clear();
+    }
+
     // TODO this doesn't work for inner classes, eliminate
     static String mostName(String name) {
         var lastDot = name.lastIndexOf('.');
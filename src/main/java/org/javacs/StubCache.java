@@ -0,0 +1,225 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import javax.tools.JavaFileObject;
+import org.javacs.completion.PruneMethodBodies;
+
+/**
+ * StubCache keeps a copy of each workspace source file with its method bodies erased, so javac spends less time
+ * parsing and attributing the files it reads from the source path while it compiles a batch. Method bodies are
+ * replaced by whitespace and `throw null;`, so every declaration keeps its offset and the stub compiles without errors.
+ *
+ * <p>Stubs are written to a cache directory under names that include the modification time of their source, so a stub
+ * on disk is never stale. Files that don't have a stub yet, files that couldn't be parsed, and files that are open in
+ * the editor, are read from source.
+ *
+ * <p>The stubs of each source directory share a bucket, which records the directory it belongs to. Every server that
+ * uses a bucket marks it, and the first buildNext() of each run deletes the buckets of directories that no longer exist
+ * and the buckets no run has used for MAX_AGE, so the stubs of old workspaces don't pile up.
+ */
+class StubCache {
+    /** Turned on by JavaLanguageServer, according to the java.stubs setting */
+    static volatile boolean enabled;
+
+    /** built[file] is the newest stub of file we know is on disk; compiles look here instead of asking the disk */
+    private static final Map<Path, Path> built = new ConcurrentHashMap<>();
+
+    /** looked[file] is the stub of file we last looked for on disk, so we only look once for each version of file */
+    private static final Map<Path, Path> looked = new ConcurrentHashMap<>();
+
+    /** failed[file] is the stub we couldn't write for file, which we won't try again until file changes */
+    private static final Map<Path, Path> failed = new ConcurrentHashMap<>();
+
+    /** Buckets that no run has used for this long are deleted by clean() */
+    static final Duration MAX_AGE = Duration.ofDays(30);
+
+    /** The file in each bucket that holds the path of its source directory, and is touched each time a run uses it */
+    private static final String SOURCE = "source";
+
+    /** The buckets we marked as used in this run */
+    private static final Set<Path> used = ConcurrentHashMap.newKeySet();
+
+    private static final AtomicBoolean cleaned = new AtomicBoolean();
+
+    static Path cacheDir() {
+        var dir = System.getProperty("javacs.stubCache");
+        if (dir != null) return Paths.get(dir);
+        return Paths.get(System.getProperty("java.io.tmpdir"), "javacs-stubs");
+    }
+
+    /** The stub of file, if it is up to date, otherwise file itself. The stub is only read if javac needs it. */
+    static JavaFileObject sourceOrStub(Path file) {
+        if (!enabled || FileStore.activeDocuments().contains(file)) {
+            return new SourceFileObject(file);
+        }
+        var stub = currentStub(file);
+        if (stub == null) {
+            return new SourceFileObject(file);
+        }
+        return SourceFileObject.stub(file, stub);
+    }
+
+    static boolean hasStub(Path file) {
+        return currentStub(file) != null;
+    }
+
+    /** The stub of the current version of file, or null if it hasn't been written. */
+    private static Path currentStub(Path file) {
+        var modified = FileStore.modified(file);
+        if (modified == null) return null;
+        var stub = stubFile(file, modified.toEpochMilli());
+        if (stub.equals(built.get(file))) return stub;
+        if (stub.equals(looked.put(file, stub))) return null;
+        // Stubs written by an earlier run are on disk, but not in built
+        if (Files.exists(stub)) {
+            use(stub.getParent(), file.getParent());
+            built.put(file, stub);
+            return stub;
+        }
+        return null;
+    }
+
+    /**
+     * Write stubs for up to limit closed files that don't have one, all from the same directory. Return the number of
+     * stubs written; 0 means every closed file has a stub.
+     */
+    static int buildNext(int limit) {
+        if (!enabled) return 0;
+        if (cleaned.compareAndSet(false, true)) {
+            var deleted = clean();
+            if (deleted > 0) LOG.info(String.format("...deleted %d old stub directories", deleted));
+        }
+        Path dir = null;
+        var batch = new ArrayList<Path>();
+        for (var file : FileStore.all()) {
+            if (FileStore.activeDocuments().contains(file) || hasStub(file) || hasFailed(file)) continue;
+            if (dir == null) {
+                dir = file.getParent();
+            } else if (!file.getParent().equals(dir)) {
+                continue;
+            }
+            batch.add(file);
+            if (batch.size() == limit) break;
+        }
+        for (var file : batch) {
+            var modified = FileStore.modified(file);
+            if (modified == null) continue;
+            var stub = stubFile(file, modified.toEpochMilli());
+            if (write(file, stub)) {
+                built.put(file, stub);
+            } else {
+                failed.put(file, stub);
+            }
+        }
+        if (!batch.isEmpty()) {
+            LOG.info(String.format("...wrote %d stubs for %s", batch.size(), dir));
+        }
+        return batch.size();
+    }
+
+    private static boolean hasFailed(Path file) {
+        var modified = FileStore.modified(file);
+        return modified == null || stubFile(file, modified.toEpochMilli()).equals(failed.get(file));
+    }
+
+    /** Write the stub of file to stub, and return false if we couldn't. */
+    private static boolean write(Path file, Path stub) {
+        try {
+            Files.createDirectories(stub.getParent());
+            use(stub.getParent(), file.getParent());
+            // Delete stubs of older versions of file
+            var prefix = file.getFileName() + "-";
+            try (var old = Files.newDirectoryStream(stub.getParent(), prefix + "*")) {
+                for (var f : old) {
+                    Files.deleteIfExists(f);
+                }
+            }
+            var tmp = Files.createTempFile(stub.getParent(), prefix, ".tmp");
+            Files.writeString(tmp, prune(Parser.parseFile(file)), StandardCharsets.UTF_8);
+            Files.move(tmp, stub, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOG.warning("Couldn't write stub of " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Mark bucket as used by this run, so clean() keeps it. Only the first use in each run writes to the disk. */
+    private static void use(Path bucket, Path sourceDir) {
+        if (!used.add(bucket)) return;
+        try {
+            Files.writeString(bucket.resolve(SOURCE), sourceDir.toAbsolutePath().normalize().toString());
+        } catch (IOException e) {
+            LOG.warning("Couldn't mark " + bucket + " as used: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete the buckets of source directories that no longer exist, and buckets no run has used for MAX_AGE. Return
+     * the number of buckets deleted.
+     */
+    static int clean() {
+        var cutoff = Instant.now().minus(MAX_AGE);
+        var deleted = 0;
+        try (var buckets = Files.newDirectoryStream(cacheDir())) {
+            for (var bucket : buckets) {
+                if (!Files.isDirectory(bucket) || used.contains(bucket) || isCurrent(bucket, cutoff)) continue;
+                try (var files = Files.newDirectoryStream(bucket)) {
+                    for (var f : files) {
+                        Files.deleteIfExists(f);
+                    }
+                }
+                Files.deleteIfExists(bucket);
+                deleted++;
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            LOG.warning("Couldn't clean " + cacheDir() + ": " + e.getMessage());
+        }
+        return deleted;
+    }
+
+    private static boolean isCurrent(Path bucket, Instant cutoff) throws IOException {
+        var source = bucket.resolve(SOURCE);
+        if (!Files.exists(source)) return false;
+        if (Files.getLastModifiedTime(source).toInstant().isBefore(cutoff)) return false;
+        return Files.isDirectory(Paths.get(Files.readString(source)));
+    }
+
+    /** Stubs of the files in one directory share a bucket, named after a SHA-256 digest of the source directory */
+    private static Path stubFile(Path file, long modified) {
+        var dir = file.getParent().toAbsolutePath().normalize().toString();
+        try {
+            var sha = MessageDigest.getInstance("SHA-256");
+            var bucket = HexFormat.of().formatHex(sha.digest(dir.getBytes(StandardCharsets.UTF_8)));
+            return cacheDir().resolve(bucket).resolve(file.getFileName() + "-" + modified);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Erase the method bodies of parse, keeping every declaration at the same offset. */
+    static String prune(Parser parse) {
+        return new PruneMethodBodies(parse.task, true).scan(parse.root, -1L).toString();
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
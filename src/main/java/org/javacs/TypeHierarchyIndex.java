@@ -0,0 +1,346 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.TreePath;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.logging.Logger;
+import javax.lang.model.element.TypeElement;
+import org.javacs.lsp.Range;
+
+/**
+ * TypeHierarchyIndex remembers the classes declared in each workspace file, and the names of their supertypes as
+ * they're written in the `extends` and `implements` clauses. Like PackagePrivateIndex, it parses a file again when
+ * FileStore says the file changed since it was indexed, so finding the subtypes of a class only parses the files that
+ * changed since the last time.
+ *
+ * <p>Supertype names are resolved the way javac would resolve them, using the declarations in the same file, the
+ * imports, the same package and java.lang. Only when that is ambiguous, for example because of a static import or an
+ * inherited member class, do we compile the file to ask javac.
+ */
+public class TypeHierarchyIndex {
+    /** A class, interface, enum or annotation declared in a workspace file */
+    public static class Type {
+        public final Path file;
+        public final String className;
+        public final Tree.Kind kind;
+        /** The range of the whole declaration, and the range of its name */
+        public final Range range, nameRange;
+        /** The names of the direct supertypes, as they're written, without type arguments */
+        public final List<String> supertypes;
+
+        Type(Path file, String className, Tree.Kind kind, Range range, Range nameRange, List<String> supertypes) {
+            this.file = file;
+            this.className = className;
+            this.kind = kind;
+            this.range = range;
+            this.nameRange = nameRange;
+            this.supertypes = supertypes;
+        }
+
+        public String simpleName() {
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+    }
+
+    private static class Entry {
+        final Instant indexed = Instant.now();
+        final String packageName;
+        /** The names imported by import and import static declarations, including the trailing .* */
+        final List<String> imports, staticImports;
+        final List<Type> types;
+        /** Supertypes we asked javac to resolve, by className then written name */
+        final Map<String, Map<String, String>> attributed = new HashMap<>();
+
+        Entry(String packageName, List<String> imports, List<String> staticImports, List<Type> types) {
+            this.packageName = packageName;
+            this.imports = imports;
+            this.staticImports = staticImports;
+            this.types = types;
+        }
+    }
+
+    /** Marks a name that could mean more than one class, unless we compile the file */
+    private static final String AMBIGUOUS = "?";
+
+    private static final Map<Path, Entry> byFile = new HashMap<>();
+    /** The files that declare a class with a supertype whose last segment is the key */
+    private static final Map<String, Set<Path>> bySupertypeName = new HashMap<>();
+
+    /** The class named className, if it's declared in the workspace. */
+    public static synchronized Optional<Type> find(CompilerProvider compiler, String className) {
+        var file = compiler.findTypeDeclaration(className);
+        if (file == CompilerProvider.NOT_FOUND) return Optional.empty();
+        for (var t : entry(file).types) {
+            if (t.className.equals(className)) return Optional.of(t);
+        }
+        return Optional.empty();
+    }
+
+    /** The workspace classes that directly extend or implement className. */
+    public static synchronized List<Type> subtypes(CompilerProvider compiler, String className) {
+        refresh(Duration.ofDays(1));
+        var simpleName = className.substring(className.lastIndexOf('.') + 1);
+        var found = new ArrayList<Type>();
+        for (var file : new TreeSet<>(bySupertypeName.getOrDefault(simpleName, Set.of()))) {
+            var entry = entry(file);
+            for (var type : entry.types) {
+                for (var s : type.supertypes) {
+                    if (!lastSegment(s).equals(simpleName)) continue;
+                    if (className.equals(resolve(compiler, entry, type, s))) {
+                        found.add(type);
+                        break;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** The workspace classes that extend or implement className, directly or indirectly. */
+    public static synchronized List<Type> allSubtypes(CompilerProvider compiler, String className) {
+        var found = new LinkedHashMap<String, Type>();
+        var todo = new ArrayDeque<String>(List.of(className));
+        while (!todo.isEmpty()) {
+            for (var t : subtypes(compiler, todo.remove())) {
+                if (found.putIfAbsent(t.className, t) == null) {
+                    todo.add(t.className);
+                }
+            }
+        }
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * The qualified names of the direct supertypes of type, in the order they're written. Names that can't be
+     * resolved, like the name of a missing class, are skipped.
+     */
+    public static synchronized List<String> supertypes(CompilerProvider compiler, Type type) {
+        var entry = entry(type.file);
+        var found = new ArrayList<String>();
+        for (var s : type.supertypes) {
+            var className = resolve(compiler, entry, type, s);
+            if (className != null) {
+                found.add(className);
+            }
+        }
+        return found;
+    }
+
+    /** Index the workspace files that have changed, stopping early if we run out of time. Return how many changed. */
+    public static synchronized int refresh(Duration budget) {
+        var started = Instant.now();
+        var count = 0;
+        var all = FileStore.all();
+        for (var file : all) {
+            var entry = byFile.get(file);
+            if (entry != null && !isStale(file, entry)) continue;
+            entry(file);
+            count++;
+            if (Duration.between(started, Instant.now()).compareTo(budget) > 0) break;
+        }
+        // Forget files that were deleted
+        var deleted = new ArrayList<Path>();
+        for (var file : byFile.keySet()) {
+            if (!all.contains(file)) deleted.add(file);
+        }
+        for (var file : deleted) {
+            remove(file);
+        }
+        if (count > 0) {
+            LOG.info(String.format("...indexed supertypes of %d files", count));
+        }
+        return count;
+    }
+
+    static synchronized void clear() {
+        byFile.clear();
+        bySupertypeName.clear();
+    }
+
+    private static Entry entry(Path file) {
+        var entry = byFile.get(file);
+        if (entry != null && !isStale(file, entry)) return entry;
+        remove(file);
+        entry = parse(file);
+        byFile.put(file, entry);
+        for (var t : entry.types) {
+            for (var s : t.supertypes) {
+                bySupertypeName.computeIfAbsent(lastSegment(s), __ -> new HashSet<>()).add(file);
+            }
+        }
+        return entry;
+    }
+
+    private static void remove(Path file) {
+        var entry = byFile.remove(file);
+        if (entry == null) return;
+        for (var t : entry.types) {
+            for (var s : t.supertypes) {
+                var files = bySupertypeName.get(lastSegment(s));
+                if (files == null) continue;
+                files.remove(file);
+                if (files.isEmpty()) bySupertypeName.remove(lastSegment(s));
+            }
+        }
+    }
+
+    private static boolean isStale(Path file, Entry entry) {
+        var modified = FileStore.modified(file);
+        return modified == null || entry.indexed.isBefore(modified);
+    }
+
+    private static String lastSegment(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static Entry parse(Path file) {
+        var parse = Parser.parseFile(file);
+        var task = new ParseTask(parse.task, parse.root);
+        var packageName = Objects.toString(parse.root.getPackageName(), "");
+        var types = new ArrayList<Type>();
+        for (var t : parse.root.getTypeDecls()) {
+            if (t instanceof ClassTree) {
+                addTypes(task, file, new TreePath(new TreePath(parse.root), t), packageName, types);
+            }
+        }
+        var imports = new ArrayList<String>();
+        var staticImports = new ArrayList<String>();
+        for (var i : parse.root.getImports()) {
+            var name = i.getQualifiedIdentifier().toString();
+            if (i.isStatic()) staticImports.add(name);
+            else imports.add(name);
+        }
+        return new Entry(packageName, imports, staticImports, types);
+    }
+
+    /** Add the class at path and its member classes. Local and anonymous classes can't be named, so we skip them. */
+    private static void addTypes(ParseTask task, Path file, TreePath path, String outerName, List<Type> types) {
+        var type = (ClassTree) path.getLeaf();
+        var name = type.getSimpleName().toString();
+        var className = outerName.isEmpty() ? name : outerName + "." + name;
+        var supertypes = new ArrayList<String>();
+        if (type.getExtendsClause() != null) {
+            supertypes.add(erase(type.getExtendsClause()));
+        }
+        for (var i : type.getImplementsClause()) {
+            supertypes.add(erase(i));
+        }
+        var range = FindHelper.location(task, path, "").range;
+        var nameRange = FindHelper.location(task, path, name).range;
+        types.add(new Type(file, className, type.getKind(), range, nameRange, supertypes));
+        for (var member : type.getMembers()) {
+            if (member instanceof ClassTree) {
+                addTypes(task, file, new TreePath(path, member), className, types);
+            }
+        }
+    }
+
+    private static String erase(Tree type) {
+        if (type instanceof ParameterizedTypeTree) {
+            type = ((ParameterizedTypeTree) type).getType();
+        }
+        if (type instanceof AnnotatedTypeTree) {
+            type = ((AnnotatedTypeTree) type).getUnderlyingType();
+        }
+        return type.toString();
+    }
+
+    /** The qualified name of the class that `written`, a supertype of type, refers to, or null if we can't tell. */
+    private static String resolve(CompilerProvider compiler, Entry entry, Type type, String written) {
+        var className = resolveWithoutCompiling(compiler, entry, written);
+        if (className != AMBIGUOUS) return className;
+        var attributed = entry.attributed.computeIfAbsent(type.className, __ -> attribute(compiler, type));
+        return attributed.get(written);
+    }
+
+    private static String resolveWithoutCompiling(CompilerProvider compiler, Entry entry, String written) {
+        var dot = written.indexOf('.');
+        var first = dot == -1 ? written : written.substring(0, dot);
+        var rest = dot == -1 ? "" : written.substring(dot);
+        // A class declared in the same file
+        String found = null;
+        for (var t : entry.types) {
+            if (!t.simpleName().equals(first)) continue;
+            if (found != null) return AMBIGUOUS;
+            found = t.className;
+        }
+        if (found != null) return found + rest;
+        // A single-type import
+        var onDemand = new ArrayList<String>();
+        for (var imported : entry.imports) {
+            if (imported.endsWith(".*")) {
+                onDemand.add(imported.substring(0, imported.length() - "*".length()) + first);
+            } else if (imported.endsWith("." + first)) {
+                return imported + rest;
+            }
+        }
+        var staticOnDemand = false;
+        for (var imported : entry.staticImports) {
+            if (imported.endsWith(".*")) {
+                staticOnDemand = true;
+            } else if (imported.endsWith("." + first)) {
+                return imported + rest;
+            }
+        }
+        // A class in the same package
+        var samePackage = entry.packageName.isEmpty() ? first : entry.packageName + "." + first;
+        if (compiler.findTypeDeclaration(samePackage) != CompilerProvider.NOT_FOUND) return samePackage + rest;
+        // An on-demand import, or java.lang
+        onDemand.add("java.lang." + first);
+        for (var candidate : onDemand) {
+            if (!exists(compiler, candidate)) continue;
+            if (found != null) return AMBIGUOUS;
+            found = candidate;
+        }
+        if (found != null) return found + rest;
+        // A fully-qualified name
+        if (dot != -1 && exists(compiler, written)) return written;
+        // Static imports and inherited member classes can also bring names into scope
+        if (staticOnDemand || dot == -1) return AMBIGUOUS;
+        return null;
+    }
+
+    private static boolean exists(CompilerProvider compiler, String className) {
+        var simpleName = lastSegment(className);
+        for (var c : compiler.publicTopLevelTypes(simpleName, 1000)) {
+            if (c.equals(className)) return true;
+        }
+        return compiler.findTypeDeclaration(className) != CompilerProvider.NOT_FOUND;
+    }
+
+    /** Ask javac what each supertype of type refers to. */
+    private static Map<String, String> attribute(CompilerProvider compiler, Type type) {
+        LOG.info("...compile " + type.file.getFileName() + " to resolve the supertypes of " + type.className);
+        var resolved = new HashMap<String, String>();
+        try (var task = compiler.compile(type.file)) {
+            var element = task.task.getElements().getTypeElement(type.className);
+            if (element == null) return resolved;
+            var supertypes = new ArrayList<TypeElement>();
+            var superclass = task.task.getTypes().asElement(element.getSuperclass());
+            if (superclass instanceof TypeElement) {
+                supertypes.add((TypeElement) superclass);
+            }
+            for (var i : element.getInterfaces()) {
+                var e = task.task.getTypes().asElement(i);
+                if (e instanceof TypeElement) {
+                    supertypes.add((TypeElement) e);
+                }
+            }
+            for (var written : type.supertypes) {
+                for (var s : supertypes) {
+                    var name = s.getQualifiedName().toString();
+                    if (name.equals(written) || name.endsWith("." + written)) {
+                        resolved.put(written, name);
+                        break;
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -0,0 +1,147 @@
+package org.javacs;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * WorkspaceCompilers keeps one JavaCompilerService for each workspace root, each with its own inferred class path,
+ * and routes each file to the compiler of the root that contains it. Every compiler reads sources from all roots
+ * through FileStore, so references from one root to another still resolve.
+ *
+ * <p>Compilers are created the first time they are used. A compiler that hasn't been used for a while can be evicted
+ * to free memory, and will be created again the next time a file in its root needs it.
+ */
+class WorkspaceCompilers {
+    private final Function<Path, JavaCompilerService> create;
+
+    /** Workspace roots, in the order the client listed them */
+    private final List<Path> roots = new ArrayList<>();
+
+    private final Map<Path, JavaCompilerService> compilers = new HashMap<>();
+
+    private final Map<Path, Instant> lastUsed = new HashMap<>();
+
+    /** Counts changes to the configuration of any compiler, so caches of diagnostics know when to start over */
+    private int generation;
+
+    WorkspaceCompilers(Function<Path, JavaCompilerService> create) {
+        this.create = create;
+    }
+
+    void setRoots(Collection<Path> newRoots) {
+        var normalized = new LinkedHashSet<Path>();
+        for (var root : newRoots) {
+            normalized.add(root.toAbsolutePath().normalize());
+        }
+        roots.clear();
+        roots.addAll(normalized);
+        compilers.keySet().retainAll(normalized);
+        lastUsed.keySet().retainAll(normalized);
+        generation++;
+    }
+
+    List<Path> roots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /** The innermost root that contains file, or the first root if none does */
+    Path rootOf(Path file) {
+        if (roots.isEmpty()) {
+            throw new IllegalStateException("No workspace roots");
+        }
+        var absolute = file.toAbsolutePath().normalize();
+        Path innermost = null;
+        for (var root : roots) {
+            if (!absolute.startsWith(root)) continue;
+            if (innermost == null || root.getNameCount() > innermost.getNameCount()) {
+                innermost = root;
+            }
+        }
+        return innermost != null ? innermost : roots.get(0);
+    }
+
+    JavaCompilerService forFile(Path file) {
+        return get(rootOf(file));
+    }
+
+    JavaCompilerService get(Path root) {
+        lastUsed.put(root, Instant.now());
+        var compiler = compilers.get(root);
+        if (compiler == null) {
+            compiler = create.apply(root);
+            compilers.put(root, compiler);
+        }
+        return compiler;
+    }
+
+    /** The compiler of every root, creating the ones that don't exist yet */
+    List<JavaCompilerService> all() {
+        var all = new ArrayList<JavaCompilerService>();
+        for (var root : roots) {
+            all.add(get(root));
+        }
+        return all;
+    }
+
+    /** The compilers that exist right now, without creating any */
+    Collection<JavaCompilerService> existing() {
+        return Collections.unmodifiableCollection(compilers.values());
+    }
+
+    /** Group files by the compiler of the root that contains them */
+    Map<JavaCompilerService, List<Path>> partition(Collection<Path> files) {
+        var groups = new LinkedHashMap<JavaCompilerService, List<Path>>();
+        for (var f : files) {
+            groups.computeIfAbsent(forFile(f), __ -> new ArrayList<>()).add(f);
+        }
+        return groups;
+    }
+
+    /** The build configuration of the root that contains file changed, so its compiler needs to be created again. */
+    void invalidate(Path file) {
+        var root = rootOf(file);
+        if (compilers.remove(root) != null) {
+            LOG.info("Compiler of " + root + " needs to be re-created because " + file + " has changed");
+        }
+        generation++;
+    }
+
+    void invalidateAll() {
+        compilers.clear();
+        generation++;
+    }
+
+    int generation() {
+        return generation;
+    }
+
+    /**
+     * Drop the compilers that haven't been used for idle, except the one that was used last. Evicting a compiler
+     * doesn't change the configuration, so it doesn't change the generation. Return the number of compilers evicted.
+     */
+    int evictIdle(Duration idle) {
+        var cutoff = Instant.now().minus(idle);
+        Path newest = null;
+        for (var root : compilers.keySet()) {
+            if (newest == null || lastUsed.get(root).isAfter(lastUsed.get(newest))) {
+                newest = root;
+            }
+        }
+        var evicted = 0;
+        var it = compilers.keySet().iterator();
+        while (it.hasNext()) {
+            var root = it.next();
+            if (root.equals(newest) || lastUsed.get(root).isAfter(cutoff)) continue;
+            LOG.info("Evict idle compiler of " + root);
+            it.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -0,0 +1,116 @@
+package org.javacs;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * WorkspaceDiagnostics keeps track of which closed files have up-to-date diagnostics, so the server can check the rest
+ * of the workspace in the background. A file is out of date if it changed since we last published its diagnostics, if
+ * a file it mentions by name was created, deleted or changed on disk since then, or if the signature of a file it uses
+ * changed.
+ *
+ * <p>Files that may be out of date wait in a queue, so finding the next batch doesn't visit every file in the
+ * workspace. The queue starts with every file, and again after clear().
+ */
+class WorkspaceDiagnostics {
+    /**
+     * Keep batches small, because the server only looks for new requests between batches, so a request waits for the
+     * batch we're in the middle of checking.
+     */
+    static final int MAX_BATCH_FILES = 10;
+
+    /** checked[file] is the modified time of file when we last published its diagnostics */
+    private final Map<Path, Instant> checked = new HashMap<>();
+
+    /** Simple names of the classes in files that changed, whose dependents we haven't invalidated yet */
+    private final Set<String> changedClasses = new LinkedHashSet<>();
+
+    /** Files that may be out of date, in path order */
+    private final TreeSet<Path> queue = new TreeSet<>();
+
+    /** If true, every file in the workspace needs to be added to queue */
+    private boolean queueEverything = true;
+
+    /** file, and files that mention the classes in file, need to be checked again. */
+    void changed(Path file) {
+        var name = file.getFileName().toString();
+        if (!name.endsWith(".java")) return;
+        changedClasses.add(name.substring(0, name.length() - ".java".length()));
+        queue.add(file);
+    }
+
+    /** Check file again, for example because we cleared its diagnostics when it was closed. */
+    void forget(Path file) {
+        checked.remove(file);
+        queue.add(file);
+    }
+
+    /** Check every file again, for example because the class path changed. */
+    void clear() {
+        checked.clear();
+        changedClasses.clear();
+        queue.clear();
+        queueEverything = true;
+    }
+
+    /**
+     * The next closed files that need to be checked, all from the same directory, or an empty list if every file is up
+     * to date. Files are visited in path order, so the workspace is checked one package at a time.
+     */
+    List<Path> nextBatch() {
+        if (queueEverything) {
+            queue.addAll(FileStore.all());
+            queueEverything = false;
+        }
+        invalidateDependents();
+        // Drop files at the front of the queue that don't need to be checked
+        while (!queue.isEmpty() && !needsCheck(queue.first())) {
+            queue.pollFirst();
+        }
+        if (queue.isEmpty()) return List.of();
+        var dir = queue.first().getParent();
+        var batch = new ArrayList<Path>();
+        // Files under dir come right after each other in path order, but files in subdirectories are mixed in
+        for (var file : queue.tailSet(queue.first())) {
+            if (!file.startsWith(dir)) break;
+            if (!file.getParent().equals(dir) || !needsCheck(file)) continue;
+            batch.add(file);
+            if (batch.size() == MAX_BATCH_FILES) break;
+        }
+        return batch;
+    }
+
+    /** Remember that we published diagnostics for the current version of files. */
+    void published(Collection<Path> files) {
+        for (var f : files) {
+            checked.put(f, FileStore.modified(f));
+            queue.remove(f);
+        }
+    }
+
+    private boolean needsCheck(Path file) {
+        return FileStore.contains(file) && !FileStore.activeDocuments().contains(file) && !isUpToDate(file);
+    }
+
+    boolean isUpToDate(Path file) {
+        var modified = checked.get(file);
+        return modified != null && modified.equals(FileStore.modified(file));
+    }
+
+    private void invalidateDependents() {
+        if (changedClasses.isEmpty()) return;
+        var it = checked.keySet().iterator();
+        while (it.hasNext()) {
+            var file = it.next();
+            for (var name : changedClasses) {
+                if (StringSearch.containsWord(file, name)) {
+                    it.remove();
+                    queue.add(file);
+                    break;
+                }
+            }
+        }
+        changedClasses.clear();
+    }
+}
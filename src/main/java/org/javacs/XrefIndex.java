@@ -0,0 +1,514 @@
+package org.javacs;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.*;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import org.javacs.lsp.Location;
+import org.javacs.lsp.Position;
+import org.javacs.lsp.Range;
+
+/**
+ * XrefIndex remembers, for each version of each workspace file, where it refers to each class, method and field. The
+ * index is a by-product of compiling files for diagnostics, so find-references and rename only need to compile the
+ * files that changed since they were last compiled.
+ *
+ * <p>Symbols are named like the qualified name of a class, `com.example.Foo`, plus `#name` for a field and
+ * `#name(erased,parameter,types)` for a method or constructor, whose name is `<init>`. Each file version is written to
+ * a cache directory under a name that includes its modification time.
+ *
+ * <p>What a reference resolves to also depends on the workspace files that declare the classes it uses, so each entry
+ * remembers those files, and an entry is stale if any of them changed after it was indexed.
+ *
+ * <p>The index also remembers the calls in each file: which method, or which class for calls in initializers, calls
+ * which method or constructor. Call hierarchy inverts these edges to find the callers of a method.
+ */
+public class XrefIndex {
+    /** A call from a method, or from the initializers of a class, to a method or constructor */
+    public static class Call {
+        public final String caller, callee;
+        public final Range range;
+
+        Call(String caller, String callee, Range range) {
+            this.caller = caller;
+            this.callee = callee;
+            this.range = range;
+        }
+    }
+
+    private static class Entry {
+        /** The modification time of the file, and when we started indexing it */
+        final Instant modified, indexed;
+        /** refs[symbol] is the range of each reference to symbol */
+        final Map<String, List<Range>> refs;
+        final List<Call> calls;
+        /** The other workspace files that declare the classes this file refers to */
+        final Set<Path> dependencies;
+
+        Entry(
+                Instant modified,
+                Instant indexed,
+                Map<String, List<Range>> refs,
+                List<Call> calls,
+                Set<Path> dependencies) {
+            this.modified = modified;
+            this.indexed = indexed;
+            this.refs = refs;
+            this.calls = calls;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /** Incremented when the format of the files in cacheDir() changes, so we don't read files in the old format */
+    private static final int FORMAT = 3;
+
+    private static final Map<Path, Entry> entries = new HashMap<>();
+
+    /** callers[callee] is the files in entries that call callee */
+    private static final Map<String, Set<Path>> callers = new HashMap<>();
+
+    static Path cacheDir() {
+        var dir = System.getProperty("javacs.xrefCache");
+        if (dir != null) return Paths.get(dir);
+        return Paths.get(System.getProperty("java.io.tmpdir"), "javacs-xref");
+    }
+
+    /** The name of element in the index, or null if element is local to a method and isn't indexed. */
+    public static String symbol(JavacTask task, Element element) {
+        if (element instanceof TypeElement) {
+            var name = ((TypeElement) element).getQualifiedName().toString();
+            // Anonymous classes have no name
+            return name.isEmpty() ? null : name;
+        }
+        var parent = element.getEnclosingElement();
+        if (!(parent instanceof TypeElement)) return null;
+        var className = ((TypeElement) parent).getQualifiedName();
+        // Members of anonymous classes can't be referred to from other files
+        if (className.length() == 0) return null;
+        if (element instanceof ExecutableElement) {
+            var method = (ExecutableElement) element;
+            var types = new StringJoiner(",");
+            for (var p : method.getParameters()) {
+                types.add(task.getTypes().erasure(p.asType()).toString());
+            }
+            return className + "#" + method.getSimpleName() + "(" + types + ")";
+        }
+        if (element instanceof VariableElement) {
+            return className + "#" + element.getSimpleName();
+        }
+        return null;
+    }
+
+    public static String methodSymbol(String className, String methodName, String[] erasedParameterTypes) {
+        return className + "#" + methodName + "(" + String.join(",", erasedParameterTypes) + ")";
+    }
+
+    public static String fieldSymbol(String className, String fieldName) {
+        return className + "#" + fieldName;
+    }
+
+    /**
+     * Index the roots of task. Files with errors are skipped, because their unresolved references would resolve
+     * once the files they use are fixed, without the files themselves changing.
+     */
+    public static synchronized void update(CompileTask task) {
+        var indexed = Instant.now();
+        var withErrors = new HashSet<URI>();
+        for (var d : task.diagnostics) {
+            if (d.getKind() == Diagnostic.Kind.ERROR && d.getSource() != null) {
+                withErrors.add(d.getSource().toUri());
+            }
+        }
+        for (var root : task.roots) {
+            var uri = root.getSourceFile().toUri();
+            if (withErrors.contains(uri) || !uri.getScheme().equals("file")) continue;
+            var file = Paths.get(uri);
+            var modified = FileStore.modified(file);
+            if (modified == null) continue;
+            var existing = entries.get(file);
+            if (existing != null && isCurrent(existing, modified)) continue;
+            var refs = new HashMap<String, List<Range>>();
+            var calls = new ArrayList<Call>();
+            var dependencies = new HashSet<Path>();
+            new IndexReferences(task, calls, dependencies).scan(root, refs);
+            dependencies.remove(file);
+            var entry = new Entry(modified, indexed, refs, calls, dependencies);
+            put(file, entry);
+            // Open files are often edited again before anyone asks, and their contents may not be on disk
+            if (!FileStore.activeDocuments().contains(file)) {
+                write(file, entry);
+            }
+        }
+    }
+
+    /** The references to symbol in the current version of file, or null if the current version isn't indexed. */
+    public static synchronized List<Location> references(Path file, String symbol) {
+        var entry = load(file);
+        if (entry == null) return null;
+        var locations = new ArrayList<Location>();
+        for (var range : entry.refs.getOrDefault(symbol, List.of())) {
+            locations.add(new Location(file.toUri(), range));
+        }
+        return locations;
+    }
+
+    /** True if the current version of file is indexed and has no references to any of symbols. */
+    public static synchronized boolean excludes(Path file, Collection<String> symbols) {
+        var entry = load(file);
+        if (entry == null) return false;
+        for (var s : symbols) {
+            if (entry.refs.containsKey(s)) return false;
+        }
+        return true;
+    }
+
+    /** The calls in the current version of file, or null if the current version isn't indexed. */
+    public static synchronized List<Call> calls(Path file) {
+        var entry = load(file);
+        if (entry == null) return null;
+        return entry.calls;
+    }
+
+    /** The calls in root, which was compiled by task, whether or not root is indexed. */
+    public static List<Call> calls(CompileTask task, CompilationUnitTree root) {
+        var calls = new ArrayList<Call>();
+        new IndexReferences(task, calls, new HashSet<>()).scan(root, new HashMap<>());
+        return calls;
+    }
+
+    /**
+     * The calls to callee in the workspace files that are indexed. Files that aren't indexed, but might call callee
+     * because they contain its name, are added to unindexed.
+     */
+    public static List<Call> callsTo(String callee, Collection<Path> unindexed) {
+        var name = callee.substring(callee.indexOf('#') + 1, callee.indexOf('('));
+        if (name.equals("<init>")) {
+            var className = callee.substring(0, callee.indexOf('#'));
+            name = className.substring(className.lastIndexOf('.') + 1);
+        }
+        var found = new ArrayList<Call>();
+        var notInMemory = new ArrayList<Path>();
+        synchronized (XrefIndex.class) {
+            for (var file : FileStore.all()) {
+                var entry = entries.get(file);
+                if (entry == null || !isCurrent(entry, FileStore.modified(file))) notInMemory.add(file);
+            }
+            for (var file : callers.getOrDefault(callee, Set.of())) {
+                var entry = entries.get(file);
+                if (entry == null || !isCurrent(entry, FileStore.modified(file))) continue;
+                addCallsTo(callee, entry, found);
+            }
+        }
+        // Read the other files from disk, or search them, without holding the lock
+        for (var file : notInMemory) {
+            var modified = FileStore.modified(file);
+            var entry = modified == null ? null : read(file, modified);
+            if (entry == null || !isCurrent(entry, modified)) {
+                if (StringSearch.containsWord(file, name)) unindexed.add(file);
+                continue;
+            }
+            synchronized (XrefIndex.class) {
+                put(file, entry);
+            }
+            addCallsTo(callee, entry, found);
+        }
+        return found;
+    }
+
+    private static void addCallsTo(String callee, Entry entry, List<Call> found) {
+        for (var c : entry.calls) {
+            if (c.callee.equals(callee)) found.add(c);
+        }
+    }
+
+    /** Forget what we know about file, for example because a file it uses changed signature. */
+    public static synchronized void forget(Path file) {
+        remove(file);
+        try {
+            Files.deleteIfExists(indexFile(file, FileStore.modified(file)));
+        } catch (IOException e) {
+            LOG.warning("Couldn't delete index of " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * file changed on disk, so forget it and the files in memory that depend on it. Entries on disk that depend on it
+     * are found to be stale when they're read.
+     */
+    public static synchronized void changed(Path file) {
+        var dependents = new ArrayList<Path>();
+        for (var e : entries.entrySet()) {
+            if (e.getValue().dependencies.contains(file)) dependents.add(e.getKey());
+        }
+        forget(file);
+        for (var d : dependents) {
+            forget(d);
+        }
+    }
+
+    /** Drop the entries in memory; the entries on disk are loaded again when they're needed. */
+    public static synchronized void clearMemory() {
+        entries.clear();
+        callers.clear();
+    }
+
+    private static Entry load(Path file) {
+        var modified = FileStore.modified(file);
+        if (modified == null) return null;
+        var entry = entries.get(file);
+        if (entry != null && isCurrent(entry, modified)) return entry;
+        entry = read(file, modified);
+        if (entry == null || !isCurrent(entry, modified)) return null;
+        put(file, entry);
+        return entry;
+    }
+
+    /** Is entry the index of the version of its file modified at modified, and of the files it depends on? */
+    private static boolean isCurrent(Entry entry, Instant modified) {
+        if (!entry.modified.equals(modified)) return false;
+        for (var d : entry.dependencies) {
+            var changed = FileStore.modified(d);
+            if (changed == null || changed.isAfter(entry.indexed)) return false;
+        }
+        return true;
+    }
+
+    private static void put(Path file, Entry entry) {
+        remove(file);
+        entries.put(file, entry);
+        for (var c : entry.calls) {
+            callers.computeIfAbsent(c.callee, __ -> new HashSet<>()).add(file);
+        }
+    }
+
+    private static void remove(Path file) {
+        var entry = entries.remove(file);
+        if (entry == null) return;
+        for (var c : entry.calls) {
+            var files = callers.get(c.callee);
+            if (files == null) continue;
+            files.remove(file);
+            if (files.isEmpty()) callers.remove(c.callee);
+        }
+    }
+
+    private static Path indexFile(Path file, Instant modified) {
+        var dir = file.getParent().toAbsolutePath().normalize().toString();
+        var bucket = String.format("%08x", dir.hashCode());
+        var version = modified == null ? 0 : modified.toEpochMilli();
+        return cacheDir().resolve("v" + FORMAT).resolve(bucket).resolve(file.getFileName() + "-" + version + ".xref");
+    }
+
+    /**
+     * The first line is when the file was indexed. Then each line is a symbol, followed by its ranges, separated by
+     * tabs. Then each call is a line that starts with >, followed by the caller, the callee and the range of the call,
+     * separated by tabs. Then each dependency is a line that starts with <, followed by its path.
+     */
+    private static void write(Path file, Entry entry) {
+        var index = indexFile(file, entry.modified);
+        var lines = new StringBuilder();
+        lines.append(entry.indexed).append('\n');
+        for (var symbol : entry.refs.keySet()) {
+            lines.append(symbol);
+            for (var r : entry.refs.get(symbol)) {
+                lines.append('\t');
+                appendRange(lines, r);
+            }
+            lines.append('\n');
+        }
+        for (var c : entry.calls) {
+            lines.append('>').append(c.caller).append('\t').append(c.callee).append('\t');
+            appendRange(lines, c.range);
+            lines.append('\n');
+        }
+        for (var d : entry.dependencies) {
+            lines.append('<').append(d).append('\n');
+        }
+        try {
+            Files.createDirectories(index.getParent());
+            // Delete the indexes of older versions of file
+            var prefix = file.getFileName() + "-";
+            try (var old = Files.newDirectoryStream(index.getParent(), prefix + "*.xref")) {
+                for (var f : old) {
+                    Files.deleteIfExists(f);
+                }
+            }
+            var tmp = Files.createTempFile(index.getParent(), prefix, ".tmp");
+            Files.writeString(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warning("Couldn't write index of " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void appendRange(StringBuilder lines, Range r) {
+        lines.append(r.start.line)
+                .append(':')
+                .append(r.start.character)
+                .append('-')
+                .append(r.end.line)
+                .append(':')
+                .append(r.end.character);
+    }
+
+    private static Entry read(Path file, Instant modified) {
+        var index = indexFile(file, modified);
+        if (!Files.exists(index)) return null;
+        var refs = new HashMap<String, List<Range>>();
+        var calls = new ArrayList<Call>();
+        var dependencies = new HashSet<Path>();
+        Instant indexed;
+        try {
+            var lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+            indexed = Instant.parse(lines.get(0));
+            for (var line : lines.subList(1, lines.size())) {
+                if (line.startsWith("<")) {
+                    dependencies.add(Paths.get(line.substring(1)));
+                    continue;
+                }
+                var parts = line.split("\t");
+                if (line.startsWith(">")) {
+                    calls.add(new Call(parts[0].substring(1), parts[1], range(parts[2])));
+                    continue;
+                }
+                var ranges = new ArrayList<Range>();
+                for (var i = 1; i < parts.length; i++) {
+                    ranges.add(range(parts[i]));
+                }
+                refs.put(parts[0], ranges);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warning("Couldn't read " + index + ": " + e.getMessage());
+            return null;
+        }
+        return new Entry(modified, indexed, refs, calls, dependencies);
+    }
+
+    private static Range range(String startEnd) {
+        var dash = startEnd.indexOf('-');
+        return new Range(position(startEnd.substring(0, dash)), position(startEnd.substring(dash + 1)));
+    }
+
+    private static Position position(String lineColon) {
+        var colon = lineColon.indexOf(':');
+        var line = Integer.parseInt(lineColon.substring(0, colon));
+        var character = Integer.parseInt(lineColon.substring(colon + 1));
+        return new Position(line, character);
+    }
+
+    /**
+     * Finds the same references as navigation.FindReferences, but to every symbol at once, and the calls among them
+     */
+    private static class IndexReferences extends TreePathScanner<Void, Map<String, List<Range>>> {
+        final CompileTask task;
+        final Trees trees;
+        final List<Call> calls;
+        /** The files that declare the top-level classes we found references to */
+        final Set<Path> dependencies;
+        final Set<Element> topLevelClasses = new HashSet<>();
+        /** The method or class that contains the code we're scanning, innermost first */
+        final Deque<String> callers = new ArrayDeque<>();
+
+        IndexReferences(CompileTask task, List<Call> calls, Set<Path> dependencies) {
+            this.task = task;
+            this.trees = Trees.instance(task.task);
+            this.calls = calls;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public Void visitClass(ClassTree t, Map<String, List<Range>> refs) {
+            // Code in anonymous classes belongs to the method that creates them
+            return inside(trees.getElement(getCurrentPath()), () -> super.visitClass(t, refs));
+        }
+
+        @Override
+        public Void visitMethod(MethodTree t, Map<String, List<Range>> refs) {
+            return inside(trees.getElement(getCurrentPath()), () -> super.visitMethod(t, refs));
+        }
+
+        private Void inside(Element element, Supplier<Void> scan) {
+            var caller = element == null ? null : symbol(task.task, element);
+            if (caller == null) return scan.get();
+            callers.push(caller);
+            try {
+                return scan.get();
+            } finally {
+                callers.pop();
+            }
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierTree t, Map<String, List<Range>> refs) {
+            add(refs);
+            return super.visitIdentifier(t, refs);
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree t, Map<String, List<Range>> refs) {
+            add(refs);
+            return super.visitMemberSelect(t, refs);
+        }
+
+        @Override
+        public Void visitNewClass(NewClassTree t, Map<String, List<Range>> refs) {
+            add(refs);
+            return super.visitNewClass(t, refs);
+        }
+
+        @Override
+        public Void visitMemberReference(MemberReferenceTree t, Map<String, List<Range>> refs) {
+            add(refs);
+            return super.visitMemberReference(t, refs);
+        }
+
+        private void add(Map<String, List<Range>> refs) {
+            var path = getCurrentPath();
+            var element = trees.getElement(path);
+            if (element == null) return;
+            addDependency(element);
+            var symbol = symbol(task.task, element);
+            if (symbol == null) return;
+            var pos = trees.getSourcePositions();
+            // Skip elements without positions. This can happen, e.g. for var types.
+            if (pos.getStartPosition(path.getCompilationUnit(), path.getLeaf()) == Diagnostic.NOPOS
+                    || pos.getEndPosition(path.getCompilationUnit(), path.getLeaf()) == Diagnostic.NOPOS) {
+                return;
+            }
+            var range = FindHelper.location(task, path).range;
+            refs.computeIfAbsent(symbol, __ -> new ArrayList<>()).add(range);
+            if (element instanceof ExecutableElement && !callers.isEmpty()) {
+                calls.add(new Call(callers.peek(), symbol, range));
+            }
+        }
+
+        private void addDependency(Element element) {
+            var topLevel = element;
+            while (topLevel.getEnclosingElement() != null
+                    && topLevel.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+                topLevel = topLevel.getEnclosingElement();
+            }
+            // Classes that didn't resolve aren't declared anywhere
+            if (topLevel.getEnclosingElement() == null || !(topLevel instanceof TypeElement)) return;
+            if (topLevel.asType().getKind() == TypeKind.ERROR || !topLevelClasses.add(topLevel)) return;
+            var source = task.task.getElements().getFileObjectOf(topLevel);
+            if (source == null || !source.toUri().getScheme().equals("file")) return;
+            var file = Paths.get(source.toUri());
+            if (FileStore.contains(file)) dependencies.add(file);
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
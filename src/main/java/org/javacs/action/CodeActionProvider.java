@@ -61,20 +61,18 @@ public class CodeActionProvider {
         var classTree = new FindTypeDeclarationAt(task.task).scan(task.root(), cursor);
         if (classTree == null) return Map.of();
         var classPath = trees.getPath(task.root(), classTree);
-        var elements = task.task.getElements();
         var classElement = (TypeElement) trees.getElement(classPath);
-        for (var member : elements.getAllMembers(classElement)) {
-            if (member.getModifiers().contains(Modifier.FINAL)) continue;
-            if (member.getKind() != ElementKind.METHOD) continue;
-            var method = (ExecutableElement) member;
-            var methodSource = (TypeElement) member.getEnclosingElement();
-            if (methodSource.getQualifiedName().contentEquals("java.lang.Object")) continue;
-            if (methodSource.equals(classElement)) continue;
-            var ptr = new MethodPtr(task.task, method);
+        var className = classElement.getQualifiedName().toString();
+        for (var member : compiler.memberIndex().members(task.task, classElement, "")) {
+            if (member.isFinal) continue;
+            if (member.kind != ElementKind.METHOD) continue;
+            if (member.declaringClass.equals("java.lang.Object")) continue;
+            if (member.declaringClass.equals(className)) continue;
+            var erasedParameterTypes = member.erasedParameterTypes.toArray(new String[0]);
             var rewrite =
                     new OverrideInheritedMethod(
-                            ptr.className, ptr.methodName, ptr.erasedParameterTypes, file, (int) cursor);
-            var title = "Override '" + method.getSimpleName() + "' from " + ptr.className;
+                            member.declaringClass, member.name, erasedParameterTypes, file, (int) cursor);
+            var title = "Override '" + member.name + "' from " + member.declaringClass;
             actions.put(title, rewrite);
         }
         return actions;
@@ -168,7 +166,7 @@ public class CodeActionProvider {
             case "compiler.err.cant.resolve.location":
                 var simpleName = extractRange(task, d.range);
                 var allImports = new ArrayList<CodeAction>();
-                for (var qualifiedName : compiler.publicTopLevelTypes()) {
+                for (var qualifiedName : compiler.publicTopLevelTypes(simpleName.toString(), Integer.MAX_VALUE)) {
                     if (qualifiedName.endsWith("." + simpleName)) {
                         var title = "Import '" + qualifiedName + "'";
                         var addImport = new AddImport(file, qualifiedName);
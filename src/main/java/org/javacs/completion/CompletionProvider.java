@@ -20,6 +20,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
 import java.util.function.Predicate;
 import java.util.logging.Logger;
 import javax.lang.model.element.Element;
@@ -37,6 +38,7 @@ import org.javacs.CompilerProvider;
 import org.javacs.CompletionData;
 import org.javacs.FileStore;
 import org.javacs.JsonHelper;
+import org.javacs.MemberIndex;
 import org.javacs.ParseTask;
 import org.javacs.SourceFileObject;
 import org.javacs.StringSearch;
@@ -120,20 +122,64 @@ public class CompletionProvider {
         this.compiler = compiler;
     }
 
+    /**
+     * The last completion of each compiler, which we can refine without recompiling while the user is typing the same
+     * identifier. Each workspace root has its own compiler, so one root doesn't refine the session of another.
+     */
+    private static final Map<CompilerProvider, CompletionSession> lastSessions = new WeakHashMap<>();
+
+    private static synchronized CompletionSession lastSession(CompilerProvider compiler) {
+        return lastSessions.get(compiler);
+    }
+
+    private static synchronized void setLastSession(CompilerProvider compiler, CompletionSession session) {
+        if (session == null) lastSessions.remove(compiler);
+        else lastSessions.put(compiler, session);
+    }
+
     public CompletionList complete(Path file, int line, int column) {
         LOG.info("Complete at " + file.getFileName() + "(" + line + "," + column + ")...");
         var started = Instant.now();
+        var text = FileStore.contents(file);
+        var offset = FileStore.offset(text, line, column);
+        var lastSession = lastSession(compiler);
+        if (lastSession != null && lastSession.canRefine(file, text, offset)) {
+            var list = refine(lastSession, text, offset);
+            logCompletionTiming(started, list.items, list.isIncomplete);
+            return list;
+        }
+        setLastSession(compiler, null);
         var task = compiler.parse(file);
         var cursor = task.root.getLineMap().getPosition(line, column);
+        var session = new CompletionSession(file, text, (int) cursor);
         var contents = new PruneMethodBodies(task.task).scan(task.root, cursor);
         var endOfLine = endOfLine(contents, (int) cursor);
         contents.insert(endOfLine, ';');
-        var list = compileAndComplete(file, contents.toString(), cursor);
+        var list = compileAndComplete(session, file, contents.toString(), cursor);
+        var withoutSnippets = list.items.size();
         addTopLevelSnippets(task, list);
+        session.snippets = new ArrayList<>(list.items.subList(withoutSnippets, list.items.size()));
+        setLastSession(compiler, session);
         logCompletionTiming(started, list.items, list.isIncomplete);
         return list;
     }
 
+    private CompletionList refine(CompletionSession session, String contents, int cursor) {
+        var partial = contents.substring(session.start, cursor);
+        LOG.info("...refine completions of `" + session.partial + "` to `" + partial + "` without compiling");
+        CompletionList list;
+        if (session.kind == Tree.Kind.IMPORT) {
+            list = completeImport(qualifiedPartialIdentifier(contents, cursor));
+        } else {
+            list = new CompletionList(false, session.refine(partial));
+            if (session.kind == Tree.Kind.IDENTIFIER && isClassNamePartial(partial)) {
+                addClassNames(session.packageName, partial, list);
+            }
+        }
+        list.items.addAll(session.snippets);
+        return list;
+    }
+
     private int endOfLine(CharSequence contents, int cursor) {
         while (cursor < contents.length()) {
             var c = contents.charAt(cursor);
@@ -143,7 +189,7 @@ public class CompletionProvider {
         return cursor;
     }
 
-    private CompletionList compileAndComplete(Path file, String contents, long cursor) {
+    private CompletionList compileAndComplete(CompletionSession session, Path file, String contents, long cursor) {
         var started = Instant.now();
         var source = new SourceFileObject(file, contents, SourceFileObject.now());
         var partial = partialIdentifier(contents, (int) cursor);
@@ -151,21 +197,24 @@ public class CompletionProvider {
         try (var task = compiler.compile(List.of(source))) {
             LOG.info("...compiled in " + Duration.between(started, Instant.now()).toMillis() + "ms");
             var path = new FindCompletionsAt(task.task).scan(task.root(), cursor);
-            switch (path.getLeaf().getKind()) {
+            var kind = path.getLeaf().getKind();
+            switch (kind) {
                 case IDENTIFIER:
-                    return completeIdentifier(task, path, partial, endsWithParen);
+                    return completeIdentifier(session, task, path, partial, endsWithParen);
                 case MEMBER_SELECT:
-                    return completeMemberSelect(task, path, partial, endsWithParen);
+                    return session.remember(kind, completeMemberSelect(task, path, partial, endsWithParen));
                 case MEMBER_REFERENCE:
-                    return completeMemberReference(task, path, partial);
+                    return session.remember(kind, completeMemberReference(task, path, partial));
                 case SWITCH:
-                    return completeSwitchConstant(task, path, partial);
+                    return session.remember(kind, completeSwitchConstant(task, path, partial));
                 case IMPORT:
+                    // Import completions don't need the compiler, so we just recompute them
+                    session.remember(kind, new CompletionList());
                     return completeImport(qualifiedPartialIdentifier(contents, (int) cursor));
                 default:
                     var list = new CompletionList();
                     addKeywords(path, partial, list);
-                    return list;
+                    return session.remember(kind, list);
             }
         }
     }
@@ -229,18 +278,26 @@ public class CompletionProvider {
         return c == '.' || Character.isJavaIdentifierPart(c);
     }
 
-    private CompletionList completeIdentifier(CompileTask task, TreePath path, String partial, boolean endsWithParen) {
+    private CompletionList completeIdentifier(
+            CompletionSession session, CompileTask task, TreePath path, String partial, boolean endsWithParen) {
         LOG.info("...complete identifiers");
         var list = new CompletionList();
         list.items = completeUsingScope(task, path, partial, endsWithParen);
         addStaticImports(task, path.getCompilationUnit(), partial, endsWithParen, list);
-        if (!list.isIncomplete && partial.length() > 0 && Character.isUpperCase(partial.charAt(0))) {
-            addClassNames(path.getCompilationUnit(), partial, list);
-        }
         addKeywords(path, partial, list);
+        // Class names don't need the compiler, so the session only remembers the items above
+        session.packageName = Objects.toString(path.getCompilationUnit().getPackageName(), "");
+        session.remember(path.getLeaf().getKind(), list);
+        if (!list.isIncomplete && isClassNamePartial(partial)) {
+            addClassNames(session.packageName, partial, list);
+        }
         return list;
     }
 
+    private boolean isClassNamePartial(String partial) {
+        return partial.length() > 0 && Character.isUpperCase(partial.charAt(0));
+    }
+
     private void addKeywords(TreePath path, String partial, CompletionList list) {
         var level = findKeywordLevel(path);
         String[] keywords = {};
@@ -332,17 +389,15 @@ public class CompletionProvider {
         return staticImport.contentEquals("*") || staticImport.contentEquals(member.getSimpleName());
     }
 
-    private void addClassNames(CompilationUnitTree root, String partial, CompletionList list) {
-        var packageName = Objects.toString(root.getPackageName(), "");
+    private void addClassNames(String packageName, String partial, CompletionList list) {
         var uniques = new HashSet<String>();
         var previousSize = list.items.size();
         for (var className : compiler.packagePrivateTopLevelTypes(packageName)) {
-            if (!StringSearch.matchesPartialName(className, partial)) continue;
+            if (!StringSearch.matchesPartialName(simpleName(className), partial)) continue;
             list.items.add(classItem(className));
             uniques.add(className);
         }
-        for (var className : compiler.publicTopLevelTypes()) {
-            if (!StringSearch.matchesPartialName(simpleName(className), partial)) continue;
+        for (var className : compiler.publicTopLevelTypes(partial, MAX_COMPLETION_ITEMS + 1 + uniques.size())) {
             if (uniques.contains(className)) continue;
             if (list.items.size() > MAX_COMPLETION_ITEMS) {
                 list.isIncomplete = true;
@@ -399,23 +454,22 @@ public class CompletionProvider {
 
     private CompletionList completeDeclaredTypeMemberSelect(
             CompileTask task, Scope scope, DeclaredType type, boolean isStatic, String partial, boolean endsWithParen) {
-        var trees = Trees.instance(task.task);
         var typeElement = (TypeElement) type.asElement();
+        var access = new MemberAccess(task, scope, type);
         var list = new ArrayList<CompletionItem>();
-        var methods = new HashMap<String, List<ExecutableElement>>();
-        for (var member : task.task.getElements().getAllMembers(typeElement)) {
-            if (member.getKind() == ElementKind.CONSTRUCTOR) continue;
-            if (!StringSearch.matchesPartialName(member.getSimpleName(), partial)) continue;
-            if (!trees.isAccessible(scope, member, type)) continue;
-            if (isStatic != member.getModifiers().contains(Modifier.STATIC)) continue;
-            if (member.getKind() == ElementKind.METHOD) {
-                putMethod((ExecutableElement) member, methods);
+        var methods = new HashMap<String, List<MemberIndex.Member>>();
+        for (var member : compiler.memberIndex().members(task.task, typeElement, partial)) {
+            if (member.kind == ElementKind.CONSTRUCTOR) continue;
+            if (isStatic != member.isStatic) continue;
+            if (!access.isAccessible(member)) continue;
+            if (member.kind == ElementKind.METHOD) {
+                putMethod(member, methods);
             } else {
-                list.add(item(task, member));
+                list.add(item(member));
             }
         }
         for (var overloads : methods.values()) {
-            list.add(method(task, overloads, !endsWithParen));
+            list.add(method(overloads, !endsWithParen));
         }
         if (isStatic) {
             list.add(keyword("class"));
@@ -492,23 +546,18 @@ public class CompletionProvider {
 
     private CompletionList completeDeclaredTypeMemberReference(
             CompileTask task, Scope scope, DeclaredType type, boolean isStatic, String partial) {
-        var trees = Trees.instance(task.task);
         var typeElement = (TypeElement) type.asElement();
+        var access = new MemberAccess(task, scope, type);
         var list = new ArrayList<CompletionItem>();
-        var methods = new HashMap<String, List<ExecutableElement>>();
-        for (var member : task.task.getElements().getAllMembers(typeElement)) {
-            if (!StringSearch.matchesPartialName(member.getSimpleName(), partial)) continue;
-            if (member.getKind() != ElementKind.METHOD) continue;
-            if (!trees.isAccessible(scope, member, type)) continue;
-            if (!isStatic && member.getModifiers().contains(Modifier.STATIC)) continue;
-            if (member.getKind() == ElementKind.METHOD) {
-                putMethod((ExecutableElement) member, methods);
-            } else {
-                list.add(item(task, member));
-            }
+        var methods = new HashMap<String, List<MemberIndex.Member>>();
+        for (var member : compiler.memberIndex().members(task.task, typeElement, partial)) {
+            if (member.kind != ElementKind.METHOD) continue;
+            if (!isStatic && member.isStatic) continue;
+            if (!access.isAccessible(member)) continue;
+            putMethod(member, methods);
         }
         for (var overloads : methods.values()) {
-            list.add(method(task, overloads, false));
+            list.add(method(overloads, false));
         }
         if (isStatic) {
             list.add(keyword("new"));
@@ -518,6 +567,33 @@ public class CompletionProvider {
 
     private static final CompletionList EMPTY = new CompletionList(false, List.of());
 
+    /**
+     * Completion lists members from their summaries in MemberIndex. Public members are accessible wherever their type
+     * is, so only the other members are resolved to elements to ask javac.
+     */
+    private static class MemberAccess {
+        private final Trees trees;
+        private final Scope scope;
+        private final DeclaredType type;
+        private final boolean typeIsAccessible;
+        private final MemberIndex.Resolver resolver;
+
+        MemberAccess(CompileTask task, Scope scope, DeclaredType type) {
+            var typeElement = (TypeElement) type.asElement();
+            this.trees = Trees.instance(task.task);
+            this.scope = scope;
+            this.type = type;
+            this.typeIsAccessible = trees.isAccessible(scope, typeElement);
+            this.resolver = new MemberIndex.Resolver(task.task, typeElement);
+        }
+
+        boolean isAccessible(MemberIndex.Member member) {
+            if (member.isPublic) return typeIsAccessible;
+            var element = resolver.resolve(member);
+            return element != null && trees.isAccessible(scope, element, type);
+        }
+    }
+
     private void putMethod(ExecutableElement method, Map<String, List<ExecutableElement>> methods) {
         var name = method.getSimpleName().toString();
         if (!methods.containsKey(name)) {
@@ -526,6 +602,10 @@ public class CompletionProvider {
         methods.get(name).add(method);
     }
 
+    private void putMethod(MemberIndex.Member method, Map<String, List<MemberIndex.Member>> methods) {
+        methods.computeIfAbsent(method.name, __ -> new ArrayList<>()).add(method);
+    }
+
     private CompletionList completeSwitchConstant(CompileTask task, TreePath path, String partial) {
         var switchTree = (SwitchTree) path.getLeaf();
         path = new TreePath(path, switchTree.getExpression());
@@ -537,36 +617,30 @@ public class CompletionProvider {
         var declared = (DeclaredType) type;
         var element = (TypeElement) declared.asElement();
         var list = new ArrayList<CompletionItem>();
-        for (var member : task.task.getElements().getAllMembers(element)) {
-            if (member.getKind() != ElementKind.ENUM_CONSTANT) continue;
-            if (!StringSearch.matchesPartialName(member.getSimpleName(), partial)) continue;
-            list.add(item(task, member));
+        for (var member : compiler.memberIndex().members(task.task, element, partial)) {
+            if (member.kind != ElementKind.ENUM_CONSTANT) continue;
+            list.add(item(member));
         }
         return new CompletionList(false, list);
     }
 
     private CompletionList completeImport(String path) {
         LOG.info("...complete import");
-        var names = new HashSet<String>();
         var list = new CompletionList();
-        for (var className : compiler.publicTopLevelTypes()) {
-            if (className.startsWith(path)) {
-                var start = path.lastIndexOf('.');
-                var end = className.indexOf('.', path.length());
-                if (end == -1) end = className.length();
-                var segment = className.substring(start + 1, end);
-                if (names.contains(segment)) continue;
-                names.add(segment);
-                var isClass = end == path.length();
-                if (isClass) {
-                    list.items.add(classItem(className));
-                } else {
-                    list.items.add(packageItem(segment));
-                }
-                if (list.items.size() > MAX_COMPLETION_ITEMS) {
-                    list.isIncomplete = true;
-                    return list;
-                }
+        for (var className : compiler.publicTopLevelTypesBySegment(path, MAX_COMPLETION_ITEMS + 1)) {
+            var start = path.lastIndexOf('.');
+            var end = className.indexOf('.', path.length());
+            if (end == -1) end = className.length();
+            var segment = className.substring(start + 1, end);
+            var isClass = end == path.length();
+            if (isClass) {
+                list.items.add(classItem(className));
+            } else {
+                list.items.add(packageItem(segment));
+            }
+            if (list.items.size() > MAX_COMPLETION_ITEMS) {
+                list.isIncomplete = true;
+                return list;
             }
         }
         return list;
@@ -610,6 +684,43 @@ public class CompletionProvider {
         return i;
     }
 
+    private CompletionItem item(MemberIndex.Member member) {
+        if (member.kind == ElementKind.METHOD) throw new RuntimeException("method");
+        var i = new CompletionItem();
+        i.label = member.name;
+        i.kind = kind(member.kind);
+        i.detail = member.detail;
+        i.data = JsonHelper.GSON.toJsonTree(data(member, 1));
+        return i;
+    }
+
+    private CompletionItem method(List<MemberIndex.Member> overloads, boolean addParens) {
+        var first = overloads.get(0);
+        var i = new CompletionItem();
+        i.label = first.name;
+        i.kind = CompletionItemKind.Method;
+        i.detail = first.detail;
+        i.data = JsonHelper.GSON.toJsonTree(data(first, overloads.size()));
+        if (addParens) {
+            addParens(i, first.name, overloads.size() == 1 && first.erasedParameterTypes.isEmpty());
+        }
+        return i;
+    }
+
+    private void addParens(CompletionItem i, String name, boolean noParameters) {
+        if (noParameters) {
+            i.insertText = name + "()$0";
+        } else {
+            i.insertText = name + "($0)";
+            // Activate signatureHelp
+            // Remove this if VSCode ever fixes https://github.com/microsoft/vscode/issues/78806
+            i.command = new Command();
+            i.command.command = "editor.action.triggerParameterHints";
+            i.command.title = "Trigger Parameter Hints";
+        }
+        i.insertTextFormat = 2; // Snippet
+    }
+
     private CompletionItem method(CompileTask task, List<ExecutableElement> overloads, boolean addParens) {
         var first = overloads.get(0);
         var i = new CompletionItem();
@@ -619,21 +730,37 @@ public class CompletionProvider {
         var data = data(task, first, overloads.size());
         i.data = JsonHelper.GSON.toJsonTree(data);
         if (addParens) {
-            if (overloads.size() == 1 && first.getParameters().isEmpty()) {
-                i.insertText = first.getSimpleName() + "()$0";
-            } else {
-                i.insertText = first.getSimpleName() + "($0)";
-                // Activate signatureHelp
-                // Remove this if VSCode ever fixes https://github.com/microsoft/vscode/issues/78806
-                i.command = new Command();
-                i.command.command = "editor.action.triggerParameterHints";
-                i.command.title = "Trigger Parameter Hints";
-            }
-            i.insertTextFormat = 2; // Snippet
+            addParens(i, first.getSimpleName().toString(), overloads.size() == 1 && first.getParameters().isEmpty());
         }
         return i;
     }
 
+    private CompletionData data(MemberIndex.Member member, int overloads) {
+        var data = new CompletionData();
+        switch (member.kind) {
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE:
+            case RECORD:
+                data.className = member.declaringClass + "." + member.name;
+                break;
+            case FIELD:
+                data.className = member.declaringClass;
+                data.memberName = member.name;
+                break;
+            case METHOD:
+                data.className = member.declaringClass;
+                data.memberName = member.name;
+                data.erasedParameterTypes = member.erasedParameterTypes.toArray(String[]::new);
+                data.plusOverloads = overloads - 1;
+                break;
+            default:
+                return null;
+        }
+        return data;
+    }
+
     private CompletionData data(CompileTask task, Element element, int overloads) {
         var data = new CompletionData();
         if (element instanceof TypeElement) {
@@ -663,7 +790,11 @@ public class CompletionProvider {
     }
 
     private Integer kind(Element e) {
-        switch (e.getKind()) {
+        return kind(e.getKind());
+    }
+
+    private Integer kind(ElementKind kind) {
+        switch (kind) {
             case ANNOTATION_TYPE:
                 return CompletionItemKind.Interface;
             case CLASS:
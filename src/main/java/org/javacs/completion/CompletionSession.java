@@ -0,0 +1,102 @@
+package org.javacs.completion;
+
+import com.sun.source.tree.Tree;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.javacs.FileStore;
+import org.javacs.StringSearch;
+import org.javacs.lsp.CompletionItem;
+import org.javacs.lsp.CompletionList;
+
+/**
+ * CompletionSession remembers the candidates of the last completion, so that when the user extends the identifier
+ * they are typing ("ge" to "get" to "getF") we can filter the candidates instead of re-parsing and recompiling.
+ *
+ * <p>A session is only valid while every edit lands inside the identifier: the text before the start of the
+ * identifier and the text after the cursor must be unchanged, no other open document may have been modified, and no
+ * file may have changed on disk.
+ *
+ * <p>CompletionProvider keeps the last session of each compiler. A session doesn't refer to its compiler, so the
+ * compiler can be collected when its workspace root goes away.
+ */
+class CompletionSession {
+    final Path file;
+    /** start is the offset of the first character of the identifier being completed */
+    final int start;
+    /** before and after are the contents of the file before start and after the cursor */
+    final String before, after;
+    /** partial is the identifier that was typed when the candidates were computed */
+    final String partial;
+    final Instant created = Instant.now();
+    /** externalChanges is FileStore.externalChanges() when the session was created */
+    final long externalChanges = FileStore.externalChanges();
+    /** kind is the kind of tree that was completed, or null if nothing has been remembered yet */
+    Tree.Kind kind;
+    /** packageName is the package of the file, for completing class names */
+    String packageName = "";
+    /** candidates are the items that came from the compiler, filtered by partial */
+    List<CompletionItem> candidates = List.of();
+    /** snippets are added regardless of partial */
+    List<CompletionItem> snippets = List.of();
+    /** complete is false if the candidates were truncated, in which case we can't filter them */
+    boolean complete;
+
+    CompletionSession(Path file, String contents, int cursor) {
+        this.file = file;
+        this.start = startOfIdentifier(contents, cursor);
+        this.before = contents.substring(0, start);
+        this.after = contents.substring(cursor);
+        this.partial = contents.substring(start, cursor);
+    }
+
+    static int startOfIdentifier(String contents, int cursor) {
+        var start = cursor;
+        while (start > 0 && Character.isJavaIdentifierPart(contents.charAt(start - 1))) {
+            start--;
+        }
+        return start;
+    }
+
+    /** Remember the candidates the compiler found for a tree of kind `kind`. */
+    CompletionList remember(Tree.Kind kind, CompletionList list) {
+        this.kind = kind;
+        this.candidates = new ArrayList<>(list.items);
+        this.complete = !list.isIncomplete && list != CompletionProvider.NOT_SUPPORTED;
+        return list;
+    }
+
+    /** Check if the user has only extended the identifier since this session was created. */
+    boolean canRefine(Path file, String contents, int cursor) {
+        if (kind == null || !complete) return false;
+        if (!this.file.equals(file)) return false;
+        if (cursor < start || cursor > contents.length()) return false;
+        if (startOfIdentifier(contents, cursor) != start) return false;
+        if (contents.length() - cursor != after.length()) return false;
+        if (!contents.startsWith(before) || !contents.startsWith(after, cursor)) return false;
+        if (!contents.substring(start, cursor).startsWith(partial)) return false;
+        // If another open document has changed, the candidates may be stale
+        for (var other : FileStore.activeDocuments()) {
+            if (other.equals(file)) continue;
+            var modified = FileStore.modified(other);
+            if (modified != null && modified.isAfter(created)) return false;
+        }
+        // If a closed file has changed on disk, the candidates may be stale too
+        if (FileStore.externalChanges() != externalChanges) return false;
+        return true;
+    }
+
+    /** Filter the candidates that match the longer identifier `refined`. */
+    List<CompletionItem> refine(String refined) {
+        var list = new ArrayList<CompletionItem>();
+        for (var item : candidates) {
+            // Items that didn't match the original partial were added unconditionally, like `this` and `class`
+            var filtered = StringSearch.matchesPartialName(item.label, partial);
+            if (!filtered || StringSearch.matchesPartialName(item.label, refined)) {
+                list.add(item);
+            }
+        }
+        return list;
+    }
+}
@@ -1,19 +1,38 @@
 package org.javacs.completion;
 
 import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.StatementTree;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreeScanner;
 import com.sun.source.util.Trees;
 import java.io.IOException;
 
+/**
+ * Erase the bodies of every method except the one that contains `find`, keeping every declaration at the same offset.
+ * Pass a `find` of -1 to erase every body.
+ */
 public class PruneMethodBodies extends TreeScanner<StringBuilder, Long> {
     private final JavacTask task;
+    /**
+     * Put `throw null;` in each erased body, and keep the call to this(...) or super(...) at the start of constructors,
+     * so the result compiles without errors
+     */
+    private final boolean compiles;
     private final StringBuilder buf = new StringBuilder();
     private CompilationUnitTree root;
 
     public PruneMethodBodies(JavacTask task) {
+        this(task, false);
+    }
+
+    public PruneMethodBodies(JavacTask task, boolean compiles) {
         this.task = task;
+        this.compiles = compiles;
     }
 
     @Override
@@ -37,9 +56,13 @@ public class PruneMethodBodies extends TreeScanner<StringBuilder, Long> {
         var start = pos.getStartPosition(root, t.getBody());
         var end = pos.getEndPosition(root, t.getBody());
         if (!(start <= find && find < end)) {
-            for (var i = (int) start + 1; i < end - 1; i++) {
-                if (!Character.isWhitespace(buf.charAt(i))) {
-                    buf.setCharAt(i, ' ');
+            if (compiles) {
+                eraseAndThrow(t);
+            } else {
+                for (var i = (int) start + 1; i < end - 1; i++) {
+                    if (!Character.isWhitespace(buf.charAt(i))) {
+                        buf.setCharAt(i, ' ');
+                    }
                 }
             }
             return buf;
@@ -48,6 +71,55 @@ public class PruneMethodBodies extends TreeScanner<StringBuilder, Long> {
         return buf;
     }
 
+    private static final String THROW = "throw null;";
+
+    private void eraseAndThrow(MethodTree method) {
+        var pos = Trees.instance(task).getSourcePositions();
+        var body = method.getBody();
+        // Inside the braces of the body
+        var start = (int) pos.getStartPosition(root, body) + 1;
+        var end = (int) pos.getEndPosition(root, body) - 1;
+        // Constructors must keep their call to this(...) or super(...)
+        var statements = body.getStatements();
+        if (!statements.isEmpty() && isConstructorCall(statements.get(0))) {
+            start = (int) pos.getEndPosition(root, statements.get(0));
+        }
+        if (start < 0 || end > buf.length()) return;
+        // Find a place for `throw null;` that doesn't cover a line break, so lines keep their numbers
+        var gap = -1;
+        for (var i = start; i + THROW.length() <= end; i++) {
+            if (buf.substring(i, i + THROW.length()).indexOf('\n') == -1) {
+                gap = i;
+                break;
+            }
+        }
+        // If the body is too short to erase, leave it alone
+        if (gap == -1) return;
+        for (var i = start; i < end; i++) {
+            var c = buf.charAt(i);
+            if (c != '\n' && c != '\r') {
+                buf.setCharAt(i, ' ');
+            }
+        }
+        buf.replace(gap, gap + THROW.length(), THROW);
+    }
+
+    private static boolean isConstructorCall(StatementTree statement) {
+        if (!(statement instanceof ExpressionStatementTree)) return false;
+        var expression = ((ExpressionStatementTree) statement).getExpression();
+        if (!(expression instanceof MethodInvocationTree)) return false;
+        var select = ((MethodInvocationTree) expression).getMethodSelect();
+        String name;
+        if (select instanceof IdentifierTree) {
+            name = ((IdentifierTree) select).getName().toString();
+        } else if (select instanceof MemberSelectTree) {
+            name = ((MemberSelectTree) select).getIdentifier().toString();
+        } else {
+            return false;
+        }
+        return name.equals("this") || name.equals("super");
+    }
+
     @Override
     public StringBuilder reduce(StringBuilder a, StringBuilder b) {
         return buf;
@@ -112,9 +112,10 @@ public class SignatureProvider {
         var type = typeElement(trees.getTypeMirror(path));
         if (type == null) return List.of();
         var list = new ArrayList<ExecutableElement>();
-        for (var member : task.task.getElements().getAllMembers(type)) {
+        var name = method.getIdentifier().toString();
+        for (var member : compiler.memberIndex().elements(task.task, type, name)) {
             if (member.getKind() != ElementKind.METHOD) continue;
-            if (!member.getSimpleName().contentEquals(method.getIdentifier())) continue;
+            if (!member.getSimpleName().contentEquals(name)) continue;
             if (isStatic != member.getModifiers().contains(Modifier.STATIC)) continue;
             if (!trees.isAccessible(scope, member, (DeclaredType) type.asType())) continue;
             list.add((ExecutableElement) member);
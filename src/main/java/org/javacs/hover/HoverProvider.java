@@ -4,28 +4,39 @@ import com.google.gson.JsonNull;
 import com.sun.source.tree.*;
 import com.sun.source.util.*;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringJoiner;
+import java.util.WeakHashMap;
 import java.util.logging.Logger;
 import javax.lang.model.element.*;
+import javax.tools.JavaFileObject;
 import org.javacs.CompileTask;
 import org.javacs.CompilerProvider;
 import org.javacs.CompletionData;
+import org.javacs.DocStore;
 import org.javacs.FindHelper;
 import org.javacs.JsonHelper;
 import org.javacs.MarkdownHelper;
 import org.javacs.ParseTask;
 import org.javacs.lsp.CompletionItem;
 import org.javacs.lsp.MarkedString;
+import org.javacs.lsp.MarkupContent;
+import org.javacs.lsp.MarkupKind;
 
 public class HoverProvider {
     final CompilerProvider compiler;
+    private final ResolveCache cache;
 
     public static final List<MarkedString> NOT_SUPPORTED = List.of();
 
     public HoverProvider(CompilerProvider compiler) {
         this.compiler = compiler;
+        this.cache = cacheOf(compiler);
     }
 
     public List<MarkedString> hover(Path file, int line, int column) {
@@ -44,40 +55,114 @@ public class HoverProvider {
         }
     }
 
+    /**
+     * Resolved completion items of each compiler, shared by every HoverProvider that uses it. Each workspace root has
+     * its own compiler, so switching between roots doesn't throw away what we resolved in the other one.
+     */
+    private static final Map<CompilerProvider, ResolveCache> caches = new WeakHashMap<>();
+
+    private static synchronized ResolveCache cacheOf(CompilerProvider compiler) {
+        return caches.computeIfAbsent(compiler, __ -> new ResolveCache());
+    }
+
+    /** Forget every resolved completion item, for example to free memory */
+    public static synchronized void clearCache() {
+        caches.clear();
+    }
+
     public void resolveCompletionItem(CompletionItem item) {
         if (item.data == null || item.data == JsonNull.INSTANCE) return;
         var data = JsonHelper.GSON.fromJson(item.data, CompletionData.class);
-        var source = compiler.findAnywhere(data.className);
-        if (source.isEmpty()) return;
-        var task = compiler.parse(source.get());
+        var key = new ResolveCache.Key(data);
+        var resolved = cache.get(key);
+        if (resolved == null) {
+            resolved = prerendered(data);
+            if (resolved == null) {
+                var source = compiler.findAnywhere(data.className);
+                if (source.isEmpty()) return;
+                resolved = resolve(compiler.parse(source.get()), source.get(), data);
+            }
+            cache.put(key, resolved);
+        }
+        if (resolved.detail != null) {
+            item.detail = resolved.detail;
+            if (data.plusOverloads != 0) {
+                item.detail += " (+" + data.plusOverloads + " overloads)";
+            }
+        }
+        if (resolved.documentation != null) {
+            item.documentation = resolved.documentation;
+        }
+    }
+
+    /** Resolve the first `limit` items the client will show ahead of time, parsing each declaring class only once. */
+    public void prefetch(List<CompletionItem> items, int limit) {
+        var sorted = new ArrayList<CompletionItem>(items);
+        sorted.sort(Comparator.comparing(i -> i.sortText != null ? i.sortText : i.label));
+        var byClass = new LinkedHashMap<String, List<CompletionData>>();
+        for (var item : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            if (item.data == null || item.data == JsonNull.INSTANCE) continue;
+            var data = JsonHelper.GSON.fromJson(item.data, CompletionData.class);
+            if (data.className == null || cache.get(new ResolveCache.Key(data)) != null) continue;
+            var prerendered = prerendered(data);
+            if (prerendered != null) {
+                cache.put(new ResolveCache.Key(data), prerendered);
+                continue;
+            }
+            byClass.computeIfAbsent(data.className, __ -> new ArrayList<>()).add(data);
+        }
+        for (var className : byClass.keySet()) {
+            var source = compiler.findAnywhere(className);
+            if (source.isEmpty()) continue;
+            var task = compiler.parse(source.get());
+            for (var data : byClass.get(className)) {
+                cache.put(new ResolveCache.Key(data), resolve(task, source.get(), data));
+            }
+        }
+        if (!byClass.isEmpty()) {
+            LOG.info(String.format("...prefetched completion details from %d classes", byClass.size()));
+        }
+    }
+
+    private ResolveCache.Resolved prerendered(CompletionData data) {
+        String memberKey;
+        if (data.erasedParameterTypes != null) {
+            memberKey = DocStore.methodKey(data.memberName, data.erasedParameterTypes);
+        } else if (data.memberName != null) {
+            memberKey = DocStore.fieldKey(data.memberName);
+        } else {
+            memberKey = DocStore.typeKey();
+        }
+        var entry = compiler.prerenderedDocs(data.className, memberKey);
+        if (entry == null) return null;
+        MarkupContent documentation = null;
+        if (entry.docs != null) {
+            documentation = new MarkupContent(MarkupKind.Markdown, entry.docs);
+        }
+        return new ResolveCache.Resolved(entry.detail, documentation, null);
+    }
+
+    private ResolveCache.Resolved resolve(ParseTask task, JavaFileObject source, CompletionData data) {
+        Path file = null;
+        if (source.toUri().getScheme().equals("file")) {
+            file = Paths.get(source.toUri());
+        }
         var tree = findItem(task, data);
-        resolveDetail(item, data, tree);
+        var detail = resolveDetail(tree);
         var path = Trees.instance(task.task).getPath(task.root, tree);
         var docTree = DocTrees.instance(task.task).getDocCommentTree(path);
-        if (docTree == null) return;
-        item.documentation = MarkdownHelper.asMarkupContent(docTree);
+        if (docTree == null) {
+            return new ResolveCache.Resolved(detail, null, file);
+        }
+        return new ResolveCache.Resolved(detail, MarkdownHelper.asMarkupContent(docTree), file);
     }
 
     // TODO consider showing actual source code instead of just types and names
-    private void resolveDetail(CompletionItem item, CompletionData data, Tree tree) {
+    private String resolveDetail(Tree tree) {
         if (tree instanceof MethodTree) {
-            var method = (MethodTree) tree;
-            var parameters = new StringJoiner(", ");
-            for (var p : method.getParameters()) {
-                parameters.add(p.getType() + " " + p.getName());
-            }
-            item.detail = method.getReturnType() + " " + method.getName() + "(" + parameters + ")";
-            if (!method.getThrows().isEmpty()) {
-                var exceptions = new StringJoiner(", ");
-                for (var e : method.getThrows()) {
-                    exceptions.add(e.toString());
-                }
-                item.detail += " throws " + exceptions;
-            }
-            if (data.plusOverloads != 0) {
-                item.detail += " (+" + data.plusOverloads + " overloads)";
-            }
+            return DocStore.methodDetail((MethodTree) tree);
         }
+        return null;
     }
 
     private Tree findItem(ParseTask task, CompletionData data) {
@@ -94,6 +179,10 @@ public class HoverProvider {
     }
 
     private String docs(CompileTask task, Element element) {
+        var prerendered = prerenderedDocs(task, element);
+        if (prerendered != null) {
+            return prerendered.docs == null ? "" : prerendered.docs;
+        }
         if (element instanceof TypeElement) {
             var type = (TypeElement) element;
             var className = type.getQualifiedName().toString();
@@ -127,6 +216,25 @@ public class HoverProvider {
         }
     }
 
+    private DocStore.Entry prerenderedDocs(CompileTask task, Element element) {
+        if (element instanceof TypeElement) {
+            var className = ((TypeElement) element).getQualifiedName().toString();
+            return compiler.prerenderedDocs(className, DocStore.typeKey());
+        }
+        if (!(element.getEnclosingElement() instanceof TypeElement)) return null;
+        var className = ((TypeElement) element.getEnclosingElement()).getQualifiedName().toString();
+        if (element.getKind() == ElementKind.FIELD) {
+            return compiler.prerenderedDocs(className, DocStore.fieldKey(element.getSimpleName().toString()));
+        }
+        if (element instanceof ExecutableElement) {
+            var method = (ExecutableElement) element;
+            var erasedParameterTypes = FindHelper.erasedParameterTypes(task, method);
+            var memberKey = DocStore.methodKey(method.getSimpleName().toString(), erasedParameterTypes);
+            return compiler.prerenderedDocs(className, memberKey);
+        }
+        return null;
+    }
+
     private String docs(ParseTask task, Tree tree) {
         var path = Trees.instance(task.task).getPath(task.root, tree);
         var docTree = DocTrees.instance(task.task).getDocCommentTree(path);
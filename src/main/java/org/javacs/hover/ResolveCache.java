@@ -0,0 +1,111 @@
+package org.javacs.hover;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import org.javacs.CompletionData;
+import org.javacs.FileStore;
+import org.javacs.lsp.MarkupContent;
+
+/**
+ * ResolveCache remembers the detail and documentation of resolved completion items, so scrolling through a completion
+ * list doesn't re-read and re-parse the declaring class for every item. The least-recently-used entries are evicted
+ * when the cached text exceeds MAX_CHARS.
+ */
+class ResolveCache {
+    static final long MAX_CHARS = 4_000_000;
+
+    static class Key {
+        final String className, memberName;
+        final List<String> erasedParameterTypes;
+
+        Key(CompletionData data) {
+            this.className = data.className;
+            this.memberName = data.memberName;
+            this.erasedParameterTypes =
+                    data.erasedParameterTypes == null ? null : List.of(data.erasedParameterTypes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            var that = (Key) other;
+            return Objects.equals(this.className, that.className)
+                    && Objects.equals(this.memberName, that.memberName)
+                    && Objects.equals(this.erasedParameterTypes, that.erasedParameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(className, memberName, erasedParameterTypes);
+        }
+    }
+
+    static class Resolved {
+        /** detail is the signature of a method, without overloads, or null if the item keeps its own detail */
+        final String detail;
+        final MarkupContent documentation;
+        /** file is the workspace file that declares the item, or null if it comes from a jar or src.zip */
+        final Path file;
+        final Instant modified;
+
+        Resolved(String detail, MarkupContent documentation, Path file) {
+            this.detail = detail;
+            this.documentation = documentation;
+            this.file = file;
+            this.modified = file == null ? null : FileStore.modified(file);
+        }
+
+        boolean isStale() {
+            return file != null && !Objects.equals(FileStore.modified(file), modified);
+        }
+
+        long chars() {
+            long chars = 0;
+            if (detail != null) chars += detail.length();
+            if (documentation != null && documentation.value != null) chars += documentation.value.length();
+            return chars;
+        }
+    }
+
+    private final LinkedHashMap<Key, Resolved> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+
+    Resolved get(Key key) {
+        var resolved = map.get(key);
+        if (resolved == null) return null;
+        if (resolved.isStale()) {
+            remove(key);
+            return null;
+        }
+        return resolved;
+    }
+
+    void put(Key key, Resolved resolved) {
+        remove(key);
+        map.put(key, resolved);
+        chars += resolved.chars();
+        var it = map.entrySet().iterator();
+        while (chars > MAX_CHARS && it.hasNext()) {
+            var eldest = it.next();
+            chars -= eldest.getValue().chars();
+            it.remove();
+        }
+    }
+
+    private void remove(Key key) {
+        var removed = map.remove(key);
+        if (removed != null) {
+            chars -= removed.chars();
+        }
+    }
+
+    void clear() {
+        map.clear();
+        chars = 0;
+    }
+
+    int size() {
+        return map.size();
+    }
+}
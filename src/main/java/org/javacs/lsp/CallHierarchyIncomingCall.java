@@ -0,0 +1,17 @@
+package org.javacs.lsp;
+
+import java.util.List;
+
+public class CallHierarchyIncomingCall {
+    /** The method that makes the calls */
+    public CallHierarchyItem from;
+    /** The ranges of the calls, in the file of `from` */
+    public List<Range> fromRanges;
+
+    public CallHierarchyIncomingCall() {}
+
+    public CallHierarchyIncomingCall(CallHierarchyItem from, List<Range> fromRanges) {
+        this.from = from;
+        this.fromRanges = fromRanges;
+    }
+}
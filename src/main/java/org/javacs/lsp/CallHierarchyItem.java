@@ -0,0 +1,14 @@
+package org.javacs.lsp;
+
+import com.google.gson.JsonElement;
+import java.net.URI;
+
+public class CallHierarchyItem {
+    public String name;
+    public int kind;
+    public String detail;
+    public URI uri;
+    public Range range, selectionRange;
+    /** Preserved between prepareCallHierarchy and the incomingCalls and outgoingCalls requests */
+    public JsonElement data;
+}
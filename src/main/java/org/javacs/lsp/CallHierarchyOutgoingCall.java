@@ -0,0 +1,17 @@
+package org.javacs.lsp;
+
+import java.util.List;
+
+public class CallHierarchyOutgoingCall {
+    /** The method that is called */
+    public CallHierarchyItem to;
+    /** The ranges of the calls, in the file of the caller */
+    public List<Range> fromRanges;
+
+    public CallHierarchyOutgoingCall() {}
+
+    public CallHierarchyOutgoingCall(CallHierarchyItem to, List<Range> fromRanges) {
+        this.to = to;
+        this.fromRanges = fromRanges;
+    }
+}
@@ -0,0 +1,12 @@
+package org.javacs.lsp;
+
+/** The params of callHierarchy/incomingCalls and callHierarchy/outgoingCalls */
+public class CallHierarchyParams {
+    public CallHierarchyItem item;
+
+    public CallHierarchyParams() {}
+
+    public CallHierarchyParams(CallHierarchyItem item) {
+        this.item = item;
+    }
+}
@@ -1,6 +1,7 @@
 package org.javacs.lsp;
 
 import java.util.List;
+import java.util.Objects;
 
 public class Diagnostic {
     public Range range;
@@ -8,4 +9,22 @@ public class Diagnostic {
     public String code, source, message;
     // TODO need to upgrade to vscode-languageclient 5.2.2 when it comes out
     public List<Integer> tags; // DiagnosticTag
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var d = (Diagnostic) o;
+        return Objects.equals(range, d.range)
+                && Objects.equals(severity, d.severity)
+                && Objects.equals(code, d.code)
+                && Objects.equals(source, d.source)
+                && Objects.equals(message, d.message)
+                && Objects.equals(tags, d.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(range, severity, code, source, message, tags);
+    }
 }
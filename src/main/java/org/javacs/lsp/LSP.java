@@ -88,11 +88,14 @@ public class LSP {
         var messageBytes = messageText.getBytes(UTF_8);
         var headerText = String.format("Content-Length: %d\r\n\r\n", messageBytes.length);
         var headerBytes = headerText.getBytes(UTF_8);
-        try {
-            client.write(headerBytes);
-            client.write(messageBytes);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        // Messages can come from more than one thread, for example partial results
+        synchronized (client) {
+            try {
+                client.write(headerBytes);
+                client.write(messageBytes);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 
@@ -171,6 +174,16 @@ public class LSP {
         public void customNotification(String method, JsonElement params) {
             notifyClient(send, method, params);
         }
+
+        @Override
+        public void refreshSemanticTokens() {
+            // Like registerCapability, this is a request, but we don't need the response
+            var id = new Random().nextInt();
+            var messageText =
+                    String.format(
+                            "{\"jsonrpc\":\"2.0\",\"id\":\"%d\",\"method\":\"workspace/semanticTokens/refresh\"}", id);
+            writeClient(send, messageText);
+        }
     }
 
     public static void connect(
@@ -226,6 +239,7 @@ public class LSP {
         // Process messages on main thread
         LOG.info("Reading messages from queue...");
         var hasAsyncWork = false;
+        var hasBackgroundWork = false;
         processMessages:
         while (true) {
             Message r;
@@ -247,10 +261,15 @@ public class LSP {
                     server.doAsyncWork();
                     hasAsyncWork = false;
                 }
+                // Do background work one step at a time, and stop as soon as a new message arrives
+                while (hasBackgroundWork && pending.isEmpty()) {
+                    hasBackgroundWork = server.doBackgroundWork();
+                }
                 continue;
             }
             // Otherwise, process the new message
             hasAsyncWork = true;
+            hasBackgroundWork = true;
             try {
                 if (r.method == null) {
                     LOG.fine("Ignoring client message without method");
@@ -391,6 +410,69 @@ public class LSP {
                             respond(send, r.id, response);
                             break;
                         }
+                    case "textDocument/implementation":
+                        {
+                            var params = gson.fromJson(r.params, TextDocumentPositionParams.class);
+                            var response = server.implementation(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "textDocument/prepareTypeHierarchy":
+                        {
+                            var params = gson.fromJson(r.params, TextDocumentPositionParams.class);
+                            var response = server.prepareTypeHierarchy(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "typeHierarchy/supertypes":
+                        {
+                            var params = gson.fromJson(r.params, TypeHierarchyParams.class);
+                            var response = server.typeHierarchySupertypes(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "typeHierarchy/subtypes":
+                        {
+                            var params = gson.fromJson(r.params, TypeHierarchyParams.class);
+                            var response = server.typeHierarchySubtypes(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "textDocument/prepareCallHierarchy":
+                        {
+                            var params = gson.fromJson(r.params, TextDocumentPositionParams.class);
+                            var response = server.prepareCallHierarchy(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "callHierarchy/incomingCalls":
+                        {
+                            var params = gson.fromJson(r.params, CallHierarchyParams.class);
+                            var response = server.callHierarchyIncomingCalls(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "callHierarchy/outgoingCalls":
+                        {
+                            var params = gson.fromJson(r.params, CallHierarchyParams.class);
+                            var response = server.callHierarchyOutgoingCalls(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "textDocument/semanticTokens/full":
+                        {
+                            var params = gson.fromJson(r.params, SemanticTokensParams.class);
+                            var response = server.semanticTokensFull(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
+                    case "textDocument/semanticTokens/full/delta":
+                        {
+                            var params = gson.fromJson(r.params, SemanticTokensDeltaParams.class);
+                            var response = server.semanticTokensFullDelta(params);
+                            respond(send, r.id, response);
+                            break;
+                        }
                     case "textDocument/documentSymbol":
                         {
                             var params = gson.fromJson(r.params, DocumentSymbolParams.class);
@@ -10,4 +10,7 @@ public interface LanguageClient {
     void registerCapability(String method, JsonElement options);
 
     void customNotification(String method, JsonElement params);
+
+    /** Ask the client to request semantic tokens again, because we found better ones; does nothing by default */
+    default void refreshSemanticTokens() {}
 }
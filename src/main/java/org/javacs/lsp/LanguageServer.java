@@ -72,6 +72,42 @@ public class LanguageServer {
         throw new RuntimeException("Unimplemented");
     }
 
+    public List<Location> implementation(TextDocumentPositionParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public Optional<List<TypeHierarchyItem>> prepareTypeHierarchy(TextDocumentPositionParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public List<TypeHierarchyItem> typeHierarchySupertypes(TypeHierarchyParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public List<TypeHierarchyItem> typeHierarchySubtypes(TypeHierarchyParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public Optional<List<CallHierarchyItem>> prepareCallHierarchy(TextDocumentPositionParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public List<CallHierarchyIncomingCall> callHierarchyIncomingCalls(CallHierarchyParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public List<CallHierarchyOutgoingCall> callHierarchyOutgoingCalls(CallHierarchyParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public SemanticTokens semanticTokensFull(SemanticTokensParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
+    public SemanticTokensDelta semanticTokensFullDelta(SemanticTokensDeltaParams params) {
+        throw new RuntimeException("Unimplemented");
+    }
+
     public List<SymbolInformation> documentSymbol(DocumentSymbolParams params) {
         throw new RuntimeException("Unimplemented");
     }
@@ -117,4 +153,12 @@ public class LanguageServer {
     }
 
     public void doAsyncWork() {}
+
+    /**
+     * Do one small step of low-priority work, after doAsyncWork, while there are no new messages. Return false when
+     * there is nothing left to do; the server will be asked again after the next message.
+     */
+    public boolean doBackgroundWork() {
+        return false;
+    }
 }
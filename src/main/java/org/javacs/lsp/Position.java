@@ -11,6 +11,19 @@ public class Position {
         this.character = character;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var position = (Position) o;
+        return line == position.line && character == position.character;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * line + character;
+    }
+
     @Override
     public String toString() {
         return line + "," + character;
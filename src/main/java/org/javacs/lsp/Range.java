@@ -1,5 +1,7 @@
 package org.javacs.lsp;
 
+import java.util.Objects;
+
 public class Range {
     public Position start, end;
 
@@ -10,6 +12,19 @@ public class Range {
         this.end = end;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var range = (Range) o;
+        return Objects.equals(start, range.start) && Objects.equals(end, range.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
     @Override
     public String toString() {
         return start + "-" + end;
@@ -0,0 +1,18 @@
+package org.javacs.lsp;
+
+/**
+ * Each token is 5 integers: its line relative to the previous token, its start character, relative to the previous
+ * token if they're on the same line, its length, its type and its modifiers, both as indexes into the legend that the
+ * server declares in its capabilities.
+ */
+public class SemanticTokens {
+    public String resultId;
+    public int[] data;
+
+    public SemanticTokens() {}
+
+    public SemanticTokens(String resultId, int[] data) {
+        this.resultId = resultId;
+        this.data = data;
+    }
+}
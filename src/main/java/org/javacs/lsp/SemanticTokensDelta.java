@@ -0,0 +1,13 @@
+package org.javacs.lsp;
+
+import java.util.List;
+
+/**
+ * The response to semanticTokens/full/delta. When the server doesn't remember previousResultId, edits is null and data
+ * holds every token, so the client reads the response as SemanticTokens.
+ */
+public class SemanticTokensDelta {
+    public String resultId;
+    public List<SemanticTokensEdit> edits;
+    public int[] data;
+}
@@ -0,0 +1,14 @@
+package org.javacs.lsp;
+
+public class SemanticTokensDeltaParams {
+    public TextDocumentIdentifier textDocument;
+    /** The resultId of the tokens the client has */
+    public String previousResultId;
+
+    public SemanticTokensDeltaParams() {}
+
+    public SemanticTokensDeltaParams(TextDocumentIdentifier textDocument, String previousResultId) {
+        this.textDocument = textDocument;
+        this.previousResultId = previousResultId;
+    }
+}
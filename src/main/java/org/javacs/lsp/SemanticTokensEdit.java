@@ -0,0 +1,15 @@
+package org.javacs.lsp;
+
+/** Replace deleteCount integers of SemanticTokens.data, starting at start, with data */
+public class SemanticTokensEdit {
+    public int start, deleteCount;
+    public int[] data;
+
+    public SemanticTokensEdit() {}
+
+    public SemanticTokensEdit(int start, int deleteCount, int[] data) {
+        this.start = start;
+        this.deleteCount = deleteCount;
+        this.data = data;
+    }
+}
@@ -0,0 +1,11 @@
+package org.javacs.lsp;
+
+public class SemanticTokensParams {
+    public TextDocumentIdentifier textDocument;
+
+    public SemanticTokensParams() {}
+
+    public SemanticTokensParams(TextDocumentIdentifier textDocument) {
+        this.textDocument = textDocument;
+    }
+}
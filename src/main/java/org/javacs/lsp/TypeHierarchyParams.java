@@ -0,0 +1,12 @@
+package org.javacs.lsp;
+
+/** The params of typeHierarchy/supertypes and typeHierarchy/subtypes */
+public class TypeHierarchyParams {
+    public TypeHierarchyItem item;
+
+    public TypeHierarchyParams() {}
+
+    public TypeHierarchyParams(TypeHierarchyItem item) {
+        this.item = item;
+    }
+}
@@ -2,70 +2,117 @@ package org.javacs.markup;
 
 import com.sun.source.tree.*;
 import com.sun.source.util.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.regex.Pattern;
 import javax.lang.model.element.Element;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 import org.javacs.CompileTask;
-import org.javacs.FileStore;
 import org.javacs.lsp.*;
 
 public class ErrorProvider {
     final CompileTask task;
+    final WarningCache warnings;
+    final Set<Path> colored;
+    private final Map<Path, int[]> tokens = new HashMap<>();
 
     public ErrorProvider(CompileTask task) {
+        this(task, new WarningCache());
+    }
+
+    /** Reuse the warnings in cache for files whose contents haven't changed since they were scanned */
+    public ErrorProvider(CompileTask task, WarningCache cache) {
+        this(task, cache, Set.of());
+    }
+
+    /** Also find the semantic tokens of the files in colored, in the same pass that finds their warnings */
+    public ErrorProvider(CompileTask task, WarningCache cache, Set<Path> colored) {
         this.task = task;
+        this.warnings = cache;
+        this.colored = colored;
     }
 
     public PublishDiagnosticsParams[] errors() {
+        var compilerErrors = compilerErrors();
         var result = new PublishDiagnosticsParams[task.roots.size()];
         for (var i = 0; i < task.roots.size(); i++) {
             var root = task.roots.get(i);
+            var uri = root.getSourceFile().toUri();
             result[i] = new PublishDiagnosticsParams();
-            result[i].uri = root.getSourceFile().toUri();
-            result[i].diagnostics.addAll(compilerErrors(root));
-            result[i].diagnostics.addAll(unusedWarnings(root));
-            result[i].diagnostics.addAll(notThrownWarnings(root));
+            result[i].uri = uri;
+            result[i].diagnostics.addAll(compilerErrors.getOrDefault(uri, List.of()));
+            result[i].diagnostics.addAll(warnings(root, Paths.get(uri)));
         }
         // TODO hint fields that could be final
 
         return result;
     }
 
-    private List<org.javacs.lsp.Diagnostic> compilerErrors(CompilationUnitTree root) {
-        var result = new ArrayList<org.javacs.lsp.Diagnostic>();
+    /** The semantic tokens of file, which errors() found because file is in colored */
+    public int[] tokens(Path file) {
+        return tokens.get(file);
+    }
+
+    /** The errors the compiler reported in each root, grouped by file in one pass over the diagnostics */
+    private Map<URI, List<org.javacs.lsp.Diagnostic>> compilerErrors() {
+        var lines = new HashMap<URI, LineMap>();
+        for (var root : task.roots) {
+            lines.put(root.getSourceFile().toUri(), root.getLineMap());
+        }
+        var result = new HashMap<URI, List<org.javacs.lsp.Diagnostic>>();
         for (var d : task.diagnostics) {
-            if (d.getSource() == null || !d.getSource().toUri().equals(root.getSourceFile().toUri())) continue;
+            if (d.getSource() == null) continue;
             if (d.getStartPosition() == -1 || d.getEndPosition() == -1) continue;
-            result.add(lspDiagnostic(d, root.getLineMap()));
+            var uri = d.getSource().toUri();
+            var lineMap = lines.get(uri);
+            if (lineMap == null) continue;
+            result.computeIfAbsent(uri, __ -> new ArrayList<>()).add(lspDiagnostic(d, lineMap));
         }
         return result;
     }
 
-    private List<org.javacs.lsp.Diagnostic> unusedWarnings(CompilationUnitTree root) {
-        var result = new ArrayList<org.javacs.lsp.Diagnostic>();
-        var warnUnused = new WarnUnused(task.task);
-        warnUnused.scan(root, null);
-        for (var unusedEl : warnUnused.notUsed()) {
-            result.add(warnUnused(unusedEl));
+    private List<org.javacs.lsp.Diagnostic> warnings(CompilationUnitTree root, Path file) {
+        var contents = SemanticTokensProvider.contents(root);
+        var digest = digest(contents);
+        var color = colored.contains(file);
+        var cached = warnings.get(file, digest);
+        var cachedTokens = warnings.tokens(file, digest);
+        if (cached != null && (!color || cachedTokens != null)) {
+            if (color) tokens.put(file, cachedTokens);
+            return cached;
         }
-        return result;
-    }
-
-    private List<org.javacs.lsp.Diagnostic> notThrownWarnings(CompilationUnitTree root) {
+        var scan = new LintScanner(task.task, contents, color);
+        scan.scan(root, null);
         var result = new ArrayList<org.javacs.lsp.Diagnostic>();
-        var notThrown = new HashMap<TreePath, String>();
-        new WarnNotThrown(task.task).scan(root, notThrown);
+        var notUsed = scan.notUsed();
+        for (var unusedEl : notUsed.keySet()) {
+            result.add(warnUnused(unusedEl, notUsed.get(unusedEl), contents));
+        }
+        var notThrown = scan.notThrown();
         for (var location : notThrown.keySet()) {
             result.add(warnNotThrown(notThrown.get(location), location));
         }
+        var found = color ? scan.tokens(root.getLineMap()) : null;
+        if (color) tokens.put(file, found);
+        warnings.put(file, digest, result, found);
         return result;
     }
 
+    private static byte[] digest(CharSequence contents) {
+        try {
+            var sha = MessageDigest.getInstance("SHA-256");
+            return sha.digest(contents.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * lspDiagnostic(d, lines) converts d to LSP format, with its position shifted appropriately for the latest version
      * of the file.
@@ -122,12 +169,8 @@ public class ErrorProvider {
         return d;
     }
 
-    private org.javacs.lsp.Diagnostic warnUnused(Element unusedEl) {
+    private org.javacs.lsp.Diagnostic warnUnused(Element unusedEl, TreePath path, CharSequence contents) {
         var trees = Trees.instance(task.task);
-        var path = trees.getPath(unusedEl);
-        if (path == null) {
-            throw new RuntimeException(unusedEl + " has no path");
-        }
         var root = path.getCompilationUnit();
         var leaf = path.getLeaf();
         var pos = trees.getSourcePositions();
@@ -140,8 +183,6 @@ public class ErrorProvider {
                 start = offset;
             }
         }
-        var file = Paths.get(root.getSourceFile().toUri());
-        var contents = FileStore.contents(file);
         var name = unusedEl.getSimpleName();
         if (name.contentEquals("<init>")) {
             name = unusedEl.getEnclosingElement().getSimpleName();
@@ -0,0 +1,305 @@
+package org.javacs.markup;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import java.util.*;
+import java.util.function.Supplier;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * LintScanner finds everything lint needs from a compiled file in one pass over its tree: the semantic tokens of its
+ * names, the private declarations and local variables that are never used, and the exceptions that methods declare but
+ * never throw. Each tree is resolved to its element once, and all three share the result.
+ *
+ * <p>A private declaration is only used if it's referenced from code that is itself used. Rather than scanning a
+ * private declaration when we find the first reference to it, we remember what each one references, and work out which
+ * ones are used after the scan.
+ */
+class LintScanner extends SemanticTokensProvider.Highlighter {
+    /** A private declaration, or a local variable, and the innermost private declaration that encloses it */
+    private static class Declaration {
+        final Element element;
+        final TreePath path;
+        final Declaration owner;
+        /** The elements referenced inside this declaration, which are only used if it is */
+        final List<Element> references = new ArrayList<>();
+        /** The private declarations whose owner is this one */
+        final List<Declaration> nested = new ArrayList<>();
+
+        Declaration(Element element, TreePath path, Declaration owner) {
+            this.element = element;
+            this.path = path;
+            this.owner = owner;
+        }
+    }
+
+    private final boolean colors;
+
+    /** The elements referenced outside of every private declaration */
+    private final List<Element> reachableReferences = new ArrayList<>();
+    private final List<Declaration> privateDeclarations = new ArrayList<>(), localVariables = new ArrayList<>();
+    /** The private declaration we're inside, or null */
+    private Declaration owner;
+
+    /** The exceptions declared by the method we're inside, and the exceptions its body throws */
+    private Map<String, TreePath> declaredExceptions = new HashMap<>();
+    private Set<String> observedExceptions = new HashSet<>();
+    private final Map<TreePath, String> notThrown = new HashMap<>();
+
+    /** The element of leaf, which we resolved while visiting leaf or its parent */
+    private Tree resolvedLeaf;
+    private Element resolved;
+    private final Map<Tree, Element> resolvedAhead = new IdentityHashMap<>();
+
+    /** If colors is false, don't find semantic tokens */
+    LintScanner(JavacTask task, CharSequence contents, boolean colors) {
+        super(task, contents);
+        this.colors = colors;
+    }
+
+    /** The semantic tokens of the file we scanned, encoded for semanticTokens/full */
+    int[] tokens(LineMap lines) {
+        return SemanticTokensProvider.encode(lines, tokens, size);
+    }
+
+    /** The private declarations and local variables that are never used, and where they're declared */
+    Map<Element, TreePath> notUsed() {
+        var used = new HashSet<Element>();
+        var pending = new ArrayDeque<Element>(reachableReferences);
+        var declarationsOf = new HashMap<Element, List<Declaration>>();
+        for (var d : privateDeclarations) {
+            if (d.element == null) continue;
+            declarationsOf.computeIfAbsent(d.element, __ -> new ArrayList<>()).add(d);
+        }
+        var active = new HashSet<Declaration>();
+        while (!pending.isEmpty()) {
+            var el = pending.pop();
+            if (!used.add(el)) continue;
+            for (var d : declarationsOf.getOrDefault(el, List.of())) {
+                if (d.owner == null || active.contains(d.owner)) {
+                    activate(d, used, active, pending);
+                }
+            }
+        }
+        var unused = new HashMap<Element, TreePath>();
+        for (var list : List.of(privateDeclarations, localVariables)) {
+            for (var d : list) {
+                if (d.owner != null && !active.contains(d.owner)) continue;
+                if (d.element == null || used.contains(d.element)) continue;
+                // Remove if <error> field was injected while forming the AST
+                if (d.element.toString().equals("<error>")) continue;
+                unused.put(d.element, d.path);
+            }
+        }
+        return unused;
+    }
+
+    /** d is used, so the references inside it are too, and so are the declarations inside it that were used */
+    private void activate(Declaration d, Set<Element> used, Set<Declaration> active, Deque<Element> pending) {
+        if (!active.add(d)) return;
+        pending.addAll(d.references);
+        for (var n : d.nested) {
+            if (used.contains(n.element)) activate(n, used, active, pending);
+        }
+    }
+
+    /** The exceptions that methods declare, but never throw, and the names of their types */
+    Map<TreePath, String> notThrown() {
+        return notThrown;
+    }
+
+    @Override
+    Element element() {
+        var leaf = getCurrentPath().getLeaf();
+        if (leaf != resolvedLeaf) {
+            var ahead = resolvedAhead.remove(leaf);
+            resolved = ahead != null ? ahead : super.element();
+            resolvedLeaf = leaf;
+        }
+        return resolved;
+    }
+
+    private Element resolveAhead(TreePath path) {
+        var el = trees.getElement(path);
+        if (el != null) resolvedAhead.put(path.getLeaf(), el);
+        return el;
+    }
+
+    @Override
+    void add(int start, int length, int type, int modifiers) {
+        if (colors) super.add(start, length, type, modifiers);
+    }
+
+    @Override
+    public Void visitVariable(VariableTree t, Void __) {
+        if (isLocalVariable(getCurrentPath())) {
+            localVariables.add(new Declaration(element(), getCurrentPath(), owner));
+            return super.visitVariable(t, null);
+        }
+        var isPrivate = t.getModifiers().getFlags().contains(Modifier.PRIVATE);
+        if (!isPrivate) return super.visitVariable(t, null);
+        return inPrivateDeclaration(() -> super.visitVariable(t, null));
+    }
+
+    @Override
+    public Void visitMethod(MethodTree t, Void __) {
+        var isPrivate = t.getModifiers().getFlags().contains(Modifier.PRIVATE);
+        var isEmptyConstructor = t.getParameters().isEmpty() && t.getReturnType() == null;
+        if (!isPrivate || isEmptyConstructor) return scanMethod(t);
+        return inPrivateDeclaration(() -> scanMethod(t));
+    }
+
+    /** Scan t for the exceptions it throws, and check that it throws every exception it declares */
+    private Void scanMethod(MethodTree t) {
+        // Abstract and native methods don't throw anything
+        if (t.getBody() == null) return super.visitMethod(t, null);
+        var pushDeclared = declaredExceptions;
+        var pushObserved = observedExceptions;
+        declaredExceptions = declared(t);
+        observedExceptions = new HashSet<>();
+        super.visitMethod(t, null);
+        for (var exception : declaredExceptions.keySet()) {
+            if (!observedExceptions.contains(exception)) {
+                notThrown.put(declaredExceptions.get(exception), exception);
+            }
+        }
+        declaredExceptions = pushDeclared;
+        observedExceptions = pushObserved;
+        return null;
+    }
+
+    private Map<String, TreePath> declared(MethodTree t) {
+        var names = new HashMap<String, TreePath>();
+        for (var e : t.getThrows()) {
+            var path = new TreePath(getCurrentPath(), e);
+            var to = resolveAhead(path);
+            if (!(to instanceof TypeElement)) continue;
+            var type = (TypeElement) to;
+            names.put(type.getQualifiedName().toString(), path);
+        }
+        return names;
+    }
+
+    @Override
+    public Void visitClass(ClassTree t, Void __) {
+        var isPrivate = t.getModifiers().getFlags().contains(Modifier.PRIVATE);
+        if (!isPrivate) return super.visitClass(t, null);
+        return inPrivateDeclaration(() -> super.visitClass(t, null));
+    }
+
+    private Void inPrivateDeclaration(Supplier<Void> scan) {
+        var d = new Declaration(element(), getCurrentPath(), owner);
+        privateDeclarations.add(d);
+        if (owner != null) owner.nested.add(d);
+        var push = owner;
+        owner = d;
+        try {
+            return scan.get();
+        } finally {
+            owner = push;
+        }
+    }
+
+    private boolean isLocalVariable(TreePath path) {
+        var parent = path.getParentPath().getLeaf();
+        var kind = parent.getKind();
+        if (kind == Tree.Kind.CLASS || kind == Tree.Kind.INTERFACE) {
+            return false;
+        }
+        if (parent instanceof MethodTree) {
+            return ((MethodTree) parent).getBody() != null;
+        }
+        return true;
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree t, Void __) {
+        foundReference();
+        return super.visitIdentifier(t, null);
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree t, Void __) {
+        foundReference();
+        return super.visitMemberSelect(t, null);
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree t, Void __) {
+        foundReference();
+        return super.visitMemberReference(t, null);
+    }
+
+    @Override
+    public Void visitNewClass(NewClassTree t, Void __) {
+        var target = foundReference();
+        if (target instanceof ExecutableElement) {
+            addThrown((ExecutableElement) target);
+        }
+        return super.visitNewClass(t, null);
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree t, Void __) {
+        // The method a call invokes is the element of its method select, which we'll visit next
+        var target = resolveAhead(new TreePath(getCurrentPath(), t.getMethodSelect()));
+        if (target instanceof ExecutableElement) {
+            addThrown((ExecutableElement) target);
+        }
+        return super.visitMethodInvocation(t, null);
+    }
+
+    @Override
+    public Void visitThrow(ThrowTree t, Void __) {
+        var path = new TreePath(getCurrentPath(), t.getExpression());
+        addThrown(trees.getTypeMirror(path));
+        return super.visitThrow(t, null);
+    }
+
+    private Element foundReference() {
+        var toEl = element();
+        if (toEl == null) return null;
+        var references = owner == null ? reachableReferences : owner.references;
+        if (toEl.asType().getKind() == TypeKind.ERROR) {
+            foundPseudoReference(toEl, references);
+        } else {
+            references.add(toEl);
+        }
+        return toEl;
+    }
+
+    /** toEl didn't resolve, so count it as a reference to every member of its class with the same name */
+    private void foundPseudoReference(Element toEl, List<Element> references) {
+        var parent = toEl.getEnclosingElement();
+        if (!(parent instanceof TypeElement)) {
+            return;
+        }
+        var memberName = toEl.getSimpleName();
+        for (var member : parent.getEnclosedElements()) {
+            if (member.getSimpleName().contentEquals(memberName)) {
+                references.add(member);
+            }
+        }
+    }
+
+    private void addThrown(ExecutableElement method) {
+        for (var type : method.getThrownTypes()) {
+            addThrown(type);
+        }
+    }
+
+    private void addThrown(TypeMirror type) {
+        if (type instanceof DeclaredType) {
+            var declared = (DeclaredType) type;
+            var el = (TypeElement) declared.asElement();
+            observedExceptions.add(el.getQualifiedName().toString());
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package org.javacs.markup;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.*;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Supplier;
+import javax.lang.model.element.*;
+import javax.lang.model.util.Elements;
+import org.javacs.CompileTask;
+import org.javacs.ParseTask;
+
+/**
+ * SemanticTokensProvider classifies every name in a compiled file in one pass over its tree, and encodes the tokens the
+ * way textDocument/semanticTokens expects. Names are located by comparing characters of the source in place, so no
+ * token copies the document.
+ *
+ * <p>Compiling takes a while, so open files are first colored from their parse tree by syntaxTokens, and then again
+ * from the attributed tree once lint has compiled them.
+ */
+public class SemanticTokensProvider {
+    /** The token types and modifiers, in the order of the legend we declare in our capabilities */
+    public static final List<String> TOKEN_TYPES =
+            List.of(
+                    "class",
+                    "interface",
+                    "enum",
+                    "typeParameter",
+                    "parameter",
+                    "variable",
+                    "property",
+                    "enumMember",
+                    "method",
+                    "decorator");
+
+    public static final List<String> TOKEN_MODIFIERS = List.of("declaration", "static", "readonly", "deprecated");
+
+    /** Indexes into TOKEN_TYPES, and bits of TOKEN_MODIFIERS */
+    static final int CLASS = 0,
+            INTERFACE = 1,
+            ENUM = 2,
+            TYPE_PARAMETER = 3,
+            PARAMETER = 4,
+            VARIABLE = 5,
+            PROPERTY = 6,
+            ENUM_MEMBER = 7,
+            METHOD = 8,
+            DECORATOR = 9;
+    static final int DECLARATION = 1, STATIC = 1 << 1, READONLY = 1 << 2, DEPRECATED = 1 << 3;
+
+    private final CompileTask task;
+
+    public SemanticTokensProvider(CompileTask task) {
+        this.task = task;
+    }
+
+    /** The tokens of root, which must be one of the roots of task */
+    public int[] tokens(CompilationUnitTree root) {
+        var highlighter = new Highlighter(task.task, contents(root));
+        highlighter.scan(root, null);
+        return encode(root.getLineMap(), highlighter.tokens, highlighter.size);
+    }
+
+    /**
+     * The tokens we can find without compiling: declarations, and references to fields, parameters and local variables
+     * declared in the same file. Open files are colored with these until lint compiles them.
+     */
+    public static int[] syntaxTokens(ParseTask parse) {
+        var highlighter = new SyntaxHighlighter(parse.task, contents(parse.root));
+        highlighter.scan(parse.root, null);
+        return encode(parse.root.getLineMap(), highlighter.tokens, highlighter.size);
+    }
+
+    static CharSequence contents(CompilationUnitTree root) {
+        try {
+            return root.getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Each token is packed into a long: the start offset in the high 32 bits, then 16 bits of length, and 8 bits each
+     * of type and modifiers, so sorting the longs sorts tokens by position.
+     */
+    static long pack(int start, int length, int type, int modifiers) {
+        return ((long) start << 32) | ((long) length << 16) | (type << 8) | modifiers;
+    }
+
+    static int[] encode(LineMap lines, long[] tokens, int size) {
+        Arrays.sort(tokens, 0, size);
+        var data = new int[size * 5];
+        var count = 0;
+        int lastStart = -1, lastLine = 0, lastColumn = 0;
+        for (var i = 0; i < size; i++) {
+            var start = (int) (tokens[i] >>> 32);
+            // Two trees can share a name, like an enum constant and the constructor call javac generates for it
+            if (start == lastStart) continue;
+            var line = (int) lines.getLineNumber(start) - 1;
+            var column = (int) lines.getColumnNumber(start) - 1;
+            data[count++] = line - lastLine;
+            data[count++] = line == lastLine ? column - lastColumn : column;
+            data[count++] = (int) (tokens[i] >>> 16) & 0xffff;
+            data[count++] = (int) (tokens[i] >>> 8) & 0xff;
+            data[count++] = (int) tokens[i] & 0xff;
+            lastStart = start;
+            lastLine = line;
+            lastColumn = column;
+        }
+        return count == data.length ? data : Arrays.copyOf(data, count);
+    }
+
+    /** Finds the name of each declaration and reference, and asks the subclass what kind of token it is */
+    abstract static class NameScanner extends TreePathScanner<Void, Void> {
+        final SourcePositions pos;
+        final CharSequence contents;
+        long[] tokens = new long[256];
+        int size = 0;
+
+        NameScanner(JavacTask task, CharSequence contents) {
+            this.pos = Trees.instance(task).getSourcePositions();
+            this.contents = contents;
+        }
+
+        /** Add a token for name, written at start, which refers to something declared elsewhere */
+        abstract void referenced(int start, Name name);
+
+        /** Add a token for name, written at start, which is declared by the tree at the current path */
+        abstract void declared(int start, Name name);
+
+        @Override
+        public Void visitIdentifier(IdentifierTree t, Void __) {
+            var start = (int) pos.getStartPosition(root(), t);
+            var end = (int) pos.getEndPosition(root(), t);
+            // Trees that javac generates, like the implicit super() call, have no end
+            if (end != -1 && isName(start, t.getName()) && !isKeyword(t.getName())) {
+                referenced(start, t.getName());
+            }
+            return super.visitIdentifier(t, null);
+        }
+
+        @Override
+        public Void visitMemberSelect(MemberSelectTree t, Void __) {
+            var end = (int) pos.getEndPosition(root(), t);
+            var name = t.getIdentifier();
+            if (end != -1 && isName(end - name.length(), name) && !isKeyword(name)) {
+                referenced(end - name.length(), name);
+            }
+            return super.visitMemberSelect(t, null);
+        }
+
+        @Override
+        public Void visitMemberReference(MemberReferenceTree t, Void __) {
+            var end = (int) pos.getEndPosition(root(), t);
+            var name = t.getName();
+            if (end != -1 && isName(end - name.length(), name)) {
+                referenced(end - name.length(), name);
+            }
+            return super.visitMemberReference(t, null);
+        }
+
+        @Override
+        public Void visitVariable(VariableTree t, Void __) {
+            // Lambda parameters may not have a type
+            var from = t.getType() == null ? -1 : (int) pos.getEndPosition(root(), t.getType());
+            if (from == -1) from = (int) pos.getStartPosition(root(), t);
+            declaration(from, t.getName());
+            return super.visitVariable(t, null);
+        }
+
+        @Override
+        public Void visitMethod(MethodTree t, Void __) {
+            if (!t.getName().contentEquals("<init>")) {
+                var from = (int) pos.getEndPosition(root(), t.getReturnType());
+                declaration(from, t.getName());
+            }
+            return super.visitMethod(t, null);
+        }
+
+        @Override
+        public Void visitClass(ClassTree t, Void __) {
+            var from = (int) pos.getEndPosition(root(), t.getModifiers());
+            if (from == -1) from = (int) pos.getStartPosition(root(), t);
+            declaration(from, t.getSimpleName());
+            return super.visitClass(t, null);
+        }
+
+        @Override
+        public Void visitTypeParameter(TypeParameterTree t, Void __) {
+            declaration((int) pos.getStartPosition(root(), t), t.getName());
+            return super.visitTypeParameter(t, null);
+        }
+
+        CompilationUnitTree root() {
+            return getCurrentPath().getCompilationUnit();
+        }
+
+        /** Is the tree at the current path the name of an annotation? */
+        boolean isAnnotationName() {
+            return getCurrentPath().getParentPath().getLeaf() instanceof AnnotationTree;
+        }
+
+        private boolean isKeyword(Name name) {
+            return name.contentEquals("this") || name.contentEquals("super") || name.contentEquals("class");
+        }
+
+        /** Find name in the source of the tree at the current path, starting at from */
+        private void declaration(int from, Name name) {
+            if (from == -1 || name.length() == 0) return;
+            var end = (int) pos.getEndPosition(root(), getCurrentPath().getLeaf());
+            if (end == -1) return;
+            var start = indexOfName(from, end, name);
+            if (start == -1) return;
+            declared(start, name);
+        }
+
+        void add(int start, int length, int type, int modifiers) {
+            if (size == tokens.length) tokens = Arrays.copyOf(tokens, size * 2);
+            tokens[size++] = pack(start, length, type, modifiers);
+        }
+
+        /** Is name written at start? */
+        private boolean isName(int start, Name name) {
+            if (start < 0 || start + name.length() > contents.length()) return false;
+            for (var i = 0; i < name.length(); i++) {
+                if (contents.charAt(start + i) != name.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        /** The first place name is written as a whole word between from and end, or -1 */
+        private int indexOfName(int from, int end, Name name) {
+            for (var i = from; i + name.length() <= end; i++) {
+                if (!isName(i, name)) continue;
+                if (i > 0 && Character.isJavaIdentifierPart(contents.charAt(i - 1))) continue;
+                var after = i + name.length();
+                if (after < contents.length() && Character.isJavaIdentifierPart(contents.charAt(after))) continue;
+                return i;
+            }
+            return -1;
+        }
+    }
+
+    /** Classifies names by the element javac attributed them to */
+    static class Highlighter extends NameScanner {
+        final Trees trees;
+        final Elements elements;
+
+        Highlighter(JavacTask task, CharSequence contents) {
+            super(task, contents);
+            this.trees = Trees.instance(task);
+            this.elements = task.getElements();
+        }
+
+        /** The element the tree at the current path refers to or declares */
+        Element element() {
+            return trees.getElement(getCurrentPath());
+        }
+
+        @Override
+        void referenced(int start, Name name) {
+            var element = element();
+            if (element == null) return;
+            var type = type(element);
+            if (type == -1) return;
+            // An annotation's name is colored like the annotation
+            if (isAnnotationName()) type = DECORATOR;
+            add(start, name.length(), type, modifiers(element));
+        }
+
+        @Override
+        void declared(int start, Name name) {
+            var element = element();
+            if (element == null) return;
+            var type = type(element);
+            if (type == -1) return;
+            add(start, name.length(), type, modifiers(element) | DECLARATION);
+        }
+
+        private int type(Element element) {
+            switch (element.getKind()) {
+                case CLASS:
+                case RECORD:
+                    return CLASS;
+                case INTERFACE:
+                    return INTERFACE;
+                case ANNOTATION_TYPE:
+                    return DECORATOR;
+                case ENUM:
+                    return ENUM;
+                case TYPE_PARAMETER:
+                    return TYPE_PARAMETER;
+                case PARAMETER:
+                    return PARAMETER;
+                case LOCAL_VARIABLE:
+                case EXCEPTION_PARAMETER:
+                case RESOURCE_VARIABLE:
+                case BINDING_VARIABLE:
+                    return VARIABLE;
+                case FIELD:
+                    return PROPERTY;
+                case ENUM_CONSTANT:
+                    return ENUM_MEMBER;
+                case METHOD:
+                    return METHOD;
+                default:
+                    return -1;
+            }
+        }
+
+        private int modifiers(Element element) {
+            var modifiers = 0;
+            var flags = element.getModifiers();
+            if (flags.contains(Modifier.STATIC)) modifiers |= STATIC;
+            if (flags.contains(Modifier.FINAL) && element instanceof VariableElement) modifiers |= READONLY;
+            if (elements.isDeprecated(element)) modifiers |= DEPRECATED;
+            return modifiers;
+        }
+    }
+
+    /**
+     * Classifies names using only the parse tree. Declarations are classified by where they appear, and references
+     * only when they name a field of an enclosing class, or a parameter or local variable declared in an enclosing
+     * scope. Everything else waits for Highlighter.
+     */
+    private static class SyntaxHighlighter extends NameScanner {
+        /** The names declared in each enclosing scope, innermost first, each packed as type << 8 | modifiers */
+        final Deque<Map<Name, Integer>> scopes = new ArrayDeque<>();
+
+        SyntaxHighlighter(JavacTask task, CharSequence contents) {
+            super(task, contents);
+        }
+
+        @Override
+        void referenced(int start, Name name) {
+            if (isAnnotationName()) {
+                add(start, name.length(), DECORATOR, 0);
+                return;
+            }
+            var path = getCurrentPath();
+            if (!(path.getLeaf() instanceof IdentifierTree)) return;
+            // In a call like foo(), foo is a method, even if a variable is also named foo
+            var parent = path.getParentPath().getLeaf();
+            if (parent instanceof MethodInvocationTree
+                    && ((MethodInvocationTree) parent).getMethodSelect() == path.getLeaf()) return;
+            for (var scope : scopes) {
+                var found = scope.get(name);
+                if (found == null) continue;
+                add(start, name.length(), found >> 8, found & 0xff);
+                return;
+            }
+        }
+
+        @Override
+        void declared(int start, Name name) {
+            var path = getCurrentPath();
+            var leaf = path.getLeaf();
+            var parent = path.getParentPath().getLeaf();
+            int type, modifiers;
+            if (leaf instanceof ClassTree) {
+                type = classType(leaf.getKind());
+                modifiers = modifiers(((ClassTree) leaf).getModifiers());
+            } else if (leaf instanceof MethodTree) {
+                type = METHOD;
+                modifiers = modifiers(((MethodTree) leaf).getModifiers());
+            } else if (leaf instanceof TypeParameterTree) {
+                type = TYPE_PARAMETER;
+                modifiers = 0;
+            } else if (leaf instanceof VariableTree && parent instanceof ClassTree) {
+                var packed = field((ClassTree) parent, (VariableTree) leaf);
+                type = packed >> 8;
+                modifiers = packed & 0xff;
+            } else if (leaf instanceof VariableTree) {
+                var isParameter = parent instanceof MethodTree || parent instanceof LambdaExpressionTree;
+                type = isParameter ? PARAMETER : VARIABLE;
+                modifiers = modifiers(((VariableTree) leaf).getModifiers());
+                if (!scopes.isEmpty()) scopes.peek().put(name, type << 8 | modifiers);
+            } else {
+                return;
+            }
+            add(start, name.length(), type, modifiers | DECLARATION);
+        }
+
+        @Override
+        public Void visitClass(ClassTree t, Void __) {
+            // Fields are visible everywhere in the class, even before they're declared
+            var fields = new HashMap<Name, Integer>();
+            for (var member : t.getMembers()) {
+                if (member instanceof VariableTree) {
+                    var field = (VariableTree) member;
+                    fields.put(field.getName(), field(t, field));
+                }
+            }
+            return inScope(fields, () -> super.visitClass(t, null));
+        }
+
+        @Override
+        public Void visitMethod(MethodTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitMethod(t, null));
+        }
+
+        @Override
+        public Void visitLambdaExpression(LambdaExpressionTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitLambdaExpression(t, null));
+        }
+
+        @Override
+        public Void visitBlock(BlockTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitBlock(t, null));
+        }
+
+        @Override
+        public Void visitForLoop(ForLoopTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitForLoop(t, null));
+        }
+
+        @Override
+        public Void visitEnhancedForLoop(EnhancedForLoopTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitEnhancedForLoop(t, null));
+        }
+
+        @Override
+        public Void visitCatch(CatchTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitCatch(t, null));
+        }
+
+        @Override
+        public Void visitTry(TryTree t, Void __) {
+            return inScope(new HashMap<>(), () -> super.visitTry(t, null));
+        }
+
+        private Void inScope(Map<Name, Integer> scope, Supplier<Void> scan) {
+            scopes.push(scope);
+            try {
+                return scan.get();
+            } finally {
+                scopes.pop();
+            }
+        }
+
+        private int classType(Tree.Kind kind) {
+            switch (kind) {
+                case INTERFACE:
+                    return INTERFACE;
+                case ENUM:
+                    return ENUM;
+                case ANNOTATION_TYPE:
+                    return DECORATOR;
+                default:
+                    return CLASS;
+            }
+        }
+
+        /** The type and modifiers of field, packed like scopes */
+        private int field(ClassTree parent, VariableTree field) {
+            if (isEnumConstant(parent, field)) return ENUM_MEMBER << 8 | STATIC | READONLY;
+            var modifiers = modifiers(field.getModifiers());
+            // Fields of interfaces are constants
+            if (parent.getKind() == Tree.Kind.INTERFACE) modifiers |= STATIC | READONLY;
+            return PROPERTY << 8 | modifiers;
+        }
+
+        /** Enum constants are parsed as fields whose type is the enum, initialized by a call to its constructor */
+        private boolean isEnumConstant(ClassTree parent, VariableTree field) {
+            if (parent.getKind() != Tree.Kind.ENUM) return false;
+            if (!(field.getInitializer() instanceof NewClassTree)) return false;
+            // The enum's name is not written before a constant
+            return field.getType() == null || pos.getEndPosition(root(), field.getType()) == -1;
+        }
+
+        private int modifiers(ModifiersTree tree) {
+            var modifiers = 0;
+            var flags = tree.getFlags();
+            if (flags.contains(Modifier.STATIC)) modifiers |= STATIC;
+            if (flags.contains(Modifier.FINAL)) modifiers |= READONLY;
+            for (var a : tree.getAnnotations()) {
+                var name = a.getAnnotationType().toString();
+                if (name.equals("Deprecated") || name.equals("java.lang.Deprecated")) modifiers |= DEPRECATED;
+            }
+            return modifiers;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.javacs.markup;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.javacs.lsp.Diagnostic;
+
+/**
+ * WarningCache remembers the unused and not-thrown warnings ErrorProvider found in each file, the semantic tokens if it
+ * was asked for them, and the SHA-256 digest of the contents they were found in, so a file whose contents haven't
+ * changed isn't scanned again. A 32-bit hash isn't enough, because an edit that happens to keep the hash would show the
+ * warnings of the old contents.
+ *
+ * <p>Not-thrown warnings also depend on the throws clauses of the methods a file calls, so when the signature of a file
+ * changes, the files that use it have to be forgotten.
+ */
+public class WarningCache {
+    private static class Warnings {
+        final byte[] digest;
+        final List<Diagnostic> diagnostics;
+        final int[] tokens;
+
+        Warnings(byte[] digest, List<Diagnostic> diagnostics, int[] tokens) {
+            this.digest = digest;
+            this.diagnostics = diagnostics;
+            this.tokens = tokens;
+        }
+    }
+
+    private final Map<Path, Warnings> warnings = new HashMap<>();
+
+    /** The warnings we found in file when its contents had digest, or null if we haven't scanned that version */
+    List<Diagnostic> get(Path file, byte[] digest) {
+        var found = warnings.get(file);
+        if (found == null || !MessageDigest.isEqual(found.digest, digest)) return null;
+        return found.diagnostics;
+    }
+
+    /** The semantic tokens we found in file when its contents had digest, or null */
+    int[] tokens(Path file, byte[] digest) {
+        var found = warnings.get(file);
+        if (found == null || !MessageDigest.isEqual(found.digest, digest)) return null;
+        return found.tokens;
+    }
+
+    /** Remember the warnings of file, and its tokens, which may be null if we didn't look for them */
+    void put(Path file, byte[] digest, List<Diagnostic> diagnostics, int[] tokens) {
+        warnings.put(file, new Warnings(digest, List.copyOf(diagnostics), tokens));
+    }
+
+    /** Scan file again next time, because something it uses changed */
+    public void forget(Path file) {
+        warnings.remove(file);
+    }
+
+    public void clear() {
+        warnings.clear();
+    }
+}
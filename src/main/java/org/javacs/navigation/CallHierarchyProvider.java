@@ -0,0 +1,199 @@
+package org.javacs.navigation;
+
+import com.google.gson.JsonPrimitive;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import javax.lang.model.element.ExecutableElement;
+import org.javacs.CompilerProvider;
+import org.javacs.FindHelper;
+import org.javacs.ParseTask;
+import org.javacs.XrefIndex;
+import org.javacs.lsp.*;
+
+/**
+ * CallHierarchyProvider answers callHierarchy requests from the calls that XrefIndex records while compiling. Incoming
+ * calls invert the recorded edges, so only the files that changed since they were indexed, and contain the name of the
+ * method, are compiled. Each item remembers its XrefIndex symbol in `data`.
+ */
+public class CallHierarchyProvider {
+    private final CompilerProvider compiler;
+    /** compilerFor[f] compiles f, when files in different workspace roots need different compilers */
+    private final Function<Path, ? extends CompilerProvider> compilerFor;
+
+    public CallHierarchyProvider(Function<Path, ? extends CompilerProvider> compilerFor, Path file) {
+        this.compiler = compilerFor.apply(file);
+        this.compilerFor = compilerFor;
+    }
+
+    /** The method or constructor declared or called at line:column of file, or an empty list if there isn't one. */
+    public List<CallHierarchyItem> prepare(Path file, int line, int column) {
+        String symbol;
+        try (var task = compiler.compile(file)) {
+            XrefIndex.update(task);
+            var element = NavigationHelper.findElement(task, file, line, column);
+            if (!(element instanceof ExecutableElement)) return List.of();
+            symbol = XrefIndex.symbol(task.task, element);
+        }
+        if (symbol == null) return List.of();
+        var item = item(symbol);
+        if (item == null) return List.of();
+        return List.of(item);
+    }
+
+    /** The methods that call item, and where they call it. */
+    public List<CallHierarchyIncomingCall> incoming(CallHierarchyItem item) {
+        if (item.data == null) return List.of();
+        var callee = item.data.getAsString();
+        var unindexed = new ArrayList<Path>();
+        var calls = new ArrayList<>(XrefIndex.callsTo(callee, unindexed));
+        LOG.info(String.format("...found %d indexed calls, compile %d more files", calls.size(), unindexed.size()));
+        calls.addAll(compileCallsTo(callee, unindexed));
+        var byCaller = group(calls, c -> c.caller);
+        var incoming = new ArrayList<CallHierarchyIncomingCall>();
+        for (var caller : byCaller.keySet()) {
+            var from = item(caller);
+            if (from == null) continue;
+            incoming.add(new CallHierarchyIncomingCall(from, byCaller.get(caller)));
+        }
+        return incoming;
+    }
+
+    /** The methods that item calls, and where it calls them. */
+    public List<CallHierarchyOutgoingCall> outgoing(CallHierarchyItem item) {
+        if (item.data == null) return List.of();
+        var caller = item.data.getAsString();
+        var file = findDeclaration(className(caller));
+        if (file == CompilerProvider.NOT_FOUND) return List.of();
+        var calls = XrefIndex.calls(file);
+        if (calls == null) {
+            try (var task = compilerFor.apply(file).compile(file)) {
+                XrefIndex.update(task);
+                calls = XrefIndex.calls(task, task.root());
+            }
+        }
+        var mine = new ArrayList<XrefIndex.Call>();
+        for (var c : calls) {
+            if (c.caller.equals(caller)) mine.add(c);
+        }
+        var byCallee = group(mine, c -> c.callee);
+        var outgoing = new ArrayList<CallHierarchyOutgoingCall>();
+        for (var callee : byCallee.keySet()) {
+            var to = item(callee);
+            if (to == null) continue;
+            outgoing.add(new CallHierarchyOutgoingCall(to, byCallee.get(callee)));
+        }
+        return outgoing;
+    }
+
+    /** Compile files ReferenceProvider.CHUNK_FILES at a time, with the compiler of their workspace root */
+    private List<XrefIndex.Call> compileCallsTo(String callee, List<Path> files) {
+        var groups = new LinkedHashMap<CompilerProvider, List<Path>>();
+        for (var f : files) {
+            groups.computeIfAbsent(compilerFor.apply(f), __ -> new ArrayList<>()).add(f);
+        }
+        var found = new ArrayList<XrefIndex.Call>();
+        for (var group : groups.entrySet()) {
+            var paths = group.getValue();
+            for (var start = 0; start < paths.size(); start += ReferenceProvider.CHUNK_FILES) {
+                var chunk = paths.subList(start, Math.min(start + ReferenceProvider.CHUNK_FILES, paths.size()));
+                try (var task = group.getKey().compile(chunk.toArray(Path[]::new))) {
+                    XrefIndex.update(task);
+                    for (var root : task.roots) {
+                        for (var c : XrefIndex.calls(task, root)) {
+                            if (c.callee.equals(callee)) found.add(c);
+                        }
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private Map<String, List<Range>> group(List<XrefIndex.Call> calls, Function<XrefIndex.Call, String> key) {
+        var groups = new LinkedHashMap<String, List<Range>>();
+        for (var c : calls) {
+            groups.computeIfAbsent(key.apply(c), __ -> new ArrayList<>()).add(c.range);
+        }
+        return groups;
+    }
+
+    private String className(String symbol) {
+        var hash = symbol.indexOf('#');
+        return hash == -1 ? symbol : symbol.substring(0, hash);
+    }
+
+    /** The file that declares className, which may be a member class, so the name may not match the file */
+    private Path findDeclaration(String className) {
+        for (var name = className; ; name = name.substring(0, name.lastIndexOf('.'))) {
+            var file = compiler.findTypeDeclaration(name);
+            if (file != CompilerProvider.NOT_FOUND || name.indexOf('.') == -1) return file;
+        }
+    }
+
+    /** An item for symbol, which is a method, or a class whose initializers make calls */
+    private CallHierarchyItem item(String symbol) {
+        var className = className(symbol);
+        var outerName = className;
+        var source = compiler.findAnywhere(outerName);
+        while (source.isEmpty() && outerName.indexOf('.') != -1) {
+            outerName = outerName.substring(0, outerName.lastIndexOf('.'));
+            source = compiler.findAnywhere(outerName);
+        }
+        if (source.isEmpty()) return null;
+        var parse = compiler.parse(source.get());
+        var type = FindHelper.findType(parse, className);
+        if (type == null) return null;
+        var typePath = TreePath.getPath(parse.root, type);
+        var item = new CallHierarchyItem();
+        item.detail = className;
+        item.uri = source.get().toUri();
+        item.data = new JsonPrimitive(symbol);
+        if (symbol.equals(className)) {
+            item.name = type.getSimpleName().toString();
+            item.kind = SymbolKind.Class;
+            setRanges(item, parse, typePath, item.name);
+            return item;
+        }
+        var method = findMethod(type, symbol);
+        if (method == null) return null;
+        var isConstructor = method.getName().contentEquals("<init>");
+        item.name = isConstructor ? type.getSimpleName().toString() : method.getName().toString();
+        item.kind = isConstructor ? SymbolKind.Constructor : SymbolKind.Method;
+        setRanges(item, parse, new TreePath(typePath, method), item.name);
+        return item;
+    }
+
+    private void setRanges(CallHierarchyItem item, ParseTask parse, TreePath path, String name) {
+        item.range = FindHelper.location(parse, path, "").range;
+        item.selectionRange = FindHelper.location(parse, path, name).range;
+    }
+
+    /**
+     * The declaration of the method named by symbol. Type variables erase to their bounds, which aren't written in
+     * the declaration, so if no parameter list matches exactly we accept the only method with the same arity.
+     */
+    private MethodTree findMethod(ClassTree type, String symbol) {
+        var name = symbol.substring(symbol.indexOf('#') + 1, symbol.indexOf('('));
+        var parameters = symbol.substring(symbol.indexOf('(') + 1, symbol.length() - 1);
+        var erased = parameters.isEmpty() ? new String[0] : parameters.split(",");
+        var sameArity = new ArrayList<MethodTree>();
+        for (var member : type.getMembers()) {
+            if (member.getKind() != Tree.Kind.METHOD) continue;
+            var method = (MethodTree) member;
+            if (!method.getName().contentEquals(name)) continue;
+            if (method.getParameters().size() != erased.length) continue;
+            if (FindHelper.isSameMethodType(method, erased)) return method;
+            sameArity.add(method);
+        }
+        if (sameArity.size() == 1) return sameArity.get(0);
+        return null;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -29,6 +29,9 @@ public class DefinitionProvider {
     }
 
     public List<Location> find() {
+        // Most references to workspace types can be resolved without attributing anything
+        var fromParse = new ParseOnlyDefinition(compiler, file, line, column).find();
+        if (fromParse.isPresent()) return fromParse.get();
         try (var task = compiler.compile(file)) {
             var element = NavigationHelper.findElement(task, file, line, column);
             if (element == null) return NOT_SUPPORTED;
@@ -76,7 +79,7 @@ public class DefinitionProvider {
             var trees = Trees.instance(task.task);
             var elements = task.task.getElements();
             var parentClass = elements.getTypeElement(className);
-            for (var member : elements.getAllMembers(parentClass)) {
+            for (var member : compiler.memberIndex().elements(task.task, parentClass, memberName)) {
                 if (!member.getSimpleName().contentEquals(memberName)) continue;
                 var path = trees.getPath(member);
                 if (path == null) continue;
@@ -0,0 +1,176 @@
+package org.javacs.navigation;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.TreePath;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import org.javacs.CompilerProvider;
+import org.javacs.FindHelper;
+import org.javacs.TypeHierarchyIndex;
+import org.javacs.lsp.Location;
+
+/**
+ * ImplementationProvider finds the classes that implement an interface or extend a class, and the methods that
+ * override a method, using TypeHierarchyIndex. Declarations are read from the parse tree; references to classes and
+ * methods are compiled to find out what they refer to.
+ */
+public class ImplementationProvider {
+    private final CompilerProvider compiler;
+    private final Path file;
+    private final int line, column;
+
+    /** A method whose overrides we're looking for. Parameters are erased simple names, or null for a type variable. */
+    private static class Method {
+        final String className, name;
+        final List<String> parameters;
+
+        Method(String className, String name, List<String> parameters) {
+            this.className = className;
+            this.name = name;
+            this.parameters = parameters;
+        }
+    }
+
+    public ImplementationProvider(CompilerProvider compiler, Path file, int line, int column) {
+        this.compiler = compiler;
+        this.file = file;
+        this.line = line;
+        this.column = column;
+    }
+
+    public List<Location> find() {
+        var parse = compiler.parse(file);
+        var path = NavigationHelper.findPath(parse, line, column);
+        if (path == null) return List.of();
+        var leaf = path.getLeaf();
+        if (leaf instanceof ClassTree) {
+            var className = NavigationHelper.declaredClassName(path);
+            if (className == null) return List.of();
+            return findClasses(className);
+        }
+        if (leaf instanceof MethodTree) {
+            var method = (MethodTree) leaf;
+            var className = NavigationHelper.declaredClassName(path.getParentPath());
+            if (className == null || !isOverridable(method.getModifiers().getFlags())) return List.of();
+            return findMethods(new Method(className, method.getName().toString(), parameters(path)));
+        }
+        // References need javac to tell us what they refer to
+        Object target = null;
+        try (var task = compiler.compile(file)) {
+            var element = NavigationHelper.findElement(task, file, line, column);
+            if (element instanceof TypeElement) {
+                target = ((TypeElement) element).getQualifiedName().toString();
+            } else if (element instanceof ExecutableElement && isOverridable(element.getModifiers())) {
+                var executable = (ExecutableElement) element;
+                var parent = (TypeElement) executable.getEnclosingElement();
+                var parameters = new ArrayList<String>();
+                for (var p : executable.getParameters()) {
+                    var type = p.asType();
+                    if (type.getKind() == TypeKind.TYPEVAR) {
+                        parameters.add(null);
+                    } else {
+                        parameters.add(simpleName(task.task.getTypes().erasure(type).toString()));
+                    }
+                }
+                var name = executable.getSimpleName().toString();
+                target = new Method(parent.getQualifiedName().toString(), name, parameters);
+            }
+        }
+        // Finding implementations may compile other files, so the task above has to be closed first
+        if (target instanceof String) return findClasses((String) target);
+        if (target instanceof Method) return findMethods((Method) target);
+        return List.of();
+    }
+
+    private List<Location> findClasses(String className) {
+        var found = new ArrayList<Location>();
+        for (var t : TypeHierarchyIndex.allSubtypes(compiler, className)) {
+            if (t.kind == Tree.Kind.INTERFACE || t.kind == Tree.Kind.ANNOTATION_TYPE) continue;
+            found.add(new Location(t.file.toUri(), t.nameRange));
+        }
+        return found;
+    }
+
+    private List<Location> findMethods(Method method) {
+        if (method.name.equals("<init>")) return List.of();
+        var found = new ArrayList<Location>();
+        for (var t : TypeHierarchyIndex.allSubtypes(compiler, method.className)) {
+            var parse = compiler.parse(t.file);
+            var type = FindHelper.findType(parse, t.className);
+            if (type == null) continue;
+            var typePath = TreePath.getPath(parse.root, type);
+            for (var member : type.getMembers()) {
+                if (!(member instanceof MethodTree)) continue;
+                var candidate = (MethodTree) member;
+                if (!candidate.getName().contentEquals(method.name)) continue;
+                var candidatePath = new TreePath(typePath, candidate);
+                if (!sameParameters(method.parameters, parameters(candidatePath))) continue;
+                found.add(FindHelper.location(parse, candidatePath, method.name));
+            }
+        }
+        return found;
+    }
+
+    private boolean isOverridable(Set<Modifier> modifiers) {
+        return !modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.PRIVATE);
+    }
+
+    /** The simple names of the erased parameter types of the method at path, or null for a type variable */
+    private List<String> parameters(TreePath path) {
+        var method = (MethodTree) path.getLeaf();
+        var typeVariables = new HashSet<String>();
+        for (var p = path; p != null; p = p.getParentPath()) {
+            List<? extends TypeParameterTree> declared = List.of();
+            if (p.getLeaf() instanceof ClassTree) {
+                declared = ((ClassTree) p.getLeaf()).getTypeParameters();
+            } else if (p.getLeaf() instanceof MethodTree) {
+                declared = ((MethodTree) p.getLeaf()).getTypeParameters();
+            }
+            for (var t : declared) {
+                typeVariables.add(t.getName().toString());
+            }
+        }
+        var parameters = new ArrayList<String>();
+        for (var p : method.getParameters()) {
+            // Varargs are array types in the tree, just like they are after erasure
+            var name = erasedName(p.getType());
+            parameters.add(typeVariables.contains(name) ? null : name);
+        }
+        return parameters;
+    }
+
+    private String erasedName(Tree type) {
+        if (type instanceof ParameterizedTypeTree) {
+            return erasedName(((ParameterizedTypeTree) type).getType());
+        }
+        if (type instanceof AnnotatedTypeTree) {
+            return erasedName(((AnnotatedTypeTree) type).getUnderlyingType());
+        }
+        if (type instanceof ArrayTypeTree) {
+            return erasedName(((ArrayTypeTree) type).getType()) + "[]";
+        }
+        return simpleName(type.toString());
+    }
+
+    private String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /** A type variable matches anything, because an override can replace it with a concrete type */
+    private boolean sameParameters(List<String> method, List<String> candidate) {
+        if (method.size() != candidate.size()) return false;
+        for (var i = 0; i < method.size(); i++) {
+            var a = method.get(i);
+            var b = candidate.get(i);
+            if (a != null && b != null && !a.equals(b)) return false;
+        }
+        return true;
+    }
+}
@@ -1,11 +1,15 @@
 package org.javacs.navigation;
 
+import com.sun.source.tree.ClassTree;
+import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import java.nio.file.Path;
+import java.util.Objects;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import org.javacs.CompileTask;
 import org.javacs.FindNameAt;
+import org.javacs.ParseTask;
 
 class NavigationHelper {
 
@@ -22,6 +26,35 @@ class NavigationHelper {
         throw new RuntimeException("file not found");
     }
 
+    /** The qualified name of the class declared at path, or null if it's a local or anonymous class. */
+    static String declaredClassName(TreePath path) {
+        var name = new StringBuilder();
+        for (var p = path; p != null; p = p.getParentPath()) {
+            var leaf = p.getLeaf();
+            if (leaf instanceof ClassTree) {
+                if (name.length() > 0) name.insert(0, '.');
+                name.insert(0, ((ClassTree) leaf).getSimpleName());
+                continue;
+            }
+            switch (leaf.getKind()) {
+                case COMPILATION_UNIT:
+                    var packageName = Objects.toString(p.getCompilationUnit().getPackageName(), "");
+                    if (!packageName.isEmpty()) name.insert(0, packageName + ".");
+                    return name.toString();
+                default:
+                    // Classes inside methods, blocks and initializers can't be named from outside
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    /** The path of the name at line:column, using only the parse tree. */
+    static TreePath findPath(ParseTask task, int line, int column) {
+        var cursor = task.root.getLineMap().getPosition(line, column);
+        return new FindNameAt(task).scan(task.root, cursor);
+    }
+
     static boolean isLocal(Element element) {
         if (element.getModifiers().contains(Modifier.PRIVATE)) {
             return true;
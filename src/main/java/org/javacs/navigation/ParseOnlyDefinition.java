@@ -0,0 +1,395 @@
+package org.javacs.navigation;
+
+import com.sun.source.tree.*;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.logging.Logger;
+import org.javacs.CompilerProvider;
+import org.javacs.FindHelper;
+import org.javacs.FindNameAt;
+import org.javacs.ParseTask;
+import org.javacs.lsp.Location;
+
+/**
+ * ParseOnlyDefinition finds the declaration of a workspace type, or of a member selected from one, using only the
+ * parse trees of the files involved. The import list and the type index are enough to resolve most names. Whenever a
+ * name could mean more than one thing without attribution, for example because a supertype we can't see might
+ * declare it, or a method might be overloaded, it gives up and DefinitionProvider asks javac.
+ */
+class ParseOnlyDefinition {
+    /** How far up the workspace class hierarchy we look for inherited members that could shadow a name */
+    private static final int MAX_DEPTH = 8;
+    /** How many library classes with the same simple name we consider */
+    private static final int MAX_SAME_NAME = 1000;
+
+    private final CompilerProvider compiler;
+    private final Path file;
+    private final int line, column;
+
+    /** Thrown when only attribution can resolve a name */
+    private static class Ambiguous extends RuntimeException {
+        Ambiguous() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** A type or package that a qualifier resolves to */
+    private static class Qualifier {
+        final String name;
+        final boolean isType;
+
+        Qualifier(String name, boolean isType) {
+            this.name = name;
+            this.isType = isType;
+        }
+    }
+
+    ParseOnlyDefinition(CompilerProvider compiler, Path file, int line, int column) {
+        this.compiler = compiler;
+        this.file = file;
+        this.line = line;
+        this.column = column;
+    }
+
+    /** The declaration of the name at line:column, or empty if only javac can find it. */
+    Optional<List<Location>> find() {
+        var task = compiler.parse(file);
+        var cursor = task.root.getLineMap().getPosition(line, column);
+        var path = new FindNameAt(task).scan(task.root, cursor);
+        if (path == null) return Optional.empty();
+        try {
+            var found = resolve(task, path);
+            if (found == null) return Optional.empty();
+            LOG.info("...found " + found.uri + " without compiling");
+            return Optional.of(List.of(found));
+        } catch (Ambiguous __) {
+            return Optional.empty();
+        }
+    }
+
+    private Location resolve(ParseTask task, TreePath path) {
+        var leaf = path.getLeaf();
+        if (isMethodName(path)) {
+            if (!(leaf instanceof MemberSelectTree)) return null;
+            var select = (MemberSelectTree) leaf;
+            var qualifier = qualifier(task, new TreePath(path, select.getExpression()));
+            if (qualifier == null || !qualifier.isType) return null;
+            return method(qualifier.name, select.getIdentifier().toString());
+        }
+        if (leaf instanceof IdentifierTree) {
+            var name = ((IdentifierTree) leaf).getName().toString();
+            if (!isTypePosition(path) && declaresVariable(task.root, name)) return null;
+            var className = resolveType(task, path, name, 0);
+            if (className == null) return null;
+            return type(className);
+        }
+        if (leaf instanceof MemberSelectTree) {
+            var select = (MemberSelectTree) leaf;
+            var name = select.getIdentifier().toString();
+            var qualifier = qualifier(task, new TreePath(path, select.getExpression()));
+            if (qualifier == null) return null;
+            if (!qualifier.isType) return type(qualifier.name + "." + name);
+            return member(qualifier.name, name, isTypePosition(path));
+        }
+        return null;
+    }
+
+    /** Resolve the qualifier of a member select, which is a type or a package. */
+    private Qualifier qualifier(ParseTask task, TreePath path) {
+        var leaf = path.getLeaf();
+        if (leaf instanceof IdentifierTree) {
+            var name = ((IdentifierTree) leaf).getName().toString();
+            if (!isTypePosition(path) && declaresVariable(task.root, name)) return null;
+            var className = resolveType(task, path, name, 0);
+            if (className != null) return new Qualifier(className, true);
+            return new Qualifier(name, false);
+        }
+        if (leaf instanceof MemberSelectTree) {
+            var select = (MemberSelectTree) leaf;
+            var name = select.getIdentifier().toString();
+            var outer = qualifier(task, new TreePath(path, select.getExpression()));
+            if (outer == null) return null;
+            if (outer.isType) {
+                var declaration = declaration(outer.name);
+                if (declaration == null) return null;
+                var members = members(declaration, name);
+                if (members.size() != 1 || !(members.get(0) instanceof ClassTree)) throw new Ambiguous();
+                return new Qualifier(outer.name + "." + name, true);
+            }
+            var qualified = outer.name + "." + name;
+            if (exists(qualified)) return new Qualifier(qualified, true);
+            return new Qualifier(qualified, false);
+        }
+        return null;
+    }
+
+    /**
+     * The qualified name of the type that the simple name `name` means at path, null if it isn't a type, or Ambiguous
+     * if something we can't see, like a type variable or an inherited member, might shadow it.
+     */
+    private String resolveType(ParseTask task, TreePath path, String name, int depth) {
+        if (declaresClass(task.root, name) || declaresTypeParameter(path, name)) throw new Ambiguous();
+        if (mayInherit(task, path, name, depth)) throw new Ambiguous();
+        var onDemand = new ArrayList<String>();
+        for (var i : task.root.getImports()) {
+            var imported = i.getQualifiedIdentifier().toString();
+            var isStar = imported.endsWith(".*");
+            if (i.isStatic()) {
+                // Static imports can import member types, and we don't know the members of library classes
+                if (isStar || imported.endsWith("." + name)) throw new Ambiguous();
+                continue;
+            }
+            if (isStar) {
+                onDemand.add(imported.substring(0, imported.length() - "*".length()) + name);
+            } else if (imported.endsWith("." + name)) {
+                return imported;
+            }
+        }
+        var packageName = Objects.toString(task.root.getPackageName(), "");
+        var samePackage = packageName.isEmpty() ? name : packageName + "." + name;
+        if (compiler.findTypeDeclaration(samePackage) != CompilerProvider.NOT_FOUND) return samePackage;
+        onDemand.add("java.lang." + name);
+        String found = null;
+        for (var candidate : onDemand) {
+            if (!exists(candidate)) continue;
+            if (found != null && !found.equals(candidate)) throw new Ambiguous();
+            found = candidate;
+        }
+        return found;
+    }
+
+    /** True if a class that surrounds path might inherit a member type or field named `name`. */
+    private boolean mayInherit(ParseTask task, TreePath path, String name, int depth) {
+        for (var p = path; p != null; p = p.getParentPath()) {
+            if (p.getLeaf() instanceof ClassTree && inherits(task, p, name, depth)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean inherits(ParseTask task, TreePath classPath, String name, int depth) {
+        if (depth >= MAX_DEPTH) return true;
+        var type = (ClassTree) classPath.getLeaf();
+        var supertypes = new ArrayList<Tree>(type.getImplementsClause());
+        if (type.getExtendsClause() != null) {
+            supertypes.add(type.getExtendsClause());
+        }
+        // Anonymous classes extend the class they instantiate
+        var parent = classPath.getParentPath().getLeaf();
+        if (parent instanceof NewClassTree && ((NewClassTree) parent).getClassBody() == type) {
+            supertypes.add(((NewClassTree) parent).getIdentifier());
+        }
+        // Supertypes are named in the scope that surrounds the class
+        var outside = classPath.getParentPath();
+        for (var s : supertypes) {
+            if (s instanceof ParameterizedTypeTree) {
+                s = ((ParameterizedTypeTree) s).getType();
+            }
+            String className;
+            if (s instanceof IdentifierTree) {
+                className = resolveType(task, outside, ((IdentifierTree) s).getName().toString(), depth + 1);
+            } else if (s instanceof MemberSelectTree && exists(s.toString())) {
+                className = s.toString();
+            } else {
+                return true;
+            }
+            if (className == null) return true;
+            var declaration = declaration(className);
+            // We can't see the members of library classes
+            if (declaration == null) return true;
+            if (!members(declaration, name).isEmpty()) return true;
+            if (inherits(declaration.task, declaration.path, name, depth + 1)) return true;
+        }
+        return false;
+    }
+
+    /** A class declaration in a source file */
+    private static class Declaration {
+        final ParseTask task;
+        final TreePath path;
+
+        Declaration(ParseTask task, TreePath path) {
+            this.task = task;
+            this.path = path;
+        }
+    }
+
+    private Declaration declaration(String className) {
+        var source = compiler.findAnywhere(className);
+        if (source.isEmpty() || !source.get().toUri().getScheme().equals("file")) return null;
+        var task = compiler.parse(Paths.get(source.get().toUri()));
+        var type = FindHelper.findType(task, className);
+        if (type == null) return null;
+        return new Declaration(task, TreePath.getPath(task.root, type));
+    }
+
+    /** True if className is a workspace or library class */
+    private boolean exists(String className) {
+        var lastDot = className.lastIndexOf('.');
+        var simpleName = className.substring(lastDot + 1);
+        for (var c : compiler.publicTopLevelTypes(simpleName, MAX_SAME_NAME)) {
+            if (c.equals(className)) return true;
+        }
+        return compiler.findTypeDeclaration(className) != CompilerProvider.NOT_FOUND;
+    }
+
+    private Location type(String className) {
+        var declaration = declaration(className);
+        if (declaration == null) return null;
+        var type = (ClassTree) declaration.path.getLeaf();
+        return FindHelper.location(declaration.task, declaration.path, type.getSimpleName());
+    }
+
+    /** The field or member type `name` of className, if className declares exactly one thing named `name`. */
+    private Location member(String className, String name, boolean isType) {
+        var declaration = declaration(className);
+        if (declaration == null) return null;
+        var members = members(declaration, name);
+        // If className doesn't declare name, it could inherit it
+        if (members.size() != 1) throw new Ambiguous();
+        var member = members.get(0);
+        if (isType && !(member instanceof ClassTree)) throw new Ambiguous();
+        return FindHelper.location(declaration.task, new TreePath(declaration.path, member), name);
+    }
+
+    /**
+     * The method `name` of className, if it's the only method with that name, and className has no supertypes whose
+     * methods could overload it.
+     */
+    private Location method(String className, String name) {
+        var declaration = declaration(className);
+        if (declaration == null) return null;
+        var type = (ClassTree) declaration.path.getLeaf();
+        var isPlainType = type.getKind() == Tree.Kind.CLASS || type.getKind() == Tree.Kind.INTERFACE;
+        if (!isPlainType || type.getExtendsClause() != null || !type.getImplementsClause().isEmpty()) {
+            throw new Ambiguous();
+        }
+        MethodTree found = null;
+        for (var member : type.getMembers()) {
+            if (!(member instanceof MethodTree)) continue;
+            var method = (MethodTree) member;
+            if (!method.getName().contentEquals(name)) continue;
+            if (found != null) throw new Ambiguous();
+            found = method;
+        }
+        if (found == null) throw new Ambiguous();
+        return FindHelper.location(declaration.task, new TreePath(declaration.path, found), name);
+    }
+
+    /** The fields and member types of declaration named `name` */
+    private List<Tree> members(Declaration declaration, String name) {
+        var found = new ArrayList<Tree>();
+        for (var member : ((ClassTree) declaration.path.getLeaf()).getMembers()) {
+            if (member instanceof VariableTree && ((VariableTree) member).getName().contentEquals(name)) {
+                found.add(member);
+            }
+            if (member instanceof ClassTree && ((ClassTree) member).getSimpleName().contentEquals(name)) {
+                found.add(member);
+            }
+        }
+        return found;
+    }
+
+    private boolean isMethodName(TreePath path) {
+        var parent = path.getParentPath().getLeaf();
+        return parent instanceof MethodInvocationTree
+                && ((MethodInvocationTree) parent).getMethodSelect() == path.getLeaf();
+    }
+
+    /** True if the name at path can only be a type or package, never a variable. */
+    private boolean isTypePosition(TreePath path) {
+        var leaf = path.getLeaf();
+        var parentPath = path.getParentPath();
+        var parent = parentPath.getLeaf();
+        switch (parent.getKind()) {
+            case VARIABLE:
+                return ((VariableTree) parent).getType() == leaf;
+            case METHOD:
+                var method = (MethodTree) parent;
+                return method.getReturnType() == leaf || method.getThrows().contains(leaf);
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE:
+                return true;
+            case NEW_CLASS:
+                return ((NewClassTree) parent).getIdentifier() == leaf;
+            case TYPE_CAST:
+                return ((TypeCastTree) parent).getType() == leaf;
+            case INSTANCE_OF:
+                return ((InstanceOfTree) parent).getType() == leaf;
+            case ANNOTATION:
+            case TYPE_ANNOTATION:
+                return ((AnnotationTree) parent).getAnnotationType() == leaf;
+            case PARAMETERIZED_TYPE:
+            case ARRAY_TYPE:
+            case UNION_TYPE:
+            case INTERSECTION_TYPE:
+            case TYPE_PARAMETER:
+            case EXTENDS_WILDCARD:
+            case SUPER_WILDCARD:
+            case IMPORT:
+                return true;
+            case MEMBER_SELECT:
+                return isTypePosition(parentPath);
+            default:
+                return false;
+        }
+    }
+
+    private boolean declaresVariable(CompilationUnitTree root, String name) {
+        var found = new TreeScanner<Boolean, Void>() {
+            @Override
+            public Boolean visitVariable(VariableTree t, Void __) {
+                if (t.getName().contentEquals(name)) return true;
+                return super.visitVariable(t, null);
+            }
+
+            @Override
+            public Boolean reduce(Boolean a, Boolean b) {
+                return Boolean.TRUE.equals(a) || Boolean.TRUE.equals(b);
+            }
+        }.scan(root, null);
+        return Boolean.TRUE.equals(found);
+    }
+
+    private boolean declaresClass(CompilationUnitTree root, String name) {
+        var found = new TreeScanner<Boolean, Void>() {
+            @Override
+            public Boolean visitClass(ClassTree t, Void __) {
+                if (t.getSimpleName().contentEquals(name)) return true;
+                return super.visitClass(t, null);
+            }
+
+            @Override
+            public Boolean reduce(Boolean a, Boolean b) {
+                return Boolean.TRUE.equals(a) || Boolean.TRUE.equals(b);
+            }
+        }.scan(root, null);
+        return Boolean.TRUE.equals(found);
+    }
+
+    private boolean declaresTypeParameter(TreePath path, String name) {
+        for (var p = path; p != null; p = p.getParentPath()) {
+            List<? extends TypeParameterTree> parameters = List.of();
+            if (p.getLeaf() instanceof ClassTree) {
+                parameters = ((ClassTree) p.getLeaf()).getTypeParameters();
+            } else if (p.getLeaf() instanceof MethodTree) {
+                parameters = ((MethodTree) p.getLeaf()).getTypeParameters();
+            }
+            for (var t : parameters) {
+                if (t.getName().contentEquals(name)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
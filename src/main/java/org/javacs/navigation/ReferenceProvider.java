@@ -2,35 +2,64 @@ package org.javacs.navigation;
 
 import com.sun.source.util.TreePath;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
 import javax.lang.model.element.TypeElement;
 import org.javacs.CompileTask;
 import org.javacs.CompilerProvider;
 import org.javacs.FindHelper;
+import org.javacs.XrefIndex;
 import org.javacs.lsp.Location;
 
 public class ReferenceProvider {
     private final CompilerProvider compiler;
+    /** compilerFor[f] compiles f, when files in different workspace roots need different compilers */
+    private final Function<Path, ? extends CompilerProvider> compilerFor;
     private final Path file;
     private final int line, column;
 
     public static final List<Location> NOT_SUPPORTED = List.of();
 
     public ReferenceProvider(CompilerProvider compiler, Path file, int line, int column) {
-        this.compiler = compiler;
+        this(f -> compiler, file, line, column);
+    }
+
+    public ReferenceProvider(
+            Function<Path, ? extends CompilerProvider> compilerFor, Path file, int line, int column) {
+        this.compiler = compilerFor.apply(file);
+        this.compilerFor = compilerFor;
         this.file = file;
         this.line = line;
         this.column = column;
     }
 
+    /** Candidate files are compiled this many at a time, and their references reported together */
+    public static final int CHUNK_FILES = 50;
+
+    private Consumer<List<Location>> partial = __ -> {};
+
+    /** The name of the element under the cursor in XrefIndex, or null if it isn't indexed */
+    private String symbol;
+
+    /** Find references like find(), and pass each chunk of references to partial as soon as it is found */
+    public List<Location> find(Consumer<List<Location>> partial) {
+        this.partial = partial;
+        return find();
+    }
+
     public List<Location> find() {
         try (var task = compiler.compile(file)) {
+            XrefIndex.update(task);
             var element = NavigationHelper.findElement(task, file, line, column);
             if (element == null) return NOT_SUPPORTED;
             if (NavigationHelper.isLocal(element)) {
-                return findReferences(task);
+                var found = findReferences(task);
+                report(found);
+                return found;
             }
+            symbol = XrefIndex.symbol(task.task, element);
             if (NavigationHelper.isType(element)) {
                 var type = (TypeElement) element;
                 var className = type.getQualifiedName().toString();
@@ -54,16 +83,80 @@ public class ReferenceProvider {
     private List<Location> findTypeReferences(String className) {
         var files = compiler.findTypeReferences(className);
         if (files.length == 0) return List.of();
-        try (var task = compiler.compile(files)) {
-            return findReferences(task);
-        }
+        return findReferences(files);
     }
 
     private List<Location> findMemberReferences(String className, String memberName) {
         var files = compiler.findMemberReferences(className, memberName);
         if (files.length == 0) return List.of();
-        try (var task = compiler.compile(files)) {
-            return findReferences(task);
+        return findReferences(files);
+    }
+
+    /**
+     * Read the references in files that XrefIndex knows about, then compile the rest with the compiler of their
+     * workspace root, one root per thread
+     */
+    private List<Location> findReferences(Path[] files) {
+        var locations = Collections.synchronizedList(new ArrayList<Location>());
+        var stale = new LinkedHashSet<Path>();
+        // file goes first, so the first chunk includes the references closest to the user
+        stale.add(file);
+        stale.addAll(List.of(files));
+        var candidates = stale.size();
+        if (symbol != null) {
+            var it = stale.iterator();
+            while (it.hasNext()) {
+                var indexed = XrefIndex.references(it.next(), symbol);
+                if (indexed == null) continue;
+                locations.addAll(indexed);
+                it.remove();
+            }
+            LOG.info(String.format("...%d of %d files are indexed", candidates - stale.size(), candidates));
+            report(new ArrayList<>(locations));
+        }
+        if (stale.isEmpty()) return locations;
+        // Every chunk needs file, to find the element under the cursor
+        fileIsStale = stale.contains(file);
+        var groups = new LinkedHashMap<CompilerProvider, List<Path>>();
+        groups.put(compiler, new ArrayList<>());
+        for (var f : stale) {
+            groups.computeIfAbsent(compilerFor.apply(f), __ -> new ArrayList<>()).add(f);
+        }
+        // Each root has its own compiler, and the indexes they update are synchronized
+        groups.entrySet().parallelStream()
+                .forEach(group -> findReferences(group.getKey(), group.getValue(), locations));
+        return locations;
+    }
+
+    /** Compile files CHUNK_FILES at a time, so memory doesn't grow with the number of files that might refer to file */
+    private void findReferences(CompilerProvider compiler, List<Path> files, List<Location> locations) {
+        for (var start = 0; start < files.size(); start += CHUNK_FILES) {
+            var end = Math.min(start + CHUNK_FILES, files.size());
+            var chunk = new LinkedHashSet<Path>(files.subList(start, end));
+            // Every chunk needs file, to find the element under the cursor, but only one reports references in file
+            var ownsFile = fileIsStale && compiler == this.compiler && start == 0;
+            chunk.add(file);
+            var found = new ArrayList<Location>();
+            try (var task = compiler.compile(chunk.toArray(Path[]::new))) {
+                XrefIndex.update(task);
+                for (var location : findReferences(task)) {
+                    if (ownsFile || !location.uri.equals(file.toUri())) {
+                        found.add(location);
+                    }
+                }
+            }
+            report(found);
+            locations.addAll(found);
+        }
+    }
+
+    /** True if file wasn't indexed, so the chunks need to report references in file */
+    private boolean fileIsStale;
+
+    /** Chunks of different roots finish on different threads, so they take turns to report */
+    private synchronized void report(List<Location> found) {
+        if (!found.isEmpty()) {
+            partial.accept(found);
         }
     }
 
@@ -79,4 +172,6 @@ public class ReferenceProvider {
         }
         return locations;
     }
+
+    private static final Logger LOG = Logger.getLogger("main");
 }
@@ -0,0 +1,126 @@
+package org.javacs.navigation;
+
+import com.google.gson.JsonPrimitive;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.TypeElement;
+import org.javacs.CompilerProvider;
+import org.javacs.FindHelper;
+import org.javacs.TypeHierarchyIndex;
+import org.javacs.lsp.SymbolKind;
+import org.javacs.lsp.TypeHierarchyItem;
+
+/**
+ * TypeHierarchyProvider answers typeHierarchy requests from TypeHierarchyIndex. Each item remembers the qualified name
+ * of its class in `data`, so supertypes and subtypes don't need to look at the cursor again.
+ */
+public class TypeHierarchyProvider {
+    private final CompilerProvider compiler;
+
+    public TypeHierarchyProvider(CompilerProvider compiler) {
+        this.compiler = compiler;
+    }
+
+    /** The class declared or referenced at line:column of file, or an empty list if there isn't one. */
+    public List<TypeHierarchyItem> prepare(Path file, int line, int column) {
+        var parse = compiler.parse(file);
+        var path = NavigationHelper.findPath(parse, line, column);
+        if (path == null) return List.of();
+        String className = null;
+        if (path.getLeaf() instanceof ClassTree) {
+            className = NavigationHelper.declaredClassName(path);
+        } else {
+            try (var task = compiler.compile(file)) {
+                var element = NavigationHelper.findElement(task, file, line, column);
+                if (element instanceof TypeElement) {
+                    className = ((TypeElement) element).getQualifiedName().toString();
+                }
+            }
+        }
+        if (className == null) return List.of();
+        var item = item(className);
+        if (item == null) return List.of();
+        return List.of(item);
+    }
+
+    /** The direct supertypes of item. We only know the supertypes of workspace classes. */
+    public List<TypeHierarchyItem> supertypes(TypeHierarchyItem item) {
+        if (item.data == null) return List.of();
+        var type = TypeHierarchyIndex.find(compiler, className(item));
+        if (type.isEmpty()) return List.of();
+        var items = new ArrayList<TypeHierarchyItem>();
+        for (var s : TypeHierarchyIndex.supertypes(compiler, type.get())) {
+            var i = item(s);
+            if (i != null) items.add(i);
+        }
+        return items;
+    }
+
+    /** The workspace classes that directly extend or implement item. */
+    public List<TypeHierarchyItem> subtypes(TypeHierarchyItem item) {
+        if (item.data == null) return List.of();
+        var items = new ArrayList<TypeHierarchyItem>();
+        for (var t : TypeHierarchyIndex.subtypes(compiler, className(item))) {
+            items.add(item(t));
+        }
+        return items;
+    }
+
+    private String className(TypeHierarchyItem item) {
+        return item.data.getAsString();
+    }
+
+    private TypeHierarchyItem item(String className) {
+        var type = TypeHierarchyIndex.find(compiler, className);
+        if (type.isPresent()) return item(type.get());
+        // Library classes have items if we can find their source
+        var source = compiler.findAnywhere(className);
+        if (source.isEmpty()) return null;
+        var parse = compiler.parse(source.get());
+        var tree = FindHelper.findType(parse, className);
+        if (tree == null) return null;
+        var path = TreePath.getPath(parse.root, tree);
+        var item = new TypeHierarchyItem();
+        item.name = tree.getSimpleName().toString();
+        item.kind = symbolKind(tree.getKind());
+        item.detail = packageName(className, item.name);
+        item.uri = source.get().toUri();
+        item.range = FindHelper.location(parse, path, "").range;
+        item.selectionRange = FindHelper.location(parse, path, item.name).range;
+        item.data = new JsonPrimitive(className);
+        return item;
+    }
+
+    private TypeHierarchyItem item(TypeHierarchyIndex.Type type) {
+        var item = new TypeHierarchyItem();
+        item.name = type.simpleName();
+        item.kind = symbolKind(type.kind);
+        item.detail = packageName(type.className, item.name);
+        item.uri = type.file.toUri();
+        item.range = type.range;
+        item.selectionRange = type.nameRange;
+        item.data = new JsonPrimitive(type.className);
+        return item;
+    }
+
+    private String packageName(String className, String simpleName) {
+        if (className.length() == simpleName.length()) return "";
+        return className.substring(0, className.length() - simpleName.length() - 1);
+    }
+
+    private int symbolKind(Tree.Kind kind) {
+        switch (kind) {
+            case INTERFACE:
+            case ANNOTATION_TYPE:
+                return SymbolKind.Interface;
+            case ENUM:
+                return SymbolKind.Enum;
+            default:
+                return SymbolKind.Class;
+        }
+    }
+}
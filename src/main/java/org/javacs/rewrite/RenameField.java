@@ -4,6 +4,7 @@ import java.nio.file.Path;
 import java.util.Map;
 import java.util.logging.Logger;
 import org.javacs.CompilerProvider;
+import org.javacs.XrefIndex;
 import org.javacs.lsp.TextEdit;
 
 public class RenameField implements Rewrite {
@@ -23,12 +24,15 @@ public class RenameField implements Rewrite {
             LOG.warning("...no references to " + className + "#" + fieldName);
             return Map.of();
         }
-        LOG.info("...check " + paths.length + " files for references");
-        try (var compile = compiler.compile(paths)) {
-            var helper = new RenameHelper(compile);
-            var edits = helper.renameField(compile.roots, className, fieldName, newName);
-            return edits;
-        }
+        var symbol = XrefIndex.fieldSymbol(className, fieldName);
+        var candidates = paths.length;
+        paths = RenameHelper.referencesOrUnknown(compiler, paths, className, symbol);
+        LOG.info("...check " + paths.length + " files for references, index rules out " + (candidates - paths.length));
+        return RenameHelper.renameInShards(
+                compiler,
+                paths,
+                className,
+                compile -> new RenameHelper(compile).renameField(compile.roots, className, fieldName, newName));
     }
 
     private static final Logger LOG = Logger.getLogger("main");
@@ -14,25 +14,139 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import org.javacs.CompileTask;
+import org.javacs.CompilerProvider;
 import org.javacs.FindHelper;
+import org.javacs.XrefIndex;
 import org.javacs.lsp.Position;
 import org.javacs.lsp.Range;
 import org.javacs.lsp.TextEdit;
 
 class RenameHelper {
+    /** Renames that touch more files than this are split into shards of this many files */
+    static final int SHARD_FILES = 100;
+    /** About how much heap a javac context needs to compile SHARD_FILES files */
+    static final long SHARD_MEMORY = 256L * 1024 * 1024;
+
     final CompileTask task;
 
     RenameHelper(CompileTask task) {
         this.task = task;
     }
 
+    /**
+     * Drop the files that XrefIndex knows don't refer to symbol, keeping the file that declares className, so the
+     * rename only compiles files that refer to symbol or haven't been indexed.
+     */
+    static Path[] referencesOrUnknown(CompilerProvider compiler, Path[] paths, String className, String symbol) {
+        var declaration = compiler.findTypeDeclaration(className);
+        var keep = new ArrayList<Path>();
+        for (var p : paths) {
+            if (p.equals(declaration) || !XrefIndex.excludes(p, List.of(symbol))) {
+                keep.add(p);
+            }
+        }
+        return keep.toArray(Path[]::new);
+    }
+
+    /**
+     * Compile paths and apply rename to the result. Large renames are split into shards of SHARD_FILES files, which
+     * compile at the same time on separate javac contexts, as many at once as there are processors and free heap for.
+     * Every shard includes the file that declares the symbol, so it can resolve the symbol, but only the first shard
+     * reports the edits to that file. The edits are merged in order of path, so the result doesn't depend on which
+     * shard finished first.
+     */
+    static Map<Path, TextEdit[]> renameInShards(
+            CompilerProvider compiler,
+            Path[] paths,
+            String className,
+            Function<CompileTask, Map<Path, TextEdit[]>> rename) {
+        if (paths.length <= SHARD_FILES) {
+            try (var compile = compiler.compile(paths)) {
+                return new TreeMap<>(rename.apply(compile));
+            }
+        }
+        var declaration = compiler.findTypeDeclaration(className);
+        var shards = shard(paths, declaration);
+        var threads = concurrentShards(shards.size());
+        LOG.info("...rename in " + shards.size() + " shards, " + threads + " at a time");
+        var idle = new LinkedBlockingQueue<CompilerProvider>(compiler.shards(threads));
+        var pool = Executors.newFixedThreadPool(threads);
+        try {
+            var results = new ArrayList<Future<Map<Path, TextEdit[]>>>();
+            for (var i = 0; i < shards.size(); i++) {
+                var files = shards.get(i);
+                var ownsDeclaration = i == 0;
+                results.add(
+                        pool.submit(
+                                () -> {
+                                    var shard = idle.take();
+                                    try (var compile = shard.compile(files)) {
+                                        var edits = new HashMap<>(rename.apply(compile));
+                                        if (!ownsDeclaration) edits.remove(declaration);
+                                        return edits;
+                                    } finally {
+                                        // The next shard compiles other files, so don't hold on to this batch
+                                        shard.releaseCachedCompile();
+                                        idle.put(shard);
+                                    }
+                                }));
+            }
+            var merged = new TreeMap<Path, TextEdit[]>();
+            for (var r : results) {
+                merged.putAll(r.get());
+            }
+            return merged;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<Path[]> shard(Path[] paths, Path declaration) {
+        var others = new ArrayList<Path>();
+        var hasDeclaration = false;
+        for (var p : paths) {
+            if (p.equals(declaration)) {
+                hasDeclaration = true;
+            } else {
+                others.add(p);
+            }
+        }
+        var size = hasDeclaration ? SHARD_FILES - 1 : SHARD_FILES;
+        var shards = new ArrayList<Path[]>();
+        for (var start = 0; start < others.size(); start += size) {
+            var files = new ArrayList<Path>();
+            if (hasDeclaration) files.add(declaration);
+            files.addAll(others.subList(start, Math.min(start + size, others.size())));
+            shards.add(files.toArray(Path[]::new));
+        }
+        return shards;
+    }
+
+    /** How many shards fit in the free heap and processors, leaving room for the server's own compiler. */
+    private static int concurrentShards(int shards) {
+        var runtime = Runtime.getRuntime();
+        var free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        var byMemory = (int) (free / SHARD_MEMORY) - 1;
+        var byProcessors = runtime.availableProcessors();
+        return Math.max(1, Math.min(shards, Math.min(byMemory, byProcessors)));
+    }
+
     TextEdit[] renameVariable(CompilationUnitTree root, TreePath rename, String newName) {
         var trees = Trees.instance(task.task);
         var target = trees.getElement(rename);
@@ -179,4 +293,6 @@ class RenameHelper {
             throw new RuntimeException(e);
         }
     }
+
+    private static final Logger LOG = Logger.getLogger("main");
 }
@@ -4,6 +4,7 @@ import java.nio.file.Path;
 import java.util.Map;
 import java.util.logging.Logger;
 import org.javacs.CompilerProvider;
+import org.javacs.XrefIndex;
 import org.javacs.lsp.TextEdit;
 
 public class RenameMethod implements Rewrite {
@@ -26,12 +27,17 @@ public class RenameMethod implements Rewrite {
             LOG.warning("...no references to " + className + "#" + methodName);
             return Map.of();
         }
-        LOG.info("...check " + paths.length + " files for references");
-        try (var compile = compiler.compile(paths)) {
-            var helper = new RenameHelper(compile);
-            var edits = helper.renameMethod(compile.roots, className, methodName, erasedParameterTypes, newName);
-            return edits;
-        }
+        var symbol = XrefIndex.methodSymbol(className, methodName, erasedParameterTypes);
+        var candidates = paths.length;
+        paths = RenameHelper.referencesOrUnknown(compiler, paths, className, symbol);
+        LOG.info("...check " + paths.length + " files for references, index rules out " + (candidates - paths.length));
+        return RenameHelper.renameInShards(
+                compiler,
+                paths,
+                className,
+                compile ->
+                        new RenameHelper(compile)
+                                .renameMethod(compile.roots, className, methodName, erasedParameterTypes, newName));
     }
 
     private static final Logger LOG = Logger.getLogger("main");
@@ -0,0 +1,22 @@
+package org.javacs.color;
+
+import java.util.List;
+
+public class TokensExample<T> {
+    static final int CONSTANT = 1;
+    List<T> items;
+
+    @Deprecated
+    void old() {}
+
+    int method(int parameter) {
+        var local = parameter + CONSTANT;
+        old();
+        items.forEach(item -> System.out.println(item));
+        return local;
+    }
+
+    enum Color {
+        RED
+    }
+}
@@ -0,0 +1,136 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.javacs.lsp.PublishDiagnosticsParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchCheckTest {
+    private final SavedState saved = SavedState.save();
+    private Path root;
+    private SyntheticWorkspace workspace = new SyntheticWorkspace();
+
+    @Before
+    public void createWorkspace() throws IOException {
+        // Other tests leave their workspace in FileStore
+        FileStore.reset();
+        root = Files.createTempDirectory("batch-check");
+        workspace.packages = 3;
+        workspace.classesPerPackage = 4;
+        workspace.writeTo(root);
+        var broken = root.resolve(SyntheticWorkspace.relativePath(1, 0)).resolveSibling("Broken.java");
+        var contents =
+                "package " + SyntheticWorkspace.packageName(1) + ";\n"
+                        + "class Broken {\n"
+                        + "    void test() {\n"
+                        + "        int unused = 1;\n"
+                        + "        String s = 1;\n"
+                        + "    }\n"
+                        + "}\n";
+        Files.writeString(broken, contents);
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        saved.restore();
+        SyntheticWorkspace.delete(root);
+    }
+
+    private static CompilerProvider compiler() {
+        return new JavaCompilerService(Set.of(), Set.of(), Set.of(), List.of());
+    }
+
+    @Test
+    public void directoryBatches() {
+        var a = Path.of("/src/a/A.java");
+        var b = Path.of("/src/a/B.java");
+        var c = Path.of("/test/a/C.java");
+        var batches = BatchCheck.directoryBatches(List.of(c, a, b));
+        assertThat(batches, equalTo(List.of(List.of(a, b), List.of(c))));
+    }
+
+    @Test
+    public void json() {
+        var out = new StringWriter();
+        var summary = new BatchCheck(root, compiler(), 2, BatchCheck.Format.JSON).run(out);
+        assertThat(summary.files, equalTo(workspace.fileCount() + 1));
+        assertThat(summary.batches, equalTo(workspace.packages));
+        assertThat(summary.errors, equalTo(1));
+        var lines = out.toString().split("\n");
+        assertThat(lines.length, equalTo(1));
+        var file = JsonHelper.GSON.fromJson(lines[0], PublishDiagnosticsParams.class);
+        assertThat(file.uri.getPath(), endsWith("Broken.java"));
+        var codes = file.diagnostics.stream().map(d -> d.code).collect(Collectors.toList());
+        assertThat(codes, hasItems("compiler.err.prob.found.req", "unused_local"));
+    }
+
+    @Test
+    public void failedBatchIsReported() {
+        var out = new StringWriter();
+        var summary = new BatchCheck(root, brokenCompiler(), 1, BatchCheck.Format.JSON).run(out);
+        assertThat(summary.files, equalTo(workspace.fileCount() + 1));
+        assertThat(summary.errors, equalTo(workspace.packages));
+        var lines = out.toString().split("\n");
+        assertThat(lines.length, equalTo(workspace.packages));
+        var batch = JsonHelper.GSON.fromJson(lines[0], PublishDiagnosticsParams.class);
+        assertThat(batch.diagnostics.get(0).code, equalTo("batch_failed"));
+        assertThat(batch.diagnostics.get(0).message, containsString("javac crashed"));
+    }
+
+    /** A compiler whose shards throw from compile, like javac does when it hits a bug */
+    private static CompilerProvider brokenCompiler() {
+        return (CompilerProvider)
+                Proxy.newProxyInstance(
+                        CompilerProvider.class.getClassLoader(),
+                        new Class<?>[] {CompilerProvider.class},
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "shards":
+                                    return Collections.nCopies((int) args[0], proxy);
+                                case "compile":
+                                    throw new RuntimeException("javac crashed");
+                                default:
+                                    throw new UnsupportedOperationException(method.getName());
+                            }
+                        });
+    }
+
+    @Test
+    public void checkWithoutRootIsAUsageError() {
+        assertThat(Main.check(new String[] {"--check"}), equalTo(2));
+        assertThat(Main.check(new String[] {"--check", "--threads", "2"}), equalTo(2));
+    }
+
+    @Test
+    public void sarif() {
+        var out = new StringWriter();
+        new BatchCheck(root, compiler(), 1, BatchCheck.Format.SARIF).run(out);
+        var log = JsonHelper.GSON.fromJson(out.toString(), JsonObject.class);
+        assertThat(log.get("version").getAsString(), equalTo("2.1.0"));
+        var results = log.getAsJsonArray("runs").get(0).getAsJsonObject().getAsJsonArray("results");
+        JsonObject error = null;
+        for (var r : results) {
+            if (r.getAsJsonObject().get("level").getAsString().equals("error")) {
+                error = r.getAsJsonObject();
+            }
+        }
+        assertThat(error, notNullValue());
+        var location = error.getAsJsonArray("locations").get(0).getAsJsonObject().getAsJsonObject("physicalLocation");
+        var uri = location.getAsJsonObject("artifactLocation").get("uri").getAsString();
+        assertThat(uri, equalTo(SyntheticWorkspace.relativePath(1, 0).resolveSibling("Broken.java").toString()));
+        assertThat(location.getAsJsonObject("region").get("startLine").getAsInt(), equalTo(5));
+    }
+}
@@ -0,0 +1,89 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.javacs.markup.ErrorProvider;
+import org.javacs.markup.WarningCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lint compiles the changed files, then finds their warnings and semantic tokens. compile and analyze measure the two
+ * parts separately, so analyze / (compile + analyze) is the share of lint time spent after compiling.
+ */
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class BenchmarkLint {
+
+    @State(Scope.Benchmark)
+    public static class LintState {
+        public java.nio.file.Path file;
+        public String contents;
+        public JavaCompilerService compiler;
+        /**
+         * A compile of file that analyze reuses, so it only measures the work after compiling. It holds on to its
+         * compiler until the trial ends, so it needs one of its own.
+         */
+        public CompileTask compiled;
+        private long version;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Trial)
+        public void setup() throws IOException {
+            FileStore.reset();
+            quietBenchmarkLogging();
+
+            file = Paths.get("src/main/java/org/javacs/JavaLanguageServer.java").normalize().toAbsolutePath();
+            contents = Files.readString(file);
+            compiler = createCompiler();
+            compiled = createCompiler().compile(List.of(source()));
+        }
+
+        @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+        public void tearDown() {
+            compiled.close();
+        }
+
+        public SourceFileObject source() {
+            return new SourceFileObject(file, contents, ++version);
+        }
+
+        private static JavaCompilerService createCompiler() {
+            LOG.info("Create new compiler...");
+
+            var workspaceRoot = Paths.get(".").normalize().toAbsolutePath();
+            FileStore.setWorkspaceRoots(Set.of(workspaceRoot));
+            var classPath = new InferConfig(workspaceRoot).classPath();
+            return new JavaCompilerService(classPath, Collections.emptySet(), Collections.emptySet(), List.of());
+        }
+
+        private static void quietBenchmarkLogging() {
+            Main.setRootFormat();
+            Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+            Logger.getLogger("main").setLevel(java.util.logging.Level.WARNING);
+        }
+    }
+
+    @Benchmark
+    public void compile(LintState state, Blackhole blackhole) {
+        try (var compile = state.compiler.compile(List.of(state.source()))) {
+            blackhole.consume(compile.root());
+        }
+    }
+
+    @Benchmark
+    public void analyze(LintState state, Blackhole blackhole) {
+        // A new cache every time, so the file is scanned again
+        var errors = new ErrorProvider(state.compiled, new WarningCache(), Set.of(state.file));
+        blackhole.consume(errors.errors());
+        blackhole.consume(errors.tokens(state.file));
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
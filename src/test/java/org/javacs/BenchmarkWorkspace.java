@@ -0,0 +1,85 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class BenchmarkWorkspace {
+
+    @State(Scope.Benchmark)
+    public static class WorkspaceState {
+        @Param({"1000", "10000", "100000"})
+        public int files;
+
+        public Path root;
+        public SyntheticWorkspace workspace;
+        public JavaCompilerService compiler;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Trial)
+        public void setup() throws IOException {
+            FileStore.reset();
+            quietBenchmarkLogging();
+
+            root = Files.createTempDirectory("synthetic-workspace");
+            workspace = SyntheticWorkspace.ofSize(files);
+            workspace.writeTo(root);
+            FileStore.setWorkspaceRoots(Set.of(root));
+            compiler = new JavaCompilerService(Set.of(), Set.of(), Set.of(), List.of());
+        }
+
+        @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+        public void tearDown() throws IOException {
+            FileStore.reset();
+            SyntheticWorkspace.delete(root);
+        }
+
+        private static void quietBenchmarkLogging() {
+            Main.setRootFormat();
+            Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+            Logger.getLogger("main").setLevel(java.util.logging.Level.WARNING);
+        }
+    }
+
+    @Benchmark
+    public void indexWorkspace(WorkspaceState state, Blackhole blackhole) {
+        FileStore.reset();
+        FileStore.setWorkspaceRoots(Set.of(state.root));
+        blackhole.consume(FileStore.all().size());
+    }
+
+    @Benchmark
+    public void listPackage(WorkspaceState state, Blackhole blackhole) {
+        blackhole.consume(FileStore.list(SyntheticWorkspace.packageName(0)));
+    }
+
+    @Benchmark
+    public void findMemberReferences(WorkspaceState state, Blackhole blackhole) {
+        var className = SyntheticWorkspace.qualifiedName(0, 0);
+        blackhole.consume(state.compiler.findMemberReferences(className, "method0"));
+    }
+
+    @Benchmark
+    public void findTypeReferences(WorkspaceState state, Blackhole blackhole) {
+        var className = SyntheticWorkspace.qualifiedName(0, 0);
+        blackhole.consume(state.compiler.findTypeReferences(className));
+    }
+
+    @Benchmark
+    public void compileOneFile(WorkspaceState state, Blackhole blackhole) {
+        var file = state.root.resolve(SyntheticWorkspace.relativePath(0, 1)).toAbsolutePath().normalize();
+        // A fresh source object each time, so we measure compilation instead of the cached batch
+        var source = new SourceFileObject(file, FileStore.contents(file), SourceFileObject.now());
+        try (var compile = state.compiler.compile(List.of(source))) {
+            blackhole.consume(compile.root());
+        }
+    }
+}
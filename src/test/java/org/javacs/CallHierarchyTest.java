@@ -0,0 +1,117 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CallHierarchyTest {
+    private final SavedState saved = SavedState.save("javacs.xrefCache");
+    private TempWorkspace workspace;
+    private Path root, cache;
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = new TempWorkspace("call-hierarchy");
+        root = workspace.root;
+        cache = Files.createTempDirectory("call-hierarchy-cache");
+        System.setProperty("javacs.xrefCache", cache.toString());
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public Lib() {}\n"
+                        + "    public static int value(int x) { return twice(x); }\n"
+                        + "    static int twice(int x) { return x + x; }\n}\n");
+        workspace.write(
+                "b/User.java",
+                "package b;\nimport a.Lib;\nclass User {\n    int one = Lib.value(1);\n"
+                        + "    int use() {\n        new Lib();\n        return Lib.value(2) + Lib.value(3);\n    }\n"
+                        + "    Runnable later() {\n        return () -> Lib.value(4);\n    }\n}\n");
+        workspace.write("c/Unrelated.java", "package c;\nclass Unrelated {\n    int value() { return 0; }\n}\n");
+        XrefIndex.clearMemory();
+        server = LanguageServerFixture.getJavaLanguageServer(root, diagnostic -> {});
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        XrefIndex.clearMemory();
+        saved.restore();
+        workspace.delete();
+        SyntheticWorkspace.delete(cache);
+    }
+
+    @Test
+    public void prepareMethod() {
+        var items = server.prepareCallHierarchy(position("a/Lib.java", 3, 23)).orElseThrow();
+        assertThat(items, hasSize(1));
+        assertThat(items.get(0).name, equalTo("value"));
+        assertThat(items.get(0).kind, equalTo(SymbolKind.Method));
+        assertThat(items.get(0).detail, equalTo("a.Lib"));
+        assertThat(items.get(0).selectionRange.start.character, equalTo(22));
+    }
+
+    @Test
+    public void prepareConstructorCall() {
+        var items = server.prepareCallHierarchy(position("b/User.java", 5, 9)).orElseThrow();
+        assertThat(items.get(0).name, equalTo("Lib"));
+        assertThat(items.get(0).kind, equalTo(SymbolKind.Constructor));
+    }
+
+    @Test
+    public void incomingCalls() {
+        assertThat(incoming(), containsInAnyOrder("User:1", "use:2", "later:1"));
+    }
+
+    @Test
+    public void incomingCallsFromIndex() {
+        indexEverything();
+        var unindexed = new ArrayList<Path>();
+        assertThat(XrefIndex.callsTo("a.Lib#value(int)", unindexed), hasSize(4));
+        assertThat(unindexed, empty());
+        assertThat(incoming(), containsInAnyOrder("User:1", "use:2", "later:1"));
+    }
+
+    @Test
+    public void callsAreReadFromDisk() {
+        indexEverything();
+        XrefIndex.clearMemory();
+        assertThat(XrefIndex.calls(root.resolve("b/User.java")), hasSize(5));
+    }
+
+    @Test
+    public void outgoingCalls() {
+        var use = server.prepareCallHierarchy(position("b/User.java", 4, 9)).orElseThrow();
+        var outgoing = new ArrayList<String>();
+        for (var call : server.callHierarchyOutgoingCalls(new CallHierarchyParams(use.get(0)))) {
+            outgoing.add(call.to.name + ":" + call.fromRanges.size());
+        }
+        assertThat(outgoing, containsInAnyOrder("Lib:1", "value:2"));
+    }
+
+    private List<String> incoming() {
+        var value = server.prepareCallHierarchy(position("a/Lib.java", 3, 23)).orElseThrow();
+        var incoming = new ArrayList<String>();
+        for (var call : server.callHierarchyIncomingCalls(new CallHierarchyParams(value.get(0)))) {
+            incoming.add(call.from.name + ":" + call.fromRanges.size());
+        }
+        return incoming;
+    }
+
+    private void indexEverything() {
+        try (var task = server.compiler().compile(FileStore.all().toArray(Path[]::new))) {
+            XrefIndex.update(task);
+        }
+    }
+
+    private TextDocumentPositionParams position(String relativePath, int line, int character) {
+        var uri = root.resolve(relativePath).toUri();
+        return new TextDocumentPositionParams(new TextDocumentIdentifier(uri), new Position(line, character));
+    }
+}
@@ -0,0 +1,61 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ClassNameIndexTest {
+    private final ClassNameIndex index =
+            new ClassNameIndex(
+                    List.of(
+                            "java.util.List",
+                            "java.util.ArrayList",
+                            "java.util.LinkedList",
+                            "java.util.concurrent.ConcurrentMap",
+                            "java.util.concurrent.atomic.AtomicInteger",
+                            "java.awt.List"));
+
+    private List<String> bySimpleName(String prefix, int limit) {
+        var result = new ArrayList<String>();
+        index.addBySimpleName(prefix, limit, result);
+        return result;
+    }
+
+    private List<String> bySegment(String prefix) {
+        var result = new ArrayList<String>();
+        index.addFirstBySegment(prefix, Integer.MAX_VALUE, result);
+        return result;
+    }
+
+    @Test
+    public void simpleNamePrefix() {
+        assertThat(bySimpleName("Li", 10), contains("java.util.LinkedList", "java.awt.List", "java.util.List"));
+        assertThat(bySimpleName("Li", 2), hasSize(2));
+        assertThat(bySimpleName("Array", 10), contains("java.util.ArrayList"));
+        assertThat(bySimpleName("Foo", 10), empty());
+    }
+
+    @Test
+    public void segments() {
+        assertThat(
+                bySegment("java.util."),
+                contains("java.util.ArrayList", "java.util.LinkedList", "java.util.List", "java.util.concurrent.ConcurrentMap"));
+        assertThat(bySegment("java."), contains("java.awt.List", "java.util.ArrayList"));
+        assertThat(bySegment("java.util.concurrent.a"), contains("java.util.concurrent.atomic.AtomicInteger"));
+    }
+
+    @Test
+    public void addAndRemove() {
+        index.add("org.example.Listener");
+        index.add("org.example.Listener");
+        index.remove("org.example.Listener");
+        assertThat(bySimpleName("Listen", 10), contains("org.example.Listener"));
+        index.remove("org.example.Listener");
+        assertThat(bySimpleName("Listen", 10), empty());
+        index.remove("java.awt.List");
+        assertThat(bySimpleName("List", 10), contains("java.util.List"));
+    }
+}
@@ -8,6 +8,7 @@ import java.net.URI;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.util.Collections;
+import java.util.Map;
 import org.javacs.guava.ClassPath;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -29,6 +30,22 @@ public class ClassesTest {
         assertThat(jdk, hasItem("java.util.ArrayList"));
     }
 
+    @Test
+    public void jdkModule() {
+        assertThat(ScanClassPath.jdkModule("java.util.List"), equalTo("java.base"));
+        assertThat(ScanClassPath.jdkModule("java.sql.Connection"), equalTo("java.sql"));
+        assertThat(ScanClassPath.jdkModule("org.javacs.Main"), nullValue());
+    }
+
+    @Test
+    public void jdkIndexRoundTrip() throws Exception {
+        var file = Files.createTempDirectory("ClassesTest").resolve("jdk.index");
+        var modules =
+                Map.of("java.util.List", "java.base", "java.util.Map", "java.base", "java.sql.Connection", "java.sql");
+        ScanClassPath.writeJdkIndex(file, modules);
+        assertThat(ScanClassPath.readJdkIndex(file), equalTo(modules));
+    }
+
     @Test
     @Ignore
     public void platformClassPath() throws Exception {
@@ -8,7 +8,9 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -426,6 +428,20 @@ public class CompletionsTest extends CompletionsBase {
         assertThat(resolved.documentation.value, containsString("Second paragraph with `code`."));
     }
 
+    @Test
+    public void prefetchedDocResolved() {
+        var file = "/org/javacs/example/AutocompleteWholeDoc.java";
+        var item =
+                items(file, 17, 14).stream()
+                        .filter(i -> "documentMe".equals(i.label))
+                        .findFirst()
+                        .orElseThrow();
+        // Resolve the top items in the background, like the server does when it's idle
+        server.doAsyncWork();
+        var resolved = resolve(item);
+        assertThat(resolved.documentation.value, containsString("Second paragraph with `code`."));
+    }
+
     @Test
     public void classes() {
         var file = "/org/javacs/example/AutocompleteClasses.java";
@@ -750,6 +766,95 @@ public class CompletionsTest extends CompletionsBase {
         }
     }
 
+    @Test
+    public void refineIdentifier() {
+        var file = FindResource.path("/org/javacs/example/CompleteIdentifiers.java");
+        var contents = FileStore.contents(file);
+        var open = new DidOpenTextDocumentParams();
+        open.textDocument.uri = file.toUri();
+        open.textDocument.text = contents;
+        open.textDocument.version = 1;
+        server.didOpenTextDocument(open);
+        try {
+            var first = filterText("/org/javacs/example/CompleteIdentifiers.java", 15, 21);
+            assertThat(first, hasItems("completeLocal", "completeOuterField"));
+            // Type `Ou` after `complete`, which should filter the previous completions
+            var change = new DidChangeTextDocumentParams();
+            change.textDocument.uri = file.toUri();
+            change.textDocument.version = 2;
+            var evt = new TextDocumentContentChangeEvent();
+            evt.text = contents.replace("            complete\n", "            completeOu\n");
+            change.contentChanges.add(evt);
+            server.didChangeTextDocument(change);
+            var refined = filterText("/org/javacs/example/CompleteIdentifiers.java", 15, 23);
+            assertThat(refined, hasItems("completeOuterField", "completeOuterStatic"));
+            assertThat(refined, not(hasItem("completeLocal")));
+            assertThat(refined, not(hasItem("completeInnerField")));
+        } finally {
+            var close = new DidCloseTextDocumentParams();
+            close.textDocument.uri = file.toUri();
+            server.didCloseTextDocument(close);
+        }
+    }
+
+    @Test
+    public void refineNoticesClosedFileChanges() throws IOException {
+        var target = FindResource.path("/org/javacs/example/RefineTarget.java");
+        var user = FindResource.path("/org/javacs/example/RefineUser.java");
+        var contents =
+                "package org.javacs.example;\n"
+                        + "class RefineUser {\n"
+                        + "    void test() {\n"
+                        + "        RefineTarget.al\n"
+                        + "    }\n"
+                        + "}\n";
+        try {
+            Files.writeString(
+                    target, "package org.javacs.example;\nclass RefineTarget {\n    static int alphaOne;\n}\n");
+            Files.writeString(user, contents);
+            watchedFileChanged(target, FileChangeType.Created);
+            var open = new DidOpenTextDocumentParams();
+            open.textDocument.uri = user.toUri();
+            open.textDocument.text = contents;
+            open.textDocument.version = 1;
+            server.didOpenTextDocument(open);
+            assertThat(filterText("/org/javacs/example/RefineUser.java", 4, 24), hasItem("alphaOne"));
+            // Another member appears in the closed file, while the user types `p`
+            Files.writeString(
+                    target,
+                    "package org.javacs.example;\nclass RefineTarget {\n    static int alphaOne, alphaTwo;\n}\n");
+            Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            watchedFileChanged(target, FileChangeType.Changed);
+            // The background compile of the changed file replaces the compiler's symbol of RefineTarget
+            for (var i = 0; i < 100 && server.doBackgroundWork(); i++) {}
+            var change = new DidChangeTextDocumentParams();
+            change.textDocument.uri = user.toUri();
+            change.textDocument.version = 2;
+            var evt = new TextDocumentContentChangeEvent();
+            evt.text = contents.replace("RefineTarget.al", "RefineTarget.alp");
+            change.contentChanges.add(evt);
+            server.didChangeTextDocument(change);
+            assertThat(filterText("/org/javacs/example/RefineUser.java", 4, 25), hasItem("alphaTwo"));
+        } finally {
+            var close = new DidCloseTextDocumentParams();
+            close.textDocument.uri = user.toUri();
+            server.didCloseTextDocument(close);
+            Files.deleteIfExists(target);
+            Files.deleteIfExists(user);
+            watchedFileChanged(target, FileChangeType.Deleted);
+            watchedFileChanged(user, FileChangeType.Deleted);
+        }
+    }
+
+    private void watchedFileChanged(Path file, int type) {
+        var event = new FileEvent();
+        event.uri = file.toUri();
+        event.type = type;
+        var changes = new DidChangeWatchedFilesParams();
+        changes.changes = List.of(event);
+        server.didChangeWatchedFiles(changes);
+    }
+
     @Test
     public void completeParens() {
         var inserts = insertText("/org/javacs/example/CompleteParens.java", 5, 12);
@@ -0,0 +1,95 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DocStoreTest {
+    private Path dir;
+    private String previousStoreDir;
+
+    @Before
+    public void createArchive() throws IOException {
+        dir = Files.createTempDirectory("DocStoreTest");
+        previousStoreDir = System.setProperty("javacs.docStore", dir.resolve("store").toString());
+        try (var zip = new ZipOutputStream(Files.newOutputStream(dir.resolve("example-sources.jar")))) {
+            zip.putNextEntry(new ZipEntry("com/example/Documented.java"));
+            var source =
+                    "package com.example;\n"
+                            + "import java.util.List;\n"
+                            + "/** A documented class. */\n"
+                            + "public class Documented<T extends Comparable<T>> {\n"
+                            + "    /** A field. */ public int field;\n"
+                            + "    /** A generic method. */\n"
+                            + "    public <E> void generic(\n"
+                            + "            T t, E e, java.util.Map.Entry<String, E> entry, String... rest) {}\n"
+                            + "    /** Not visible. */ private void hidden() {}\n"
+                            + "    /** A list. */ public void overloaded(List<String> list) {}\n"
+                            + "    /** An AWT list. */ public void overloaded(java.awt.List list) {}\n"
+                            + "    /** Other classes. */ public void others(Inner inner, Other other, Object o) {}\n"
+                            + "    /** An inner class. */\n"
+                            + "    public static class Inner { /** A method. */ public int method() { return 1; } }\n"
+                            + "}\n";
+            zip.write(source.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("com/example/Other.java"));
+            zip.write("package com.example;\npublic class Other {}\n".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+    }
+
+    @After
+    public void deleteArchive() throws IOException {
+        if (previousStoreDir == null) System.clearProperty("javacs.docStore");
+        else System.setProperty("javacs.docStore", previousStoreDir);
+        SyntheticWorkspace.delete(dir);
+    }
+
+    @Test
+    public void methodKeyUsesQualifiedErasedNames() {
+        String[] params = {"java.util.Map.Entry", "java.lang.String[]", "int"};
+        assertThat(DocStore.methodKey("m", params), equalTo("m(java.util.Map.Entry,java.lang.String[],int)"));
+    }
+
+    @Test
+    public void buildThenOpen() throws IOException {
+        var archive = dir.resolve("example-sources.jar");
+        assertThat(DocStore.open(archive).isPresent(), equalTo(false));
+        DocStore.build(archive);
+        var store = DocStore.open(archive).orElseThrow();
+
+        var type = store.find("com.example.Documented", DocStore.typeKey());
+        assertThat(type.docs, containsString("A documented class."));
+        var field = store.find("com.example.Documented", DocStore.fieldKey("field"));
+        assertThat(field.docs, containsString("A field."));
+        String[] params = {"java.lang.Comparable", "java.lang.Object", "java.util.Map.Entry", "java.lang.String[]"};
+        var method = store.find("com.example.Documented", DocStore.methodKey("generic", params));
+        assertThat(method.docs, containsString("A generic method."));
+        assertThat(method.detail, containsString("generic("));
+        assertThat(store.find("com.example.Documented", DocStore.methodKey("hidden", new String[0])), nullValue());
+        var inner = store.find("com.example.Documented.Inner", DocStore.methodKey("method", new String[0]));
+        assertThat(inner.docs, containsString("A method."));
+    }
+
+    @Test
+    public void overloadsWithTheSameSimpleNamesHaveDifferentKeys() throws IOException {
+        var store = DocStore.build(dir.resolve("example-sources.jar"));
+        String[] list = {"java.util.List"}, awtList = {"java.awt.List"};
+        var overload = store.find("com.example.Documented", DocStore.methodKey("overloaded", list));
+        assertThat(overload.docs, containsString("A list."));
+        overload = store.find("com.example.Documented", DocStore.methodKey("overloaded", awtList));
+        assertThat(overload.docs, containsString("An AWT list."));
+        String[] others = {"com.example.Documented.Inner", "com.example.Other", "java.lang.Object"};
+        var method = store.find("com.example.Documented", DocStore.methodKey("others", others));
+        assertThat(method.docs, containsString("Other classes."));
+    }
+}
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,6 +36,53 @@ public class FileStoreTest {
         assertThat(FileStore.modified(file), nullValue());
     }
 
+    @Test
+    public void classNamesFollowExternalChanges() throws IOException {
+        var dir = Files.createTempDirectory("FileStoreTest");
+        var file = dir.resolve("ExternallyCreated.java");
+        try {
+            Files.writeString(file, "package org.external;\nclass ExternallyCreated { }\n");
+            FileStore.externalCreate(file);
+            var found = new ArrayList<String>();
+            FileStore.classNamesStartingWith("ExternallyCr", 10, found);
+            assertThat(found, contains("org.external.ExternallyCreated"));
+
+            Files.writeString(file, "package org.moved;\nclass ExternallyCreated { }\n");
+            FileStore.externalChange(file);
+            found.clear();
+            FileStore.classNamesStartingWith("ExternallyCr", 10, found);
+            assertThat(found, contains("org.moved.ExternallyCreated"));
+
+            Files.delete(file);
+            FileStore.externalDelete(file);
+            found.clear();
+            FileStore.classNamesStartingWith("ExternallyCr", 10, found);
+            assertThat(found, empty());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void allIsACopyOfTheIndex() throws IOException {
+        var dir = Files.createTempDirectory("FileStoreTest");
+        var file = dir.resolve("AddedWhileIterating.java");
+        try {
+            Files.writeString(file, "package org.external;\nclass AddedWhileIterating { }\n");
+            var all = FileStore.all();
+            for (var ignored : all) {
+                FileStore.externalCreate(file);
+            }
+            assertThat(all, not(hasItem(file)));
+            assertThat(FileStore.all(), hasItem(file));
+        } finally {
+            FileStore.externalDelete(file);
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
     @Test
     public void inputReadersPreferActiveDocumentContents() throws IOException {
         Path file = Files.createTempFile("FileStoreTest", ".java");
@@ -2,9 +2,21 @@ package org.javacs;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.not;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import javax.tools.Diagnostic;
+import org.javacs.lsp.DidCloseTextDocumentParams;
+import org.javacs.lsp.DidOpenTextDocumentParams;
+import org.javacs.lsp.TextDocumentIdentifier;
+import org.javacs.lsp.TextDocumentItem;
 import org.junit.Test;
 
 public class JavaCompilerServiceTest {
@@ -34,4 +46,63 @@ public class JavaCompilerServiceTest {
             assertThat(compile.root().toString(), not(containsString("first")));
         }
     }
+
+    @Test
+    public void packagePrivateClassesAreAddedBeforeTheFirstCompile() {
+        var compiler = LanguageServerFixture.getCompilerProvider();
+        var file = FindResource.path("/org/javacs/example/ReferenceGotoPackagePrivate.java");
+        try (var compile = compiler.compile(file)) {
+            assertThat(compile.root().getSourceFile().toUri(), equalTo(file.toUri()));
+            var errors = new ArrayList<String>();
+            for (var d : compile.diagnostics) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) errors.add(d.getCode());
+            }
+            assertThat(errors, empty());
+        }
+    }
+
+    @Test
+    public void packagePrivateTopLevelTypes() {
+        var compiler = LanguageServerFixture.getCompilerProvider();
+        // The server indexes the packages of open files in the background
+        PackagePrivateIndex.update("org.javacs.example", Duration.ofDays(1));
+        assertThat(
+                compiler.packagePrivateTopLevelTypes("org.javacs.example"),
+                hasItem("org.javacs.example.GotoPackagePrivate"));
+    }
+
+    @Test
+    public void packagePrivateIndexUsesWhatItFoundLastTimeWhenOutOfTime() throws Exception {
+        LanguageServerFixture.getCompilerProvider();
+        var file = FindResource.path("/org/javacs/example/ContainsGotoPackagePrivate.java");
+        var onDisk = Files.readString(file);
+        var plenty = Duration.ofDays(1);
+        var found = PackagePrivateIndex.classesInPackage("org.javacs.example", plenty).get(file);
+        assertThat(found, hasItem("GotoPackagePrivate"));
+        try {
+            open(file, onDisk.replace("GotoPackagePrivate", "Renamed"), 1);
+            found = PackagePrivateIndex.classesInPackage("org.javacs.example", Duration.ZERO).get(file);
+            assertThat(found, hasItem("GotoPackagePrivate"));
+            assertThat(found, not(hasItem("Renamed")));
+            found = PackagePrivateIndex.classesInPackage("org.javacs.example", plenty).get(file);
+            assertThat(found, hasItem("Renamed"));
+        } finally {
+            // Index the file on disk again, so other tests find GotoPackagePrivate
+            open(file, onDisk, 2);
+            PackagePrivateIndex.classesInPackage("org.javacs.example", plenty);
+            var close = new DidCloseTextDocumentParams();
+            close.textDocument = new TextDocumentIdentifier(file.toUri());
+            FileStore.close(close);
+        }
+    }
+
+    private void open(Path file, String text, int version) {
+        var open = new DidOpenTextDocumentParams();
+        open.textDocument = new TextDocumentItem();
+        open.textDocument.uri = file.toUri();
+        open.textDocument.languageId = "java";
+        open.textDocument.version = version;
+        open.textDocument.text = text;
+        FileStore.open(open);
+    }
 }
@@ -0,0 +1,226 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.gson.JsonElement;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.javacs.markup.ErrorProvider;
+import org.javacs.markup.WarningCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LintCacheTest {
+    private final SavedState saved = SavedState.save();
+    private TempWorkspace workspace;
+    private Path root;
+    private final Map<URI, List<Diagnostic>> published = new LinkedHashMap<>();
+    private JavaLanguageServer server;
+    private int editVersion = 1;
+
+    @Before
+    public void openFiles() throws IOException {
+        workspace = new TempWorkspace("lint-cache");
+        root = workspace.root;
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int value() { return 1; }\n}\n");
+        workspace.write(
+                "b/User.java",
+                "package b;\nimport a.Lib;\npublic class User {\n    public int use() { return Lib.value(); }\n}\n");
+        workspace.write("c/Other.java", "package c;\npublic class Other {\n}\n");
+        server = LanguageServerFixture.getJavaLanguageServer(root, new RecordingClient());
+        for (var f : List.of("a/Lib.java", "b/User.java", "c/Other.java")) {
+            open(f);
+        }
+        server.lint(FileStore.activeDocuments());
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        saved.restore();
+        workspace.delete();
+    }
+
+    @Test
+    public void firstLintChecksEveryFile() {
+        assertThat(published.keySet(), hasSize(3));
+    }
+
+    @Test
+    public void unchangedFilesAreSkipped() {
+        published.clear();
+        server.lint(FileStore.activeDocuments());
+        assertThat(published.keySet(), empty());
+    }
+
+    @Test
+    public void onlyChangedFileIsLinted() {
+        published.clear();
+        edit("c/Other.java", "package c;\npublic class Other {\n    private int x;\n}\n");
+        server.lint(FileStore.activeDocuments());
+        assertThat(published.keySet(), contains(uri("c/Other.java")));
+    }
+
+    @Test
+    public void bodyEditDoesNotRelintDependents() {
+        published.clear();
+        edit("a/Lib.java", "package a;\npublic class Lib {\n    public static int value() { int x; return 2; }\n}\n");
+        server.lint(FileStore.activeDocuments());
+        runBackgroundWork();
+        assertThat(published.keySet(), contains(uri("a/Lib.java")));
+    }
+
+    @Test
+    public void signatureChangeRelintsDependents() {
+        published.clear();
+        edit("a/Lib.java", "package a;\npublic class Lib {\n    public static int renamed() { int x; return 1; }\n}\n");
+        server.lint(FileStore.activeDocuments());
+        assertThat(published.keySet(), contains(uri("a/Lib.java")));
+        runBackgroundWork();
+        assertThat(published.keySet(), containsInAnyOrder(uri("a/Lib.java"), uri("b/User.java")));
+        var codes = new ArrayList<String>();
+        for (var d : published.get(uri("b/User.java"))) {
+            codes.add(d.code);
+        }
+        assertThat(codes, hasItem("compiler.err.cant.resolve.location.args"));
+    }
+
+    @Test
+    public void externalChangeRelintsOpenFiles() throws IOException {
+        close("a/Lib.java");
+        published.clear();
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int renamed() { return 1; }\n}\n");
+        var change = new FileEvent();
+        change.uri = uri("a/Lib.java");
+        change.type = FileChangeType.Changed;
+        var params = new DidChangeWatchedFilesParams();
+        params.changes = List.of(change);
+        server.didChangeWatchedFiles(params);
+        runBackgroundWork();
+        var codes = new ArrayList<String>();
+        for (var d : published.get(uri("b/User.java"))) {
+            codes.add(d.code);
+        }
+        assertThat(codes, hasItem("compiler.err.cant.resolve.location.args"));
+    }
+
+    @Test
+    public void savingAnOpenFileDoesNotRelintOtherOpenFiles() {
+        published.clear();
+        // An edit that nothing has linted yet, so we can tell if the save lints User
+        edit("b/User.java", "package b;\npublic class User {\n    public int use() { return Lib.value(); }\n}\n");
+        var save = new FileEvent();
+        save.uri = uri("c/Other.java");
+        save.type = FileChangeType.Changed;
+        var params = new DidChangeWatchedFilesParams();
+        params.changes = List.of(save);
+        server.didChangeWatchedFiles(params);
+        runBackgroundWork();
+        assertThat(published.keySet(), empty());
+    }
+
+    @Test
+    public void unchangedDiagnosticsAreNotPublishedAgain() {
+        published.clear();
+        edit("a/Lib.java", "package a;\npublic class Lib {\n    public static int value() { return 2; }\n}\n");
+        server.lint(FileStore.activeDocuments());
+        runBackgroundWork();
+        assertThat(published.keySet(), empty());
+    }
+
+    @Test
+    public void warningsOfUnchangedFilesAreReused() {
+        var file = root.resolve("c/Other.java");
+        edit("c/Other.java", "package c;\npublic class Other {\n    private int x;\n}\n");
+        var cache = new WarningCache();
+        List<Diagnostic> first, second;
+        try (var task = server.compiler().compile(file)) {
+            first = new ErrorProvider(task, cache).errors()[0].diagnostics;
+        }
+        try (var task = server.compiler().compile(file)) {
+            second = new ErrorProvider(task, cache).errors()[0].diagnostics;
+        }
+        assertThat(first, hasSize(1));
+        assertThat(second.get(0), sameInstance(first.get(0)));
+        cache.forget(file);
+        try (var task = server.compiler().compile(file)) {
+            second = new ErrorProvider(task, cache).errors()[0].diagnostics;
+        }
+        assertThat(second.get(0), not(sameInstance(first.get(0))));
+        assertThat(second.get(0), equalTo(first.get(0)));
+    }
+
+    @Test
+    public void contentsWithTheSameHashCodeAreScannedAgain() {
+        var file = root.resolve("c/Other.java");
+        var cache = new WarningCache();
+        // "Aa" and "BB" have the same String.hashCode(), so both versions of the file do too
+        edit("c/Other.java", "package c;\npublic class Other {\n    private int Aa;\n}\n");
+        try (var task = server.compiler().compile(file)) {
+            var warnings = new ErrorProvider(task, cache).errors()[0].diagnostics;
+            assertThat(warnings.get(0).message, containsString("Aa"));
+        }
+        edit("c/Other.java", "package c;\npublic class Other {\n    private int BB;\n}\n");
+        try (var task = server.compiler().compile(file)) {
+            var warnings = new ErrorProvider(task, cache).errors()[0].diagnostics;
+            assertThat(warnings.get(0).message, containsString("BB"));
+        }
+    }
+
+    private void runBackgroundWork() {
+        for (var i = 0; i < 100 && server.doBackgroundWork(); i++) {}
+    }
+
+    private URI uri(String relativePath) {
+        return root.resolve(relativePath).toUri();
+    }
+
+    private void open(String relativePath) {
+        var open = new DidOpenTextDocumentParams();
+        open.textDocument.uri = uri(relativePath);
+        open.textDocument.text = FileStore.contents(root.resolve(relativePath));
+        open.textDocument.version = editVersion++;
+        open.textDocument.languageId = "java";
+        server.didOpenTextDocument(open);
+    }
+
+    private void close(String relativePath) {
+        var close = new DidCloseTextDocumentParams();
+        close.textDocument.uri = uri(relativePath);
+        server.didCloseTextDocument(close);
+    }
+
+    private void edit(String relativePath, String contents) {
+        var change = new DidChangeTextDocumentParams();
+        change.textDocument.uri = uri(relativePath);
+        change.textDocument.version = editVersion++;
+        var evt = new TextDocumentContentChangeEvent();
+        evt.text = contents;
+        change.contentChanges.add(evt);
+        server.didChangeTextDocument(change);
+    }
+
+    private class RecordingClient implements LanguageClient {
+        @Override
+        public void publishDiagnostics(PublishDiagnosticsParams params) {
+            published.put(params.uri, params.diagnostics);
+        }
+
+        @Override
+        public void showMessage(ShowMessageParams params) {}
+
+        @Override
+        public void registerCapability(String method, JsonElement options) {}
+
+        @Override
+        public void customNotification(String method, JsonElement params) {}
+    }
+}
@@ -0,0 +1,99 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.Trees;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import org.junit.Test;
+
+public class MemberIndexTest {
+    private final CompilerProvider compiler = LanguageServerFixture.getCompilerProvider();
+
+    private List<String> names(List<MemberIndex.Member> members) {
+        var names = new ArrayList<String>();
+        for (var m : members) {
+            names.add(m.name);
+        }
+        return names;
+    }
+
+    @Test
+    public void prefixSearch() {
+        var file = FindResource.path("/org/javacs/example/Goto.java");
+        try (var task = compiler.compile(file)) {
+            var string = task.task.getElements().getTypeElement("java.lang.String");
+            var indexOf = compiler.memberIndex().members(task.task, string, "indexOf");
+            assertThat(indexOf, hasSize(greaterThan(1)));
+            assertThat(names(indexOf), everyItem(startsWith("indexOf")));
+            var all = compiler.memberIndex().members(task.task, string, "");
+            assertThat(names(all), hasItems("length", "indexOf", "hashCode"));
+            assertThat(compiler.memberIndex().members(task.task, string, "noSuchMember"), empty());
+        }
+    }
+
+    @Test
+    public void summariesDescribeMembers() {
+        var file = FindResource.path("/org/javacs/example/Goto.java");
+        try (var task = compiler.compile(file)) {
+            var string = task.task.getElements().getTypeElement("java.lang.String");
+            var charAt = compiler.memberIndex().members(task.task, string, "charAt").get(0);
+            assertThat(charAt.detail, equalTo("char charAt(int)"));
+            assertThat(charAt.isPublic, equalTo(true));
+            assertThat(charAt.isStatic, equalTo(false));
+        }
+    }
+
+    @Test
+    public void resolveInLaterTask() {
+        var file = FindResource.path("/org/javacs/example/Goto.java");
+        MemberIndex.Member charAt;
+        try (var task = compiler.compile(file)) {
+            var string = task.task.getElements().getTypeElement("java.lang.String");
+            charAt = compiler.memberIndex().members(task.task, string, "charAt").get(0);
+        }
+        var other = FindResource.path("/org/javacs/example/GotoOther.java");
+        try (var task = compiler.compile(other)) {
+            var element = charAt.resolve(task.task);
+            assertThat(element, notNullValue());
+            assertThat(element.getSimpleName().toString(), equalTo("charAt"));
+        }
+    }
+
+    @Test
+    public void elementsOfLocalClass() {
+        var file = FindResource.path("/org/javacs/example/LocalClassMembers.java");
+        var contents =
+                "package org.javacs.example;\n"
+                        + "class LocalClassMembers {\n"
+                        + "    void test() {\n"
+                        + "        class Local {\n"
+                        + "            int field;\n"
+                        + "            void method() {}\n"
+                        + "        }\n"
+                        + "    }\n"
+                        + "}\n";
+        var source = new SourceFileObject(file, contents, SourceFileObject.now());
+        try (var task = compiler.compile(List.of(source))) {
+            var outer = (ClassTree) task.root().getTypeDecls().get(0);
+            ClassTree local = null;
+            for (var member : outer.getMembers()) {
+                if (member instanceof MethodTree && ((MethodTree) member).getName().contentEquals("test")) {
+                    local = (ClassTree) ((MethodTree) member).getBody().getStatements().get(0);
+                }
+            }
+            var trees = Trees.instance(task.task);
+            var type = (TypeElement) trees.getElement(trees.getPath(task.root(), local));
+            var names = new ArrayList<String>();
+            for (Element e : compiler.memberIndex().elements(task.task, type, "")) {
+                names.add(e.getSimpleName().toString());
+            }
+            assertThat(names, hasItems("field", "method", "hashCode"));
+        }
+    }
+}
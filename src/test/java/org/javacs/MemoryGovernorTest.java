@@ -0,0 +1,83 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.*;
+import org.junit.Test;
+
+public class MemoryGovernorTest {
+    private MemoryGovernor governor(List<MemoryGovernor.Level> evicted) {
+        var governor = new MemoryGovernor();
+        for (var level : MemoryGovernor.Level.values()) {
+            governor.register(
+                    level,
+                    () -> {
+                        evicted.add(level);
+                        return true;
+                    });
+        }
+        return governor;
+    }
+
+    @Test
+    public void evictsOneLevelAtATime() {
+        var evicted = new ArrayList<MemoryGovernor.Level>();
+        var governor = governor(evicted);
+        assertThat(governor.relieve(), equalTo(Optional.of(MemoryGovernor.Level.PARSE_CACHES)));
+        assertThat(evicted, contains(MemoryGovernor.Level.PARSE_CACHES));
+        // Until the collector runs, we can't tell if that was enough
+        assertThat(governor.underPressure(), equalTo(false));
+        assertThat(governor.relieve(), equalTo(Optional.of(MemoryGovernor.Level.COMPLETION_CACHES)));
+        assertThat(evicted, contains(MemoryGovernor.Level.PARSE_CACHES, MemoryGovernor.Level.COMPLETION_CACHES));
+    }
+
+    @Test
+    public void stopsAfterTheLastLevel() {
+        var evicted = new ArrayList<MemoryGovernor.Level>();
+        var governor = governor(evicted);
+        for (var level : MemoryGovernor.Level.values()) {
+            assertThat(governor.relieve(), equalTo(Optional.of(level)));
+        }
+        assertThat(governor.relieve(), equalTo(Optional.empty()));
+        assertThat(evicted, hasSize(MemoryGovernor.Level.values().length));
+    }
+
+    @Test
+    public void startsOverOnceACollectionLeavesTheHeapBelowThreshold() {
+        var evicted = new ArrayList<MemoryGovernor.Level>();
+        var governor = governor(evicted);
+        governor.relieve();
+        // The test heap is nowhere near full
+        System.gc();
+        assertThat(governor.underPressure(), equalTo(false));
+        assertThat(governor.relieve(), equalTo(Optional.of(MemoryGovernor.Level.PARSE_CACHES)));
+    }
+
+    @Test
+    public void compilerWorksAfterEviction() {
+        var compiler = LanguageServerFixture.getJavaLanguageServer().compiler();
+        var file = FindResource.path("/org/javacs/example/Goto.java");
+        compiler.compile(file).close();
+        compiler.clearParseCaches();
+        compiler.clearCompletionCaches();
+        assertThat(compiler.releaseCachedCompile(), equalTo(true));
+        assertThat(compiler.compiler.reset(), equalTo(true));
+        try (var task = compiler.compile(file)) {
+            assertThat(task.roots, hasSize(1));
+        }
+    }
+
+    @Test
+    public void batchInUseIsNotReleased() {
+        var compiler = LanguageServerFixture.getJavaLanguageServer().compiler();
+        var file = FindResource.path("/org/javacs/example/Goto.java");
+        var task = compiler.compile(file);
+        try {
+            assertThat(compiler.releaseCachedCompile(), equalTo(false));
+            assertThat(compiler.compiler.reset(), equalTo(false));
+        } finally {
+            task.close();
+        }
+    }
+}
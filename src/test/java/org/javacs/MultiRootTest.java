@@ -0,0 +1,120 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.gson.JsonElement;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultiRootTest {
+    private final SavedState saved = SavedState.save();
+    private Path lib, app, extra;
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        lib = Files.createTempDirectory("multi-root-lib").toRealPath();
+        app = Files.createTempDirectory("multi-root-app").toRealPath();
+        extra = Files.createTempDirectory("multi-root-extra").toRealPath();
+        write(lib, "a/Lib.java", "package a;\npublic class Lib {\n    public static int value() { return 1; }\n}\n");
+        write(app, "b/App.java", "package b;\nimport a.Lib;\nclass App {\n    int use() { return Lib.value(); }\n}\n");
+        write(extra, "c/Extra.java", "package c;\nclass Extra {\n}\n");
+        FileStore.reset();
+        server = new JavaLanguageServer(new NoopClient());
+        var init = new InitializeParams();
+        init.rootUri = lib.toUri();
+        init.workspaceFolders = List.of(folder(lib), folder(app));
+        server.initialize(init);
+        server.initialized();
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        saved.restore();
+        SyntheticWorkspace.delete(lib);
+        SyntheticWorkspace.delete(app);
+        SyntheticWorkspace.delete(extra);
+    }
+
+    @Test
+    public void eachRootHasItsOwnCompiler() {
+        var libCompiler = server.compiler(lib.resolve("a/Lib.java"));
+        var appCompiler = server.compiler(app.resolve("b/App.java"));
+        assertThat(libCompiler, not(sameInstance(appCompiler)));
+        assertThat(server.compiler(lib.resolve("a/Other.java")), sameInstance(libCompiler));
+    }
+
+    @Test
+    public void referencesAreFoundInOtherRoots() {
+        var params = new ReferenceParams();
+        params.textDocument = new TextDocumentIdentifier(lib.resolve("a/Lib.java").toUri());
+        params.position = new Position(2, 23);
+        var found = server.findReferences(params).orElseThrow();
+        var files = new ArrayList<URI>();
+        for (var location : found) {
+            files.add(location.uri);
+        }
+        assertThat(files, contains(app.resolve("b/App.java").toUri()));
+    }
+
+    @Test
+    public void addAndRemoveFolders() {
+        var change = new DidChangeWorkspaceFoldersParams();
+        change.event = new WorkspaceFoldersChangeEvent();
+        change.event.added = List.of(folder(extra));
+        change.event.removed = List.of(folder(app));
+        server.didChangeWorkspaceFolders(change);
+        assertThat(FileStore.all(), hasItem(extra.resolve("c/Extra.java")));
+        assertThat(FileStore.all(), not(hasItem(app.resolve("b/App.java"))));
+        assertThat(FileStore.all(), hasItem(lib.resolve("a/Lib.java")));
+    }
+
+    @Test
+    public void evictIdleCompilers() {
+        var compilers =
+                new WorkspaceCompilers(root -> new JavaCompilerService(Set.of(), Set.of(), Set.of(), List.of()));
+        compilers.setRoots(List.of(lib, app));
+        var first = compilers.get(lib);
+        compilers.get(app);
+        var generation = compilers.generation();
+        assertThat(compilers.evictIdle(Duration.ZERO), equalTo(1));
+        assertThat(compilers.get(lib), not(sameInstance(first)));
+        assertThat(compilers.generation(), equalTo(generation));
+    }
+
+    private WorkspaceFolder folder(Path root) {
+        var folder = new WorkspaceFolder();
+        folder.uri = root.toUri();
+        folder.name = root.getFileName().toString();
+        return folder;
+    }
+
+    private void write(Path root, String relativePath, String contents) throws IOException {
+        var file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, contents);
+    }
+
+    private static class NoopClient implements LanguageClient {
+        @Override
+        public void publishDiagnostics(PublishDiagnosticsParams params) {}
+
+        @Override
+        public void showMessage(ShowMessageParams params) {}
+
+        @Override
+        public void registerCapability(String method, JsonElement options) {}
+
+        @Override
+        public void customNotification(String method, JsonElement params) {}
+    }
+}
@@ -0,0 +1,97 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PartialReferencesTest {
+    private final SavedState saved = SavedState.save();
+    private static final int USERS = 120;
+
+    private TempWorkspace workspace;
+    private Path root;
+    private final List<JsonElement> progress = new ArrayList<>();
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = new TempWorkspace("partial-references");
+        root = workspace.root;
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int value() { return 1; }\n}\n");
+        for (var i = 0; i < USERS; i++) {
+            var name = "User" + i;
+            workspace.write(
+                    "b/" + name + ".java",
+                    "package b;\nimport a.Lib;\nclass " + name + " {\n    int use() { return Lib.value(); }\n}\n");
+        }
+        server = LanguageServerFixture.getJavaLanguageServer(root, new RecordingClient());
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        saved.restore();
+        workspace.delete();
+    }
+
+    @Test
+    public void referencesAreReportedInChunks() {
+        var params = params();
+        var found = server.findReferences(params).orElseThrow();
+        assertThat(found, empty());
+        // 121 candidates, 50 at a time
+        assertThat(progress, hasSize(3));
+        var total = 0;
+        for (var p : progress) {
+            var object = p.getAsJsonObject();
+            assertThat(object.get("token").getAsString(), equalTo("refs-1"));
+            total += object.getAsJsonArray("value").size();
+        }
+        assertThat(total, equalTo(USERS));
+    }
+
+    @Test
+    public void withoutTokenEverythingIsInTheResponse() {
+        var params = params();
+        params.partialResultToken = null;
+        var found = server.findReferences(params).orElseThrow();
+        assertThat(found, hasSize(USERS));
+        assertThat(progress, empty());
+    }
+
+    private ReferenceParams params() {
+        var params = new ReferenceParams();
+        params.textDocument = new TextDocumentIdentifier(root.resolve("a/Lib.java").toUri());
+        params.position = new Position(2, 22);
+        params.partialResultToken = new JsonPrimitive("refs-1");
+        return params;
+    }
+
+    private class RecordingClient implements LanguageClient {
+        @Override
+        public void publishDiagnostics(PublishDiagnosticsParams params) {}
+
+        @Override
+        public void showMessage(ShowMessageParams params) {}
+
+        @Override
+        public void registerCapability(String method, JsonElement options) {}
+
+        @Override
+        public void customNotification(String method, JsonElement params) {
+            if (method.equals("$/progress")) {
+                progress.add(params);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.javacs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests that create a workspace of their own replace static state that the servers other tests share still depend on,
+ * like the files in FileStore and the cache directories in system properties. SavedState saves that state before the
+ * test changes it, and restore() puts it back.
+ */
+class SavedState {
+    private final FileStore.Snapshot files = FileStore.snapshot();
+    private final Map<String, String> properties = new HashMap<>();
+
+    private SavedState(String... properties) {
+        for (var p : properties) {
+            this.properties.put(p, System.getProperty(p));
+        }
+    }
+
+    /** Save FileStore, and the system properties named by properties */
+    static SavedState save(String... properties) {
+        return new SavedState(properties);
+    }
+
+    void restore() {
+        for (var p : properties.entrySet()) {
+            if (p.getValue() == null) System.clearProperty(p.getKey());
+            else System.setProperty(p.getKey(), p.getValue());
+        }
+        FileStore.restore(files);
+    }
+}
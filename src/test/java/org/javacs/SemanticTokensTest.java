@@ -0,0 +1,205 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.javacs.lsp.*;
+import org.javacs.markup.ErrorProvider;
+import org.javacs.markup.SemanticTokensProvider;
+import org.javacs.markup.WarningCache;
+import org.junit.Test;
+
+public class SemanticTokensTest {
+    private static final JavaLanguageServer server = LanguageServerFixture.getJavaLanguageServer();
+
+    @Test
+    public void fields() {
+        var found = tokens("org/javacs/color/ColorExample.java");
+        assertThat("colors field declaration", found, hasItem("virtualField:4:property:declaration"));
+        assertThat("colors field reference", found, hasItem("virtualField:7:property"));
+        assertThat("colors parameter declaration", found, hasItem("methodParameter:10:parameter:declaration"));
+        assertThat("colors parameter reference", found, hasItem("methodParameter:11:parameter"));
+        assertThat("colors static field declaration", found, hasItem("staticField:14:property:declaration,static"));
+        assertThat("colors static field reference", found, hasItem("staticField:17:property:static"));
+    }
+
+    @Test
+    public void everyKind() {
+        var found = tokens("org/javacs/color/TokensExample.java");
+        assertThat(found, hasItem("TokensExample:5:class:declaration"));
+        assertThat(found, hasItem("T:5:typeParameter:declaration"));
+        assertThat(found, hasItem("CONSTANT:6:property:declaration,static,readonly"));
+        assertThat(found, hasItem("List:7:interface"));
+        assertThat(found, hasItem("T:7:typeParameter"));
+        assertThat(found, hasItem("Deprecated:9:decorator"));
+        assertThat(found, hasItem("old:10:method:declaration,deprecated"));
+        assertThat(found, hasItem("local:13:variable:declaration"));
+        assertThat(found, hasItem("CONSTANT:13:property:static,readonly"));
+        assertThat(found, hasItem("old:14:method:deprecated"));
+        assertThat(found, hasItem("item:15:parameter:declaration"));
+        assertThat(found, hasItem("println:15:method"));
+        assertThat(found, hasItem("Color:19:enum:declaration,static"));
+        assertThat(found, hasItem("RED:20:enumMember:declaration,static,readonly"));
+    }
+
+    @Test
+    public void lintFindsTheSameTokens() {
+        var file = Paths.get(FindResource.uri("org/javacs/color/TokensExample.java"));
+        try (var task = server.compiler().compile(file)) {
+            var errors = new ErrorProvider(task, new WarningCache(), Set.of(file));
+            errors.errors();
+            var alone = new SemanticTokensProvider(task).tokens(task.root());
+            assertThat(Arrays.equals(errors.tokens(file), alone), equalTo(true));
+        }
+    }
+
+    @Test
+    public void deltaOfSameFileIsEmpty() {
+        var document = document("org/javacs/color/ColorExample.java");
+        var full = server.semanticTokensFull(new SemanticTokensParams(document));
+        var delta = server.semanticTokensFullDelta(new SemanticTokensDeltaParams(document, full.resultId));
+        assertThat(delta.resultId, not(equalTo(full.resultId)));
+        assertThat(delta.edits, empty());
+        assertThat(delta.data, nullValue());
+    }
+
+    @Test
+    public void deltaOfUnknownResultIsFull() {
+        var document = document("org/javacs/color/ColorExample.java");
+        var full = server.semanticTokensFull(new SemanticTokensParams(document));
+        var delta = server.semanticTokensFullDelta(new SemanticTokensDeltaParams(document, "unknown"));
+        assertThat(delta.edits, nullValue());
+        assertThat(Arrays.equals(delta.data, full.data), equalTo(true));
+    }
+
+    @Test
+    public void editReplacesOnlyTheChangedSpan() {
+        var from = new int[] {1, 2, 3, 4, 5, 0, 1, 3, 4, 0};
+        var to = new int[] {1, 2, 3, 4, 5, 1, 0, 3, 4, 0, 0, 4, 3, 4, 0};
+        var edits = SemanticTokensCache.edits(from, to);
+        assertThat(edits, hasSize(1));
+        assertThat(edits.get(0).start, equalTo(5));
+        assertThat(edits.get(0).deleteCount, equalTo(2));
+        assertThat(edits.get(0).data.length, equalTo(7));
+    }
+
+    @Test
+    public void syntaxTokensWithoutCompiling() {
+        var file = Paths.get(FindResource.uri("org/javacs/color/TokensExample.java"));
+        var data = SemanticTokensProvider.syntaxTokens(server.compiler().parse(file));
+        var found = decode(FileStore.contents(file), data);
+        assertThat(found, hasItem("TokensExample:5:class:declaration"));
+        assertThat(found, hasItem("T:5:typeParameter:declaration"));
+        assertThat(found, hasItem("CONSTANT:6:property:declaration,static,readonly"));
+        assertThat(found, hasItem("Deprecated:9:decorator"));
+        assertThat(found, hasItem("old:10:method:declaration,deprecated"));
+        assertThat(found, hasItem("parameter:12:parameter:declaration"));
+        assertThat(found, hasItem("local:13:variable:declaration"));
+        assertThat(found, hasItem("parameter:13:parameter"));
+        assertThat(found, hasItem("CONSTANT:13:property:static,readonly"));
+        assertThat(found, hasItem("items:15:property"));
+        assertThat(found, hasItem("item:15:parameter"));
+        assertThat(found, hasItem("local:16:variable"));
+        assertThat(found, hasItem("Color:19:enum:declaration"));
+        assertThat(found, hasItem("RED:20:enumMember:declaration,static,readonly"));
+        // Types and methods of other classes need the compiler
+        assertThat(found, not(hasItem("List:7:interface")));
+        assertThat(found, not(hasItem("println:15:method")));
+    }
+
+    @Test
+    public void openFileIsColoredBeforeLintAndRefreshedAfter() {
+        var refreshed = new ArrayList<Boolean>();
+        var client =
+                new LanguageClient() {
+                    @Override
+                    public void publishDiagnostics(PublishDiagnosticsParams params) {}
+
+                    @Override
+                    public void showMessage(ShowMessageParams params) {}
+
+                    @Override
+                    public void registerCapability(String method, JsonElement options) {}
+
+                    @Override
+                    public void customNotification(String method, JsonElement params) {}
+
+                    @Override
+                    public void refreshSemanticTokens() {
+                        refreshed.add(true);
+                    }
+                };
+        var refreshing = new JavaLanguageServer(client);
+        var init = new InitializeParams();
+        init.rootUri = LanguageServerFixture.DEFAULT_WORKSPACE_ROOT.toUri();
+        init.capabilities =
+                JsonParser.parseString("{\"workspace\":{\"semanticTokens\":{\"refreshSupport\":true}}}");
+        refreshing.initialize(init);
+        refreshing.initialized();
+        var file = Paths.get(FindResource.uri("org/javacs/color/TokensExample.java"));
+        var contents = FileStore.contents(file);
+        var open = new DidOpenTextDocumentParams();
+        open.textDocument = new TextDocumentItem();
+        open.textDocument.uri = file.toUri();
+        open.textDocument.languageId = "java";
+        open.textDocument.version = 1;
+        open.textDocument.text = contents;
+        refreshing.didOpenTextDocument(open);
+        try {
+            var params = new SemanticTokensParams(document("org/javacs/color/TokensExample.java"));
+            var before = decode(contents, refreshing.semanticTokensFull(params).data);
+            assertThat(before, hasItem("item:15:parameter"));
+            assertThat(before, not(hasItem("println:15:method")));
+            assertThat(refreshed, empty());
+            refreshing.doAsyncWork();
+            assertThat(refreshed, hasSize(1));
+            var after = decode(contents, refreshing.semanticTokensFull(params).data);
+            assertThat(after, hasItem("println:15:method"));
+        } finally {
+            var close = new DidCloseTextDocumentParams();
+            close.textDocument.uri = file.toUri();
+            refreshing.didCloseTextDocument(close);
+        }
+    }
+
+    private TextDocumentIdentifier document(String file) {
+        return new TextDocumentIdentifier(FindResource.uri(file));
+    }
+
+    private List<String> tokens(String file) {
+        var contents = FileStore.contents(Paths.get(FindResource.uri(file)));
+        var data = server.semanticTokensFull(new SemanticTokensParams(document(file))).data;
+        return decode(contents, data);
+    }
+
+    /** Decode each token as name:line:type:modifiers */
+    private List<String> decode(String contents, int[] data) {
+        var lines = contents.split("\n", -1);
+        var found = new ArrayList<String>();
+        int line = 0, character = 0;
+        for (var i = 0; i < data.length; i += 5) {
+            if (data[i] != 0) character = 0;
+            line += data[i];
+            character += data[i + 1];
+            var name = lines[line].substring(character, character + data[i + 2]);
+            var type = SemanticTokensProvider.TOKEN_TYPES.get(data[i + 3]);
+            var modifiers = new ArrayList<String>();
+            for (var bit = 0; bit < SemanticTokensProvider.TOKEN_MODIFIERS.size(); bit++) {
+                if ((data[i + 4] & (1 << bit)) != 0) {
+                    modifiers.add(SemanticTokensProvider.TOKEN_MODIFIERS.get(bit));
+                }
+            }
+            var token = name + ":" + (line + 1) + ":" + type;
+            if (!modifiers.isEmpty()) token += ":" + String.join(",", modifiers);
+            found.add(token);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,83 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import org.javacs.rewrite.RenameField;
+import org.javacs.rewrite.RenameMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedRenameTest {
+    private final SavedState saved = SavedState.save();
+    // More than two shards' worth of files
+    private static final int USERS = 250;
+
+    private TempWorkspace workspace;
+    private Path root;
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = new TempWorkspace("sharded-rename");
+        root = workspace.root;
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int count;\n"
+                        + "    public static int value() { return count; }\n}\n");
+        for (var i = 0; i < USERS; i++) {
+            var name = "User" + i;
+            workspace.write(
+                    "b/" + name + ".java",
+                    "package b;\nimport a.Lib;\nclass "
+                            + name
+                            + " {\n    int use() { return Lib.value() + Lib.value() + Lib.count; }\n}\n");
+        }
+        server = LanguageServerFixture.getJavaLanguageServer(root, diagnostic -> {});
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        saved.restore();
+        workspace.delete();
+    }
+
+    @Test
+    public void renameMethodInShards() {
+        var edits = new RenameMethod("a.Lib", "value", new String[] {}, "renamed").rewrite(server.compiler());
+        assertThat(edits.keySet(), hasSize(USERS + 1));
+        // Every shard compiles Lib, but its declaration is only renamed once
+        assertThat(edits.get(root.resolve("a/Lib.java")).length, equalTo(1));
+        for (var i = 0; i < USERS; i++) {
+            assertThat(edits.get(root.resolve("b/User" + i + ".java")).length, equalTo(2));
+        }
+        assertThat(new ArrayList<>(edits.keySet()), equalTo(sorted(edits.keySet())));
+    }
+
+    @Test
+    public void renameFieldInShards() {
+        var edits = new RenameField("a.Lib", "count", "total").rewrite(server.compiler());
+        assertThat(edits.keySet(), hasSize(USERS + 1));
+        assertThat(edits.get(root.resolve("a/Lib.java")).length, equalTo(2));
+        assertThat(new ArrayList<>(edits.keySet()), equalTo(sorted(edits.keySet())));
+    }
+
+    @Test
+    public void shardsShareLibraryIndexes() {
+        var compiler = server.compiler();
+        new RenameField("a.Lib", "count", "total").rewrite(compiler);
+        for (var shard : compiler.shards(2)) {
+            assertThat(((JavaCompilerService) shard).jdkClasses, sameInstance(compiler.jdkClasses));
+        }
+    }
+
+    private List<Path> sorted(Collection<Path> paths) {
+        var list = new ArrayList<Path>(paths);
+        Collections.sort(list);
+        return list;
+    }
+}
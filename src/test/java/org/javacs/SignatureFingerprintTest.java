@@ -0,0 +1,38 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Paths;
+import java.util.HexFormat;
+import org.junit.Test;
+
+public class SignatureFingerprintTest {
+    private static final String ORIGINAL =
+            "package p;\n"
+                    + "public class A {\n"
+                    + "    public static final int CONSTANT = 1;\n"
+                    + "    private int secret;\n"
+                    + "    public int method(String s) { return 1; }\n"
+                    + "}\n";
+
+    private String fingerprint(String contents) {
+        var file = new SourceFileObject(Paths.get("/p/A.java"), contents, SourceFileObject.now());
+        return HexFormat.of().formatHex(SignatureFingerprint.of(Parser.parseJavaFileObject(file).root));
+    }
+
+    @Test
+    public void bodyAndPrivateEditsKeepFingerprint() {
+        var edited = ORIGINAL.replace("return 1;", "return 2; // changed").replace("int secret", "long secret");
+        assertThat(fingerprint(edited), equalTo(fingerprint(ORIGINAL)));
+    }
+
+    @Test
+    public void signatureEditsChangeFingerprint() {
+        assertThat(fingerprint(ORIGINAL.replace("String s", "int s")), not(equalTo(fingerprint(ORIGINAL))));
+        assertThat(fingerprint(ORIGINAL.replace("method", "renamed")), not(equalTo(fingerprint(ORIGINAL))));
+        assertThat(fingerprint(ORIGINAL.replace("CONSTANT = 1", "CONSTANT = 2")), not(equalTo(fingerprint(ORIGINAL))));
+        var packagePrivate = ORIGINAL.replace("public int method", "int method");
+        assertThat(fingerprint(packagePrivate), not(equalTo(fingerprint(ORIGINAL))));
+    }
+}
@@ -0,0 +1,169 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import javax.tools.Diagnostic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubCacheTest {
+    private static final String LIB =
+            "package a;\n"
+                    + "public class Lib extends Base {\n"
+                    + "    private final int x;\n"
+                    + "    /** Docs */\n"
+                    + "    public Lib(int x) {\n"
+                    + "        super(x);\n"
+                    + "        this.x = x * 2;\n"
+                    + "    }\n"
+                    + "    public int value() {\n"
+                    + "        var y = x + 1;\n"
+                    + "        return y;\n"
+                    + "    }\n"
+                    + "    public <T> T id(T t) { return t; }\n"
+                    + "    void none() {}\n"
+                    + "    static class Inner {\n"
+                    + "        String name() {\n"
+                    + "            return \"inner\";\n"
+                    + "        }\n"
+                    + "    }\n"
+                    + "}\n";
+    private static final String BASE = "package a;\nclass Base {\n    Base(int x) {\n    }\n}\n";
+    private static final String USER =
+            "package b;\nimport a.Lib;\nclass User {\n    int use() { return new Lib(1).value(); }\n}\n";
+
+    private final SavedState saved = SavedState.save("javacs.stubCache");
+    private Path root, cache;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        root = Files.createTempDirectory("stub-cache").toRealPath();
+        cache = Files.createTempDirectory("stub-cache-stubs");
+        Files.createDirectories(root.resolve("a"));
+        Files.createDirectories(root.resolve("b"));
+        Files.writeString(root.resolve("a/Lib.java"), LIB);
+        Files.writeString(root.resolve("a/Base.java"), BASE);
+        Files.writeString(root.resolve("b/User.java"), USER);
+        System.setProperty("javacs.stubCache", cache.toString());
+        FileStore.reset();
+        FileStore.setWorkspaceRoots(Set.of(root));
+        StubCache.enabled = true;
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        StubCache.enabled = false;
+        saved.restore();
+        SyntheticWorkspace.delete(root);
+        SyntheticWorkspace.delete(cache);
+    }
+
+    @Test
+    public void stubKeepsOffsets() {
+        var stub = StubCache.prune(Parser.parseFile(root.resolve("a/Lib.java")));
+        assertThat(stub.length(), equalTo(LIB.length()));
+        assertThat(stub.split("\n", -1).length, equalTo(LIB.split("\n", -1).length));
+        assertThat(stub.indexOf("public int value()"), equalTo(LIB.indexOf("public int value()")));
+        assertThat(stub.indexOf("String name()"), equalTo(LIB.indexOf("String name()")));
+        assertThat(stub, containsString("/** Docs */"));
+        assertThat(stub, containsString("super(x);"));
+        assertThat(stub, not(containsString("return y;")));
+        assertThat(stub, not(containsString("\"inner\"")));
+    }
+
+    @Test
+    public void stubReplacesClosedFiles() throws IOException {
+        var lib = root.resolve("a/Lib.java");
+        assertThat(StubCache.sourceOrStub(lib).getCharContent(true).toString(), equalTo(LIB));
+        while (StubCache.buildNext(50) > 0) {}
+        assertThat(StubCache.sourceOrStub(lib).getCharContent(true).toString(), containsString("throw null;"));
+    }
+
+    @Test
+    public void stubIsStaleAfterEdit() throws IOException {
+        var lib = root.resolve("a/Lib.java");
+        while (StubCache.buildNext(50) > 0) {}
+        assertThat(StubCache.hasStub(lib), is(true));
+        Files.writeString(lib, LIB.replace("value", "value2"));
+        Files.setLastModifiedTime(lib, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        FileStore.externalChange(lib);
+        assertThat(StubCache.hasStub(lib), is(false));
+        assertThat(StubCache.sourceOrStub(lib).getCharContent(true).toString(), containsString("value2"));
+    }
+
+    @Test
+    public void filesWithoutStubsAreNotTriedAgain() throws IOException {
+        // The cache directory can't be created, because a file is in the way
+        var blocked = Files.createTempFile("stub-cache", ".blocked");
+        System.setProperty("javacs.stubCache", blocked.toString());
+        try {
+            var steps = 0;
+            while (StubCache.buildNext(50) > 0 && steps < 10) steps++;
+            // One step for each directory
+            assertThat(steps, equalTo(2));
+            var lib = root.resolve("a/Lib.java");
+            assertThat(StubCache.hasStub(lib), is(false));
+            assertThat(StubCache.sourceOrStub(lib).getCharContent(true).toString(), equalTo(LIB));
+        } finally {
+            Files.delete(blocked);
+        }
+    }
+
+    @Test
+    public void cleanDeletesBucketsOfOldWorkspaces() throws IOException {
+        while (StubCache.buildNext(50) > 0) {}
+        // Written by an older version, which didn't record the source directory
+        var unmarked = Files.createDirectories(cache.resolve("0badcafe"));
+        Files.writeString(unmarked.resolve("Old.java-1"), "class Old {}");
+        // The source directory was deleted
+        var gone = Files.createDirectories(cache.resolve("gone"));
+        Files.writeString(gone.resolve("source"), root.resolve("no-such-directory").toString());
+        // The source directory still exists, but no run has used it for a long time
+        var unused = Files.createDirectories(cache.resolve("unused"));
+        Files.writeString(unused.resolve("source"), root.toString());
+        var old = System.currentTimeMillis() - StubCache.MAX_AGE.toMillis() - 60_000;
+        Files.setLastModifiedTime(unused.resolve("source"), FileTime.fromMillis(old));
+
+        assertThat(StubCache.clean(), equalTo(3));
+        assertThat(Files.exists(unmarked), is(false));
+        assertThat(Files.exists(gone), is(false));
+        assertThat(Files.exists(unused), is(false));
+        // The buckets of this workspace are kept
+        var lib = root.resolve("a/Lib.java");
+        assertThat(StubCache.sourceOrStub(lib).getCharContent(true).toString(), containsString("throw null;"));
+    }
+
+    @Test
+    public void stubsCompile() {
+        while (StubCache.buildNext(50) > 0) {}
+        var compiler = new JavaCompilerService(Set.of(), Set.of(), Set.of(), List.of());
+        var stubs =
+                List.of(
+                        StubCache.sourceOrStub(root.resolve("a/Lib.java")),
+                        StubCache.sourceOrStub(root.resolve("a/Base.java")));
+        try (var task = compiler.compile(stubs)) {
+            assertThat(errors(task), empty());
+        }
+        // User reads Lib from its stub
+        try (var task = compiler.compile(root.resolve("b/User.java"))) {
+            assertThat(errors(task), empty());
+        }
+    }
+
+    private List<String> errors(CompileTask task) {
+        var errors = new ArrayList<String>();
+        for (var d : task.diagnostics) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(d.getMessage(null));
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,141 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates a deterministic workspace of synthetic java sources, so we can measure workspace-wide operations like
+ * FileStore indexing and find-references at the scale of a large repository. The same settings always produce the same
+ * files, byte-for-byte.
+ *
+ * <p>Package p contains classes C{p}_0 ... C{p}_{m-1}. Within a package, classes form inheritance chains of length
+ * inheritanceDepth. Each class imports importFanOut classes from other packages, and its compute(int) method calls
+ * callFanOut methods of the classes it can see, so every file mentions `compute` and the call graph spans packages.
+ */
+public class SyntheticWorkspace {
+    public static final String ROOT_PACKAGE = "org.javacs.synthetic";
+
+    public int packages = 10, classesPerPackage = 10, inheritanceDepth = 3, importFanOut = 2, callFanOut = 3;
+    public long seed = 0;
+
+    /** A workspace with approximately `files` source files, divided into packages of 100 classes. */
+    public static SyntheticWorkspace ofSize(int files) {
+        var workspace = new SyntheticWorkspace();
+        workspace.classesPerPackage = Math.min(files, 100);
+        workspace.packages = Math.max(1, files / workspace.classesPerPackage);
+        return workspace;
+    }
+
+    public int fileCount() {
+        return packages * classesPerPackage;
+    }
+
+    public static String packageName(int p) {
+        return ROOT_PACKAGE + ".p" + p;
+    }
+
+    public static String className(int p, int c) {
+        return "C" + p + "_" + c;
+    }
+
+    public static String qualifiedName(int p, int c) {
+        return packageName(p) + "." + className(p, c);
+    }
+
+    /** The source file of class c in package p, relative to the workspace root. */
+    public static Path relativePath(int p, int c) {
+        var dir = Path.of("src", packageName(p).replace('.', '/').split("/"));
+        return dir.resolve(className(p, c) + ".java");
+    }
+
+    /** Write all sources under root, and return their paths in a stable order. */
+    public List<Path> writeTo(Path root) throws IOException {
+        var random = new Random(seed);
+        var files = new ArrayList<Path>();
+        for (var p = 0; p < packages; p++) {
+            for (var c = 0; c < classesPerPackage; c++) {
+                var file = root.resolve(relativePath(p, c));
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, source(p, c, random));
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    String source(int p, int c, Random random) {
+        var imports = new TreeSet<String>();
+        var callees = new ArrayList<String>();
+        // Import classes from other packages
+        if (packages > 1) {
+            for (var i = 0; i < importFanOut; i++) {
+                var otherPackage = (p + 1 + random.nextInt(packages - 1)) % packages;
+                var otherClass = random.nextInt(classesPerPackage);
+                imports.add(qualifiedName(otherPackage, otherClass));
+            }
+        }
+        // Call methods of imported classes and of classes in the same package
+        var visible = new ArrayList<String>(imports);
+        for (var i = 0; i < classesPerPackage; i++) {
+            visible.add(qualifiedName(p, i));
+        }
+        for (var i = 0; i < callFanOut; i++) {
+            var callee = visible.get(random.nextInt(visible.size()));
+            callees.add(StringSearch.lastName(callee));
+        }
+        // Build the source text
+        var buf = new StringBuilder();
+        buf.append("package ").append(packageName(p)).append(";\n\n");
+        for (var i : imports) {
+            buf.append("import ").append(i).append(";\n");
+        }
+        if (!imports.isEmpty()) buf.append("\n");
+        buf.append("public class ").append(className(p, c));
+        if (inheritanceDepth > 1 && c % inheritanceDepth != 0) {
+            buf.append(" extends ").append(className(p, c - 1));
+        }
+        buf.append(" {\n");
+        buf.append("    public int field").append(c).append(";\n\n");
+        buf.append("    public int method").append(c).append("(int x) {\n");
+        buf.append("        return x + field").append(c).append(";\n");
+        buf.append("    }\n\n");
+        buf.append("    public int compute(int x) {\n");
+        buf.append("        var result = method").append(c).append("(x);\n");
+        for (var callee : callees) {
+            var calleeIndex = Integer.parseInt(callee.substring(callee.indexOf('_') + 1));
+            buf.append("        result += new ").append(callee).append("().method").append(calleeIndex).append("(x);\n");
+        }
+        buf.append("        return result;\n");
+        buf.append("    }\n");
+        buf.append("}\n");
+        return buf.toString();
+    }
+
+    /** Recursively delete a workspace created by writeTo. */
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        Files.walkFileTree(
+                root,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                        Files.delete(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+}
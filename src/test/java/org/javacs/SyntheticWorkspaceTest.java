@@ -0,0 +1,127 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.management.ThreadMXBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import javax.tools.Diagnostic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyntheticWorkspaceTest {
+    private final SavedState saved = SavedState.save();
+    /** Run with -Djavacs.syntheticFiles=10000 or 100000 to measure larger workspaces. */
+    private static final int FILES = Integer.getInteger("javacs.syntheticFiles", 1000);
+    /**
+     * Budgets are about ten times what each path takes on a laptop, so they trip when a path stops scaling linearly
+     * rather than when the machine is slow. Memory is what the path allocates on the calling thread, the only thread
+     * these paths use. Listing a package doesn't depend on the size of the workspace, so its budget is fixed.
+     */
+    private static final long INDEX_MICROS_PER_FILE = 2_000, INDEX_BYTES_PER_FILE = 256 * 1024;
+    private static final long LIST_MILLIS = 250;
+    private static final long REFERENCES_MICROS_PER_FILE = 1_000, REFERENCES_BYTES_PER_FILE = 32 * 1024;
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Path root;
+
+    @Before
+    public void createRoot() throws IOException {
+        root = Files.createTempDirectory("synthetic-workspace");
+    }
+
+    @After
+    public void deleteRoot() throws IOException {
+        saved.restore();
+        SyntheticWorkspace.delete(root);
+    }
+
+    @Test
+    public void sameSettingsProduceSameSources() throws IOException {
+        var other = Files.createTempDirectory("synthetic-workspace");
+        try {
+            var first = new SyntheticWorkspace().writeTo(root);
+            var second = new SyntheticWorkspace().writeTo(other);
+            assertThat(first, hasSize(second.size()));
+            for (var i = 0; i < first.size(); i++) {
+                assertThat(Files.readString(first.get(i)), equalTo(Files.readString(second.get(i))));
+            }
+        } finally {
+            SyntheticWorkspace.delete(other);
+        }
+    }
+
+    @Test
+    public void generatedSourcesCompile() throws IOException {
+        var workspace = new SyntheticWorkspace();
+        workspace.writeTo(root);
+        FileStore.setWorkspaceRoots(Set.of(root));
+        var compiler = new JavaCompilerService(Set.of(), Set.of(), Set.of(), List.of());
+        var file = root.resolve(SyntheticWorkspace.relativePath(3, 5)).toAbsolutePath().normalize();
+        try (var task = compiler.compile(file)) {
+            for (var d : task.diagnostics) {
+                assertThat(d.toString(), d.getKind(), not(equalTo(Diagnostic.Kind.ERROR)));
+            }
+        }
+    }
+
+    @Test
+    public void workspaceWidePathsAtScale() throws IOException {
+        var workspace = SyntheticWorkspace.ofSize(FILES);
+        workspace.writeTo(root);
+
+        var allocated = THREADS.getCurrentThreadAllocatedBytes();
+        var started = Instant.now();
+        FileStore.setWorkspaceRoots(Set.of(root));
+        var elapsed = log("index", started, allocated);
+        assertThat(FileStore.all(), hasSize(workspace.fileCount()));
+        assertWithin("index micros", elapsed.toNanos() / 1_000, INDEX_MICROS_PER_FILE * FILES);
+        assertWithin("index bytes", allocatedSince(allocated), INDEX_BYTES_PER_FILE * FILES);
+
+        allocated = THREADS.getCurrentThreadAllocatedBytes();
+        started = Instant.now();
+        var list = FileStore.list(SyntheticWorkspace.packageName(0));
+        elapsed = log("list", started, allocated);
+        assertThat(list, hasSize(workspace.classesPerPackage));
+        assertWithin("list ms", elapsed.toMillis(), LIST_MILLIS);
+
+        var compiler = new JavaCompilerService(Set.of(), Set.of(), Set.of(), List.of());
+        allocated = THREADS.getCurrentThreadAllocatedBytes();
+        started = Instant.now();
+        var references = compiler.findMemberReferences(SyntheticWorkspace.qualifiedName(0, 0), "compute");
+        elapsed = log("findMemberReferences", started, allocated);
+        assertThat(references.length, equalTo(workspace.fileCount()));
+        assertWithin("findMemberReferences micros", elapsed.toNanos() / 1_000, REFERENCES_MICROS_PER_FILE * FILES);
+        assertWithin("findMemberReferences bytes", allocatedSince(allocated), REFERENCES_BYTES_PER_FILE * FILES);
+    }
+
+    private static void assertWithin(String measure, long actual, long budget) {
+        assertTrue(String.format("%s: %,d over the budget of %,d", measure, actual, budget), actual <= budget);
+    }
+
+    private static long allocatedSince(long allocated) {
+        return THREADS.getCurrentThreadAllocatedBytes() - allocated;
+    }
+
+    private Duration log(String operation, Instant started, long allocated) {
+        var elapsed = Duration.between(started, Instant.now());
+        var bytes = allocatedSince(allocated);
+        LOG.info(
+                String.format(
+                        "%s over %,d synthetic files took %,d ms and allocated %,d KB",
+                        operation, FILES, elapsed.toMillis(), bytes / 1024));
+        return elapsed;
+    }
+
+    private static final Logger LOG = Logger.getLogger("main");
+}
@@ -0,0 +1,30 @@
+package org.javacs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An empty workspace in a new temporary directory, for tests that write a few sources of their own. Tests create it in
+ * a @Before method and delete() it in @After.
+ */
+class TempWorkspace {
+    final Path root;
+
+    TempWorkspace(String prefix) throws IOException {
+        // FileStore and the compiler see files by their real path, which isn't the temp path on every OS
+        this.root = Files.createTempDirectory(prefix).toRealPath();
+    }
+
+    /** Write contents to relativePath under root, creating its directory, and return the file. */
+    Path write(String relativePath, String contents) throws IOException {
+        var file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, contents);
+        return file;
+    }
+
+    void delete() throws IOException {
+        SyntheticWorkspace.delete(root);
+    }
+}
@@ -0,0 +1,127 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TypeHierarchyTest {
+    private final SavedState saved = SavedState.save();
+    private Path root;
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        root = Files.createTempDirectory("type-hierarchy").toRealPath();
+        write("a/Shape.java", "package a;\npublic interface Shape {\n    double area();\n}\n");
+        write("a/Base.java", "package a;\npublic abstract class Base implements Shape {}\n");
+        write(
+                "a/Use.java",
+                "package a;\nclass Use {\n    double use(Shape s) {\n        return s.area();\n    }\n}\n");
+        write(
+                "b/Circle.java",
+                "package b;\nimport a.Base;\npublic class Circle extends Base {\n"
+                        + "    public double area() { return 1; }\n}\n");
+        write(
+                "b/Square.java",
+                "package b;\nimport a.*;\nclass Square implements Shape, Runnable {\n"
+                        + "    public double area() { return 2; }\n    public void run() {}\n}\n");
+        // A different class named Shape
+        write("c/Shape.java", "package c;\nclass Shape {}\n");
+        write("c/Fake.java", "package c;\nclass Fake extends Shape {\n    public double area() { return 3; }\n}\n");
+        TypeHierarchyIndex.clear();
+        server = LanguageServerFixture.getJavaLanguageServer(root, diagnostic -> {});
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        TypeHierarchyIndex.clear();
+        saved.restore();
+        SyntheticWorkspace.delete(root);
+    }
+
+    @Test
+    public void subtypesAreResolvedThroughImports() {
+        var subtypes = new ArrayList<String>();
+        for (var t : TypeHierarchyIndex.subtypes(server.compiler(), "a.Shape")) {
+            subtypes.add(t.className);
+        }
+        assertThat(subtypes, containsInAnyOrder("a.Base", "b.Square"));
+    }
+
+    @Test
+    public void implementationsOfInterface() {
+        var found = describe(server.implementation(position("a/Shape.java", 1, 18)));
+        assertThat(found, containsInAnyOrder("Base.java:2", "Circle.java:3", "Square.java:3"));
+    }
+
+    @Test
+    public void overridesOfMethodDeclaration() {
+        var found = describe(server.implementation(position("a/Shape.java", 2, 12)));
+        assertThat(found, containsInAnyOrder("Circle.java:4", "Square.java:4"));
+    }
+
+    @Test
+    public void overridesOfMethodReference() {
+        var found = describe(server.implementation(position("a/Use.java", 3, 18)));
+        assertThat(found, containsInAnyOrder("Circle.java:4", "Square.java:4"));
+    }
+
+    @Test
+    public void supertypesAndSubtypes() {
+        var circle = server.prepareTypeHierarchy(position("b/Circle.java", 2, 15)).orElseThrow();
+        assertThat(names(circle), contains("Circle"));
+        var base = server.typeHierarchySupertypes(new TypeHierarchyParams(circle.get(0)));
+        assertThat(names(base), contains("Base"));
+        var shape = server.typeHierarchySupertypes(new TypeHierarchyParams(base.get(0)));
+        assertThat(names(shape), contains("Shape"));
+        assertThat(shape.get(0).detail, equalTo("a"));
+        var subtypes = server.typeHierarchySubtypes(new TypeHierarchyParams(shape.get(0)));
+        assertThat(names(subtypes), containsInAnyOrder("Base", "Square"));
+    }
+
+    @Test
+    public void changedFileIsIndexedAgain() throws IOException {
+        assertThat(TypeHierarchyIndex.subtypes(server.compiler(), "a.Base"), hasSize(1));
+        var circle = write("b/Circle.java", "package b;\npublic class Circle {}\n");
+        Files.setLastModifiedTime(circle, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        FileStore.externalChange(circle);
+        assertThat(TypeHierarchyIndex.subtypes(server.compiler(), "a.Base"), empty());
+    }
+
+    private TextDocumentPositionParams position(String relativePath, int line, int character) {
+        var uri = root.resolve(relativePath).toUri();
+        return new TextDocumentPositionParams(new TextDocumentIdentifier(uri), new Position(line, character));
+    }
+
+    private List<String> describe(List<Location> locations) {
+        var result = new ArrayList<String>();
+        for (var l : locations) {
+            result.add(Path.of(l.uri).getFileName() + ":" + (l.range.start.line + 1));
+        }
+        return result;
+    }
+
+    private List<String> names(List<TypeHierarchyItem> items) {
+        var result = new ArrayList<String>();
+        for (var i : items) {
+            result.add(i.name);
+        }
+        return result;
+    }
+
+    private Path write(String relativePath, String contents) throws IOException {
+        var file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, contents);
+        return file;
+    }
+}
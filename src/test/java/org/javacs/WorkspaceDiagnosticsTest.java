@@ -0,0 +1,152 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkspaceDiagnosticsTest {
+    private final SavedState saved = SavedState.save();
+    private TempWorkspace workspace;
+    private Path root;
+    private final Map<URI, List<Diagnostic>> published = new HashMap<>();
+    private int publishCount;
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = new TempWorkspace("workspace-diagnostics");
+        root = workspace.root;
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int value() { return 1; }\n}\n");
+        workspace.write(
+                "b/User.java",
+                "package b;\npublic class User {\n    public int use() { return a.Lib.value(); }\n}\n");
+        workspace.write("b/Broken.java", "package b;\npublic class Broken {\n    public String s = 1;\n}\n");
+        server = LanguageServerFixture.getJavaLanguageServer(root, new RecordingClient());
+        var java = new JsonObject();
+        java.addProperty("workspaceDiagnostics", true);
+        var settings = new JsonObject();
+        settings.add("java", java);
+        var change = new DidChangeConfigurationParams();
+        change.settings = settings;
+        server.didChangeConfiguration(change);
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        saved.restore();
+        workspace.delete();
+    }
+
+    @Test
+    public void closedFilesAreChecked() {
+        runBackgroundWork();
+        assertThat(errors("b/Broken.java"), hasItem("compiler.err.prob.found.req"));
+        assertThat(errors("b/User.java"), empty());
+        assertThat(errors("a/Lib.java"), empty());
+    }
+
+    @Test
+    public void unchangedFilesAreNotCheckedAgain() {
+        runBackgroundWork();
+        var before = publishCount;
+        assertThat(server.doBackgroundWork(), equalTo(false));
+        assertThat(publishCount, equalTo(before));
+    }
+
+    @Test
+    public void dependentsOfChangedFileAreCheckedAgain() throws IOException {
+        runBackgroundWork();
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int renamed() { return 1; }\n}\n");
+        var change = new FileEvent();
+        change.uri = root.resolve("a/Lib.java").toUri();
+        change.type = FileChangeType.Changed;
+        var params = new DidChangeWatchedFilesParams();
+        params.changes = List.of(change);
+        server.didChangeWatchedFiles(params);
+        runBackgroundWork();
+        assertThat(errors("b/User.java"), hasItem("compiler.err.cant.resolve.location.args"));
+    }
+
+    @Test
+    public void closedFileIsCheckedAgain() {
+        runBackgroundWork();
+        var uri = root.resolve("b/Broken.java").toUri();
+        var close = new DidCloseTextDocumentParams();
+        close.textDocument.uri = uri;
+        server.didCloseTextDocument(close);
+        assertThat(published.get(uri), empty());
+        runBackgroundWork();
+        assertThat(errors("b/Broken.java"), hasItem("compiler.err.prob.found.req"));
+    }
+
+    @Test
+    public void closedFilesAreNotCheckedByDefault() {
+        published.clear();
+        server = LanguageServerFixture.getJavaLanguageServer(root, new RecordingClient());
+        runBackgroundWork();
+        assertThat(published.keySet(), empty());
+    }
+
+    @Test
+    public void checkingKeepsTheBatchOfTheFileTheUserIsWorkingOn() {
+        var file = root.resolve("a/Lib.java");
+        var compiler = server.compiler(file);
+        JavacTask before;
+        try (var task = compiler.compile(file)) {
+            before = task.task;
+        }
+        runBackgroundWork();
+        assertThat(errors("b/Broken.java"), hasItem("compiler.err.prob.found.req"));
+        try (var task = compiler.compile(file)) {
+            assertThat(task.task, sameInstance(before));
+        }
+    }
+
+    private void runBackgroundWork() {
+        for (var i = 0; i < 100 && server.doBackgroundWork(); i++) {}
+    }
+
+    private List<String> errors(String relativePath) {
+        var uri = root.resolve(relativePath).toUri();
+        assertThat(published, hasKey(uri));
+        var codes = new ArrayList<String>();
+        for (var d : published.get(uri)) {
+            if (d.severity == DiagnosticSeverity.Error) {
+                codes.add(d.code);
+            }
+        }
+        return codes;
+    }
+
+    private class RecordingClient implements LanguageClient {
+        @Override
+        public void publishDiagnostics(PublishDiagnosticsParams params) {
+            published.put(params.uri, params.diagnostics);
+            publishCount++;
+        }
+
+        @Override
+        public void showMessage(ShowMessageParams params) {}
+
+        @Override
+        public void registerCapability(String method, JsonElement options) {}
+
+        @Override
+        public void customNotification(String method, JsonElement params) {}
+    }
+}
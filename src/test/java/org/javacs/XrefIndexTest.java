@@ -0,0 +1,129 @@
+package org.javacs;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import org.javacs.lsp.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XrefIndexTest {
+    private final SavedState saved = SavedState.save("javacs.xrefCache");
+    private static final String VALUE = "a.Lib#value(int)";
+
+    private TempWorkspace workspace;
+    private Path root, cache;
+    private JavaLanguageServer server;
+
+    @Before
+    public void createWorkspace() throws IOException {
+        workspace = new TempWorkspace("xref-index");
+        root = workspace.root;
+        cache = Files.createTempDirectory("xref-index-cache");
+        System.setProperty("javacs.xrefCache", cache.toString());
+        workspace.write(
+                "a/Lib.java",
+                "package a;\npublic class Lib {\n    public static int value(int x) { return x; }\n}\n");
+        workspace.write(
+                "b/User.java",
+                "package b;\nimport a.Lib;\nclass User {\n"
+                        + "    int one = Lib.value(1);\n    int two = Lib.value(2);\n}\n");
+        workspace.write("c/Unrelated.java", "package c;\nclass Unrelated {\n    int value;\n}\n");
+        XrefIndex.clearMemory();
+        server = LanguageServerFixture.getJavaLanguageServer(root, diagnostic -> {});
+    }
+
+    @After
+    public void deleteWorkspace() throws IOException {
+        XrefIndex.clearMemory();
+        saved.restore();
+        workspace.delete();
+        SyntheticWorkspace.delete(cache);
+    }
+
+    @Test
+    public void compiledFilesAreIndexed() {
+        indexEverything();
+        assertThat(XrefIndex.references(root.resolve("b/User.java"), VALUE), hasSize(2));
+        assertThat(XrefIndex.references(root.resolve("b/User.java"), "a.Lib"), hasSize(3));
+        assertThat(XrefIndex.excludes(root.resolve("c/Unrelated.java"), List.of(VALUE)), equalTo(true));
+        assertThat(XrefIndex.excludes(root.resolve("b/User.java"), List.of(VALUE)), equalTo(false));
+    }
+
+    @Test
+    public void indexIsReadFromDisk() {
+        indexEverything();
+        XrefIndex.clearMemory();
+        assertThat(XrefIndex.references(root.resolve("b/User.java"), VALUE), hasSize(2));
+    }
+
+    @Test
+    public void changedFileIsStale() throws IOException {
+        indexEverything();
+        var user = root.resolve("b/User.java");
+        Files.setLastModifiedTime(user, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        FileStore.externalChange(user);
+        assertThat(XrefIndex.references(user, VALUE), nullValue());
+    }
+
+    @Test
+    public void fileIsStaleWhenAFileItUsesChanged() throws IOException {
+        indexEverything();
+        var lib = root.resolve("a/Lib.java");
+        Files.setLastModifiedTime(lib, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        FileStore.externalChange(lib);
+        assertThat(XrefIndex.references(root.resolve("b/User.java"), VALUE), nullValue());
+        XrefIndex.clearMemory();
+        assertThat(XrefIndex.references(root.resolve("b/User.java"), VALUE), nullValue());
+        assertThat(XrefIndex.excludes(root.resolve("c/Unrelated.java"), List.of(VALUE)), equalTo(true));
+    }
+
+    @Test
+    public void callsAreReadFromDisk() {
+        indexEverything();
+        XrefIndex.clearMemory();
+        var unindexed = new ArrayList<Path>();
+        assertThat(XrefIndex.callsTo(VALUE, unindexed), hasSize(2));
+        assertThat(unindexed, empty());
+    }
+
+    @Test
+    public void filesWithErrorsAreNotIndexed() throws IOException {
+        workspace.write("b/Broken.java", "package b;\nclass Broken {\n    int x = a.Lib.value(\"wrong\");\n}\n");
+        FileStore.externalCreate(root.resolve("b/Broken.java"));
+        indexEverything();
+        assertThat(XrefIndex.references(root.resolve("b/Broken.java"), VALUE), nullValue());
+    }
+
+    @Test
+    public void referencesFromIndexMatchCompiler() {
+        var params = new ReferenceParams();
+        params.textDocument = new TextDocumentIdentifier(root.resolve("a/Lib.java").toUri());
+        params.position = new Position(2, 22);
+        var compiled = describe(server.findReferences(params).orElseThrow());
+        indexEverything();
+        var indexed = describe(server.findReferences(params).orElseThrow());
+        assertThat(compiled, hasSize(2));
+        assertThat(indexed, containsInAnyOrder(compiled.toArray()));
+    }
+
+    private void indexEverything() {
+        try (var task = server.compiler().compile(FileStore.all().toArray(Path[]::new))) {
+            XrefIndex.update(task);
+        }
+    }
+
+    private List<String> describe(List<Location> locations) {
+        var result = new ArrayList<String>();
+        for (var l : locations) {
+            result.add(l.uri.getPath() + ":" + l.range);
+        }
+        return result;
+    }
+}
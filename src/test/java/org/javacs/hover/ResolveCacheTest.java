@@ -0,0 +1,44 @@
+package org.javacs.hover;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import org.javacs.CompletionData;
+import org.javacs.lsp.MarkupContent;
+import org.junit.Test;
+
+public class ResolveCacheTest {
+    private ResolveCache.Key key(String className, String memberName, String... erasedParameterTypes) {
+        var data = new CompletionData();
+        data.className = className;
+        data.memberName = memberName;
+        data.erasedParameterTypes = erasedParameterTypes;
+        return new ResolveCache.Key(data);
+    }
+
+    private ResolveCache.Resolved docs(int length) {
+        return new ResolveCache.Resolved(null, new MarkupContent("markdown", "x".repeat(length)), null);
+    }
+
+    @Test
+    public void keyIgnoresOverloadCount() {
+        var cache = new ResolveCache();
+        cache.put(key("java.lang.String", "indexOf", "int"), docs(10));
+        assertThat(cache.get(key("java.lang.String", "indexOf", "int")), notNullValue());
+        assertThat(cache.get(key("java.lang.String", "indexOf", "java.lang.String")), nullValue());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        var cache = new ResolveCache();
+        var half = (int) (ResolveCache.MAX_CHARS / 2);
+        cache.put(key("A", "a"), docs(half));
+        cache.put(key("B", "b"), docs(half));
+        // Touch A, so B is the least-recently used
+        assertThat(cache.get(key("A", "a")), notNullValue());
+        cache.put(key("C", "c"), docs(10));
+        assertThat(cache.get(key("A", "a")), notNullValue());
+        assertThat(cache.get(key("B", "b")), nullValue());
+        assertThat(cache.size(), equalTo(2));
+    }
+}
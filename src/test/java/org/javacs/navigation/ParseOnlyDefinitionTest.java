@@ -0,0 +1,69 @@
+package org.javacs.navigation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.javacs.CompilerProvider;
+import org.javacs.LanguageServerFixture;
+import org.junit.Test;
+
+public class ParseOnlyDefinitionTest {
+    static final CompilerProvider compiler = LanguageServerFixture.getCompilerProvider();
+
+    private Path file(String name) {
+        return LanguageServerFixture.DEFAULT_WORKSPACE_ROOT
+                .resolve("src/org/javacs/example")
+                .resolve(name)
+                .toAbsolutePath();
+    }
+
+    private Optional<List<String>> find(String file, int line, int column) {
+        var found = new ParseOnlyDefinition(compiler, file(file), line, column).find();
+        if (found.isEmpty()) return Optional.empty();
+        var strings = new ArrayList<String>();
+        for (var l : found.get()) {
+            strings.add(Paths.get(l.uri).getFileName() + ":" + (l.range.start.line + 1));
+        }
+        return Optional.of(strings);
+    }
+
+    @Test
+    public void typeInSamePackage() {
+        assertThat(find("Goto.java", 7, 9), equalTo(Optional.of(List.of("GotoOther.java:3"))));
+    }
+
+    @Test
+    public void staticFieldOfOtherType() {
+        assertThat(find("Goto.java", 26, 27), equalTo(Optional.of(List.of("GotoOther.java:4"))));
+    }
+
+    @Test
+    public void onlyMethodWithName() {
+        assertThat(find("Goto.java", 29, 20), equalTo(Optional.of(List.of("GotoOther.java:6"))));
+    }
+
+    @Test
+    public void overloadedMethodNeedsCompiler() {
+        assertThat(find("GotoOverloadInOtherFile.java", 6, 25), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void fieldNextToOverloadedMethod() {
+        assertThat(find("GotoOverloadInOtherFile.java", 5, 25), equalTo(Optional.of(List.of("GotoOverload.java:4"))));
+    }
+
+    @Test
+    public void memberOfVariableNeedsCompiler() {
+        assertThat(find("Goto.java", 30, 15), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void classDeclaredInFileNeedsCompiler() {
+        assertThat(find("Goto.java", 16, 9), equalTo(Optional.empty()));
+    }
+}